@@ -19,6 +19,8 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 
+import org.openmrs.collection.IntSet;
+
 /**
  * This class represents a list of patientIds.
  */
@@ -223,8 +225,13 @@ public class Cohort extends BaseOpenmrsData  {
 		Cohort ret = new Cohort();
 		ret.setName("(" + (a == null ? "NULL" : a.getName()) + " * " + (b == null ? "NULL" : b.getName()) + ")");
 		if (a != null && b != null) {
-			ret.getMemberIds().addAll(a.getMemberIds());
-			ret.getMemberIds().retainAll(b.getMemberIds());
+			Cohort smaller = a.size() <= b.size() ? a : b;
+			Set<Integer> larger = (smaller == a ? b : a).getMemberIds();
+			for (Integer memberId : smaller.getMemberIds()) {
+				if (larger.contains(memberId)) {
+					ret.getMemberIds().add(memberId);
+				}
+			}
 		}
 		return ret;
 	}
@@ -282,6 +289,19 @@ public class Cohort extends BaseOpenmrsData  {
 		this.memberIds = new TreeSet<Integer>(memberIds);
 	}
 	
+	/**
+	 * Gets the member ids as a set of primitive ints, which takes far less memory than
+	 * {@link #getMemberIds()} and is faster to look ids up in, e.g. when checking many patients
+	 * against a large cohort. Changes to the returned set don't change the cohort.
+	 * 
+	 * @return a new set of the member ids
+	 * @should contain all member ids
+	 * @since 2.1.0
+	 */
+	public IntSet getMemberIdSet() {
+		return getMemberIds() == null ? new IntSet() : new IntSet(getMemberIds());
+	}
+	
 	/**
 	 * @since 1.5
 	 * @see org.openmrs.OpenmrsObject#getId()
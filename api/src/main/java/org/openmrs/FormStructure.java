@@ -0,0 +1,205 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * An immutable snapshot of the structure of a saved {@link Form}: its tree of form fields in display
+ * order and the form fields of each question concept. It only holds ids, so it can be shared between
+ * sessions and threads, and lets form rendering and hl7 processing look fields up without walking
+ * the lazily loaded form, field and concept associations every time.
+ *
+ * @see org.openmrs.api.FormService#getFormStructure(Form)
+ * @since 2.1.0
+ */
+public class FormStructure {
+	
+	/**
+	 * The key of the top level form fields in {@link #getChildFormFieldIds(Integer)}
+	 */
+	public static final Integer TOP_LEVEL = 0;
+	
+	private final Integer formId;
+	
+	private final String version;
+	
+	private final Long dateChanged;
+	
+	private final Map<Integer, List<Integer>> childFormFieldIds;
+	
+	private final Map<Integer, Integer> positions;
+	
+	private final Map<Integer, List<Object>> sortKeys;
+	
+	private final Map<Integer, List<Integer>> formFieldIdsByConcept;
+	
+	/**
+	 * Takes a snapshot of the given form
+	 *
+	 * @param form the saved form, its version and date changed identify the snapshot
+	 * @param formFields all form fields of the form, with their fields loaded
+	 * @should order the form fields like the form field comparator
+	 * @should index the form fields by concept
+	 */
+	public FormStructure(Form form, Collection<FormField> formFields) {
+		this.formId = form.getFormId();
+		this.version = form.getVersion();
+		this.dateChanged = getTime(form.getDateChanged());
+		
+		TreeSet<FormField> ordered = new TreeSet<FormField>(new FormField.DefaultComparator());
+		ordered.addAll(formFields);
+		
+		Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+		Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+		Map<Integer, List<Object>> keys = new HashMap<Integer, List<Object>>();
+		Map<Integer, List<Integer>> byConcept = new HashMap<Integer, List<Integer>>();
+		for (FormField formField : ordered) {
+			Integer formFieldId = formField.getFormFieldId();
+			ranks.put(formFieldId, ranks.size());
+			keys.put(formFieldId, getSortKey(formField));
+			add(children, formField.getParent() == null ? TOP_LEVEL : formField.getParent().getFormFieldId(), formFieldId);
+			Field field = formField.getField();
+			if (field != null && field.getConcept() != null) {
+				add(byConcept, field.getConcept().getConceptId(), formFieldId);
+			}
+		}
+		for (List<Integer> ids : byConcept.values()) {
+			// the lowest id first, the order the form fields were added to the form in
+			Collections.sort(ids);
+		}
+		
+		this.childFormFieldIds = freeze(children);
+		this.positions = Collections.unmodifiableMap(ranks);
+		this.sortKeys = Collections.unmodifiableMap(keys);
+		this.formFieldIdsByConcept = freeze(byConcept);
+	}
+	
+	public Integer getFormId() {
+		return formId;
+	}
+	
+	/**
+	 * @param form the current state of the form
+	 * @return true if this snapshot was taken of the same version of the form
+	 */
+	public boolean isSnapshotOf(Form form) {
+		return OpenmrsUtil.nullSafeEquals(formId, form.getFormId()) && OpenmrsUtil.nullSafeEquals(version, form.getVersion())
+		        && OpenmrsUtil.nullSafeEquals(dateChanged, getTime(form.getDateChanged()));
+	}
+	
+	/**
+	 * @param parentFormFieldId the id of the parent form field or {@link #TOP_LEVEL}
+	 * @return the ids of the child form fields in display order
+	 */
+	public List<Integer> getChildFormFieldIds(Integer parentFormFieldId) {
+		return getList(childFormFieldIds, parentFormFieldId == null ? TOP_LEVEL : parentFormFieldId);
+	}
+	
+	/**
+	 * @param conceptId the id of a question concept
+	 * @return the ids of the form fields whose field asks the concept, lowest id first
+	 */
+	public List<Integer> getFormFieldIds(Integer conceptId) {
+		return getList(formFieldIdsByConcept, conceptId);
+	}
+	
+	/**
+	 * @return the number of form fields on the form
+	 */
+	public int getFormFieldCount() {
+		return positions.size();
+	}
+	
+	/**
+	 * @param formField a form field
+	 * @return true if the form field was on the form when the snapshot was taken
+	 */
+	public boolean contains(FormField formField) {
+		return formField.getFormFieldId() != null && positions.containsKey(formField.getFormFieldId());
+	}
+	
+	/**
+	 * Whether the given form field still has the parent, field and numbers it had when the snapshot
+	 * was taken, i.e. it has no unsaved changes that affect its position. The name of the field is
+	 * not compared, fields are saved on their own.
+	 *
+	 * @param formField a form field that the snapshot {@link #contains(FormField)}
+	 * @return true if the form field sorts where it did when the snapshot was taken
+	 * @should return false for a form field whose sort weight was changed
+	 */
+	public boolean isPositionUnchanged(FormField formField) {
+		return getSortKey(formField).equals(sortKeys.get(formField.getFormFieldId()));
+	}
+	
+	/**
+	 * Gets a comparator that orders form fields of the form like {@link FormField.DefaultComparator}
+	 * does, without loading their fields. It can only compare form fields that this snapshot
+	 * {@link #contains(FormField)}.
+	 *
+	 * @return the comparator
+	 */
+	public Comparator<FormField> getComparator() {
+		return new Comparator<FormField>() {
+			
+			@Override
+			public int compare(FormField ff1, FormField ff2) {
+				return positions.get(ff1.getFormFieldId()).compareTo(positions.get(ff2.getFormFieldId()));
+			}
+		};
+	}
+	
+	/**
+	 * @return the values the form field comparator orders by, with ids instead of the parent and field
+	 */
+	private static List<Object> getSortKey(FormField formField) {
+		Integer parentId = formField.getParent() == null ? null : formField.getParent().getFormFieldId();
+		Integer fieldId = formField.getField() == null ? null : formField.getField().getFieldId();
+		return Arrays.<Object> asList(formField.getSortWeight(), formField.getPageNumber(), formField.getFieldNumber(),
+		    formField.getFieldPart(), parentId, fieldId);
+	}
+	
+	private static void add(Map<Integer, List<Integer>> map, Integer key, Integer value) {
+		List<Integer> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<Integer>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+	
+	private static Map<Integer, List<Integer>> freeze(Map<Integer, List<Integer>> map) {
+		Map<Integer, List<Integer>> frozen = new HashMap<Integer, List<Integer>>();
+		for (Map.Entry<Integer, List<Integer>> entry : map.entrySet()) {
+			frozen.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<Integer>(entry.getValue())));
+		}
+		return Collections.unmodifiableMap(frozen);
+	}
+	
+	private static List<Integer> getList(Map<Integer, List<Integer>> map, Integer key) {
+		List<Integer> values = map.get(key);
+		return values == null ? Collections.<Integer> emptyList() : values;
+	}
+	
+	private static Long getTime(Date date) {
+		return date == null ? null : date.getTime();
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A compact, read only view of a {@link PatientProgram} that only holds ids and dates. It is meant
+ * for reporting over large cohorts where loading the full PatientProgram and PatientState entities
+ * would use too much memory.
+ *
+ * @see org.openmrs.api.ProgramWorkflowService#getPatientProgramEnrollments(Cohort, java.util.Collection)
+ * @since 2.1.0
+ */
+public class PatientProgramEnrollment {
+	
+	/**
+	 * Returned by {@link #getCurrentStateId(int)} when the patient has no current state in a workflow
+	 */
+	public static final int NO_STATE = 0;
+	
+	private static final int[] EMPTY = new int[0];
+	
+	private final int patientProgramId;
+	
+	private final int patientId;
+	
+	private final int programId;
+	
+	private final Date dateEnrolled;
+	
+	private final Date dateCompleted;
+	
+	private int[] workflowIds = EMPTY;
+	
+	private int[] currentStateIds = EMPTY;
+	
+	public PatientProgramEnrollment(int patientProgramId, int patientId, int programId, Date dateEnrolled,
+	    Date dateCompleted) {
+		this.patientProgramId = patientProgramId;
+		this.patientId = patientId;
+		this.programId = programId;
+		this.dateEnrolled = dateEnrolled;
+		this.dateCompleted = dateCompleted;
+	}
+	
+	/**
+	 * Sets the current state of the enrollment in the given workflow, replacing any state previously
+	 * set for that workflow
+	 *
+	 * @param workflowId the program workflow id
+	 * @param stateId the program workflow state id
+	 * @should replace the state of a workflow that is already set
+	 */
+	public void setCurrentStateId(int workflowId, int stateId) {
+		for (int i = 0; i < workflowIds.length; i++) {
+			if (workflowIds[i] == workflowId) {
+				currentStateIds[i] = stateId;
+				return;
+			}
+		}
+		workflowIds = Arrays.copyOf(workflowIds, workflowIds.length + 1);
+		currentStateIds = Arrays.copyOf(currentStateIds, currentStateIds.length + 1);
+		workflowIds[workflowIds.length - 1] = workflowId;
+		currentStateIds[currentStateIds.length - 1] = stateId;
+	}
+	
+	/**
+	 * @param workflowId the program workflow id
+	 * @return the id of the current program workflow state in the given workflow or
+	 *         {@link #NO_STATE} if there is none
+	 * @should return no state for a workflow without a current state
+	 */
+	public int getCurrentStateId(int workflowId) {
+		for (int i = 0; i < workflowIds.length; i++) {
+			if (workflowIds[i] == workflowId) {
+				return currentStateIds[i];
+			}
+		}
+		return NO_STATE;
+	}
+	
+	/**
+	 * @return the ids of the workflows the enrollment has a current state in, in the same order as
+	 *         {@link #getCurrentStateIds()}
+	 */
+	public int[] getWorkflowIds() {
+		return workflowIds.clone();
+	}
+	
+	/**
+	 * @return the ids of the current states, in the same order as {@link #getWorkflowIds()}
+	 */
+	public int[] getCurrentStateIds() {
+		return currentStateIds.clone();
+	}
+	
+	public int getPatientProgramId() {
+		return patientProgramId;
+	}
+	
+	public int getPatientId() {
+		return patientId;
+	}
+	
+	public int getProgramId() {
+		return programId;
+	}
+	
+	public Date getDateEnrolled() {
+		return dateEnrolled == null ? null : (Date) dateEnrolled.clone();
+	}
+	
+	public Date getDateCompleted() {
+		return dateCompleted == null ? null : (Date) dateCompleted.clone();
+	}
+	
+	/**
+	 * Receives the enrollments one at a time when they are streamed rather than collected into a list
+	 *
+	 * @see org.openmrs.api.ProgramWorkflowService#processPatientProgramEnrollments(Cohort,
+	 *      java.util.Collection, Callback)
+	 */
+	public interface Callback {
+		
+		/**
+		 * @param enrollment the next enrollment, ordered by patient id and enrollment date
+		 */
+		public void handle(PatientProgramEnrollment enrollment);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatientProgramEnrollment[patientProgramId=" + patientProgramId + ", patientId=" + patientId
+		        + ", programId=" + programId + "]";
+	}
+}
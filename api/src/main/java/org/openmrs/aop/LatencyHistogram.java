@@ -0,0 +1,153 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread safe histogram of durations in nanoseconds. Buckets are laid out like in an
+ * HDR histogram: durations below 32ns get a bucket each, above that every power of two is split in
+ * 16 buckets, so that any recorded value is known within about 6%. Recording a value never
+ * allocates or locks, it only increments a few atomic counters, which makes the histogram cheap
+ * enough to record every service call. Durations above about 9.7 hours are recorded in the last
+ * bucket.
+ *
+ * @since 2.1.0
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+	
+	private static final long MAX_TRACKABLE_VALUE = (1L << 45) - 1;
+	
+	private static final int BUCKET_COUNT = getIndex(MAX_TRACKABLE_VALUE) + 1;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	private final AtomicLong total = new AtomicLong();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Records a duration
+	 *
+	 * @param nanos the duration in nanoseconds, negative values are recorded as 0
+	 * @should record values below the sub bucket count exactly
+	 * @should record large values within the precision of the histogram
+	 */
+	public void record(long nanos) {
+		long value = nanos < 0 ? 0 : nanos;
+		counts.incrementAndGet(getIndex(Math.min(value, MAX_TRACKABLE_VALUE)));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+	
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return the sum of the recorded values
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+	
+	/**
+	 * @return the largest recorded value or 0 if nothing was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * @return the mean of the recorded values or 0 if nothing was recorded
+	 */
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+	
+	/**
+	 * Gets the value below or at which the given percentage of the recorded values lie, as the upper
+	 * bound of the bucket it falls in but never more than the largest recorded value
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the value or 0 if nothing was recorded
+	 * @should return 0 if nothing was recorded
+	 * @should return the value at the given percentile
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long recorded = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			recorded += snapshot[i];
+		}
+		if (recorded == 0) {
+			return 0;
+		}
+		
+		long target = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * recorded));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= target) {
+				return Math.min(getHighestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * Clears all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+	
+	private static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int bucket = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		int subBucket = (int) (value >>> bucket);
+		return SUB_BUCKET_COUNT + (bucket - 1) * HALF_SUB_BUCKET_COUNT + (subBucket - HALF_SUB_BUCKET_COUNT);
+	}
+	
+	private static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int bucket = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+		long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << bucket) - 1;
+	}
+}
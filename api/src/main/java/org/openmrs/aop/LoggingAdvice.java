@@ -19,8 +19,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.util.OpenmrsUtil;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class provides the log4j aop around advice for our service layer. This advice is placed on
@@ -41,63 +41,50 @@ public class LoggingAdvice implements MethodInterceptor {
 	private static final String[] SETTER_METHOD_PREFIXES = { "save", "create", "update", "void", "unvoid", "retire",
 	        "unretire", "delete", "purge" };
 	
+	private final ConcurrentMap<Method, MethodLogging> methodLoggings = new ConcurrentHashMap<Method, MethodLogging>();
+	
 	/**
 	 * This method prints out debug statements for getters and info statements for everything else
 	 * ("setters"). If debugging is turned on, execution time for each method is printed as well.
 	 * This method is called for every method in the Class/Service that it is wrapped around. This
-	 * method should be fairly quick and light.
+	 * method should be fairly quick and light, what to log for a method is only worked out the first
+	 * time it is called. Durations are aggregated by {@link ServiceMetricsAdvice}.
 	 *
 	 * @see org.aopalliance.intercept.MethodInterceptor#invoke(org.aopalliance.intercept.MethodInvocation)
 	 */
 	public Object invoke(MethodInvocation invocation) throws Throwable {
 		
+		// decide what type of logging we're doing with the current method and loglevel
+		boolean debugEnabled = log.isDebugEnabled();
+		boolean infoEnabled = log.isInfoEnabled();
+		if (!debugEnabled && !infoEnabled) {
+			return invocation.proceed();
+		}
+		
 		Method method = invocation.getMethod();
 		String name = method.getName();
-		
-		// decide what type of logging we're doing with the current method and loglevel
-		boolean isSetterTypeOfMethod = OpenmrsUtil.stringStartsWith(name, SETTER_METHOD_PREFIXES);
-		boolean logGetter = !isSetterTypeOfMethod && log.isDebugEnabled();
-		boolean logSetter = isSetterTypeOfMethod && log.isInfoEnabled();
+		MethodLogging methodLogging = getMethodLogging(method);
+		boolean logGetter = !methodLogging.setterTypeOfMethod && debugEnabled && !methodLogging.ignore;
+		boolean logSetter = methodLogging.setterTypeOfMethod && infoEnabled && !methodLogging.ignore;
 		
 		// used for the execution time calculations
-		long startTime = System.currentTimeMillis();
-		
-		// check if this method has the logging annotation on it
-		Logging loggingAnnotation = null;
-		if (logGetter || logSetter) {
-			loggingAnnotation = method.getAnnotation(Logging.class);
-			if (loggingAnnotation != null && loggingAnnotation.ignore()) {
-				logGetter = false;
-				logSetter = false;
-			}
-		}
+		long startTime = System.nanoTime();
 		
 		if (logGetter || logSetter) {
 			StringBuilder output = new StringBuilder();
-			output.append("In method ").append(method.getDeclaringClass().getSimpleName()).append(".").append(name);
+			output.append("In method ").append(methodLogging.qualifiedName);
 			
 			// print the argument values unless we're ignoring all
-			if (loggingAnnotation == null || !loggingAnnotation.ignoreAllArgumentValues()) {
-				
-				int x;
-				Class<?>[] types = method.getParameterTypes();
+			if (methodLogging.argumentTypeNames != null) {
 				Object[] values = invocation.getArguments();
 				
-				// change the annotation array of indexes to a list of indexes to ignore
-				List<Integer> argsToIgnore = new ArrayList<Integer>();
-				if (loggingAnnotation != null && loggingAnnotation.ignoredArgumentIndexes().length > 0) {
-					for (int argIndexToIgnore : loggingAnnotation.ignoredArgumentIndexes()) {
-						argsToIgnore.add(argIndexToIgnore);
-					}
-				}
-				
 				// loop over and print out each argument value
 				output.append(". Arguments: ");
-				for (x = 0; x < types.length; x++) {
-					output.append(types[x].getSimpleName()).append("=");
+				for (int x = 0; x < methodLogging.argumentTypeNames.length; x++) {
+					output.append(methodLogging.argumentTypeNames[x]).append("=");
 					
 					// if there is an annotation to skip this, print out a bogus string.
-					if (argsToIgnore.contains(x)) {
+					if (methodLogging.ignoredArguments[x]) {
 						output.append("<Arg value ignored>");
 					} else {
 						output.append(values[x]);
@@ -145,7 +132,7 @@ public class LoggingAdvice implements MethodInterceptor {
 				
 				// only append execution time info if we're in debug mode
 				if (log.isDebugEnabled()) {
-					output.append(". execution time: " + (System.currentTimeMillis() - startTime)).append(" ms");
+					output.append(". execution time: ").append((System.nanoTime() - startTime) / 1000000).append(" ms");
 				}
 				
 				// print the string as either debug or info
@@ -158,4 +145,57 @@ public class LoggingAdvice implements MethodInterceptor {
 		}
 		
 	}
+	
+	private MethodLogging getMethodLogging(Method method) {
+		MethodLogging methodLogging = methodLoggings.get(method);
+		if (methodLogging == null) {
+			methodLogging = new MethodLogging(method);
+			methodLoggings.putIfAbsent(method, methodLogging);
+		}
+		return methodLogging;
+	}
+	
+	/**
+	 * What to log for a method, worked out once from its name and {@link Logging} annotation so that
+	 * calls only need to append the argument values
+	 */
+	private static class MethodLogging {
+		
+		private final boolean setterTypeOfMethod;
+		
+		private final boolean ignore;
+		
+		private final String qualifiedName;
+		
+		// null if all argument values are ignored
+		private final String[] argumentTypeNames;
+		
+		private final boolean[] ignoredArguments;
+		
+		public MethodLogging(Method method) {
+			setterTypeOfMethod = OpenmrsUtil.stringStartsWith(method.getName(), SETTER_METHOD_PREFIXES);
+			qualifiedName = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+			
+			Logging loggingAnnotation = method.getAnnotation(Logging.class);
+			ignore = loggingAnnotation != null && loggingAnnotation.ignore();
+			
+			Class<?>[] types = method.getParameterTypes();
+			ignoredArguments = new boolean[types.length];
+			if (loggingAnnotation == null || !loggingAnnotation.ignoreAllArgumentValues()) {
+				argumentTypeNames = new String[types.length];
+				for (int x = 0; x < types.length; x++) {
+					argumentTypeNames[x] = types[x].getSimpleName();
+				}
+				if (loggingAnnotation != null) {
+					for (int argIndexToIgnore : loggingAnnotation.ignoredArgumentIndexes()) {
+						if (argIndexToIgnore >= 0 && argIndexToIgnore < ignoredArguments.length) {
+							ignoredArguments[argIndexToIgnore] = true;
+						}
+					}
+				}
+			} else {
+				argumentTypeNames = null;
+			}
+		}
+	}
 }
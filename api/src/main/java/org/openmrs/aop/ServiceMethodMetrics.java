@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A point in time copy of the figures {@link ServiceMetricsAdvice} recorded for one service method.
+ * Durations are in microseconds and include the other advice around the method and any service
+ * methods it calls. The statement and entity load counts are only recorded while their recording is
+ * enabled, see {@link ServiceMetricsMXBean#setHibernateStatisticsEnabled(boolean)}.
+ *
+ * @since 2.1.0
+ */
+public class ServiceMethodMetrics {
+	
+	private final String method;
+	
+	private final long callCount;
+	
+	private final long errorCount;
+	
+	private final long meanTime;
+	
+	private final long maxTime;
+	
+	private final long medianTime;
+	
+	private final long percentile95Time;
+	
+	private final long percentile99Time;
+	
+	private final long statementCount;
+	
+	private final long entityLoadCount;
+	
+	@ConstructorProperties( { "method", "callCount", "errorCount", "meanTime", "maxTime", "medianTime",
+	        "percentile95Time", "percentile99Time", "statementCount", "entityLoadCount" })
+	public ServiceMethodMetrics(String method, long callCount, long errorCount, long meanTime, long maxTime,
+	    long medianTime, long percentile95Time, long percentile99Time, long statementCount, long entityLoadCount) {
+		this.method = method;
+		this.callCount = callCount;
+		this.errorCount = errorCount;
+		this.meanTime = meanTime;
+		this.maxTime = maxTime;
+		this.medianTime = medianTime;
+		this.percentile95Time = percentile95Time;
+		this.percentile99Time = percentile99Time;
+		this.statementCount = statementCount;
+		this.entityLoadCount = entityLoadCount;
+	}
+	
+	/**
+	 * @return the service and method name, e.g. "ConceptService.getConcept(Integer)"
+	 */
+	public String getMethod() {
+		return method;
+	}
+	
+	public long getCallCount() {
+		return callCount;
+	}
+	
+	/**
+	 * @return the number of calls that threw an exception
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+	
+	public long getMeanTime() {
+		return meanTime;
+	}
+	
+	public long getMaxTime() {
+		return maxTime;
+	}
+	
+	public long getMedianTime() {
+		return medianTime;
+	}
+	
+	public long getPercentile95Time() {
+		return percentile95Time;
+	}
+	
+	public long getPercentile99Time() {
+		return percentile99Time;
+	}
+	
+	/**
+	 * @return the number of JDBC statements prepared during the calls
+	 */
+	public long getStatementCount() {
+		return statementCount;
+	}
+	
+	/**
+	 * @return the number of entities loaded from the database during the calls
+	 */
+	public long getEntityLoadCount() {
+		return entityLoadCount;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ServiceMethodMetrics[method=" + method + ", calls=" + callCount + ", errors=" + errorCount + ", mean="
+		        + meanTime + "us, p50=" + medianTime + "us, p95=" + percentile95Time + "us, p99=" + percentile99Time
+		        + "us, max=" + maxTime + "us]";
+	}
+}
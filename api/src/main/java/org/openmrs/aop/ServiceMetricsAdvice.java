@@ -0,0 +1,249 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.db.hibernate.StatementCountingInterceptor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * This class provides the aop around advice that measures our service layer. This advice is placed
+ * on all services via the spring application context. For every service method it records a
+ * {@link LatencyHistogram} of the call durations, the number of calls that threw an exception and,
+ * while enabled, the number of JDBC statements and entity loads Hibernate did during the calls,
+ * counted per thread by the {@link StatementCountingInterceptor}. <br>
+ * <br>
+ * Recording a call does not allocate or lock, the figures are only assembled when they are read
+ * through {@link #getMethodMetrics()}, which is exposed over JMX under {@link #OBJECT_NAME}.
+ *
+ * @since 2.1.0
+ */
+public class ServiceMetricsAdvice implements MethodInterceptor, ServiceMetricsMXBean, InitializingBean, DisposableBean {
+	
+	private static final Log log = LogFactory.getLog(ServiceMetricsAdvice.class);
+	
+	/**
+	 * The name this advice is registered under with the platform MBean server
+	 */
+	public static final String OBJECT_NAME = "org.openmrs:type=ServiceMetrics";
+	
+	// the advice that is currently registered with the MBean server
+	private static ServiceMetricsAdvice registered;
+	
+	private final ConcurrentMap<Method, MethodStatistics> statistics = new ConcurrentHashMap<Method, MethodStatistics>();
+	
+	/**
+	 * @see org.aopalliance.intercept.MethodInterceptor#invoke(org.aopalliance.intercept.MethodInvocation)
+	 * @should record calls of service methods
+	 * @should record calls that throw an exception as errors
+	 */
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		MethodStatistics methodStatistics = getMethodStatistics(invocation.getMethod());
+		
+		// the counts of the current thread, which include those of the service methods this one calls
+		long statementCount = StatementCountingInterceptor.getStatementCount();
+		long entityLoadCount = StatementCountingInterceptor.getEntityLoadCount();
+		
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Object result = invocation.proceed();
+			failed = false;
+			return result;
+		}
+		finally {
+			methodStatistics.histogram.record(System.nanoTime() - start);
+			if (failed) {
+				methodStatistics.errorCount.incrementAndGet();
+			}
+			statementCount = StatementCountingInterceptor.getStatementCount() - statementCount;
+			entityLoadCount = StatementCountingInterceptor.getEntityLoadCount() - entityLoadCount;
+			if (statementCount > 0) {
+				methodStatistics.statementCount.addAndGet(statementCount);
+			}
+			if (entityLoadCount > 0) {
+				methodStatistics.entityLoadCount.addAndGet(entityLoadCount);
+			}
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMXBean#getMethodMetrics()
+	 */
+	public List<ServiceMethodMetrics> getMethodMetrics() {
+		List<MethodStatistics> methods = new ArrayList<MethodStatistics>(statistics.values());
+		Collections.sort(methods, new Comparator<MethodStatistics>() {
+			
+			@Override
+			public int compare(MethodStatistics m1, MethodStatistics m2) {
+				long t1 = m1.histogram.getTotal();
+				long t2 = m2.histogram.getTotal();
+				return t1 < t2 ? 1 : (t1 == t2 ? m1.name.compareTo(m2.name) : -1);
+			}
+		});
+		
+		List<ServiceMethodMetrics> metrics = new ArrayList<ServiceMethodMetrics>(methods.size());
+		for (MethodStatistics method : methods) {
+			LatencyHistogram histogram = method.histogram;
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			metrics.add(new ServiceMethodMetrics(method.name, histogram.getCount(), method.errorCount.get(),
+			        toMicros(histogram.getMean()), toMicros(histogram.getMax()), toMicros(histogram
+			                .getValueAtPercentile(50)), toMicros(histogram.getValueAtPercentile(95)), toMicros(histogram
+			                .getValueAtPercentile(99)), method.statementCount.get(), method.entityLoadCount.get()));
+		}
+		return metrics;
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMXBean#reset()
+	 * @should clear the figures of all methods
+	 */
+	public void reset() {
+		for (MethodStatistics method : statistics.values()) {
+			method.histogram.reset();
+			method.errorCount.set(0);
+			method.statementCount.set(0);
+			method.entityLoadCount.set(0);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMXBean#isHibernateStatisticsEnabled()
+	 */
+	public boolean isHibernateStatisticsEnabled() {
+		return StatementCountingInterceptor.isEnabled();
+	}
+	
+	/**
+	 * @see org.openmrs.aop.ServiceMetricsMXBean#setHibernateStatisticsEnabled(boolean)
+	 * @should record the statements and entity loads of the calls
+	 */
+	public void setHibernateStatisticsEnabled(boolean enabled) {
+		StatementCountingInterceptor.setEnabled(enabled);
+	}
+	
+	/**
+	 * Registers this advice with the platform MBean server, replacing the advice of an earlier
+	 * application context
+	 *
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		synchronized (ServiceMetricsAdvice.class) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(OBJECT_NAME);
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				server.registerMBean(this, name);
+				registered = this;
+			}
+			catch (Exception e) {
+				log.warn("Unable to register the service metrics with the MBean server", e);
+			}
+		}
+	}
+	
+	/**
+	 * Unregisters this advice from the platform MBean server unless the advice of a newer
+	 * application context replaced it
+	 *
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		synchronized (ServiceMetricsAdvice.class) {
+			if (registered != this) {
+				return;
+			}
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(OBJECT_NAME);
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				registered = null;
+			}
+			catch (Exception e) {
+				log.warn("Unable to unregister the service metrics from the MBean server", e);
+			}
+		}
+	}
+	
+	private MethodStatistics getMethodStatistics(Method method) {
+		MethodStatistics methodStatistics = statistics.get(method);
+		if (methodStatistics == null) {
+			methodStatistics = new MethodStatistics(getName(method));
+			MethodStatistics existing = statistics.putIfAbsent(method, methodStatistics);
+			if (existing != null) {
+				methodStatistics = existing;
+			}
+		}
+		return methodStatistics;
+	}
+	
+	private static String getName(Method method) {
+		StringBuilder name = new StringBuilder();
+		name.append(method.getDeclaringClass().getSimpleName()).append('.').append(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				name.append(", ");
+			}
+			name.append(types[i].getSimpleName());
+		}
+		return name.append(')').toString();
+	}
+	
+	private static long toMicros(long nanos) {
+		return nanos / 1000;
+	}
+	
+	/**
+	 * The live figures of one service method
+	 */
+	private static class MethodStatistics {
+		
+		private final String name;
+		
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		
+		private final AtomicLong errorCount = new AtomicLong();
+		
+		private final AtomicLong statementCount = new AtomicLong();
+		
+		private final AtomicLong entityLoadCount = new AtomicLong();
+		
+		public MethodStatistics(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import java.util.List;
+
+/**
+ * The management interface of {@link ServiceMetricsAdvice}, it is registered with the platform
+ * MBean server under {@link ServiceMetricsAdvice#OBJECT_NAME}.
+ *
+ * @since 2.1.0
+ */
+public interface ServiceMetricsMXBean {
+	
+	/**
+	 * @return the figures of every service method that was called since the last reset, slowest
+	 *         total time first
+	 */
+	public List<ServiceMethodMetrics> getMethodMetrics();
+	
+	/**
+	 * Clears the figures of all service methods
+	 */
+	public void reset();
+	
+	/**
+	 * @return true if the Hibernate statement and entity load counts are recorded
+	 */
+	public boolean isHibernateStatisticsEnabled();
+	
+	/**
+	 * Enables or disables recording the Hibernate statement and entity load counts of each call. The
+	 * counts are kept per thread, so calls that run at the same time are not counted in each
+	 * other's figures, while those of a call include the service methods it calls.
+	 *
+	 * @param enabled whether to record the counts
+	 */
+	public void setHibernateStatisticsEnabled(boolean enabled);
+}
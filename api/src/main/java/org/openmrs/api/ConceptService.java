@@ -996,6 +996,8 @@ public interface ConceptService extends OpenmrsService {
 	 * @should get concepts with given code and source name
 	 * @should return empty list if source code does not exist
 	 * @should return empty list if mapping does not exist
+	 * @should find a mapping added after the same lookup found nothing
+	 * @should not return a concept after its mapping was removed
 	 * @since 1.8
 	 */
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
@@ -28,6 +28,7 @@ import org.openmrs.VisitType;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.api.handler.EncounterVisitHandler;
+import org.openmrs.collection.IntListMultimap;
 import org.openmrs.parameter.EncounterSearchCriteria;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -442,6 +443,18 @@ public interface EncounterService extends OpenmrsService {
 	 */
 	public Map<Integer, List<Encounter>> getAllEncounters(Cohort patients);
 	
+	/**
+	 * Like {@link #getAllEncounters(Cohort)}, but keys the encounters by primitive patient ids,
+	 * which takes far less memory when getting the encounters of large cohorts
+	 * 
+	 * @param patients Cohort of patients to search, null for all patients
+	 * @return the encounters of each patient, the most recent first
+	 * @should get all encounters for a cohort of patients
+	 * @since 2.1.0
+	 */
+	@Authorized( { PrivilegeConstants.GET_ENCOUNTERS })
+	public IntListMultimap<Encounter> getAllEncountersByPatientId(Cohort patients);
+	
 	/**
 	 * Return the number of encounters matching a patient name or patient identifier
 	 * 
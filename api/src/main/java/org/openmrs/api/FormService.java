@@ -20,6 +20,7 @@ import org.openmrs.FieldType;
 import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
+import org.openmrs.FormStructure;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -509,6 +510,20 @@ public interface FormService extends OpenmrsService {
 	public FormField getFormField(Form form, Concept concept, Collection<FormField> ignoreFormFields, boolean force)
 	        throws APIException;
 	
+	/**
+	 * Gets an immutable snapshot of the structure of the given form: its form field tree, the form
+	 * fields of each concept and the answers of each field. The snapshot is cached until the form,
+	 * one of its form fields or a field is saved or deleted.
+	 * 
+	 * @param form the form, only its id is used
+	 * @return the structure of the form or null if the form is not saved
+	 * @since 2.1.0
+	 * @should return the form fields of the form in display order
+	 * @should return a new structure after a form field is saved
+	 */
+	@Authorized(PrivilegeConstants.GET_FORMS)
+	public FormStructure getFormStructure(Form form) throws APIException;
+	
 	/**
 	 * Creates or updates the given FormField
 	 * 
@@ -0,0 +1,116 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the global properties that code running on the current thread reads, so that something
+ * derived from global properties, e.g. a rendered page, only needs to be thrown away when one of
+ * the properties it was derived from changes. {@link AdministrationService} records every read
+ * between {@link #startRecording()} and {@link #stopRecording()}. Reads of all properties with a
+ * prefix or suffix are recorded as reads of the prefix, or of every property respectively.
+ *
+ * @since 2.1.0
+ */
+public class GlobalPropertyUsage {
+	
+	private static final ThreadLocal<GlobalPropertyUsage> recording = new ThreadLocal<GlobalPropertyUsage>();
+	
+	private final Set<String> propertyNames = new HashSet<String>();
+	
+	private final Set<String> prefixes = new HashSet<String>();
+	
+	private GlobalPropertyUsage outer;
+	
+	/**
+	 * Starts recording the global properties read by the current thread, recordings can be nested
+	 */
+	public static void startRecording() {
+		GlobalPropertyUsage usage = new GlobalPropertyUsage();
+		usage.outer = recording.get();
+		recording.set(usage);
+	}
+	
+	/**
+	 * Stops the recording started last by the current thread, the reads also count for the
+	 * recording it was nested in
+	 *
+	 * @return the global properties read since the matching {@link #startRecording()}
+	 * @should return the properties read while recording
+	 * @should add the reads to the outer recording
+	 */
+	public static GlobalPropertyUsage stopRecording() {
+		GlobalPropertyUsage usage = recording.get();
+		if (usage == null) {
+			return new GlobalPropertyUsage();
+		}
+		if (usage.outer == null) {
+			recording.remove();
+		} else {
+			usage.outer.propertyNames.addAll(usage.propertyNames);
+			usage.outer.prefixes.addAll(usage.prefixes);
+			recording.set(usage.outer);
+			usage.outer = null;
+		}
+		return usage;
+	}
+	
+	/**
+	 * @param propertyName the name of a global property that is read
+	 */
+	public static void recordRead(String propertyName) {
+		GlobalPropertyUsage usage = recording.get();
+		if (usage != null && propertyName != null) {
+			usage.propertyNames.add(propertyName.toLowerCase());
+		}
+	}
+	
+	/**
+	 * @param prefix the prefix of the global properties that are read, an empty string for all
+	 */
+	public static void recordPrefixRead(String prefix) {
+		GlobalPropertyUsage usage = recording.get();
+		if (usage != null) {
+			usage.prefixes.add(prefix == null ? "" : prefix.toLowerCase());
+		}
+	}
+	
+	/**
+	 * @param propertyName the name of a global property
+	 * @return true if the property was read, alone or along with other properties
+	 * @should ignore the case of property names
+	 * @should return true for a property matching a prefix read
+	 */
+	public boolean dependsOn(String propertyName) {
+		if (propertyName == null) {
+			return false;
+		}
+		String name = propertyName.toLowerCase();
+		if (propertyNames.contains(name)) {
+			return true;
+		}
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the lower case names of the properties that were read one by one
+	 */
+	public Set<String> getPropertyNames() {
+		return Collections.unmodifiableSet(propertyNames);
+	}
+}
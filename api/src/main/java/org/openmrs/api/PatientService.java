@@ -24,6 +24,8 @@ import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.PatientDAO;
 import org.openmrs.comparator.PatientIdentifierTypeDefaultComparator;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.person.PatientMergeProgress;
+import org.openmrs.person.PersonMergeLog;
 import org.openmrs.person.PersonMergeLogData;
 import org.openmrs.serialization.SerializationException;
 import org.openmrs.util.PrivilegeConstants;
@@ -69,6 +71,25 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.ADD_PATIENTS, PrivilegeConstants.EDIT_PATIENTS })
 	public Patient savePatient(Patient patient) throws APIException;
 	
+	/**
+	 * Saves many patients at once, e.g. for an import. Each patient is validated and saved like
+	 * {@link #savePatient(Patient)} does, but the identifiers of all of them are checked together by
+	 * {@link #checkPatientIdentifiers(List)}. Nothing is flushed, callers that import a large number
+	 * of patients should pass them in lists of a few hundred and flush and clear the session in
+	 * between.
+	 *
+	 * @param patients the patients to be created or updated
+	 * @return the patients that were created or updated
+	 * @throws APIException
+	 * @should save all patients
+	 * @should fail when two patients have the same identifier
+	 * @should save identifiers that only differ in case
+	 * @should fail when a location identifier without a location has the identifier of one with a location
+	 * @since 2.1.0
+	 */
+	@Authorized( { PrivilegeConstants.ADD_PATIENTS, PrivilegeConstants.EDIT_PATIENTS })
+	public List<Patient> savePatients(List<Patient> patients) throws APIException;
+	
 	/**
 	 * Get patient by internal identifier
 	 * 
@@ -409,6 +430,24 @@ public interface PatientService extends OpenmrsService {
 	 */
 	@Authorized( { PrivilegeConstants.GET_PATIENT_IDENTIFIERS })
 	public void checkPatientIdentifiers(Patient patient) throws PatientIdentifierException;
+	
+	/**
+	 * Validates the identifiers of many patients, as {@link #checkPatientIdentifiers(Patient)} does
+	 * for each of them. Formats and check digits are validated in memory, and whether the
+	 * identifiers are in use by other patients is checked with one query per identifier type instead
+	 * of one query per identifier. An identifier that two of the given patients share is not unique
+	 * either.
+	 *
+	 * @param patients the patients to check, voided patients are skipped
+	 * @throws PatientIdentifierException if one or more of the identifiers are invalid
+	 * @should validate patients with unique identifiers
+	 * @should throw error when an identifier is in use by another patient
+	 * @should throw error when two patients have the same identifier
+	 * @should ignore identifiers of non unique types
+	 * @since 2.1.0
+	 */
+	@Authorized( { PrivilegeConstants.GET_PATIENT_IDENTIFIERS })
+	public void checkPatientIdentifiers(List<Patient> patients) throws PatientIdentifierException;
 		
 	/**
 	 * Generic search on patients based on the given string. Implementations can use this string to
@@ -495,6 +534,8 @@ public interface PatientService extends OpenmrsService {
 	 * <code>preferred</code> IFF the data is missing or null in <code>preferred</code></li>
 	 * <li><code>notPreferred</code> is marked as voided</li>
 	 * </ol>
+	 * Observations are moved in place rather than being voided and re-created for
+	 * <code>preferred</code>, the {@link PersonMergeLog} records which ones were moved.
 	 * 
 	 * @param preferred The Patient to merge to
 	 * @param notPreferred The Patient to merge from (and then void)
@@ -559,6 +600,41 @@ public interface PatientService extends OpenmrsService {
 	 * @should merge all non Preferred patients in the the notPreferred list to preferred patient
 	 */
 	public void mergePatients(Patient preferred, List<Patient> notPreferred) throws APIException, SerializationException;
+	
+	/**
+	 * Joins multiple patients' information into one record like
+	 * {@link #mergePatients(Patient, List)} and reports how far it got to the given progress. The
+	 * patients are looked up again by id, so this can be called with patients loaded by another
+	 * thread.
+	 * 
+	 * @param preferred the patient to merge the others into
+	 * @param notPreferred the patients to merge
+	 * @param progress the progress to update while merging
+	 * @throws APIException
+	 * @throws SerializationException
+	 * @since 2.1.0
+	 * @should merge all non preferred patients and report the progress
+	 */
+	@Authorized( { PrivilegeConstants.EDIT_PATIENTS })
+	public void mergePatients(Patient preferred, List<Patient> notPreferred, PatientMergeProgress progress)
+	        throws APIException, SerializationException;
+	
+	/**
+	 * Starts merging multiple patients into one record in a background thread, as the
+	 * authenticated user, and returns right away. The merge runs in its own transaction, which is
+	 * only committed once all patients are merged, so uncommitted changes of the calling thread are
+	 * not seen by it. The returned progress is marked as finished once the transaction is committed
+	 * or rolled back.
+	 * 
+	 * @param preferred the patient to merge the others into
+	 * @param notPreferred the patients to merge
+	 * @return the progress of the merge
+	 * @since 2.1.0
+	 * @should report the outcome of the merge in the progress
+	 * @should take back the progress of a merge that is rolled back
+	 */
+	@Authorized( { PrivilegeConstants.EDIT_PATIENTS })
+	public PatientMergeProgress mergePatientsAsync(Patient preferred, List<Patient> notPreferred);
 		
 	/**
 	 * Convenience method to establish that a patient has died. In addition to exiting the patient
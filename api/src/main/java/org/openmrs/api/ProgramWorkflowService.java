@@ -18,6 +18,7 @@ import org.openmrs.Concept;
 import org.openmrs.ConceptStateConversion;
 import org.openmrs.Patient;
 import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
 import org.openmrs.PatientState;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
@@ -473,6 +474,39 @@ public interface ProgramWorkflowService extends OpenmrsService {
 	 */
 	@Authorized( { PrivilegeConstants.GET_PATIENT_PROGRAMS })
 	public List<PatientProgram> getPatientPrograms(Cohort cohort, Collection<Program> programs);
+	
+	/**
+	 * Gets a compact view (ids, dates and the current state in each workflow) of the non voided
+	 * enrollments of the patients in the given cohort. Unlike
+	 * {@link #getPatientPrograms(Cohort, Collection)} no PatientProgram entities are loaded and the
+	 * cohort is queried in chunks, so it can be used for very large cohorts.
+	 * 
+	 * @param cohort the patients to get enrollments for, or null for all enrolled patients
+	 * @param programs the programs to restrict to, null or empty for all programs
+	 * @return the enrollments ordered by patient id and enrollment date
+	 * @since 2.1.0
+	 * @should return enrollments of patients in given cohort and programs
+	 * @should include the current state of each workflow
+	 * @should not return voided patient programs
+	 * @should return empty list for an empty cohort
+	 */
+	@Authorized( { PrivilegeConstants.GET_PATIENT_PROGRAMS })
+	public List<PatientProgramEnrollment> getPatientProgramEnrollments(Cohort cohort, Collection<Program> programs);
+	
+	/**
+	 * Same as {@link #getPatientProgramEnrollments(Cohort, Collection)} but hands the enrollments to
+	 * the given callback as they are read instead of collecting them, so that the memory used stays
+	 * constant regardless of the size of the cohort
+	 * 
+	 * @param cohort the patients to get enrollments for, or null for all enrolled patients
+	 * @param programs the programs to restrict to, null or empty for all programs
+	 * @param callback receives each enrollment, ordered by patient id and enrollment date
+	 * @since 2.1.0
+	 * @should pass each enrollment to the callback
+	 */
+	@Authorized( { PrivilegeConstants.GET_PATIENT_PROGRAMS })
+	public void processPatientProgramEnrollments(Cohort cohort, Collection<Program> programs,
+	        PatientProgramEnrollment.Callback callback);
 		
 	/**
 	 * Returns a list of Programs that are using a particular concept.
@@ -0,0 +1,267 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.context;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.util.RoleConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An immutable snapshot of who is using a {@link UserContext}: the id of the authenticated user,
+ * the names of all the roles and privileges the user has, including those of the Authenticated and
+ * Anonymous roles, and the locale and location of the context. It lets privilege checks, which run
+ * on nearly every service call, look up a name in a set instead of walking the role hierarchy of
+ * the user, and it is small enough to keep in the http session. <br>
+ * <br>
+ * A snapshot is {@link #isCurrent() current} until the user, or any role or privilege, is saved or
+ * deleted, see {@link #userChanged(Integer)} and {@link #rolesChanged()}, or until the application
+ * restarts. The user context then takes a new one.
+ *
+ * @see UserContext#getPrincipal()
+ * @since 2.1.0
+ */
+public final class AuthenticatedPrincipal implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// identifies this run of the application, snapshots from an earlier run are never current
+	private static final long EPOCH = System.currentTimeMillis() ^ System.nanoTime();
+	
+	private static final AtomicLong sequence = new AtomicLong();
+	
+	private static final AtomicLong rolesVersion = new AtomicLong();
+	
+	private static final Map<Integer, Long> userVersions = new ConcurrentHashMap<Integer, Long>();
+	
+	private final Integer userId;
+	
+	private final String username;
+	
+	private final boolean superUser;
+	
+	private final Set<String> roleNames;
+	
+	private final Set<String> privilegeNames;
+	
+	private final Locale locale;
+	
+	private final Integer locationId;
+	
+	private final long epoch;
+	
+	private final long builtAtRolesVersion;
+	
+	private final long builtAtUserVersion;
+	
+	/**
+	 * Takes a snapshot of the given user, whose roles must be loaded
+	 *
+	 * @param user the authenticated user or null if nobody is authenticated
+	 * @param authenticatedRole the role given to all authenticated users, only used if user is not
+	 *            null
+	 * @param anonymousRole the role given to all users
+	 * @param locale the locale chosen in the user context, may be null
+	 * @param locationId the id of the location of the user context, may be null
+	 * @param version the value of {@link #getVersion(Integer)} for the user read before the user and
+	 *            the roles were loaded
+	 * @should include the privileges of the authenticated and anonymous roles
+	 * @should only include the anonymous role if nobody is authenticated
+	 */
+	public AuthenticatedPrincipal(User user, Role authenticatedRole, Role anonymousRole, Locale locale, Integer locationId,
+	        long[] version) {
+		Set<Role> roles = new HashSet<Role>();
+		roles.add(anonymousRole);
+		if (user != null) {
+			roles.addAll(user.getAllRoles());
+			roles.add(authenticatedRole);
+		}
+		Set<String> roleNames = new HashSet<String>();
+		Set<String> privilegeNames = new HashSet<String>();
+		for (Role role : roles) {
+			roleNames.add(role.getRole());
+			if (role.getPrivileges() != null) {
+				for (Privilege privilege : role.getPrivileges()) {
+					privilegeNames.add(privilege.getPrivilege());
+				}
+			}
+		}
+		
+		this.userId = user == null ? null : user.getUserId();
+		this.username = user == null ? null : user.getUsername();
+		this.superUser = user != null && (user.isSuperUser() || roleNames.contains(RoleConstants.SUPERUSER));
+		this.roleNames = Collections.unmodifiableSet(roleNames);
+		this.privilegeNames = Collections.unmodifiableSet(privilegeNames);
+		this.locale = locale;
+		this.locationId = locationId;
+		this.epoch = EPOCH;
+		this.builtAtRolesVersion = version[0];
+		this.builtAtUserVersion = version[1];
+	}
+	
+	private AuthenticatedPrincipal(AuthenticatedPrincipal principal, Locale locale, Integer locationId) {
+		this.userId = principal.userId;
+		this.username = principal.username;
+		this.superUser = principal.superUser;
+		this.roleNames = principal.roleNames;
+		this.privilegeNames = principal.privilegeNames;
+		this.locale = locale;
+		this.locationId = locationId;
+		this.epoch = principal.epoch;
+		this.builtAtRolesVersion = principal.builtAtRolesVersion;
+		this.builtAtUserVersion = principal.builtAtUserVersion;
+	}
+	
+	/**
+	 * @param locale the new locale, may be null
+	 * @param locationId the id of the new location, may be null
+	 * @return a copy of this snapshot with the given locale and location
+	 */
+	public AuthenticatedPrincipal withPreferences(Locale locale, Integer locationId) {
+		return new AuthenticatedPrincipal(this, locale, locationId);
+	}
+	
+	/**
+	 * @return the id of the authenticated user or null if nobody is authenticated
+	 */
+	public Integer getUserId() {
+		return userId;
+	}
+	
+	public String getUsername() {
+		return username;
+	}
+	
+	public boolean isAuthenticated() {
+		return userId != null;
+	}
+	
+	public boolean isSuperUser() {
+		return superUser;
+	}
+	
+	/**
+	 * @return the names of all roles of the user, including the Authenticated and Anonymous roles
+	 */
+	public Set<String> getRoleNames() {
+		return roleNames;
+	}
+	
+	/**
+	 * @return the names of all privileges of the roles of the user
+	 */
+	public Set<String> getPrivilegeNames() {
+		return privilegeNames;
+	}
+	
+	/**
+	 * @return the locale chosen in the user context or null if it uses the default locale
+	 */
+	public Locale getLocale() {
+		return locale;
+	}
+	
+	public Integer getLocationId() {
+		return locationId;
+	}
+	
+	/**
+	 * Checks a privilege the way {@link User#hasPrivilege(String)} and {@link Role#hasPrivilege(String)}
+	 * do for the roles of the snapshot
+	 *
+	 * @param privilege the name of the privilege
+	 * @return true if the user, the Authenticated role or the Anonymous role has the privilege
+	 * @should give authenticated users the empty privilege
+	 * @should give super users all privileges
+	 */
+	public boolean hasPrivilege(String privilege) {
+		if (isAuthenticated() && (StringUtils.isEmpty(privilege) || superUser)) {
+			return true;
+		}
+		return privilegeNames.contains(privilege);
+	}
+	
+	/**
+	 * @return false if the user, a role or a privilege changed since this snapshot was taken
+	 * @should be outdated by changes to the user
+	 * @should be outdated by changes to roles
+	 * @should not be outdated by changes to other users
+	 */
+	public boolean isCurrent() {
+		long[] version = getVersion(userId);
+		return epoch == EPOCH && builtAtRolesVersion == version[0] && builtAtUserVersion == version[1];
+	}
+	
+	/**
+	 * Gets the value to pass to the constructor, it must be read before the user is loaded
+	 *
+	 * @param userId the id of the user or null
+	 * @return the versions of the roles and of the user
+	 */
+	public static long[] getVersion(Integer userId) {
+		Long userVersion = userId == null ? null : userVersions.get(userId);
+		return new long[] { rolesVersion.get(), userVersion == null ? 0 : userVersion };
+	}
+	
+	/**
+	 * Outdates the snapshots of the given user, now and when the current transaction completes
+	 *
+	 * @param userId the id of the user that is saved or deleted, may be null
+	 */
+	public static void userChanged(final Integer userId) {
+		if (userId == null) {
+			return;
+		}
+		userVersions.put(userId, sequence.incrementAndGet());
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					userVersions.put(userId, sequence.incrementAndGet());
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Outdates all snapshots, now and when the current transaction completes, because a role or a
+	 * privilege is saved or deleted
+	 */
+	public static void rolesChanged() {
+		rolesVersion.incrementAndGet();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					rolesVersion.incrementAndGet();
+				}
+			});
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "AuthenticatedPrincipal[" + (isAuthenticated() ? userId + " " + username : "anonymous") + "]";
+	}
+}
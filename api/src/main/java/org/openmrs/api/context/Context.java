@@ -595,6 +595,22 @@ public class Context {
 		return getUserContext().getAuthenticatedUser();
 	}
 
+	/**
+	 * Gets the snapshot of the roles and privileges of the authenticated user, it can be checked
+	 * without loading the user or the roles. Daemon threads have all privileges and no snapshot.
+	 *
+	 * @return the snapshot or null on a daemon thread
+	 * @see UserContext#getPrincipal()
+	 * @since 2.1.0
+	 */
+	public static AuthenticatedPrincipal getAuthenticatedPrincipal() {
+		if (Daemon.isDaemonThread()) {
+			return null;
+		}
+
+		return getUserContext().getPrincipal();
+	}
+
 	/**
 	 * @return true if user has been authenticated in this context
 	 */
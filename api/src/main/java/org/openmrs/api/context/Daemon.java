@@ -160,6 +160,41 @@ public class Daemon {
 		
 	}
 	
+	/**
+	 * Executes the given task in the current thread, authenticated as the daemon user, so that a
+	 * worker thread of the scheduler can run it without starting a new thread for every run. The
+	 * thread gets a session of its own for the run and stops being a daemon thread afterwards. <br>
+	 * <br>
+	 * This can only be called from {@link TimerSchedulerTask} during actual task execution
+	 *
+	 * @param task the task to run
+	 * @since 2.1.0
+	 * @should not be called from other methods other than TimerSchedulerTask
+	 * @should run the task in the current thread as a daemon
+	 */
+	public static void executeScheduledTaskInCurrentThread(Task task) throws Exception {
+		Class<?> callerClass = new OpenmrsSecurityManager().getCallerClass(0);
+		if (!TimerSchedulerTask.class.isAssignableFrom(callerClass)) {
+			throw new APIException("Scheduler.timer.task.only", new Object[] { callerClass.getName() });
+		}
+		
+		isDaemonThread.set(true);
+		try {
+			Context.openSession();
+			TimerSchedulerTask.execute(task);
+		}
+		finally {
+			try {
+				Context.closeSession();
+			}
+			finally {
+				// the thread is used for other work afterwards
+				isDaemonThread.remove();
+				daemonThreadUser.remove();
+			}
+		}
+	}
+	
 	/**
 	 * Call this method if you are inside a Daemon thread (for example in a Module activator or a
 	 * scheduled task) and you want to start up a new parallel Daemon thread. You may only call this
@@ -199,6 +234,44 @@ public class Daemon {
 		return thread;
 	}
 	
+	/**
+	 * Executes the given runnable in a new background thread, with its own session, as the user who
+	 * is authenticated in the calling thread. The new thread works with a copy of the calling
+	 * thread's user context, so it does not see proxy privileges added later on by the caller and it
+	 * is not a daemon thread itself.
+	 *
+	 * @param runnable what to run in a new thread
+	 * @param name the name of the new thread
+	 * @return the newly spawned {@link Thread}
+	 * @since 2.1.0
+	 * @should run the runnable as the authenticated user
+	 * @should not share the user context with the calling thread
+	 */
+	@SuppressWarnings("squid:S1217")
+	public static Thread runInNewThreadAsAuthenticatedUser(final Runnable runnable, String name) {
+		final UserContext userContext = Context.getUserContext().copy();
+		
+		Thread thread = new Thread(name) {
+			
+			@Override
+			public void run() {
+				try {
+					Context.openSession();
+					Context.setUserContext(userContext);
+					//We intentionally do not start a new thread yet, rather wrap the run call in a session.
+					runnable.run();
+				}
+				finally {
+					Context.closeSession();
+				}
+			}
+		};
+		
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
 	/**
 	 * @return true if the current thread was started by this class and so is a daemon thread that
 	 *         has all privileges
@@ -26,6 +26,7 @@ import org.openmrs.api.APIAuthenticationException;
 import org.openmrs.api.db.ContextDAO;
 import org.openmrs.util.LocaleUtility;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.util.RoleConstants;
 
 /**
@@ -76,12 +77,39 @@ public class UserContext implements Serializable {
 	 */
 	private Integer locationId;
 	
+	/**
+	 * Snapshot of the roles and privileges of the user, see {@link #getPrincipal()}
+	 */
+	private AuthenticatedPrincipal principal;
+	
+	/**
+	 * True while {@link #getPrincipal()} reloads the user
+	 */
+	private transient boolean refreshing;
+	
 	/**
 	 * Default public constructor
 	 */
 	public UserContext() {
 	}
 	
+	/**
+	 * Copies the authenticated user, locale and location of this context, but none of its proxy
+	 * privileges, so that another thread can act as the same user without sharing this context
+	 *
+	 * @return the copy
+	 */
+	UserContext copy() {
+		UserContext copy = new UserContext();
+		copy.user = user;
+		copy.locale = locale;
+		copy.locationId = locationId;
+		copy.authenticatedRole = authenticatedRole;
+		copy.anonymousRole = anonymousRole;
+		copy.principal = principal;
+		return copy;
+	}
+	
 	/**
 	 * Authenticate the user to this UserContext.
 	 *
@@ -99,6 +127,7 @@ public class UserContext implements Serializable {
 		
 		this.user = contextDAO.authenticate(username, password);
 		setUserLocation();
+		resetPrincipal();
 		if (log.isDebugEnabled()) {
 			log.debug("Authenticated as: " + this.user);
 		}
@@ -119,9 +148,12 @@ public class UserContext implements Serializable {
 		}
 		
 		if (user != null) {
+			long[] version = AuthenticatedPrincipal.getVersion(user.getUserId());
 			user = Context.getUserService().getUser(user.getUserId());
 			//update the stored location in the user's session
 			setUserLocation();
+			principal = null;
+			buildPrincipal(version);
 		}
 	}
 	
@@ -162,6 +194,7 @@ public class UserContext implements Serializable {
 		this.user = userToBecome;
 		//update the user's location
 		setUserLocation();
+		resetPrincipal();
 		
 		if (log.isDebugEnabled()) {
 			log.debug("Becoming user: " + user);
@@ -192,6 +225,77 @@ public class UserContext implements Serializable {
 	public void logout() {
 		log.debug("setting user to null on logout");
 		user = null;
+		principal = null;
+	}
+	
+	/**
+	 * Gets the snapshot of the roles and privileges of the authenticated user, or of the Anonymous
+	 * role if nobody is authenticated. The snapshot is kept with this context, in the http session
+	 * for web requests, and only taken again, reloading the user, after the user, a role or a
+	 * privilege was saved or deleted.
+	 *
+	 * @return the current snapshot
+	 * @should reload the user after the user was saved
+	 * @should not reload the user if nothing changed
+	 * @since 2.1.0
+	 */
+	public synchronized AuthenticatedPrincipal getPrincipal() {
+		if (principal != null && (refreshing || principal.isCurrent())) {
+			return principal;
+		}
+		if (refreshing) {
+			// a privilege is checked while the user is reloaded, the proxy privileges cover it
+			return new AuthenticatedPrincipal(null, null, getAnonymousRole(), locale, locationId, AuthenticatedPrincipal
+			        .getVersion(null));
+		}
+		
+		refreshing = true;
+		try {
+			long[] version = AuthenticatedPrincipal.getVersion(user == null ? null : user.getUserId());
+			// the roles may have changed, the context may come from a session of an earlier run
+			authenticatedRole = null;
+			anonymousRole = null;
+			if (user != null) {
+				if (log.isDebugEnabled()) {
+					log.debug("Reloading outdated user " + user.getUserId());
+				}
+				addProxyPrivilege(PrivilegeConstants.GET_USERS);
+				try {
+					user = Context.getUserService().getUser(user.getUserId());
+				}
+				finally {
+					removeProxyPrivilege(PrivilegeConstants.GET_USERS);
+				}
+				setUserLocation();
+			}
+			return buildPrincipal(version);
+		}
+		finally {
+			refreshing = false;
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the in memory user, which was just loaded
+	 */
+	private void resetPrincipal() {
+		principal = null;
+		buildPrincipal(AuthenticatedPrincipal.getVersion(user == null ? null : user.getUserId()));
+	}
+	
+	private AuthenticatedPrincipal buildPrincipal(long[] version) {
+		principal = new AuthenticatedPrincipal(user, user == null ? null : getAuthenticatedRole(), getAnonymousRole(),
+		        locale, locationId, version);
+		return principal;
+	}
+	
+	/**
+	 * Keeps the locale and location of the snapshot in step with this context
+	 */
+	private void updatePrincipal() {
+		if (principal != null) {
+			principal = principal.withPreferences(locale, locationId);
+		}
 	}
 	
 	/**
@@ -238,6 +342,7 @@ public class UserContext implements Serializable {
 	 */
 	public void setLocale(Locale locale) {
 		this.locale = locale;
+		updatePrincipal();
 	}
 	
 	/**
@@ -304,21 +409,11 @@ public class UserContext implements Serializable {
 	 */
 	public boolean hasPrivilege(String privilege) {
 		
-		// if a user has logged in, check their privileges
-		if (isAuthenticated()
-		        && (getAuthenticatedUser().hasPrivilege(privilege) || getAuthenticatedRole().hasPrivilege(privilege))) {
-			
-			// check user's privileges
-			Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
-			return true;
-			
-		}
-		
 		if (log.isDebugEnabled()) {
 			log.debug("Checking '" + privilege + "' against proxies: " + proxies);
 		}
 		
-		// check proxied privileges
+		// check proxied privileges, they are needed to load the roles when the snapshot is outdated
 		for (String s : proxies) {
 			if (s.equals(privilege)) {
 				Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
@@ -326,7 +421,8 @@ public class UserContext implements Serializable {
 			}
 		}
 		
-		if (getAnonymousRole().hasPrivilege(privilege)) {
+		// check the privileges of the user and of the Authenticated and Anonymous roles
+		if (getPrincipal().hasPrivilege(privilege)) {
 			Context.getUserService().notifyPrivilegeListeners(getAuthenticatedUser(), privilege, true);
 			return true;
 		}
@@ -390,6 +486,7 @@ public class UserContext implements Serializable {
 	 */
 	public void setLocationId(Integer locationId) {
 		this.locationId = locationId;
+		updatePrincipal();
 	}
 	
 	/**
@@ -410,6 +507,7 @@ public class UserContext implements Serializable {
 	public void setLocation(Location location) {
 		if (location != null) {
 			this.locationId = location.getLocationId();
+			updatePrincipal();
 		}
 	}
 	
@@ -40,6 +40,7 @@ import org.openmrs.Drug;
 import org.openmrs.DrugIngredient;
 import org.openmrs.api.APIException;
 import org.openmrs.api.ConceptService;
+import org.openmrs.collection.IntObjectMap;
 
 /**
  * Concept-related database functions
@@ -373,6 +374,15 @@ public interface ConceptDAO {
 	
 	public Map<Integer, String> getConceptUuids();
 	
+	/**
+	 * Like {@link #getConceptUuids()}, without boxing the concept ids
+	 * 
+	 * @return the uuids of all concepts keyed by concept id
+	 * @since 2.1.0
+	 * @should return the same uuids as getConceptUuids
+	 */
+	public IntObjectMap<String> getConceptUuidsByConceptId();
+	
 	public ConceptDescription getConceptDescriptionByUuid(String uuid);
 	
 	public ConceptNameTag getConceptNameTagByUuid(String uuid);
@@ -49,6 +49,9 @@ public interface ContextDAO {
 	 * @should pass regression test for 1580
 	 * @should throw a ContextAuthenticationException if username is an empty string
 	 * @should throw a ContextAuthenticationException if username is white space
+	 * @should not write the login attempts to the user properties in the login transaction
+	 * @should authenticate a recently verified password without reading it again
+	 * @should not authenticate with the old password after the password changed
 	 */
 	public User authenticate(String username, String password) throws ContextAuthenticationException;
 	
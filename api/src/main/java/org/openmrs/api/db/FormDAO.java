@@ -20,6 +20,7 @@ import org.openmrs.FieldType;
 import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
+import org.openmrs.FormStructure;
 import org.openmrs.api.FormService;
 
 /**
@@ -125,6 +126,11 @@ public interface FormDAO {
 	public FormField getFormField(Form form, Concept concept, Collection<FormField> ignoreFormFields, boolean force)
 	        throws DAOException;
 	
+	/**
+	 * @see org.openmrs.api.FormService#getFormStructure(org.openmrs.Form)
+	 */
+	public FormStructure getFormStructure(Form form) throws DAOException;
+	
 	/**
 	 * @param search String phrase to search for
 	 * @return list of fields in the database matching search phrase
@@ -71,4 +71,11 @@ public interface ObsDAO {
 	 */
 	public Obs getObsByUuid(String uuid);
 	
+	/**
+	 * @param name the name of the complex data, the part of the complex value after the title
+	 * @return the number of obs, voided ones included, whose complex value refers to the named data
+	 * @since 2.1.0
+	 */
+	public Long getComplexObsCount(String name) throws DAOException;
+	
 }
@@ -9,6 +9,7 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.openmrs.Location;
@@ -182,6 +183,21 @@ public interface PatientDAO {
 	 */
 	public boolean isIdentifierInUseByAnotherPatient(PatientIdentifier patientIdentifier);
 	
+	/**
+	 * Finds the non voided identifiers of non voided patients that have the given type and one of
+	 * the given values, with one query per type unless there are very many values. The database
+	 * compares the values with its collation, so an identifier found may differ from the value it
+	 * was found for, e.g. in case.
+	 *
+	 * @param identifierType the type of the identifiers
+	 * @param identifiers the identifier values to look for
+	 * @return the value, the patient id and the location id, which may be null, of each identifier
+	 *         found
+	 * @see org.openmrs.api.PatientService#checkPatientIdentifiers(List)
+	 * @since 2.1.0
+	 */
+	public List<Object[]> getPatientIdentifierUsages(PatientIdentifierType identifierType, Collection<String> identifiers);
+	
 	/**
 	 * @param uuid
 	 * @return patient or null
@@ -289,4 +305,36 @@ public interface PatientDAO {
 	 */
 	public Allergy saveAllergy(Allergy allergy);
 	
+	/**
+	 * Moves all visits of a patient, including voided ones, to another patient with a single update
+	 * 
+	 * @param from the patient to move the visits from
+	 * @param to the patient to move the visits to
+	 * @return the uuids of the moved visits
+	 * @since 2.1.0
+	 */
+	public List<String> moveVisits(Patient from, Patient to);
+	
+	/**
+	 * Moves all encounters of a patient, including voided ones, together with their observations
+	 * and orders to another patient with a few set based updates
+	 * 
+	 * @param from the patient to move the encounters from
+	 * @param to the patient to move the encounters to
+	 * @return the uuids of the moved encounters
+	 * @since 2.1.0
+	 */
+	public List<String> moveEncounters(Patient from, Patient to);
+	
+	/**
+	 * Moves the non voided observations of a patient that are not contained in an encounter to
+	 * another patient with a single update
+	 * 
+	 * @param from the patient to move the observations from
+	 * @param to the patient to move the observations to
+	 * @return the uuids of the moved observations
+	 * @since 2.1.0
+	 */
+	public List<String> moveIndependentObs(Patient from, Patient to);
+	
 }
@@ -18,6 +18,7 @@ import org.openmrs.Concept;
 import org.openmrs.ConceptStateConversion;
 import org.openmrs.Patient;
 import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
 import org.openmrs.PatientState;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
@@ -106,6 +107,17 @@ public interface ProgramWorkflowDAO {
 	
 	public List<PatientProgram> getPatientPrograms(Cohort cohort, Collection<Program> programs);
 	
+	/**
+	 * Streams the non voided enrollments of the given patients, querying the patients in chunks
+	 * 
+	 * @param patientIds the ids of the patients, or null for all enrolled patients
+	 * @param programs the programs to restrict to, null or empty for all programs
+	 * @param callback receives each enrollment, ordered by patient id and enrollment date
+	 * @since 2.1.0
+	 */
+	public void processPatientProgramEnrollments(Collection<Integer> patientIds, Collection<Program> programs,
+	        PatientProgramEnrollment.Callback callback);
+	
 	/**
 	 * Returns PatientPrograms that match the input parameters. If an input parameter is set to
 	 * null, the parameter will not be used. Calling this method will all null parameters will
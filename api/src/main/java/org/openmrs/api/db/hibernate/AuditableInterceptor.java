@@ -10,10 +10,9 @@
 package org.openmrs.api.db.hibernate;
 
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -22,6 +21,7 @@ import org.hibernate.EmptyInterceptor;
 import org.hibernate.type.Type;
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
+import org.openmrs.User;
 import org.openmrs.api.context.Context;
 
 /**
@@ -37,12 +37,35 @@ import org.openmrs.api.context.Context;
  * @since 1.9
  */
 
-public class AuditableInterceptor extends EmptyInterceptor {
+public class AuditableInterceptor extends EmptyInterceptor implements PreparableInterceptor {
 	
 	private static final Log log = LogFactory.getLog(AuditableInterceptor.class);
 	
 	private static final long serialVersionUID = 1L;
 	
+	// the user property comes first and the date property second in each pair
+	private static final String[] CREATED_PROPERTIES = { "creator", "dateCreated", "personCreator", "personDateCreated" };
+	
+	private static final String[] CHANGED_PROPERTIES = { "changedBy", "dateChanged", "personChangedBy", "personDateChanged" };
+	
+	private final Map<Class<?>, PropertyIndexes> createdIndexes = new ConcurrentHashMap<Class<?>, PropertyIndexes>();
+	
+	private final Map<Class<?>, PropertyIndexes> changedIndexes = new ConcurrentHashMap<Class<?>, PropertyIndexes>();
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.PreparableInterceptor#prepare(java.lang.Class,
+	 *      java.lang.String[])
+	 */
+	@Override
+	public void prepare(Class<?> entityClass, String[] propertyNames) {
+		if (OpenmrsObject.class.isAssignableFrom(entityClass)) {
+			createdIndexes.put(entityClass, PropertyIndexes.of(propertyNames, CREATED_PROPERTIES));
+		}
+		if (Auditable.class.isAssignableFrom(entityClass)) {
+			changedIndexes.put(entityClass, PropertyIndexes.of(propertyNames, CHANGED_PROPERTIES));
+		}
+	}
+	
 	/**
 	 * This method is only called when inserting new objects.
 	 * @should return true if dateCreated was null
@@ -82,8 +105,8 @@ public class AuditableInterceptor extends EmptyInterceptor {
 				log.debug("Setting changed by fields on " + entity.getClass());
 			}
 			
-			Map<String, Object> propertyValues = getPropertyValuesToUpdate();
-			objectWasChanged = changeProperties(currentState, propertyNames, objectWasChanged, propertyValues, false);
+			PropertyIndexes indexes = getIndexes(changedIndexes, entity.getClass(), propertyNames, CHANGED_PROPERTIES);
+			objectWasChanged = changeProperties(currentState, indexes, false) || objectWasChanged;
 		}
 		return objectWasChanged;
 	}
@@ -103,66 +126,84 @@ public class AuditableInterceptor extends EmptyInterceptor {
 		
 		boolean objectWasChanged = false;
 		
-		if (entity instanceof OpenmrsObject) {
+		if (entity instanceof OpenmrsObject && propertyNames != null) {
 			if (log.isDebugEnabled()) {
 				log.debug("Setting creator and dateCreated on " + entity);
 			}
 			
-			Map<String, Object> propertyValues = getPropertyValuesToSave();
-			objectWasChanged = changeProperties(currentState, propertyNames, objectWasChanged, propertyValues, true);
+			PropertyIndexes indexes = getIndexes(createdIndexes, entity.getClass(), propertyNames, CREATED_PROPERTIES);
+			objectWasChanged = changeProperties(currentState, indexes, true);
 		}
 		return objectWasChanged;
 	}
 	
-	private boolean changeProperties(Object[] currentState, String[] propertyNames, boolean objectWasChanged,
-	        Map<String, Object> propertyValues, Boolean setNullOnly) {
-		
-		for (String property : propertyValues.keySet()) {
-			if (changePropertyValue(currentState, propertyNames, property, propertyValues.get(property), setNullOnly)) {
+	/**
+	 * Gets the positions of the given properties, working them out if the class was not prepared
+	 * or is mapped differently now
+	 */
+	private PropertyIndexes getIndexes(Map<Class<?>, PropertyIndexes> cache, Class<?> entityClass,
+	        String[] propertyNames, String[] properties) {
+		PropertyIndexes indexes = cache.get(entityClass);
+		if (indexes == null || !indexes.isFor(propertyNames)) {
+			indexes = PropertyIndexes.of(propertyNames, properties);
+			cache.put(entityClass, indexes);
+		}
+		return indexes;
+	}
+	
+	/**
+	 * Sets the user properties to the authenticated user and the date properties to the current
+	 * time
+	 *
+	 * @param currentState
+	 * @param indexes the positions of the user and date property pairs
+	 * @param setNullOnly
+	 * @return true if a property was changed
+	 */
+	private boolean changeProperties(Object[] currentState, PropertyIndexes indexes, boolean setNullOnly) {
+		boolean objectWasChanged = false;
+		User user = null;
+		Date date = null;
+		int[] positions = indexes.getIndexes();
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < 0) {
+				continue;
+			}
+			Object value;
+			if (i % 2 == 0) {
+				if (user == null) {
+					user = Context.getAuthenticatedUser();
+				}
+				value = user;
+			} else {
+				if (date == null) {
+					date = new Date();
+				}
+				value = date;
+			}
+			if (changePropertyValue(currentState, positions[i], value, setNullOnly)) {
 				objectWasChanged = true;
 			}
 		}
 		return objectWasChanged;
 	}
 	
-	private Map<String, Object> getPropertyValuesToSave() {
-		Map<String, Object> propertyValues = new HashMap<String, Object>();
-		propertyValues.put("creator", Context.getAuthenticatedUser());
-		propertyValues.put("dateCreated", new Date());
-		propertyValues.put("personCreator", Context.getAuthenticatedUser());
-		propertyValues.put("personDateCreated", new Date());
-		return propertyValues;
-	}
-	
-	private Map<String, Object> getPropertyValuesToUpdate() {
-		Map<String, Object> propertyValues = new HashMap<String, Object>();
-		propertyValues.put("changedBy", Context.getAuthenticatedUser());
-		propertyValues.put("dateChanged", new Date());
-		propertyValues.put("personChangedBy", Context.getAuthenticatedUser());
-		propertyValues.put("personDateChanged", new Date());
-		return propertyValues;
-	}
-	
 	/**
 	 * Sets the property to the given value.
 	 *
 	 * @param currentState
-	 * @param propertyNames
-	 * @param propertyToSet
+	 * @param index the position of the property
 	 * @param value
 	 * @param setNullOnly
 	 * @return true if the property was changed
 	 */
-	private boolean changePropertyValue(Object[] currentState, String[] propertyNames, String propertyToSet, Object value,
-	        boolean setNullOnly) {
-		
-		int index = Arrays.asList(propertyNames).indexOf(propertyToSet);
+	private boolean changePropertyValue(Object[] currentState, int index, Object value, boolean setNullOnly) {
 		
 		if (value == null) {
 			return false;
 		}
 		
-		if (index >= 0 && (currentState[index] == null || !setNullOnly) && !value.equals(currentState[index])) {
+		if ((currentState[index] == null || !setNullOnly) && !value.equals(currentState[index])) {
 			currentState[index] = value;
 			return true;
 		}
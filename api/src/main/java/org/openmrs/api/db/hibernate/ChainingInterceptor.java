@@ -31,7 +31,7 @@ import org.hibernate.type.Type;
  * 
  * @since 1.9
  */
-public class ChainingInterceptor implements Interceptor {
+public class ChainingInterceptor implements PreparableInterceptor {
 	
 	private static final Log log = LogFactory.getLog(ChainingInterceptor.class);
 	
@@ -60,6 +60,22 @@ public class ChainingInterceptor implements Interceptor {
 		interceptors.add(interceptor);
 	}
 	
+	/**
+	 * Lets the interceptors in the chain that are {@link PreparableInterceptor}s prepare for the
+	 * given mapped class
+	 * 
+	 * @see org.openmrs.api.db.hibernate.PreparableInterceptor#prepare(java.lang.Class,
+	 *      java.lang.String[])
+	 * @since 2.1.0
+	 */
+	public void prepare(Class<?> entityClass, String[] propertyNames) {
+		for (Interceptor i : interceptors) {
+			if (i instanceof PreparableInterceptor) {
+				((PreparableInterceptor) i).prepare(entityClass, propertyNames);
+			}
+		}
+	}
+	
 	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
 		for (Interceptor i : interceptors) {
 			i.onDelete(entity, id, state, propertyNames, types);
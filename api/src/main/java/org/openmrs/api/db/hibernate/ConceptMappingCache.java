@@ -0,0 +1,251 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Caches which reference terms and concepts a (concept source name or hl7 code, term code) pair
+ * resolves to, so that repeated mapping lookups, e.g. for every OBX segment of an HL7 message, do
+ * not each join concept maps, reference terms and sources. Keys are case folded once, when they are
+ * built, which matches the case insensitive comparison the lookups have always used. Results that
+ * did not match anything are cached as well. <br>
+ * <br>
+ * The cache is kept coherent by {@link HibernateConceptDAO}: saving or purging a concept evicts the
+ * keys of that concept, saving or deleting a reference term or a source clears the cache. Evictions
+ * are repeated when the transaction completes so that a lookup by another transaction before the
+ * commit cannot leave stale data behind, and a lookup only stores its result if nothing was evicted
+ * while it was running.
+ *
+ * @since 2.1.0
+ */
+public class ConceptMappingCache {
+	
+	private static final Map<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+	
+	// concept id -> keys of the cached resolutions that contain the concept
+	private static final Map<Integer, Set<String>> keysByConcept = new ConcurrentHashMap<Integer, Set<String>>();
+	
+	// incremented by every eviction, see put
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private ConceptMappingCache() {
+	}
+	
+	/**
+	 * Case folds the given concept source name or hl7 code or term code
+	 *
+	 * @param value the value to fold
+	 * @return the folded value or null
+	 */
+	public static String fold(String value) {
+		return value == null ? null : value.toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * @param sourceName the concept source name or hl7 code
+	 * @param code the reference term code
+	 * @return the cache key
+	 */
+	public static String getKey(String sourceName, String code) {
+		return fold(sourceName) + "\u0000" + fold(code);
+	}
+	
+	/**
+	 * @param key the cache key
+	 * @return the cached resolution or null if the key is not cached
+	 */
+	public static Resolution get(String key) {
+		return resolutions.get(key);
+	}
+	
+	/**
+	 * Gets the value to pass to {@link #put(String, Resolution, long)} once the resolution is loaded,
+	 * it must be read before loading
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+	
+	/**
+	 * Caches the given resolution unless something was evicted since it started loading
+	 *
+	 * @param key the cache key
+	 * @param resolution the resolution loaded from the database
+	 * @param loadGeneration the value of {@link #getGeneration()} before loading
+	 */
+	public static void put(String key, Resolution resolution, long loadGeneration) {
+		for (int conceptId : resolution.conceptIds) {
+			Set<String> keys = keysByConcept.get(conceptId);
+			if (keys == null) {
+				keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+				keysByConcept.put(conceptId, keys);
+			}
+			keys.add(key);
+		}
+		if (generation.get() == loadGeneration) {
+			resolutions.put(key, resolution);
+			// an eviction may have started after the check above, it cannot have seen this entry
+			if (generation.get() != loadGeneration) {
+				resolutions.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the keys of the given concept, both the ones it was cached under and the ones of its
+	 * current mappings
+	 *
+	 * @param concept the concept that is saved or purged
+	 */
+	public static void evict(Concept concept) {
+		evictNow(concept);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			final Concept evicted = concept;
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					evictNow(evicted);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Clears the whole cache, now and when the current transaction completes
+	 */
+	public static void evictAll() {
+		clear();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					clear();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Clears the whole cache, e.g. after mappings were changed directly in the database
+	 */
+	public static void clear() {
+		generation.incrementAndGet();
+		resolutions.clear();
+		keysByConcept.clear();
+	}
+	
+	private static void evictNow(Concept concept) {
+		generation.incrementAndGet();
+		if (concept.getConceptId() != null) {
+			Set<String> keys = keysByConcept.remove(concept.getConceptId());
+			if (keys != null) {
+				for (String key : keys) {
+					resolutions.remove(key);
+				}
+			}
+		}
+		if (concept.getConceptMappings() != null) {
+			for (ConceptMap map : concept.getConceptMappings()) {
+				ConceptReferenceTerm term = map.getConceptReferenceTerm();
+				if (term != null && term.getConceptSource() != null) {
+					ConceptSource source = term.getConceptSource();
+					resolutions.remove(getKey(source.getName(), term.getCode()));
+					if (source.getHl7Code() != null) {
+						resolutions.remove(getKey(source.getHl7Code(), term.getCode()));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The reference terms a key matches and the concepts mapped to them
+	 */
+	public static class Resolution {
+		
+		private final boolean caseSensitiveDatabase;
+		
+		private final int[] termIds;
+		
+		private final int[] termSourceIds;
+		
+		private final String[] termCodes;
+		
+		private final int[] conceptIds;
+		
+		private final boolean[] conceptRetired;
+		
+		/**
+		 * @param caseSensitiveDatabase whether the database compared strings case sensitively when the
+		 *            resolution was loaded
+		 * @param termIds the ids of the matching reference terms
+		 * @param termSourceIds the source ids of the matching reference terms
+		 * @param termCodes the codes of the matching reference terms
+		 * @param conceptIds the ids of the concepts mapped to the terms, non retired ones first
+		 * @param conceptRetired whether each of the concepts is retired
+		 */
+		public Resolution(boolean caseSensitiveDatabase, int[] termIds, int[] termSourceIds, String[] termCodes,
+		    int[] conceptIds, boolean[] conceptRetired) {
+			this.caseSensitiveDatabase = caseSensitiveDatabase;
+			this.termIds = termIds;
+			this.termSourceIds = termSourceIds;
+			this.termCodes = termCodes;
+			this.conceptIds = conceptIds;
+			this.conceptRetired = conceptRetired;
+		}
+		
+		public boolean isCaseSensitiveDatabase() {
+			return caseSensitiveDatabase;
+		}
+		
+		public int getTermCount() {
+			return termIds.length;
+		}
+		
+		public int getTermId(int index) {
+			return termIds[index];
+		}
+		
+		public int getTermSourceId(int index) {
+			return termSourceIds[index];
+		}
+		
+		public String getTermCode(int index) {
+			return termCodes[index];
+		}
+		
+		public int getConceptCount() {
+			return conceptIds.length;
+		}
+		
+		public int getConceptId(int index) {
+			return conceptIds[index];
+		}
+		
+		public boolean isConceptRetired(int index) {
+			return conceptRetired[index];
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.openmrs.ConceptName;
+import org.openmrs.api.db.hibernate.search.LuceneQuery;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Briefly keeps the ordered ids of the concept names that a concept search found, so that the
+ * count and the pages of results of the same search, which a concept autocomplete asks for one
+ * after the other, come from a single run of the Lucene query. Entries are only used while the
+ * index is in the state it was in when they were added and for at most {@link #MAX_AGE} ms. The
+ * state of the index is read once per transaction, the index only changes within a transaction when
+ * it is explicitly updated, see {@link #indexChanged()}.
+ *
+ * @since 2.1.0
+ */
+public class ConceptSearchCache {
+	
+	/**
+	 * How long a search result is kept in ms
+	 */
+	public static final long MAX_AGE = 60000;
+	
+	private static final int MAX_ENTRIES = 200;
+	
+	private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	// the key of the index version of the current transaction
+	private static final Object INDEX_VERSION = new Object();
+	
+	private ConceptSearchCache() {
+	}
+	
+	/**
+	 * Gets the version of the concept name index, read once per transaction so that the count and
+	 * the pages of a search do not open an index reader each
+	 *
+	 * @param session the current session
+	 * @return the index version
+	 * @should read the index version once per transaction
+	 * @should read the index version again after the index changed
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Object> getIndexVersion(Session session) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return LuceneQuery.getIndexVersion(session, ConceptName.class);
+		}
+		List<Object> indexVersion = (List<Object>) TransactionSynchronizationManager.getResource(INDEX_VERSION);
+		if (indexVersion == null) {
+			indexVersion = LuceneQuery.getIndexVersion(session, ConceptName.class);
+			TransactionSynchronizationManager.bindResource(INDEX_VERSION, indexVersion);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(INDEX_VERSION);
+				}
+			});
+		}
+		return indexVersion;
+	}
+	
+	/**
+	 * Makes the current transaction read the index version again, needs to be called when the index
+	 * is updated before the transaction commits
+	 */
+	public static void indexChanged() {
+		TransactionSynchronizationManager.unbindResourceIfPossible(INDEX_VERSION);
+	}
+	
+	/**
+	 * @param key identifies the search, including all its parameters
+	 * @param indexVersion the current version of the concept name index
+	 * @return the ids of the concept names found or null if the search is not cached or outdated
+	 */
+	public static List<Integer> get(String key, List<Object> indexVersion) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.created > MAX_AGE || !entry.indexVersion.equals(indexVersion)) {
+			synchronized (entries) {
+				entries.remove(key);
+			}
+			return null;
+		}
+		return entry.conceptNameIds;
+	}
+	
+	/**
+	 * @param key identifies the search, including all its parameters
+	 * @param indexVersion the version of the concept name index the search ran against
+	 * @param conceptNameIds the ids of the concept names found, in the order of the results
+	 */
+	public static void put(String key, List<Object> indexVersion, List<Integer> conceptNameIds) {
+		Entry entry = new Entry(indexVersion, Collections.unmodifiableList(conceptNameIds));
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+	
+	public static void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	private static class Entry {
+		
+		private final long created = System.currentTimeMillis();
+		
+		private final List<Object> indexVersion;
+		
+		private final List<Integer> conceptNameIds;
+		
+		public Entry(List<Object> indexVersion, List<Integer> conceptNameIds) {
+			this.indexVersion = indexVersion;
+			this.conceptNameIds = conceptNameIds;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openmrs.api.APIException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Briefly remembers the passwords that users logged in with, so that clients which authenticate on
+ * every call, e.g. REST clients without a session, do not read and hash the password on record
+ * every time. Only a digest of the user id and password, salted with a random value that never
+ * leaves this process, is kept, for at most {@link #MAX_AGE} ms. Changing the password of a user
+ * evicts the user.
+ *
+ * @since 2.1.0
+ */
+public class CredentialVerificationCache {
+	
+	/**
+	 * How long a verified password is remembered in ms
+	 */
+	public static final long MAX_AGE = 60000;
+	
+	private static final byte[] salt = new byte[32];
+	
+	private static final Map<Integer, Verification> verifications = new ConcurrentHashMap<Integer, Verification>();
+	
+	static {
+		new SecureRandom().nextBytes(salt);
+	}
+	
+	private CredentialVerificationCache() {
+	}
+	
+	/**
+	 * @param userId the id of the user
+	 * @param password the password the user tries to log in with
+	 * @return true if the user logged in with the same password within the last {@link #MAX_AGE}
+	 *         ms
+	 * @should return true for a password that was verified
+	 * @should return false for another password
+	 */
+	public static boolean isVerified(Integer userId, String password) {
+		if (userId == null || password == null) {
+			return false;
+		}
+		Verification verification = verifications.get(userId);
+		if (verification == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() - verification.verified > MAX_AGE) {
+			verifications.remove(userId, verification);
+			return false;
+		}
+		return MessageDigest.isEqual(verification.digest, digest(userId, password));
+	}
+	
+	/**
+	 * @param userId the id of the user
+	 * @param password the password that was just verified against the one on record
+	 */
+	public static void put(Integer userId, String password) {
+		if (userId != null && password != null) {
+			verifications.put(userId, new Verification(digest(userId, password)));
+		}
+	}
+	
+	/**
+	 * Forgets the password of the given user, now and when the current transaction completes
+	 *
+	 * @param userId the id of the user whose password changed
+	 * @should forget the password of the user
+	 */
+	public static void evict(final Integer userId) {
+		if (userId == null) {
+			return;
+		}
+		verifications.remove(userId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// a login before the commit still verifies against the old password
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					verifications.remove(userId);
+				}
+			});
+		}
+	}
+	
+	public static void clear() {
+		verifications.clear();
+	}
+	
+	private static byte[] digest(Integer userId, String password) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(salt);
+			md.update((userId + ":" + password).getBytes("UTF-8"));
+			return md.digest();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new APIException("system.cannot.find.password.encryption.algorithm", null, e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new APIException("system.cannot.find.encoding", new Object[] { "UTF-8" }, e);
+		}
+	}
+	
+	private static class Verification {
+		
+		private final byte[] digest;
+		
+		private final long verified = System.currentTimeMillis();
+		
+		public Verification(byte[] digest) {
+			this.digest = digest;
+		}
+	}
+}
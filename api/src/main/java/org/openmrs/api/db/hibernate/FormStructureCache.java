@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmrs.FormStructure;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Caches the {@link FormStructure} of forms by form id. A cached structure is only used for the
+ * version and date changed of the form it was taken of. <br>
+ * <br>
+ * The cache is kept coherent by {@link HibernateFormDAO}: saving or deleting a form or a form field
+ * evicts the form, saving or deleting a field, which can be on many forms, clears the cache.
+ * Evictions are repeated when the transaction completes, and a structure is only stored if nothing
+ * was evicted while it was being loaded, see {@link ConceptMappingCache}.
+ *
+ * @since 2.1.0
+ */
+public class FormStructureCache {
+	
+	private static final Map<Integer, FormStructure> structures = new ConcurrentHashMap<Integer, FormStructure>();
+	
+	// incremented by every eviction, see put
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private FormStructureCache() {
+	}
+	
+	/**
+	 * @param formId the id of the form
+	 * @return the cached structure, which may be of another version of the form, or null
+	 */
+	public static FormStructure get(Integer formId) {
+		return structures.get(formId);
+	}
+	
+	/**
+	 * Gets the value to pass to {@link #put(FormStructure, long)} once the structure is loaded, it
+	 * must be read before loading
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+	
+	/**
+	 * Caches the given structure unless something was evicted since it started loading
+	 *
+	 * @param structure the structure loaded from the database
+	 * @param loadGeneration the value of {@link #getGeneration()} before loading
+	 */
+	public static void put(FormStructure structure, long loadGeneration) {
+		if (generation.get() == loadGeneration) {
+			structures.put(structure.getFormId(), structure);
+			// an eviction may have started after the check above, it cannot have seen this entry
+			if (generation.get() != loadGeneration) {
+				structures.remove(structure.getFormId());
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the structure of the given form, now and when the current transaction completes
+	 *
+	 * @param formId the id of the form that is saved or deleted, may be null
+	 */
+	public static void evict(final Integer formId) {
+		evictNow(formId);
+		if (formId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					evictNow(formId);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Clears the whole cache, now and when the current transaction completes
+	 */
+	public static void evictAll() {
+		clear();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					clear();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Clears the whole cache, e.g. after forms were changed directly in the database
+	 */
+	public static void clear() {
+		generation.incrementAndGet();
+		structures.clear();
+	}
+	
+	private static void evictNow(Integer formId) {
+		generation.incrementAndGet();
+		if (formId != null) {
+			structures.remove(formId);
+		}
+	}
+}
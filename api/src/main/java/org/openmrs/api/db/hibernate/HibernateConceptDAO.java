@@ -31,6 +31,8 @@ import org.hibernate.Criteria;
 import org.hibernate.FlushMode;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.MatchMode;
@@ -68,7 +70,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ConceptDAO;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.hibernate.search.LuceneQuery;
-import org.openmrs.collection.ListPart;
+import org.openmrs.collection.IntObjectMap;
 import org.openmrs.util.ConceptMapTypeComparator;
 import org.openmrs.util.OpenmrsConstants;
 
@@ -129,6 +131,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 		
 		sessionFactory.getCurrentSession().saveOrUpdate(concept);
+		ConceptMappingCache.evict(concept);
 		return concept;
 	}
 	
@@ -235,6 +238,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	 */
 	public void purgeConcept(Concept concept) throws DAOException {
 		sessionFactory.getCurrentSession().delete(concept);
+		ConceptMappingCache.evict(concept);
 	}
 	
 	/**
@@ -884,6 +888,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	 */
 	public ConceptSource deleteConceptSource(ConceptSource cs) throws DAOException {
 		sessionFactory.getCurrentSession().delete(cs);
+		ConceptMappingCache.evictAll();
 		return cs;
 	}
 	
@@ -892,6 +897,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	 */
 	public ConceptSource saveConceptSource(ConceptSource conceptSource) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(conceptSource);
+		ConceptMappingCache.evictAll();
 		return conceptSource;
 	}
 	
@@ -977,47 +983,77 @@ public class HibernateConceptDAO implements ConceptDAO {
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#getConceptsByMapping(String, String, boolean)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Concept> getConceptsByMapping(String code, String sourceName, boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ConceptMap.class);
-		
-		// make this criteria return a list of concepts
-		criteria.setProjection(Projections.property("concept"));
-		
-		//join to the conceptReferenceTerm table
-		criteria.createAlias("conceptReferenceTerm", "term");
-		
-		// match the source code to the passed code
-		if (Context.getAdministrationService().isDatabaseStringComparisonCaseSensitive()) {
-			criteria.add(Restrictions.eq("term.code", code).ignoreCase());
-		} else {
-			criteria.add(Restrictions.eq("term.code", code));
-		}
-		
-		// join to concept reference source and match to the h17Code or source name
-		criteria.createAlias("term.conceptSource", "source");
-		if (Context.getAdministrationService().isDatabaseStringComparisonCaseSensitive()) {
-			criteria.add(Restrictions.or(Restrictions.eq("source.name", sourceName).ignoreCase(), Restrictions.eq(
-			    "source.hl7Code", sourceName).ignoreCase()));
-		} else {
-			criteria.add(Restrictions.or(Restrictions.eq("source.name", sourceName), Restrictions.eq("source.hl7Code",
-			    sourceName)));
-		}
-		
-		criteria.createAlias("concept", "concept");
-		
-		if (!includeRetired) {
-			// ignore retired concepts
-			criteria.add(Restrictions.eq("concept.retired", false));
-		} else {
-			// sort retired concepts to the end of the list
-			criteria.addOrder(Order.asc("concept.retired"));
+		ConceptMappingCache.Resolution resolution = resolveMapping(code, sourceName);
+		List<Concept> concepts = new ArrayList<Concept>(resolution.getConceptCount());
+		for (int i = 0; i < resolution.getConceptCount(); i++) {
+			// non retired concepts are sorted first
+			if (!includeRetired && resolution.isConceptRetired(i)) {
+				break;
+			}
+			Concept concept = (Concept) sessionFactory.getCurrentSession().get(Concept.class, resolution.getConceptId(i));
+			if (concept != null) {
+				concepts.add(concept);
+			}
 		}
-		
-		// we only want distinct concepts
-		criteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
-		
-		return (List<Concept>) criteria.list();
+		return concepts;
+	}
+	
+	/**
+	 * Gets the reference terms matching the given code and concept source name or hl7 code and the
+	 * concepts mapped to them from the {@link ConceptMappingCache}, loading them if they are not
+	 * cached yet. The code and source are compared case insensitively.
+	 */
+	@SuppressWarnings("unchecked")
+	private ConceptMappingCache.Resolution resolveMapping(String code, String sourceName) {
+		String key = ConceptMappingCache.getKey(sourceName, code);
+		ConceptMappingCache.Resolution resolution = ConceptMappingCache.get(key);
+		if (resolution != null) {
+			return resolution;
+		}
+		
+		long generation = ConceptMappingCache.getGeneration();
+		boolean caseSensitive = Context.getAdministrationService().isDatabaseStringComparisonCaseSensitive();
+		String hql = caseSensitive ? "select t.conceptReferenceTermId, s.conceptSourceId, t.code "
+		        + "from ConceptReferenceTerm t join t.conceptSource s where lower(t.code) = :code "
+		        + "and (lower(s.name) = :sourceName or lower(s.hl7Code) = :sourceName)"
+		        : "select t.conceptReferenceTermId, s.conceptSourceId, t.code "
+		                + "from ConceptReferenceTerm t join t.conceptSource s where t.code = :code "
+		                + "and (s.name = :sourceName or s.hl7Code = :sourceName)";
+		List<Object[]> terms = sessionFactory.getCurrentSession().createQuery(hql).setString("code",
+		    ConceptMappingCache.fold(code)).setString("sourceName", ConceptMappingCache.fold(sourceName)).list();
+		
+		int[] termIds = new int[terms.size()];
+		int[] termSourceIds = new int[terms.size()];
+		String[] termCodes = new String[terms.size()];
+		List<Integer> termIdList = new ArrayList<Integer>(terms.size());
+		for (int i = 0; i < terms.size(); i++) {
+			Object[] term = terms.get(i);
+			termIds[i] = (Integer) term[0];
+			termSourceIds[i] = (Integer) term[1];
+			termCodes[i] = (String) term[2];
+			termIdList.add(termIds[i]);
+		}
+		
+		List<Object[]> concepts = new ArrayList<Object[]>();
+		if (!termIdList.isEmpty()) {
+			concepts = sessionFactory.getCurrentSession().createQuery(
+			    "select distinct m.concept.conceptId, m.concept.retired from ConceptMap m "
+			            + "where m.conceptReferenceTerm.conceptReferenceTermId in (:termIds) "
+			            + "order by m.concept.retired, m.concept.conceptId").setParameterList("termIds", termIdList)
+			        .list();
+		}
+		int[] conceptIds = new int[concepts.size()];
+		boolean[] conceptRetired = new boolean[concepts.size()];
+		for (int i = 0; i < concepts.size(); i++) {
+			conceptIds[i] = (Integer) concepts.get(i)[0];
+			conceptRetired[i] = Boolean.TRUE.equals(concepts.get(i)[1]);
+		}
+		
+		resolution = new ConceptMappingCache.Resolution(caseSensitive, termIds, termSourceIds, termCodes, conceptIds,
+		        conceptRetired);
+		ConceptMappingCache.put(key, resolution, generation);
+		return resolution;
 	}
 	
 	/**
@@ -1106,6 +1142,26 @@ public class HibernateConceptDAO implements ConceptDAO {
 		return ret;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptUuidsByConceptId()
+	 */
+	@Override
+	public IntObjectMap<String> getConceptUuidsByConceptId() {
+		Long count = (Long) sessionFactory.getCurrentSession().createQuery("select count(*) from Concept").uniqueResult();
+		IntObjectMap<String> ret = new IntObjectMap<String>(count.intValue());
+		ScrollableResults results = sessionFactory.getCurrentSession().createQuery("select conceptId, uuid from Concept")
+		        .setFetchSize(1000).scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				ret.put(results.getInteger(0), results.getString(1));
+			}
+		}
+		finally {
+			results.close();
+		}
+		return ret;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#getConceptDescriptionByUuid(java.lang.String)
 	 */
@@ -1313,15 +1369,30 @@ public class HibernateConceptDAO implements ConceptDAO {
 	        final List<ConceptDatatype> requireDatatypes, final List<ConceptDatatype> excludeDatatypes,
 	        final Concept answersToConcept, final Integer start, final Integer size) throws DAOException {
 		
-		LuceneQuery<ConceptName> query = newConceptNameLuceneQuery(phrase, true, locales, false, includeRetired,
-		    requireClasses, excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
+		List<Integer> conceptNameIds = getConceptNameIds(phrase, locales, includeRetired, requireClasses, excludeClasses,
+		    requireDatatypes, excludeDatatypes, answersToConcept);
 		
-		ListPart<ConceptName> names = query.listPart(start, size);
+		int fromIndex = (start != null) ? Math.min(start, conceptNameIds.size()) : 0;
+		int toIndex = (size != null) ? Math.min(fromIndex + size, conceptNameIds.size()) : conceptNameIds.size();
+		List<Integer> pageIds = conceptNameIds.subList(fromIndex, toIndex);
 		
 		List<ConceptSearchResult> results = new ArrayList<ConceptSearchResult>();
+		if (pageIds.isEmpty()) {
+			return results;
+		}
 		
-		for (ConceptName name : names.getList()) {
-			results.add(new ConceptSearchResult(phrase, name.getConcept(), name));
+		Map<Integer, ConceptName> names = new HashMap<Integer, ConceptName>();
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ConceptName.class);
+		criteria.add(Restrictions.in("conceptNameId", pageIds));
+		for (Object name : criteria.list()) {
+			names.put(((ConceptName) name).getConceptNameId(), (ConceptName) name);
+		}
+		
+		for (Integer id : pageIds) {
+			ConceptName name = names.get(id);
+			if (name != null) {
+				results.add(new ConceptSearchResult(phrase, name.getConcept(), name));
+			}
 		}
 		
 		return results;
@@ -1332,17 +1403,75 @@ public class HibernateConceptDAO implements ConceptDAO {
 	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
 	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept) throws DAOException {
 		
-		LuceneQuery<ConceptName> query = newConceptNameLuceneQuery(phrase, true, locales, false, includeRetired,
-		    requireClasses, excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
-		
-		Long size = query.resultSize();
-		return size.intValue();
+		return getConceptNameIds(phrase, locales, includeRetired, requireClasses, excludeClasses, requireDatatypes,
+		    excludeDatatypes, answersToConcept).size();
+	}
+	
+	/**
+	 * Runs a concept search once and gets the ids of the best matching name of each concept found,
+	 * in the order of the results. The ids are kept in the {@link ConceptSearchCache} so that the
+	 * count and the pages of the same search do not run it again.
+	 */
+	private List<Integer> getConceptNameIds(final String phrase, List<Locale> locales, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept) {
+		if (locales == null) {
+			locales = Arrays.asList(Context.getLocale());
+		}
+		String[] answerIds = transformToIds(getAnswerConcepts(answersToConcept));
+		
+		StringBuilder key = new StringBuilder();
+		key.append(phrase).append('|').append(locales).append('|').append(includeRetired);
+		key.append('|').append(Arrays.toString(transformToIds(requireClasses)));
+		key.append('|').append(Arrays.toString(transformToIds(excludeClasses)));
+		key.append('|').append(Arrays.toString(transformToIds(requireDatatypes)));
+		key.append('|').append(Arrays.toString(transformToIds(excludeDatatypes)));
+		key.append('|').append(Arrays.toString(answerIds));
+		
+		List<Object> indexVersion = ConceptSearchCache.getIndexVersion(sessionFactory.getCurrentSession());
+		List<Integer> conceptNameIds = ConceptSearchCache.get(key.toString(), indexVersion);
+		if (conceptNameIds == null) {
+			LuceneQuery<ConceptName> query = newConceptNameLuceneQueryWithoutSkipping(phrase, true, locales, false,
+			    includeRetired, requireClasses, excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
+			conceptNameIds = new ArrayList<Integer>();
+			for (Object id : query.listIdsSkippingSame("concept.conceptId")) {
+				conceptNameIds.add((Integer) id);
+			}
+			ConceptSearchCache.put(key.toString(), indexVersion, conceptNameIds);
+		}
+		return conceptNameIds;
+	}
+	
+	private List<Concept> getAnswerConcepts(Concept answersToConcept) {
+		List<Concept> answerConcepts = new ArrayList<Concept>();
+		if (answersToConcept != null) {
+			Collection<ConceptAnswer> answers = answersToConcept.getAnswers(false);
+			if (answers != null) {
+				for (ConceptAnswer conceptAnswer : answers) {
+					answerConcepts.add(conceptAnswer.getAnswerConcept());
+				}
+			}
+		}
+		return answerConcepts;
 	}
 	
 	private LuceneQuery<ConceptName> newConceptNameLuceneQuery(final String phrase, boolean searchKeywords,
 	        List<Locale> locales, boolean searchExactLocale, boolean includeRetired, List<ConceptClass> requireClasses,
 	        List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
 	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept) {
+		LuceneQuery<ConceptName> luceneQuery = newConceptNameLuceneQueryWithoutSkipping(phrase, searchKeywords, locales,
+		    searchExactLocale, includeRetired, requireClasses, excludeClasses, requireDatatypes, excludeDatatypes,
+		    answersToConcept);
+		
+		luceneQuery.skipSame("concept.conceptId");
+		
+		return luceneQuery;
+	}
+	
+	private LuceneQuery<ConceptName> newConceptNameLuceneQueryWithoutSkipping(final String phrase,
+	        boolean searchKeywords, List<Locale> locales, boolean searchExactLocale, boolean includeRetired,
+	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
+	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept) {
 		final StringBuilder query = new StringBuilder();
 		
 		if (!StringUtils.isBlank(phrase)) {
@@ -1363,24 +1492,15 @@ public class HibernateConceptDAO implements ConceptDAO {
 		    "concept.datatype.conceptDatatypeId", transformToIds(requireDatatypes)).exclude(
 		    "concept.datatype.conceptDatatypeId", transformToIds(excludeDatatypes));
 		
-		if (answersToConcept != null) {
-			Collection<ConceptAnswer> answers = answersToConcept.getAnswers(false);
-			
-			if (answers != null && !answers.isEmpty()) {
-				List<Integer> ids = new ArrayList<Integer>();
-				for (ConceptAnswer conceptAnswer : answersToConcept.getAnswers(false)) {
-					ids.add(conceptAnswer.getAnswerConcept().getId());
-				}
-				luceneQuery.include("concept.conceptId", ids.toArray(new Object[0]));
-			}
+		List<Concept> answerConcepts = getAnswerConcepts(answersToConcept);
+		if (!answerConcepts.isEmpty()) {
+			luceneQuery.include("concept.conceptId", transformToIds(answerConcepts));
 		}
 		
 		if (!includeRetired) {
 			luceneQuery.include("concept.retired", false);
 		}
 		
-		luceneQuery.skipSame("concept.conceptId");
-		
 		return luceneQuery;
 	}
 	
@@ -1548,6 +1668,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	@Override
 	public ConceptReferenceTerm saveConceptReferenceTerm(ConceptReferenceTerm conceptReferenceTerm) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(conceptReferenceTerm);
+		ConceptMappingCache.evictAll();
 		return conceptReferenceTerm;
 	}
 	
@@ -1557,6 +1678,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	@Override
 	public void deleteConceptReferenceTerm(ConceptReferenceTerm conceptReferenceTerm) throws DAOException {
 		sessionFactory.getCurrentSession().delete(conceptReferenceTerm);
+		ConceptMappingCache.evictAll();
 	}
 	
 	/**
@@ -1829,6 +1951,9 @@ public class HibernateConceptDAO implements ConceptDAO {
 	        Collection<ConceptMapType> withAnyOfTheseTypes, boolean includeRetired) throws DAOException {
 		
 		Criteria criteria = createSearchDrugByMappingCriteria(code, conceptSource, includeRetired);
+		if (criteria == null) {
+			return new ArrayList<Drug>();
+		}
 		// match with any of the supplied collection of conceptMapTypes
 		if (withAnyOfTheseTypes.size() > 0) {
 			criteria.add(Restrictions.in("map.conceptMapType", withAnyOfTheseTypes));
@@ -1844,6 +1969,9 @@ public class HibernateConceptDAO implements ConceptDAO {
 	public Drug getDrugByMapping(String code, ConceptSource conceptSource,
 	        Collection<ConceptMapType> withAnyOfTheseTypesOrOrderOfPreference) throws DAOException {
 		Criteria criteria = createSearchDrugByMappingCriteria(code, conceptSource, true);
+		if (criteria == null) {
+			return null;
+		}
 		
 		// match with any of the supplied collection or order of preference of conceptMapTypes
 		if (withAnyOfTheseTypesOrOrderOfPreference.size() > 0) {
@@ -1957,7 +2085,19 @@ public class HibernateConceptDAO implements ConceptDAO {
 
 	}
 
+	/**
+	 * @return the criteria or null if the code and concept source are known to match no reference
+	 *         term
+	 */
 	private Criteria createSearchDrugByMappingCriteria(String code, ConceptSource conceptSource, boolean includeRetired) {
+		List<Integer> termIds = null;
+		if (code != null && conceptSource != null && conceptSource.getConceptSourceId() != null) {
+			termIds = getReferenceTermIds(code, conceptSource);
+			if (termIds.isEmpty()) {
+				return null;
+			}
+		}
+		
 		Criteria searchCriteria = sessionFactory.getCurrentSession().createCriteria(Drug.class, "drug");
 		searchCriteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
 		
@@ -1967,13 +2107,18 @@ public class HibernateConceptDAO implements ConceptDAO {
 			// join to the conceptReferenceTerm table
 			searchCriteria.createAlias("map.conceptReferenceTerm", "term");
 		}
-		// match the source code to the passed code
-		if (code != null) {
-			searchCriteria.add(Restrictions.eq("term.code", code));
-		}
-		// match the conceptSource to the passed in concept source, null accepted
-		if (conceptSource != null) {
-			searchCriteria.add(Restrictions.eq("term.conceptSource", conceptSource));
+		if (termIds != null) {
+			// the terms were already resolved, no need to match the code and source again
+			searchCriteria.add(Restrictions.in("term.conceptReferenceTermId", termIds));
+		} else {
+			// match the source code to the passed code
+			if (code != null) {
+				searchCriteria.add(Restrictions.eq("term.code", code));
+			}
+			// match the conceptSource to the passed in concept source, null accepted
+			if (conceptSource != null) {
+				searchCriteria.add(Restrictions.eq("term.conceptSource", conceptSource));
+			}
 		}
 		//check whether retired or not retired drugs
 		if (!includeRetired) {
@@ -1981,4 +2126,20 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 		return searchCriteria;
 	}
+	
+	/**
+	 * Gets the ids of the reference terms of the given source with the given code from the
+	 * {@link ConceptMappingCache}, the code is compared as the database compares it
+	 */
+	private List<Integer> getReferenceTermIds(String code, ConceptSource conceptSource) {
+		ConceptMappingCache.Resolution resolution = resolveMapping(code, conceptSource.getName());
+		List<Integer> termIds = new ArrayList<Integer>(resolution.getTermCount());
+		for (int i = 0; i < resolution.getTermCount(); i++) {
+			if (resolution.getTermSourceId(i) == conceptSource.getConceptSourceId()
+			        && (!resolution.isCaseSensitiveDatabase() || code.equals(resolution.getTermCode(i)))) {
+				termIds.add(resolution.getTermId(i));
+			}
+		}
+		return termIds;
+	}
 }
@@ -36,6 +36,7 @@ import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
 import org.openmrs.api.db.ContextDAO;
+import org.openmrs.api.db.hibernate.LoginThrottle.LoginState;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.Security;
@@ -68,6 +69,7 @@ public class HibernateContextDAO implements ContextDAO {
 	 */
 	public void setSessionFactory(SessionFactory sessionFactory) {
 		this.sessionFactory = sessionFactory;
+		LoginThrottle.setSessionFactory(sessionFactory);
 	}
 	
 	/**
@@ -113,56 +115,24 @@ public class HibernateContextDAO implements ContextDAO {
 				log.debug("Candidate user id: " + candidateUser.getUserId());
 			}
 			
-			String lockoutTimeString = candidateUser.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, null);
-			Long lockoutTime = null;
-			if (lockoutTimeString != null && !lockoutTimeString.equals("0")) {
-				try {
-					// putting this in a try/catch in case the admin decided to put junk into the property
-					lockoutTime = Long.valueOf(lockoutTimeString);
-				}
-				catch (NumberFormatException e) {
-					log.debug("bad value stored in " + OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP + " user property: "
-					        + lockoutTimeString);
-				}
-			}
+			// failed attempts and lockouts are kept in memory and written behind, see LoginThrottle
+			LoginState loginState = LoginThrottle.getState(candidateUser);
 			
 			// if they've been locked out, don't continue with the authentication
-			if (lockoutTime != null) {
-				// unlock them after 5 mins, otherwise reset the timestamp
-				// to now and make them wait another 5 mins
-				if (System.currentTimeMillis() - lockoutTime > 300000) {
-					candidateUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "0");
-					candidateUser.removeUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP);
-					saveUserProperties(candidateUser);
-				} else {
-					candidateUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, String.valueOf(System
-					        .currentTimeMillis()));
-					throw new ContextAuthenticationException(
-					        "Invalid number of connection attempts. Please try again later.");
-				}
+			if (loginState.isLockedOut(System.currentTimeMillis())) {
+				throw new ContextAuthenticationException("Invalid number of connection attempts. Please try again later.");
 			}
 			
-			String passwordOnRecord = (String) session.createSQLQuery("select password from users where user_id = ?")
-			        .addScalar("password", StandardBasicTypes.STRING).setInteger(0, candidateUser.getUserId())
-			        .uniqueResult();
-			
-			String saltOnRecord = (String) session.createSQLQuery("select salt from users where user_id = ?").addScalar(
-			    "salt", StandardBasicTypes.STRING).setInteger(0, candidateUser.getUserId()).uniqueResult();
-			
 			// if the username and password match, hydrate the user and return it
-			if (passwordOnRecord != null && Security.hashMatches(passwordOnRecord, password + saltOnRecord)) {
+			if (CredentialVerificationCache.isVerified(candidateUser.getUserId(), password)
+			        || isPasswordOnRecord(session, candidateUser, password)) {
 				// hydrate the user object
 				candidateUser.getAllRoles().size();
 				candidateUser.getUserProperties().size();
 				candidateUser.getPrivileges().size();
 				
-				// only clean up if the were some login failures, otherwise all should be clean
-				Integer attempts = getUsersLoginAttempts(candidateUser);
-				if (attempts > 0) {
-					candidateUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "0");
-					candidateUser.removeUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP);
-					saveUserProperties(candidateUser);
-				}
+				// only changes anything if there were some login failures
+				loginState.recordSuccess();
 				
 				// skip out of the method early (instead of throwing the exception)
 				// to indicate that this is the valid user
@@ -170,10 +140,6 @@ public class HibernateContextDAO implements ContextDAO {
 			} else {
 				// the user failed the username/password, increment their
 				// attempts here and set the "lockout" timestamp if necessary
-				Integer attempts = getUsersLoginAttempts(candidateUser);
-				
-				attempts++;
-				
 				Integer allowedFailedLoginCount = 7;
 				
 				try {
@@ -186,15 +152,7 @@ public class HibernateContextDAO implements ContextDAO {
 					        + "to a valid integer. Using default value of 7");
 				}
 				
-				if (attempts > allowedFailedLoginCount) {
-					// set the user as locked out at this exact time
-					candidateUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, String.valueOf(System
-					        .currentTimeMillis()));
-				} else {
-					candidateUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, String.valueOf(attempts));
-				}
-				
-				saveUserProperties(candidateUser);
+				loginState.recordFailure(allowedFailedLoginCount, System.currentTimeMillis());
 			}
 		}
 		
@@ -225,30 +183,29 @@ public class HibernateContextDAO implements ContextDAO {
 	}
 	
 	/**
-	 * Call the UserService to save the given user while proxying the privileges needed to do so.
-	 * 
-	 * @param user the User to save
-	 */
-	private void saveUserProperties(User user) {
-		sessionFactory.getCurrentSession().update(user);
-	}
-	
-	/**
-	 * Get the integer stored for the given user that is their number of login attempts
+	 * Checks the given password against the one on record and remembers it for a short while if it
+	 * matches, see {@link CredentialVerificationCache}
 	 * 
-	 * @param user the user to check
-	 * @return the # of login attempts for this user defaulting to zero if none defined
+	 * @param session the current session
+	 * @param user the user that tries to log in
+	 * @param password the password the user entered
+	 * @return true if the password matches the one on record
 	 */
-	private Integer getUsersLoginAttempts(User user) {
-		String attemptsString = user.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "0");
-		Integer attempts = 0;
-		try {
-			attempts = Integer.valueOf(attemptsString);
+	private boolean isPasswordOnRecord(Session session, User user, String password) {
+		Object[] credentials = (Object[]) session.createSQLQuery("select password, salt from users where user_id = ?")
+		        .addScalar("password", StandardBasicTypes.STRING).addScalar("salt", StandardBasicTypes.STRING).setInteger(0,
+		            user.getUserId()).uniqueResult();
+		if (credentials == null || credentials[0] == null) {
+			return false;
 		}
-		catch (NumberFormatException e) {
-			// skip over errors and leave the attempts at zero
+		
+		String passwordOnRecord = (String) credentials[0];
+		String saltOnRecord = (String) credentials[1];
+		if (Security.hashMatches(passwordOnRecord, password + saltOnRecord)) {
+			CredentialVerificationCache.put(user.getUserId(), password);
+			return true;
 		}
-		return attempts;
+		return false;
 	}
 	
 	/**
@@ -338,6 +295,9 @@ public class HibernateContextDAO implements ContextDAO {
 		
 		if (sessionFactory != null) {
 			
+			log.debug("Writing the pending login states");
+			LoginThrottle.shutdown();
+			
 			log.debug("Closing any open sessions");
 			closeSession();
 			
@@ -449,6 +409,7 @@ public class HibernateContextDAO implements ContextDAO {
 		finally {
 			session.setFlushMode(flushMode);
 			session.setCacheMode(cacheMode);
+			ConceptSearchCache.indexChanged();
 		}
 	}
 	
@@ -461,6 +422,7 @@ public class HibernateContextDAO implements ContextDAO {
 		FullTextSession session = Search.getFullTextSession(sessionFactory.getCurrentSession());
 		session.index(object);
 		session.flushToIndexes();
+		ConceptSearchCache.indexChanged();
 	}
 	
 	/**
@@ -483,6 +445,7 @@ public class HibernateContextDAO implements ContextDAO {
 		try {
 			log.info("Updating the search index... It may take a few minutes.");
 			Search.getFullTextSession(sessionFactory.getCurrentSession()).createIndexer().startAndWait();
+			ConceptSearchCache.indexChanged();
 			GlobalProperty gp = Context.getAdministrationService().getGlobalPropertyObject(
 					OpenmrsConstants.GP_SEARCH_INDEX_VERSION);
 			if (gp == null) {
@@ -43,6 +43,7 @@ import org.openmrs.api.EncounterService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.EncounterDAO;
+import org.openmrs.collection.IntListMultimap;
 import org.openmrs.parameter.EncounterSearchCriteria;
 
 /**
@@ -323,6 +324,22 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		return encountersBypatient;
 	}
 	
+	/**
+	 * @see EncounterDAO#getAllEncountersByPatientId(org.openmrs.Cohort)
+	 */
+	@Override
+	public IntListMultimap<Encounter> getAllEncountersByPatientId(Cohort patients) {
+		IntListMultimap<Encounter> encountersByPatient = new IntListMultimap<Encounter>(patients == null ? 0 : patients
+		        .size());
+		
+		@SuppressWarnings("unchecked")
+		List<Encounter> allEncounters = createEncounterCriteria(patients).list();
+		for (Encounter encounter : allEncounters) {
+			encountersByPatient.put(encounter.getPatient().getPersonId(), encounter);
+		}
+		return encountersByPatient;
+	}
+	
 	/**
 	 * Create the criteria for fetching all encounters based on cohort
 	 *
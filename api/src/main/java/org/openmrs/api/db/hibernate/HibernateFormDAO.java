@@ -9,6 +9,7 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -34,6 +35,7 @@ import org.openmrs.FieldType;
 import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
+import org.openmrs.FormStructure;
 import org.openmrs.api.APIException;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.FormDAO;
@@ -71,6 +73,7 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public Form saveForm(Form form) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(form);
+		FormStructureCache.evict(form.getFormId());
 		return form;
 	}
 	
@@ -78,7 +81,10 @@ public class HibernateFormDAO implements FormDAO {
 	 * @see org.openmrs.api.FormService#duplicateForm(org.openmrs.Form)
 	 */
 	public Form duplicateForm(Form form) throws DAOException {
-		return (Form) sessionFactory.getCurrentSession().merge(form);
+		Form duplicate = (Form) sessionFactory.getCurrentSession().merge(form);
+		// the form fields of the original were detached and reused, don't rely on what is cached
+		FormStructureCache.evictAll();
+		return duplicate;
 	}
 	
 	/**
@@ -86,6 +92,7 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public void deleteForm(Form form) throws DAOException {
 		sessionFactory.getCurrentSession().delete(form);
+		FormStructureCache.evict(form.getFormId());
 	}
 	
 	/**
@@ -193,11 +200,25 @@ public class HibernateFormDAO implements FormDAO {
 			log.debug("form is null, no fields will be matched");
 			return null;
 		}
-		Criteria crit = sessionFactory.getCurrentSession().createCriteria(FormField.class, "ff").createAlias("field",
-		    "field").add(Restrictions.eq("field.concept", concept)).add(Restrictions.eq("form", form));
 		
 		// get the list of all formfields with this concept for this form
-		List<FormField> formFields = crit.list();
+		List<FormField> formFields;
+		if (form.getFormId() != null && concept != null && concept.getConceptId() != null) {
+			formFields = new ArrayList<FormField>();
+			FormStructure structure = getFormStructure(form);
+			if (structure != null) {
+				for (Integer formFieldId : structure.getFormFieldIds(concept.getConceptId())) {
+					FormField formField = getFormField(formFieldId);
+					if (formField != null) {
+						formFields.add(formField);
+					}
+				}
+			}
+		} else {
+			Criteria crit = sessionFactory.getCurrentSession().createCriteria(FormField.class, "ff").createAlias("field",
+			    "field").add(Restrictions.eq("field.concept", concept)).add(Restrictions.eq("form", form));
+			formFields = crit.list();
+		}
 		
 		String err = "FormField warning.  No FormField matching concept '" + concept + "' for form '" + form + "'";
 		
@@ -228,6 +249,37 @@ public class HibernateFormDAO implements FormDAO {
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.FormDAO#getFormStructure(org.openmrs.Form)
+	 */
+	@SuppressWarnings("unchecked")
+	public FormStructure getFormStructure(Form form) throws DAOException {
+		if (form == null || form.getFormId() == null) {
+			return null;
+		}
+		// the passed in form may be a stub, get the current version
+		Form current = getForm(form.getFormId());
+		if (current == null) {
+			return null;
+		}
+		
+		FormStructure structure = FormStructureCache.get(current.getFormId());
+		if (structure != null && structure.isSnapshotOf(current)) {
+			return structure;
+		}
+		
+		long generation = FormStructureCache.getGeneration();
+		
+		// one query for the form fields and their fields instead of lazily loading each field
+		List<FormField> formFields = sessionFactory.getCurrentSession().createQuery(
+		    "select ff from FormField ff left join fetch ff.field where ff.form = :form").setEntity("form", current)
+		        .list();
+		
+		structure = new FormStructure(current, formFields);
+		FormStructureCache.put(structure, generation);
+		return structure;
+	}
+	
 	/**
 	 * @see org.openmrs.api.FormService#getForms()
 	 */
@@ -263,6 +315,8 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public Field saveField(Field field) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(field);
+		// the concept or the answers of a field on any number of forms may have changed
+		FormStructureCache.evictAll();
 		return field;
 	}
 	
@@ -272,6 +326,7 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public void deleteField(Field field) throws DAOException {
 		sessionFactory.getCurrentSession().delete(field);
+		FormStructureCache.evictAll();
 	}
 	
 	/**
@@ -279,6 +334,7 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public FormField saveFormField(FormField formField) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(formField);
+		evictFormOf(formField);
 		return formField;
 	}
 	
@@ -288,6 +344,13 @@ public class HibernateFormDAO implements FormDAO {
 	 */
 	public void deleteFormField(FormField formField) throws DAOException {
 		sessionFactory.getCurrentSession().delete(formField);
+		evictFormOf(formField);
+	}
+	
+	private void evictFormOf(FormField formField) {
+		if (formField.getForm() != null) {
+			FormStructureCache.evict(formField.getForm().getFormId());
+		}
 	}
 	
 	/**
@@ -256,4 +256,14 @@ public class HibernateObsDAO implements ObsDAO {
 		    uuid).uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getComplexObsCount(java.lang.String)
+	 */
+	public Long getComplexObsCount(String name) throws DAOException {
+		// the complex value is either just the name or the title and the name separated by a pipe
+		return (Long) sessionFactory.getCurrentSession().createQuery(
+		    "select count(*) from Obs o where o.valueComplex = :name or o.valueComplex like :titled").setString("name",
+		    name).setString("titled", "%|" + HibernateUtil.escapeSqlWildcards(name, sessionFactory)).uniqueResult();
+	}
+	
 }
@@ -11,6 +11,7 @@ package org.openmrs.api.db.hibernate;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -24,19 +25,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.EntityKey;
 import org.openmrs.Allergies;
 import org.openmrs.Allergy;
+import org.openmrs.Encounter;
 import org.openmrs.Location;
+import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.PatientIdentifierType.UniquenessBehavior;
 import org.openmrs.Person;
 import org.openmrs.PersonName;
+import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientDAO;
@@ -566,6 +572,29 @@ public class HibernatePatientDAO implements PatientDAO {
 		return !query.uniqueResult().toString().equals("0");
 	}
 	
+	/**
+	 * Like {@link #isIdentifierInUseByAnotherPatient(PatientIdentifier)}, this only selects values,
+	 * it does not load anything into the hibernate session.
+	 *
+	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifierUsages(org.openmrs.PatientIdentifierType,
+	 *      java.util.Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getPatientIdentifierUsages(PatientIdentifierType identifierType, Collection<String> identifiers) {
+		String hql = "select pi.identifier, p.patientId, l.locationId from PatientIdentifier pi left join pi.location l, "
+		        + "Patient p where pi.patient.patientId = p.patient.patientId and p.voided = false and pi.voided = false "
+		        + "and pi.identifierType = :idType and pi.identifier in (:identifiers)";
+		
+		List<Object[]> usages = new ArrayList<Object[]>();
+		for (List<String> chunk : HibernateUtil.partition(identifiers, HibernateUtil.MAX_IN_LIST_SIZE)) {
+			Query query = sessionFactory.getCurrentSession().createQuery(hql);
+			query.setInteger("idType", identifierType.getPatientIdentifierTypeId());
+			query.setParameterList("identifiers", chunk);
+			usages.addAll(query.list());
+		}
+		return usages;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getPatientIdentifier(java.lang.Integer)
 	 */
@@ -694,4 +723,99 @@ public class HibernatePatientDAO implements PatientDAO {
     	sessionFactory.getCurrentSession().save(allergy);
     	return allergy;
     }
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#moveVisits(org.openmrs.Patient, org.openmrs.Patient)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<String> moveVisits(Patient from, Patient to) {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createQuery("select v.uuid from Visit v where v.patient = :from").setParameter(
+		    "from", from).list();
+		if (!uuids.isEmpty()) {
+			session.createQuery(
+			    "update Visit set patient = :to, changedBy = :changedBy, dateChanged = :dateChanged where patient = :from")
+			        .setParameter("to", to).setParameter("changedBy", Context.getAuthenticatedUser()).setTimestamp(
+			            "dateChanged", new Date()).setParameter("from", from).executeUpdate();
+			refreshMovedEntities(session, from);
+		}
+		return uuids;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#moveEncounters(org.openmrs.Patient, org.openmrs.Patient)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<String> moveEncounters(Patient from, Patient to) {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createQuery("select e.uuid from Encounter e where e.patient = :from").setParameter(
+		    "from", from).list();
+		if (!uuids.isEmpty()) {
+			// the observations and orders have to follow their encounters, so move them before the
+			// encounters while they can still be found through the encounters' patient
+			session.createQuery(
+			    "update Obs set person = :to where encounter in (select e from Encounter e where e.patient = :from)")
+			        .setParameter("to", to).setParameter("from", from).executeUpdate();
+			session.createSQLQuery(
+			    "update orders set patient_id = :to where encounter_id in "
+			            + "(select encounter_id from encounter where patient_id = :from)").addSynchronizedEntityClass(
+			    org.openmrs.Order.class).setInteger("to", to.getPatientId()).setInteger("from", from.getPatientId())
+			        .executeUpdate();
+			session.createQuery(
+			    "update Encounter set patient = :to, changedBy = :changedBy, dateChanged = :dateChanged where patient = :from")
+			        .setParameter("to", to).setParameter("changedBy", Context.getAuthenticatedUser()).setTimestamp(
+			            "dateChanged", new Date()).setParameter("from", from).executeUpdate();
+			refreshMovedEntities(session, from);
+		}
+		return uuids;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#moveIndependentObs(org.openmrs.Patient, org.openmrs.Patient)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<String> moveIndependentObs(Patient from, Patient to) {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		
+		List<String> uuids = session.createQuery(
+		    "select o.uuid from Obs o where o.person = :from and o.encounter is null and o.voided = false").setParameter(
+		    "from", from).list();
+		if (!uuids.isEmpty()) {
+			session.createQuery("update Obs set person = :to where person = :from and encounter is null and voided = false")
+			        .setParameter("to", to).setParameter("from", from).executeUpdate();
+			refreshMovedEntities(session, from);
+		}
+		return uuids;
+	}
+	
+	/**
+	 * Bulk updates bypass the session, this reloads the visits, encounters, observations and orders
+	 * in the session that still point to the patient they were moved away from
+	 */
+	private void refreshMovedEntities(Session session, Patient from) {
+		for (EntityKey key : new ArrayList<EntityKey>(session.getStatistics().getEntityKeys())) {
+			Object entity = session.get(key.getEntityName(), key.getIdentifier());
+			Person person = null;
+			if (entity instanceof Visit) {
+				person = ((Visit) entity).getPatient();
+			} else if (entity instanceof Encounter) {
+				person = ((Encounter) entity).getPatient();
+			} else if (entity instanceof org.openmrs.Order) {
+				person = ((org.openmrs.Order) entity).getPatient();
+			} else if (entity instanceof Obs) {
+				person = ((Obs) entity).getPerson();
+			}
+			if (person != null && from.getPatientId().equals(person.getPersonId())) {
+				session.refresh(entity);
+			}
+		}
+	}
 }
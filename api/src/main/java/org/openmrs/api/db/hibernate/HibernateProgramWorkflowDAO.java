@@ -9,14 +9,19 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
@@ -26,6 +31,7 @@ import org.openmrs.Concept;
 import org.openmrs.ConceptStateConversion;
 import org.openmrs.Patient;
 import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
 import org.openmrs.PatientState;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
@@ -202,14 +208,102 @@ public class HibernateProgramWorkflowDAO implements ProgramWorkflowDAO {
 			hql += " program in (:programs)";
 		}
 		hql += " order by patient.patientId, dateEnrolled";
-		Query query = sessionFactory.getCurrentSession().createQuery(hql);
-		if (cohort != null) {
-			query.setParameterList("patientIds", cohort.getMemberIds());
+		
+		if (cohort == null) {
+			Query query = sessionFactory.getCurrentSession().createQuery(hql);
+			if (programs != null) {
+				query.setParameterList("programs", programs);
+			}
+			return query.list();
 		}
-		if (programs != null) {
-			query.setParameterList("programs", programs);
+		
+		// bind the patient ids in sorted chunks so that large cohorts neither overflow the parameter
+		// limits of the database nor break the ordering by patient
+		List<PatientProgram> ret = new ArrayList<PatientProgram>();
+		for (List<Integer> patientIds : HibernateUtil.partition(getSortedIds(cohort.getMemberIds()),
+		    HibernateUtil.MAX_IN_LIST_SIZE)) {
+			Query query = sessionFactory.getCurrentSession().createQuery(hql);
+			query.setParameterList("patientIds", patientIds);
+			if (programs != null) {
+				query.setParameterList("programs", programs);
+			}
+			ret.addAll(query.list());
+		}
+		return ret;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ProgramWorkflowDAO#processPatientProgramEnrollments(java.util.Collection,
+	 *      java.util.Collection, org.openmrs.PatientProgramEnrollment.Callback)
+	 */
+	@SuppressWarnings("unchecked")
+	public void processPatientProgramEnrollments(Collection<Integer> patientIds, Collection<Program> programs,
+	        PatientProgramEnrollment.Callback callback) {
+		Session session = sessionFactory.getCurrentSession();
+		boolean filterByProgram = programs != null && !programs.isEmpty();
+		
+		if (patientIds == null) {
+			String hql = "select distinct pp.patient.patientId from PatientProgram pp where pp.voided = false";
+			if (filterByProgram) {
+				hql += " and pp.program in (:programs)";
+			}
+			Query query = session.createQuery(hql);
+			if (filterByProgram) {
+				query.setParameterList("programs", programs);
+			}
+			patientIds = query.list();
+		}
+		
+		String enrollmentHql = "select pp.patientProgramId, pp.patient.patientId, pp.program.programId, pp.dateEnrolled, "
+		        + "pp.dateCompleted from PatientProgram pp where pp.voided = false and pp.patient.patientId in (:patientIds)";
+		if (filterByProgram) {
+			enrollmentHql += " and pp.program in (:programs)";
 		}
-		return query.list();
+		enrollmentHql += " order by pp.patient.patientId, pp.dateEnrolled, pp.patientProgramId";
+		
+		// the same rules as PatientState.getActive(Date), states are ordered so that the most recent
+		// one of a workflow is applied last
+		String stateHql = "select ps.patientProgram.patientProgramId, ps.state.programWorkflow.programWorkflowId, "
+		        + "ps.state.programWorkflowStateId from PatientState ps where ps.voided = false "
+		        + "and ps.patientProgram.patientProgramId in (:patientProgramIds) "
+		        + "and (ps.startDate is null or ps.startDate <= :now) and (ps.endDate is null or ps.endDate > :now) "
+		        + "order by ps.startDate, ps.patientStateId";
+		Date now = new Date();
+		
+		for (List<Integer> chunk : HibernateUtil.partition(getSortedIds(patientIds), HibernateUtil.MAX_IN_LIST_SIZE)) {
+			Query query = session.createQuery(enrollmentHql);
+			query.setParameterList("patientIds", chunk);
+			if (filterByProgram) {
+				query.setParameterList("programs", programs);
+			}
+			
+			Map<Integer, PatientProgramEnrollment> enrollments = new LinkedHashMap<Integer, PatientProgramEnrollment>();
+			for (Object[] row : (List<Object[]>) query.list()) {
+				PatientProgramEnrollment enrollment = new PatientProgramEnrollment((Integer) row[0], (Integer) row[1],
+				        (Integer) row[2], (Date) row[3], (Date) row[4]);
+				enrollments.put(enrollment.getPatientProgramId(), enrollment);
+			}
+			
+			for (List<Integer> patientProgramIds : HibernateUtil.partition(enrollments.keySet(),
+			    HibernateUtil.MAX_IN_LIST_SIZE)) {
+				Query stateQuery = session.createQuery(stateHql);
+				stateQuery.setParameterList("patientProgramIds", patientProgramIds);
+				stateQuery.setTimestamp("now", now);
+				for (Object[] row : (List<Object[]>) stateQuery.list()) {
+					enrollments.get(row[0]).setCurrentStateId((Integer) row[1], (Integer) row[2]);
+				}
+			}
+			
+			for (PatientProgramEnrollment enrollment : enrollments.values()) {
+				callback.handle(enrollment);
+			}
+		}
+	}
+	
+	private List<Integer> getSortedIds(Collection<Integer> ids) {
+		List<Integer> sortedIds = new ArrayList<Integer>(ids);
+		Collections.sort(sortedIds);
+		return sortedIds;
 	}
 	
 	/**
@@ -46,6 +46,9 @@ public class HibernateSerializedObjectDAO implements SerializedObjectDAO {
 	
 	private List<Class<? extends OpenmrsObject>> supportedTypes;
 	
+	// copies of recently deserialized objects, see convertSerializedObject
+	private final SerializedObjectSnapshotCache snapshotCache = new SerializedObjectSnapshotCache(1000);
+	
 	/**
 	 * Private Constructor to support a singleton instance
 	 */
@@ -241,6 +244,7 @@ public class HibernateSerializedObjectDAO implements SerializedObjectDAO {
 		}
 		
 		sessionFactory.getCurrentSession().saveOrUpdate(serializedObject);
+		snapshotCache.evict(serializedObject.getUuid());
 		
 		object.setId(serializedObject.getId());
 		return object;
@@ -252,6 +256,7 @@ public class HibernateSerializedObjectDAO implements SerializedObjectDAO {
 	public void purgeObject(Integer id) throws DAOException {
 		SerializedObject o = getSerializedObject(id);
 		sessionFactory.getCurrentSession().delete(o);
+		snapshotCache.evict(o.getUuid());
 	}
 	
 	/**
@@ -283,6 +288,9 @@ public class HibernateSerializedObjectDAO implements SerializedObjectDAO {
 	}
 	
 	/**
+	 * Deserializes the given object, unchanged objects that were deserialized before are copied
+	 * from a snapshot instead of being deserialized again, see {@link SerializedObjectSnapshotCache}
+	 * 
 	 * @see SerializedObjectDAO#convertSerializedObject(Class, SerializedObject)
 	 */
 	@SuppressWarnings("unchecked")
@@ -291,19 +299,22 @@ public class HibernateSerializedObjectDAO implements SerializedObjectDAO {
 		if (serializedObject == null) {
 			return null;
 		}
-		OpenmrsSerializer serializer = getSerializer(serializedObject);
-		T obj = null;
-		try {
-			Class<?> subtype = Context.loadClass(serializedObject.getSubtype());
-			obj = (T) serializer.deserialize(serializedObject.getSerializedData(), subtype);
-		}
-		catch (Exception e) {
-			ExceptionUtil.rethrowAPIAuthenticationException(e);
-			throw new DAOException("Unable to deserialize object: " + serializedObject, e);
-		}
+		T obj = (T) snapshotCache.get(serializedObject);
 		if (obj == null) {
-			// it's probably impossible to reach this code branch
-			throw new DAOException("Unable to deserialize object: " + serializedObject);
+			OpenmrsSerializer serializer = getSerializer(serializedObject);
+			try {
+				Class<?> subtype = Context.loadClass(serializedObject.getSubtype());
+				obj = (T) serializer.deserialize(serializedObject.getSerializedData(), subtype);
+			}
+			catch (Exception e) {
+				ExceptionUtil.rethrowAPIAuthenticationException(e);
+				throw new DAOException("Unable to deserialize object: " + serializedObject, e);
+			}
+			if (obj == null) {
+				// it's probably impossible to reach this code branch
+				throw new DAOException("Unable to deserialize object: " + serializedObject);
+			}
+			snapshotCache.put(serializedObject, obj);
 		}
 		obj.setId(serializedObject.getId());
 		obj.setUuid(serializedObject.getUuid());
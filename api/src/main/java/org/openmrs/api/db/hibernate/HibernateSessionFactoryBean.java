@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.HibernateException;
 import org.hibernate.Interceptor;
+import org.hibernate.metadata.ClassMetadata;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleFactory;
@@ -185,6 +186,13 @@ public class HibernateSessionFactoryBean extends LocalSessionFactoryBean {
 		setPackagesToScan(getModulePackagesWithMappedClasses().toArray(new String[0]));
 		
 		super.afterPropertiesSet();
+		
+		// let the interceptors work out where the properties they check are, once for every mapped class
+		for (ClassMetadata metadata : getObject().getAllClassMetadata().values()) {
+			if (metadata.getMappedClass() != null) {
+				chainingInterceptor.prepare(metadata.getMappedClass(), metadata.getPropertyNames());
+			}
+		}
 	}
 	
 	/**
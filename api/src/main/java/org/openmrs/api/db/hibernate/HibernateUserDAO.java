@@ -31,6 +31,7 @@ import org.openmrs.Person;
 import org.openmrs.Privilege;
 import org.openmrs.Role;
 import org.openmrs.User;
+import org.openmrs.api.context.AuthenticatedPrincipal;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.LoginCredential;
@@ -74,6 +75,8 @@ public class HibernateUserDAO implements UserDAO {
 		boolean isNewUser = user.getUserId() == null;
 		
 		sessionFactory.getCurrentSession().saveOrUpdate(user);
+		AuthenticatedPrincipal.userChanged(user.getUserId());
+		LoginThrottle.userSaved(user);
 		
 		if (isNewUser && password != null) {
 			//update the new user with the password
@@ -167,6 +170,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public void deleteUser(User user) {
 		sessionFactory.getCurrentSession().delete(user);
+		AuthenticatedPrincipal.userChanged(user.getUserId());
 	}
 	
 	/**
@@ -201,6 +205,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public void deletePrivilege(Privilege privilege) throws DAOException {
 		sessionFactory.getCurrentSession().delete(privilege);
+		AuthenticatedPrincipal.rolesChanged();
 	}
 	
 	/**
@@ -208,6 +213,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public Privilege savePrivilege(Privilege privilege) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(privilege);
+		AuthenticatedPrincipal.rolesChanged();
 		return privilege;
 	}
 	
@@ -216,6 +222,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public void deleteRole(Role role) throws DAOException {
 		sessionFactory.getCurrentSession().delete(role);
+		AuthenticatedPrincipal.rolesChanged();
 	}
 	
 	/**
@@ -223,6 +230,7 @@ public class HibernateUserDAO implements UserDAO {
 	 */
 	public Role saveRole(Role role) throws DAOException {
 		sessionFactory.getCurrentSession().saveOrUpdate(role);
+		AuthenticatedPrincipal.rolesChanged();
 		return role;
 	}
 	
@@ -296,6 +304,8 @@ public class HibernateUserDAO implements UserDAO {
 		changeForUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, "");
 		changeForUser.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "0");
 		saveUser(changeForUser, null);
+		LoginThrottle.reset(userIdToChange);
+		CredentialVerificationCache.evict(userIdToChange);
 	}
 	
 	/**
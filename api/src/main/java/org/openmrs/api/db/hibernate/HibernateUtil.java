@@ -11,13 +11,18 @@ package org.openmrs.api.db.hibernate;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.FlushMode;
 import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.DetachedCriteria;
@@ -43,6 +48,13 @@ public class HibernateUtil {
 	
 	private static Boolean isHSQLDialect = null;
 	
+	/**
+	 * The maximum number of values bound to a single "in (:list)" parameter. Oracle rejects more
+	 * than 1000 expressions in a list and SQL Server more than 2100 parameters in a statement, and
+	 * very long lists degrade query planning on the other databases too.
+	 */
+	public static final int MAX_IN_LIST_SIZE = 1000;
+	
 	/**
 	 * Check and cache whether the currect dialect is HSQL or not. This is needed because some
 	 * queries are different if in the hsql world as opposed to the mysql/postgres world
@@ -173,4 +185,46 @@ public class HibernateUtil {
 		
 		return persistentObject;
 	}
+	
+	/**
+	 * Splits the given values into consecutive chunks of at most <code>chunkSize</code> elements,
+	 * e.g. to bind a large number of ids to "in" parameter lists over several queries
+	 * 
+	 * @param values the values to split
+	 * @param chunkSize the maximum size of each chunk
+	 * @return the chunks in the iteration order of the values
+	 * @since 2.1.0
+	 */
+	public static <T> List<List<T>> partition(Collection<T> values, int chunkSize) {
+		List<List<T>> chunks = new ArrayList<List<T>>();
+		List<T> chunk = null;
+		for (T value : values) {
+			if (chunk == null || chunk.size() == chunkSize) {
+				chunk = new ArrayList<T>(Math.min(chunkSize, values.size()));
+				chunks.add(chunk);
+			}
+			chunk.add(value);
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Turns flushing the current session before queries off or back on, without changing a session
+	 * that is only flushed manually, e.g. while processing a batch whose pending changes are never
+	 * read back by its own queries
+	 * 
+	 * @param sessionFactory the session factory of the current session
+	 * @param flushBeforeQueries whether the session should be flushed before queries
+	 * @return true if the flushing was changed
+	 * @since 2.1.0
+	 */
+	public static boolean setFlushBeforeQueries(SessionFactory sessionFactory, boolean flushBeforeQueries) {
+		Session session = sessionFactory.getCurrentSession();
+		FlushMode from = flushBeforeQueries ? FlushMode.COMMIT : FlushMode.AUTO;
+		if (session.getFlushMode() != from) {
+			return false;
+		}
+		session.setFlushMode(flushBeforeQueries ? FlushMode.AUTO : FlushMode.COMMIT);
+		return true;
+	}
 }
@@ -12,9 +12,10 @@ package org.openmrs.api.db.hibernate;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.EmptyInterceptor;
@@ -36,9 +37,11 @@ import org.openmrs.util.OpenmrsUtil;
  * 
  * @since 1.10
  */
-public abstract class ImmutableEntityInterceptor extends EmptyInterceptor {
+public abstract class ImmutableEntityInterceptor extends EmptyInterceptor implements PreparableInterceptor {
 	
 	private static final Log log = LogFactory.getLog(ImmutableEntityInterceptor.class);
+	
+	private final Map<Class<?>, PropertyIndexes> immutableIndexes = new ConcurrentHashMap<Class<?>, PropertyIndexes>();
 
 	/**
 	 * Returns the class handled by the interceptor
@@ -65,6 +68,17 @@ public abstract class ImmutableEntityInterceptor extends EmptyInterceptor {
 		return false;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.hibernate.PreparableInterceptor#prepare(java.lang.Class,
+	 *      java.lang.String[])
+	 */
+	@Override
+	public void prepare(Class<?> entityClass, String[] propertyNames) {
+		if (getSupportedType().isAssignableFrom(entityClass)) {
+			immutableIndexes.put(entityClass, PropertyIndexes.allExcept(propertyNames, getMutablePropertyNames()));
+		}
+	}
+	
 	/**
 	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(Object, java.io.Serializable, Object[],
 	 *      Object[], String[], org.hibernate.type.Type[])
@@ -78,30 +92,19 @@ public abstract class ImmutableEntityInterceptor extends EmptyInterceptor {
 	                            String[] propertyNames, Type[] types) {
 		
 		if (getSupportedType().isAssignableFrom(entity.getClass())) {
+			if (ignoreVoidedOrRetiredObjects() && isVoidedOrRetired(entity)) {
+				return false;
+			}
+			
 			List<String> changedProperties = null;
-			for (int i = 0; i < propertyNames.length; i++) {
-				String property = propertyNames[i];
-				if (ArrayUtils.contains(getMutablePropertyNames(), property)) {
-					continue;
-				}
-				
-				boolean isVoidedOrRetired = false;
-				if (Voidable.class.isAssignableFrom(entity.getClass())) {
-					isVoidedOrRetired = ((Voidable) entity).getVoided();
-				} else if (Retireable.class.isAssignableFrom(entity.getClass())) {
-					isVoidedOrRetired = ((Retireable) entity).getRetired();
-				}
-				if (isVoidedOrRetired && ignoreVoidedOrRetiredObjects()) {
-					continue;
-				}
-				
+			for (int i : getImmutableIndexes(entity.getClass(), propertyNames).getIndexes()) {
 				Object previousValue = (previousState != null) ? previousState[i] : null;
 				Object currentValue = (currentState != null) ? currentState[i] : null;
 				if (!OpenmrsUtil.nullSafeEquals(currentValue, previousValue)) {
 					if (changedProperties == null) {
 						changedProperties = new ArrayList<String>();
 					}
-					changedProperties.add(property);
+					changedProperties.add(propertyNames[i]);
 				}
 			}
 			if (CollectionUtils.isNotEmpty(changedProperties)) {
@@ -114,4 +117,26 @@ public abstract class ImmutableEntityInterceptor extends EmptyInterceptor {
 		
 		return false;
 	}
+	
+	private boolean isVoidedOrRetired(Object entity) {
+		if (entity instanceof Voidable) {
+			return Boolean.TRUE.equals(((Voidable) entity).getVoided());
+		} else if (entity instanceof Retireable) {
+			return Boolean.TRUE.equals(((Retireable) entity).getRetired());
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the positions of the properties that can't be changed, working them out if the class was
+	 * not prepared or is mapped differently now
+	 */
+	private PropertyIndexes getImmutableIndexes(Class<?> entityClass, String[] propertyNames) {
+		PropertyIndexes indexes = immutableIndexes.get(entityClass);
+		if (indexes == null || !indexes.isFor(propertyNames)) {
+			indexes = PropertyIndexes.allExcept(propertyNames, getMutablePropertyNames());
+			immutableIndexes.put(entityClass, indexes);
+		}
+		return indexes;
+	}
 }
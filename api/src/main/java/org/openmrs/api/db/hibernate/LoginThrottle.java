@@ -0,0 +1,414 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds the failed login attempts and the lockouts of users in memory, so that logging in does not
+ * read and write the {@link OpenmrsConstants#USER_PROPERTY_LOGIN_ATTEMPTS} and
+ * {@link OpenmrsConstants#USER_PROPERTY_LOCKOUT_TIMESTAMP} user properties in the login
+ * transaction. The state of a user is taken from those properties the first time the user tries to
+ * log in, and changes are written back to them in the background after
+ * {@link OpenmrsConstants#GP_LOGIN_STATE_WRITE_BEHIND_DELAY} seconds, so lockouts survive a
+ * restart. <br>
+ * <br>
+ * States are keyed by user id, so logging in with the username and with the system id of a user
+ * counts towards the same lockout. Changing the password of a user resets the state. <br>
+ * <br>
+ * This class owns the two user properties, nothing else should write them directly. Saving a user
+ * whose properties differ from what was last read or written here, like an administrator unlocking
+ * the user, means the state is taken from the saved properties again.
+ *
+ * @since 2.1.0
+ */
+public class LoginThrottle {
+	
+	private static final Log log = LogFactory.getLog(LoginThrottle.class);
+	
+	/**
+	 * How long a user stays locked out in ms, every attempt while locked out starts it again
+	 */
+	public static final long LOCKOUT_TIME = 300000;
+	
+	/**
+	 * The delay before changes are written in seconds, if the global property is not set
+	 */
+	public static final int DEFAULT_WRITE_BEHIND_DELAY = 30;
+	
+	private static final Map<Integer, LoginState> states = new ConcurrentHashMap<Integer, LoginState>();
+	
+	// the ids of the users whose state changed since it was last written
+	private static final Set<Integer> pending = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	
+	private static final AtomicBoolean writeScheduled = new AtomicBoolean();
+	
+	private static volatile SessionFactory sessionFactory;
+	
+	private static ScheduledExecutorService executor;
+	
+	private LoginThrottle() {
+	}
+	
+	/**
+	 * @param factory the session factory that changes are written with, they are only kept in
+	 *            memory while it is null
+	 */
+	public static void setSessionFactory(SessionFactory factory) {
+		sessionFactory = factory;
+	}
+	
+	/**
+	 * Gets the login state of the given user, reading it from the user properties the first time
+	 *
+	 * @param user the user that tries to log in
+	 * @return the state of the user
+	 * @should take the initial state from the user properties
+	 */
+	public static LoginState getState(User user) {
+		LoginState state = states.get(user.getUserId());
+		if (state == null) {
+			state = new LoginState(user.getUserId(), getStoredAttempts(user), getStoredLockoutTime(user));
+			LoginState existing = states.putIfAbsent(user.getUserId(), state);
+			if (existing != null) {
+				state = existing;
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * Forgets the state of the given user, now and when the current transaction completes, the next
+	 * login reads it from the user properties again
+	 *
+	 * @param userId the id of the user whose password was changed
+	 */
+	public static void reset(final Integer userId) {
+		if (userId == null) {
+			return;
+		}
+		forget(userId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					forget(userId);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Resets the state of the given user if the saved user properties are not the ones that were
+	 * last read or written by this class, so that changing them, for example to unlock the user,
+	 * takes effect
+	 *
+	 * @param user the user that is saved
+	 * @should take the state from the user properties after they were changed
+	 * @should keep the state if the user properties were not changed
+	 */
+	public static void userSaved(User user) {
+		LoginState state = states.get(user.getUserId());
+		if (state != null && !state.isStored(getStoredAttempts(user), getStoredLockoutTime(user))) {
+			reset(user.getUserId());
+		}
+	}
+	
+	private static void forget(Integer userId) {
+		pending.remove(userId);
+		states.remove(userId);
+	}
+	
+	/**
+	 * Forgets all states without writing pending changes
+	 */
+	public static void clear() {
+		pending.clear();
+		states.clear();
+	}
+	
+	/**
+	 * Writes the changed states to the user properties now
+	 */
+	public static void write() {
+		SessionFactory factory = sessionFactory;
+		if (factory == null || factory.isClosed() || pending.isEmpty()) {
+			return;
+		}
+		
+		List<Integer> userIds = new ArrayList<Integer>(pending);
+		pending.removeAll(userIds);
+		Session session = factory.openSession();
+		Transaction transaction = null;
+		try {
+			transaction = session.beginTransaction();
+			for (Integer userId : userIds) {
+				LoginState state = states.get(userId);
+				if (state != null) {
+					write(session, state);
+				}
+			}
+			transaction.commit();
+			if (log.isDebugEnabled()) {
+				log.debug("Wrote the login state of " + userIds.size() + " users");
+			}
+		}
+		catch (RuntimeException e) {
+			log.warn("Unable to write the login attempts of users " + userIds, e);
+			if (transaction != null) {
+				transaction.rollback();
+			}
+		}
+		finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Writes the pending changes and stops writing in the background
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		writeScheduled.set(false);
+		write();
+	}
+	
+	private static void write(Session session, LoginState state) {
+		long attempts;
+		long lockoutTime;
+		synchronized (state) {
+			attempts = state.attempts;
+			lockoutTime = state.lockoutTime;
+			state.storedAttempts = attempts;
+			state.storedLockoutTime = lockoutTime;
+		}
+		upsert(session, state.userId, OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, String.valueOf(attempts));
+		// an empty lockout timestamp is what changing the password stores too
+		upsert(session, state.userId, OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, lockoutTime == 0 ? ""
+		        : String.valueOf(lockoutTime));
+	}
+	
+	private static void upsert(Session session, Integer userId, String property, String value) {
+		int updated = session.createSQLQuery(
+		    "update user_property set property_value = :value where user_id = :userId and property = :property")
+		        .setString("value", value).setInteger("userId", userId).setString("property", property).executeUpdate();
+		if (updated == 0 && value.length() > 0) {
+			// users that were deleted in the meantime are skipped
+			session.createSQLQuery(
+			    "insert into user_property (user_id, property, property_value) select user_id, :property, :value"
+			            + " from users where user_id = :userId").setString("property", property).setString("value",
+			    value).setInteger("userId", userId).executeUpdate();
+		}
+	}
+	
+	/**
+	 * Remembers that the state of the given user changed and schedules writing it
+	 */
+	private static void changed(Integer userId) {
+		if (sessionFactory == null) {
+			return;
+		}
+		int delay = getWriteBehindDelay();
+		if (delay <= 0) {
+			return;
+		}
+		pending.add(userId);
+		if (writeScheduled.compareAndSet(false, true)) {
+			try {
+				getExecutor().schedule(new Runnable() {
+					
+					@Override
+					public void run() {
+						// changes after this point need another run
+						writeScheduled.set(false);
+						write();
+					}
+				}, delay, TimeUnit.SECONDS);
+			}
+			catch (RuntimeException e) {
+				// shutting down, the pending changes are written by shutdown
+				writeScheduled.set(false);
+				log.debug("Unable to schedule writing the login states", e);
+			}
+		}
+	}
+	
+	private static synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "OpenMRS Login State Writer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+	
+	private static int getWriteBehindDelay() {
+		try {
+			String delay = Context.getAdministrationService().getGlobalProperty(
+			    OpenmrsConstants.GP_LOGIN_STATE_WRITE_BEHIND_DELAY);
+			if (delay != null && delay.trim().length() > 0) {
+				return Integer.parseInt(delay.trim());
+			}
+		}
+		catch (Exception e) {
+			log.debug("Unable to read " + OpenmrsConstants.GP_LOGIN_STATE_WRITE_BEHIND_DELAY + ", using the default", e);
+		}
+		return DEFAULT_WRITE_BEHIND_DELAY;
+	}
+	
+	private static long getStoredAttempts(User user) {
+		return parseLong(user.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "0"));
+	}
+	
+	private static long getStoredLockoutTime(User user) {
+		return parseLong(user.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, null));
+	}
+	
+	// the admin may have put junk into the properties, that counts as not set
+	private static long parseLong(String value) {
+		if (value != null && value.trim().length() > 0) {
+			try {
+				return Long.parseLong(value.trim());
+			}
+			catch (NumberFormatException e) {
+				log.debug("bad value stored in login user property: " + value);
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * The failed login attempts and the lockout time of a user
+	 */
+	public static class LoginState {
+		
+		private final Integer userId;
+		
+		private long attempts;
+		
+		private long lockoutTime;
+		
+		// the values of the user properties as far as this class knows
+		private long storedAttempts;
+		
+		private long storedLockoutTime;
+		
+		private LoginState(Integer userId, long attempts, long lockoutTime) {
+			this.userId = userId;
+			this.attempts = attempts;
+			this.lockoutTime = lockoutTime;
+			this.storedAttempts = attempts;
+			this.storedLockoutTime = lockoutTime;
+		}
+		
+		private synchronized boolean isStored(long attempts, long lockoutTime) {
+			return storedAttempts == attempts && storedLockoutTime == lockoutTime;
+		}
+		
+		/**
+		 * Checks whether the user is locked out, an attempt while locked out starts the lockout
+		 * again and an expired lockout is lifted
+		 *
+		 * @param now the time of the login attempt
+		 * @return true if the user may not log in
+		 * @should lift a lockout after the lockout time
+		 */
+		public boolean isLockedOut(long now) {
+			boolean lockedOut;
+			synchronized (this) {
+				if (lockoutTime == 0) {
+					return false;
+				}
+				lockedOut = now - lockoutTime <= LOCKOUT_TIME;
+				if (lockedOut) {
+					lockoutTime = now;
+				} else {
+					attempts = 0;
+					lockoutTime = 0;
+				}
+			}
+			changed(userId);
+			return lockedOut;
+		}
+		
+		/**
+		 * Counts a failed login attempt, locking the user out once there are too many
+		 *
+		 * @param allowedFailedLogins the number of failed attempts allowed before a lockout
+		 * @param now the time of the login attempt
+		 * @should lock out a user after more than the allowed failed attempts
+		 */
+		public void recordFailure(int allowedFailedLogins, long now) {
+			synchronized (this) {
+				if (attempts + 1 > allowedFailedLogins) {
+					lockoutTime = now;
+				} else {
+					attempts++;
+				}
+			}
+			changed(userId);
+		}
+		
+		/**
+		 * Clears the failed attempts after a successful login, which is free if there were none
+		 *
+		 * @should reset the failed attempts
+		 */
+		public void recordSuccess() {
+			synchronized (this) {
+				if (attempts == 0 && lockoutTime == 0) {
+					return;
+				}
+				attempts = 0;
+				lockoutTime = 0;
+			}
+			changed(userId);
+		}
+		
+		public synchronized long getAttempts() {
+			return attempts;
+		}
+		
+		public synchronized long getLockoutTime() {
+			return lockoutTime;
+		}
+	}
+}
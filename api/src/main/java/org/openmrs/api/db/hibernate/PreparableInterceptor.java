@@ -0,0 +1,31 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.hibernate.Interceptor;
+
+/**
+ * An {@link Interceptor} that looks at the same properties of an entity on every save or flush. The
+ * {@link HibernateSessionFactoryBean} calls {@link #prepare(Class, String[])} for every mapped
+ * class once the session factory is built, so that the interceptor can work out where these
+ * properties are in the state arrays up front instead of searching the property names every time.
+ *
+ * @see PropertyIndexes
+ * @since 2.1.0
+ */
+public interface PreparableInterceptor extends Interceptor {
+	
+	/**
+	 * @param entityClass the mapped class
+	 * @param propertyNames the names of the properties of the class, in the order of the state
+	 *            arrays passed to the interceptor
+	 */
+	public void prepare(Class<?> entityClass, String[] propertyNames);
+}
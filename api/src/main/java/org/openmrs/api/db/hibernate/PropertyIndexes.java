@@ -0,0 +1,84 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.ArrayUtils;
+
+/**
+ * The positions of some properties of a mapped class in the state arrays that hibernate passes to
+ * interceptors, worked out once per class by a {@link PreparableInterceptor}
+ *
+ * @since 2.1.0
+ */
+public class PropertyIndexes implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String[] propertyNames;
+	
+	private final int[] indexes;
+	
+	private PropertyIndexes(String[] propertyNames, int[] indexes) {
+		this.propertyNames = propertyNames;
+		this.indexes = indexes;
+	}
+	
+	/**
+	 * @param propertyNames the property names of the mapped class
+	 * @param properties the properties to find
+	 * @return the positions of the given properties, in the same order, -1 for a property the class
+	 *         doesn't have
+	 * @should find the positions of the given properties
+	 */
+	public static PropertyIndexes of(String[] propertyNames, String... properties) {
+		int[] indexes = new int[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			indexes[i] = ArrayUtils.indexOf(propertyNames, properties[i]);
+		}
+		return new PropertyIndexes(propertyNames, indexes);
+	}
+	
+	/**
+	 * @param propertyNames the property names of the mapped class
+	 * @param excludedProperties the properties to leave out, may be null
+	 * @return the positions of all properties except the given ones
+	 * @should find the positions of all properties except the given ones
+	 */
+	public static PropertyIndexes allExcept(String[] propertyNames, String... excludedProperties) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < propertyNames.length; i++) {
+			if (!ArrayUtils.contains(excludedProperties, propertyNames[i])) {
+				indexes.add(i);
+			}
+		}
+		return new PropertyIndexes(propertyNames, ArrayUtils.toPrimitive(indexes.toArray(new Integer[indexes.size()])));
+	}
+	
+	/**
+	 * @param propertyNames the property names passed to the interceptor
+	 * @return true if these positions were worked out for the given property names
+	 * @should return false for other property names
+	 */
+	public boolean isFor(String[] propertyNames) {
+		return this.propertyNames == propertyNames || Arrays.equals(this.propertyNames, propertyNames);
+	}
+	
+	/**
+	 * @return the positions, do not change them
+	 */
+	public int[] getIndexes() {
+		return indexes;
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.openmrs.api.db.SerializedObject;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Keeps a binary snapshot of recently deserialized {@link SerializedObject}s, so that reading the
+ * same object again, e.g. a report definition on every page view, does not parse its XML again.
+ * Snapshots are keyed by uuid and only used while the stored row still has the same date changed,
+ * serializer, subtype and serialized data, so a snapshot can never hand out an outdated object.
+ * <br>
+ * <br>
+ * Snapshots are written with java serialization and every read gets its own copy, callers are free
+ * to change the objects they get. Objects that are not serializable, or that reference Hibernate
+ * proxies or collections, i.e. objects that are attached to a session, are not cached.
+ *
+ * @since 2.1.0
+ */
+public class SerializedObjectSnapshotCache {
+	
+	private static final Log log = LogFactory.getLog(SerializedObjectSnapshotCache.class);
+	
+	private final Map<String, Snapshot> snapshots;
+	
+	/**
+	 * @param maxEntries the number of snapshots to keep, the least recently read ones are dropped
+	 *            first
+	 */
+	public SerializedObjectSnapshotCache(final int maxEntries) {
+		snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Gets a copy of the object the given serialized object was last deserialized to
+	 *
+	 * @param serializedObject the stored object
+	 * @return a new copy of the object or null if there is no current snapshot of it
+	 * @should return a copy of a cached object
+	 * @should return null if the serialized data changed
+	 */
+	public Object get(SerializedObject serializedObject) {
+		if (serializedObject.getUuid() == null) {
+			return null;
+		}
+		Snapshot snapshot;
+		synchronized (snapshots) {
+			snapshot = snapshots.get(serializedObject.getUuid());
+		}
+		if (snapshot == null || snapshot.data == null || !snapshot.isSnapshotOf(serializedObject)) {
+			return null;
+		}
+		try {
+			return read(snapshot.data);
+		}
+		catch (Exception e) {
+			log.debug("Unable to read the snapshot of " + serializedObject, e);
+			evict(serializedObject.getUuid());
+			return null;
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the object the given serialized object was deserialized to
+	 *
+	 * @param serializedObject the stored object
+	 * @param object the deserialized object, it is copied so it can be changed afterwards
+	 * @should not cache objects that cannot be serialized
+	 */
+	public void put(SerializedObject serializedObject, Object object) {
+		if (serializedObject.getUuid() == null) {
+			return;
+		}
+		synchronized (snapshots) {
+			Snapshot existing = snapshots.get(serializedObject.getUuid());
+			if (existing != null && existing.data == null && existing.isSnapshotOf(serializedObject)) {
+				// already known to be not cacheable
+				return;
+			}
+		}
+		byte[] data = null;
+		try {
+			data = write(object);
+		}
+		catch (IOException e) {
+			// remember that it can't be cached, so the next read doesn't try again
+			if (log.isDebugEnabled()) {
+				log.debug("Not caching " + serializedObject + ": " + e.getMessage());
+			}
+		}
+		Snapshot snapshot = new Snapshot(serializedObject, data);
+		synchronized (snapshots) {
+			snapshots.put(serializedObject.getUuid(), snapshot);
+		}
+	}
+	
+	/**
+	 * @param uuid the uuid of the serialized object to drop the snapshot of
+	 */
+	public void evict(String uuid) {
+		if (uuid != null) {
+			synchronized (snapshots) {
+				snapshots.remove(uuid);
+			}
+		}
+	}
+	
+	public void clear() {
+		synchronized (snapshots) {
+			snapshots.clear();
+		}
+	}
+	
+	private static byte[] write(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		ObjectOutputStream out = new SnapshotOutputStream(bytes);
+		try {
+			out.writeObject(object);
+		}
+		finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static Object read(byte[] data) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new SnapshotInputStream(new ByteArrayInputStream(data));
+		try {
+			return in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Refuses objects that are attached to a Hibernate session
+	 */
+	private static class SnapshotOutputStream extends ObjectOutputStream {
+		
+		public SnapshotOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+		
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof HibernateProxy || obj instanceof PersistentCollection) {
+				throw new NotSerializableException("references the Hibernate managed " + obj.getClass().getName());
+			}
+			return obj;
+		}
+	}
+	
+	/**
+	 * Loads classes through the openmrs class loader so that classes of modules are found
+	 */
+	private static class SnapshotInputStream extends ObjectInputStream {
+		
+		public SnapshotInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, OpenmrsClassLoader.getInstance());
+			}
+			catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+	
+	/**
+	 * The version of a serialized object a snapshot was taken of and the snapshot itself, which is
+	 * null if the object could not be serialized
+	 */
+	private static class Snapshot {
+		
+		private final Long dateChanged;
+		
+		private final Class<?> serializationClass;
+		
+		private final String subtype;
+		
+		private final String serializedData;
+		
+		private final byte[] data;
+		
+		public Snapshot(SerializedObject serializedObject, byte[] data) {
+			this.dateChanged = getTime(serializedObject.getDateChanged());
+			this.serializationClass = serializedObject.getSerializationClass();
+			this.subtype = serializedObject.getSubtype();
+			this.serializedData = serializedObject.getSerializedData();
+			this.data = data;
+		}
+		
+		public boolean isSnapshotOf(SerializedObject serializedObject) {
+			return OpenmrsUtil.nullSafeEquals(dateChanged, getTime(serializedObject.getDateChanged()))
+			        && OpenmrsUtil.nullSafeEquals(serializationClass, serializedObject.getSerializationClass())
+			        && OpenmrsUtil.nullSafeEquals(subtype, serializedObject.getSubtype())
+			        && OpenmrsUtil.nullSafeEquals(serializedData, serializedObject.getSerializedData());
+		}
+		
+		// compares timestamps and dates alike
+		private static Long getTime(Date date) {
+			return date == null ? null : date.getTime();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the JDBC statements Hibernate prepares and the entities it loads per thread while
+ * counting is enabled, so that the figures of a service call are not mixed up with those of calls
+ * running at the same time in other threads.
+ *
+ * @see org.openmrs.aop.ServiceMetricsAdvice
+ * @since 2.1.0
+ */
+@Component
+public class StatementCountingInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static volatile boolean enabled;
+	
+	// the statement count and the entity load count of the current thread
+	private static final ThreadLocal<long[]> counts = new ThreadLocal<long[]>() {
+		
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+	
+	/**
+	 * @return true if statements and entity loads are counted
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @param enabled whether to count statements and entity loads
+	 */
+	public static void setEnabled(boolean enabled) {
+		StatementCountingInterceptor.enabled = enabled;
+	}
+	
+	/**
+	 * @return the number of statements prepared by the current thread while counting was enabled
+	 */
+	public static long getStatementCount() {
+		return counts.get()[0];
+	}
+	
+	/**
+	 * @return the number of entities loaded by the current thread while counting was enabled
+	 */
+	public static long getEntityLoadCount() {
+		return counts.get()[1];
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onPrepareStatement(java.lang.String)
+	 * @should count the statements of the current thread only
+	 */
+	@Override
+	public String onPrepareStatement(String sql) {
+		if (enabled) {
+			counts.get()[0]++;
+		}
+		return sql;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onLoad(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (enabled) {
+			counts.get()[1]++;
+		}
+		return false;
+	}
+}
@@ -16,6 +16,8 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -27,6 +29,7 @@ import org.hibernate.Session;
 import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.Search;
+import org.hibernate.search.indexes.IndexReaderAccessor;
 import org.hibernate.search.query.dsl.QueryBuilder;
 import org.openmrs.collection.ListPart;
 
@@ -233,19 +236,15 @@ public abstract class LuceneQuery<T> extends SearchQuery<T> {
 	 * @return this
 	 */
 	public LuceneQuery<T> skipSame(String field) {
-		String idPropertyName = getSession().getSessionFactory().getClassMetadata(getType()).getIdentifierPropertyName();
+		String idPropertyName = getIdPropertyName();
 		
-		List<Object> documents = listProjection(idPropertyName, field);
+		List<Object> ids = listIdsSkippingSame(field);
 		
 		TermsFilter termsFilter = null;
-		if (!documents.isEmpty()) {
-			Set<Object> uniqueFieldValues = new HashSet<Object>();
-			List<Term> terms = new ArrayList<Term>();
-			for (Object document : documents) {
-				Object[] row = (Object[]) document;
-				if (uniqueFieldValues.add(row[1])) {
-					terms.add(new Term(idPropertyName, row[0].toString()));
-				}
+		if (!ids.isEmpty()) {
+			List<Term> terms = new ArrayList<Term>(ids.size());
+			for (Object id : ids) {
+				terms.add(new Term(idPropertyName, id.toString()));
 			}
 			termsFilter = new TermsFilter(terms);
 		}
@@ -259,6 +258,70 @@ public abstract class LuceneQuery<T> extends SearchQuery<T> {
 		return this;
 	}
 	
+	/**
+	 * Runs the query once and returns the ids of the elements, skipping elements, values of which
+	 * repeat in the given field. The ids are in the order of the results and only the first element
+	 * for each value is included.
+	 * <p>
+	 * Unlike {@link #skipSame(String)} this does not prepare the query to be run again, it is meant
+	 * for callers that need both the number of results and a part of them, which they can load by
+	 * id.
+	 * 
+	 * @param field
+	 * @return the ids
+	 * @since 2.1.0
+	 */
+	public List<Object> listIdsSkippingSame(String field) {
+		List<Object> documents = listProjection(getIdPropertyName(), field);
+		
+		Set<Object> uniqueFieldValues = new HashSet<Object>();
+		List<Object> ids = new ArrayList<Object>();
+		for (Object document : documents) {
+			Object[] row = (Object[]) document;
+			if (uniqueFieldValues.add(row[1])) {
+				ids.add(row[0]);
+			}
+		}
+		return ids;
+	}
+	
+	/**
+	 * Identifies the current state of the index of the queried type. The returned value stays
+	 * equal as long as the index is not changed, so it can be used to tell whether results cached
+	 * earlier are still current.
+	 * 
+	 * @return the index version
+	 * @since 2.1.0
+	 */
+	public List<Object> getIndexVersion() {
+		return getIndexVersion(getSession(), getType());
+	}
+	
+	/**
+	 * Same as {@link #getIndexVersion()} without building a query first
+	 * 
+	 * @param session the current session
+	 * @param type the indexed type
+	 * @return the index version
+	 * @since 2.1.0
+	 */
+	public static List<Object> getIndexVersion(Session session, Class<?> type) {
+		IndexReaderAccessor readerAccessor = Search.getFullTextSession(session).getSearchFactory()
+		        .getIndexReaderAccessor();
+		IndexReader reader = readerAccessor.open(type);
+		try {
+			List<Object> version = new ArrayList<Object>();
+			for (AtomicReaderContext leaf : reader.leaves()) {
+				// identifies both the segment and its deletions
+				version.add(leaf.reader().getCombinedCoreAndDeletesKey());
+			}
+			return version;
+		}
+		finally {
+			readerAccessor.close(reader);
+		}
+	}
+	
 	@Override
 	public T uniqueResult() {
 		@SuppressWarnings("unchecked")
@@ -322,6 +385,10 @@ public abstract class LuceneQuery<T> extends SearchQuery<T> {
 		return listPartProjection(first, max, fields);
 	}
 	
+	private String getIdPropertyName() {
+		return getSession().getSessionFactory().getClassMetadata(getType()).getIdentifierPropertyName();
+	}
+	
 	private void buildQuery() {
 		Query query;
 		try {
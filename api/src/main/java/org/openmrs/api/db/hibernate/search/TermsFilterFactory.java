@@ -9,24 +9,49 @@
  */
 package org.openmrs.api.db.hibernate.search;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.BooleanFilter;
+import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CachingWrapperFilter;
 import org.apache.lucene.search.Filter;
-import org.apache.lucene.search.MatchAllDocsQuery;
-import org.apache.lucene.search.QueryWrapperFilter;
-import org.apache.lucene.search.TermQuery;
 import org.hibernate.search.annotations.Factory;
 import org.hibernate.search.annotations.Key;
 import org.hibernate.search.filter.FilterKey;
 import org.hibernate.search.filter.StandardFilterKey;
 
+/**
+ * Creates the filter for {@link LuceneQuery#include(String, Object[])} and
+ * {@link LuceneQuery#exclude(String, Object[])}. <br>
+ * <br>
+ * The filter is combined from one filter per include and exclude clause, e.g. one for the
+ * required concept classes and one for not retired concepts. These filters are shared by all
+ * queries and cache their bit sets per index segment, so a clause is only evaluated again for
+ * segments that were added or changed since it was last used, whatever other clauses it is
+ * combined with.
+ */
 public class TermsFilterFactory {
 	
+	// bounds the number of clause filters that are kept, they are cheap to build again
+	private static final int MAX_CACHED_CLAUSES = 500;
+	
+	// the least recently used clause filters are dropped first, keeping those of common searches
+	private static final Map<Object, Filter> clauseFilters = new LinkedHashMap<Object, Filter>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Filter> eldest) {
+			return size() > MAX_CACHED_CLAUSES;
+		}
+	};
+	
 	private Set<Set<Term>> includeTerms = new HashSet<Set<Term>>();
 	
 	private Set<Term> excludeTerms = new HashSet<Term>();
@@ -49,24 +74,36 @@ public class TermsFilterFactory {
 	
 	@Factory
 	public Filter getFilter() {
-		BooleanQuery query = new BooleanQuery();
+		BooleanFilter filter = new BooleanFilter();
 		
 		for (Set<Term> terms : includeTerms) {
-			BooleanQuery subquery = new BooleanQuery();
-			for (Term term : terms) {
-				subquery.add(new TermQuery(term), Occur.SHOULD);
-			}
-			query.add(subquery, Occur.MUST);
-		}
-		
-		if (includeTerms.isEmpty()) {
-			query.add(new MatchAllDocsQuery(), Occur.MUST);
+			filter.add(getClauseFilter(terms), Occur.MUST);
 		}
 		
 		for (Term term : excludeTerms) {
-			query.add(new TermQuery(term), Occur.MUST_NOT);
+			filter.add(getClauseFilter(term), Occur.MUST_NOT);
 		}
 		
-		return new CachingWrapperFilter(new QueryWrapperFilter(query));
+		return filter;
+	}
+	
+	/**
+	 * @param terms a term or a set of terms any of which must match
+	 * @return the shared filter for the terms
+	 */
+	@SuppressWarnings("unchecked")
+	private static Filter getClauseFilter(Object terms) {
+		synchronized (clauseFilters) {
+			Filter filter = clauseFilters.get(terms);
+			if (filter == null) {
+				if (terms instanceof Term) {
+					filter = new CachingWrapperFilter(new TermsFilter((Term) terms));
+				} else {
+					filter = new CachingWrapperFilter(new TermsFilter(new ArrayList<Term>((Set<Term>) terms)));
+				}
+				clauseFilters.put(terms, filter);
+			}
+			return filter;
+		}
 	}
 }
@@ -0,0 +1,42 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.handler;
+
+import java.util.Date;
+
+import org.openmrs.User;
+import org.openmrs.annotation.Handler;
+import org.openmrs.aop.RequiredDataAdvice;
+import org.openmrs.attribute.AttributeType;
+import org.openmrs.customdatatype.CustomDatatypeUtil;
+
+/**
+ * This class deals with {@link AttributeType} objects when they are saved via a save* method in an
+ * Openmrs Service. This handler is automatically called by the {@link RequiredDataAdvice} AOP
+ * class. <br>
+ * It clears the datatypes and handlers cached by {@link CustomDatatypeUtil}, so that the ones
+ * configured for the previous version of the attribute type do not linger.
+ *
+ * @see RequiredDataHandler
+ * @see SaveHandler
+ * @see AttributeType
+ * @since 2.1.0
+ */
+@Handler(supports = AttributeType.class)
+public class AttributeTypeSaveHandler implements SaveHandler<AttributeType<?>> {
+	
+	/**
+	 * @see org.openmrs.api.handler.RequiredDataHandler#handle(org.openmrs.OpenmrsObject,
+	 *      org.openmrs.User, java.util.Date, java.lang.String)
+	 */
+	public void handle(AttributeType<?> attributeType, User currentUser, Date currentDate, String other) {
+		CustomDatatypeUtil.clearCache();
+	}
+}
@@ -40,6 +40,7 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.EventListeners;
 import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.GlobalPropertyUsage;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.AdministrationDAO;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
@@ -146,6 +147,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 			return null;
 		}
 		
+		GlobalPropertyUsage.recordRead(propertyName);
 		return dao.getGlobalProperty(propertyName);
 	}
 	
@@ -167,6 +169,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	@Transactional(readOnly = true)
 	public GlobalProperty getGlobalPropertyObject(String propertyName) {
+		GlobalPropertyUsage.recordRead(propertyName);
 		return dao.getGlobalPropertyObject(propertyName);
 	}
 	
@@ -202,6 +205,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	@Transactional(readOnly = true)
 	public List<GlobalProperty> getAllGlobalProperties() throws APIException {
+		GlobalPropertyUsage.recordPrefixRead("");
 		return dao.getAllGlobalProperties();
 	}
 	
@@ -210,6 +214,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	@Transactional(readOnly = true)
 	public List<GlobalProperty> getGlobalPropertiesByPrefix(String prefix) {
+		GlobalPropertyUsage.recordPrefixRead(prefix);
 		return dao.getGlobalPropertiesByPrefix(prefix);
 	}
 	
@@ -218,6 +223,7 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	@Transactional(readOnly = true)
 	public List<GlobalProperty> getGlobalPropertiesBySuffix(String suffix) {
+		GlobalPropertyUsage.recordPrefixRead("");
 		return dao.getGlobalPropertiesBySuffix(suffix);
 	}
 	
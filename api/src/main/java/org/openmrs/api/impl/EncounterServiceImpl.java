@@ -42,6 +42,7 @@ import org.openmrs.api.OrderService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.api.handler.EncounterVisitHandler;
+import org.openmrs.collection.IntListMultimap;
 import org.openmrs.parameter.EncounterSearchCriteria;
 import org.openmrs.parameter.EncounterSearchCriteriaBuilder;
 import org.openmrs.util.HandlerUtil;
@@ -558,6 +559,15 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 		return dao.getAllEncounters(patients);
 	}
 	
+	/**
+	 * @see org.openmrs.api.EncounterService#getAllEncountersByPatientId(org.openmrs.Cohort)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public IntListMultimap<Encounter> getAllEncountersByPatientId(Cohort patients) {
+		return dao.getAllEncountersByPatientId(patients);
+	}
+	
 	/**
 	 * @see org.openmrs.api.EncounterService#getEncounters(java.lang.String, java.lang.Integer,
 	 *      java.lang.Integer, boolean)
@@ -32,6 +32,7 @@ import org.openmrs.FieldType;
 import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
+import org.openmrs.FormStructure;
 import org.openmrs.aop.RequiredDataAdvice;
 import org.openmrs.api.APIException;
 import org.openmrs.api.FormService;
@@ -206,6 +207,15 @@ public class FormServiceImpl extends BaseOpenmrsService implements FormService {
 		return dao.getFormField(form, concept, ignoreFormFields, force);
 	}
 	
+	/**
+	 * @see org.openmrs.api.FormService#getFormStructure(org.openmrs.Form)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public FormStructure getFormStructure(Form form) throws APIException {
+		return dao.getFormStructure(form);
+	}
+	
 	/**
 	 * @see org.openmrs.api.FormService#getFieldByUuid(java.lang.String)
 	 */
@@ -193,7 +193,7 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 				Context.evictFromSession(obs);
 				obs = Context.getObsService().getObs(obs.getObsId());
 				//delete the previous file from the appdata/complex_obs folder
-				if (newObs.hasPreviousVersion() && newObs.getPreviousVersion().isComplex()) {
+				if (newObs.hasPreviousVersion() && newObs.getPreviousVersion().isComplex() && !isComplexDataShared(obs)) {
 					File previousFile = new AbstractHandler().getComplexDataFile(obs);
 					previousFile.delete();
 				}
@@ -447,6 +447,9 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		if (obs.isComplex()) {
 			ComplexObsHandler handler = getHandler(obs);
 			if (null != handler) {
+				if (isComplexDataShared(obs)) {
+					return true;
+				}
 				return handler.purgeComplexData(obs);
 			}
 		}
@@ -454,6 +457,21 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return true;
 	}
 	
+	/**
+	 * Identical content is stored once, so other obs, e.g. the new version of an edited obs, may
+	 * still refer to the complex data of an obs
+	 * 
+	 * @return true if another obs refers to the same complex data as the given obs
+	 */
+	private boolean isComplexDataShared(Obs obs) {
+		if (obs.getValueComplex() == null) {
+			return false;
+		}
+		String[] names = obs.getValueComplex().split("\\|");
+		String name = names.length < 2 ? names[0] : names[names.length - 1];
+		return dao.getComplexObsCount(name) > 1;
+	}
+	
 	/**
 	 * @see org.openmrs.api.ObsService#getHandler(org.openmrs.Obs)
 	 */
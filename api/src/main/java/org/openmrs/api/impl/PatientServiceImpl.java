@@ -13,9 +13,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -25,13 +27,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
-import org.openmrs.Encounter;
 import org.openmrs.Location;
 import org.openmrs.Obs;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
+import org.openmrs.PatientIdentifierType.UniquenessBehavior;
 import org.openmrs.PatientProgram;
 import org.openmrs.Person;
 import org.openmrs.PersonAddress;
@@ -39,27 +41,24 @@ import org.openmrs.PersonAttribute;
 import org.openmrs.PersonName;
 import org.openmrs.Relationship;
 import org.openmrs.User;
-import org.openmrs.Visit;
 import org.openmrs.api.APIException;
 import org.openmrs.api.BlankIdentifierException;
 import org.openmrs.api.DuplicateIdentifierException;
-import org.openmrs.api.EncounterService;
+import org.openmrs.api.IdentifierNotUniqueException;
 import org.openmrs.api.InsufficientIdentifiersException;
 import org.openmrs.api.MissingRequiredIdentifierException;
-import org.openmrs.api.ObsService;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.PatientIdentifierTypeLockedException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.PersonService;
 import org.openmrs.api.ProgramWorkflowService;
 import org.openmrs.api.UserService;
-import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
 import org.openmrs.api.db.PatientDAO;
-import org.openmrs.parameter.EncounterSearchCriteria;
-import org.openmrs.parameter.EncounterSearchCriteriaBuilder;
 import org.openmrs.patient.IdentifierValidator;
 import org.openmrs.patient.impl.LuhnIdentifierValidator;
+import org.openmrs.person.PatientMergeProgress;
 import org.openmrs.person.PersonMergeLog;
 import org.openmrs.person.PersonMergeLogData;
 import org.openmrs.serialization.SerializationException;
@@ -67,7 +66,11 @@ import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.PatientIdentifierValidator;
+import org.openmrs.validator.ValidateUtil;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import org.openmrs.Allergy;
 import org.openmrs.Allergies;
@@ -116,14 +119,7 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 * @see org.openmrs.api.PatientService#savePatient(org.openmrs.Patient)
 	 */
 	public Patient savePatient(Patient patient) throws APIException {
-		if (patient.getPatientId() == null) {
-			Context.requirePrivilege(PrivilegeConstants.ADD_PATIENTS);
-		} else {
-			Context.requirePrivilege(PrivilegeConstants.EDIT_PATIENTS);
-		}
-		if (patient.isVoided()) {
-			Context.requirePrivilege(PrivilegeConstants.DELETE_PATIENTS);
-		}
+		requireSavePrivileges(patient);
 		
 		if (!patient.isVoided() && patient.getIdentifiers().size() == 1) {
 			patient.getPatientIdentifier().setPreferred(true);
@@ -133,6 +129,61 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 			checkPatientIdentifiers(patient);
 		}
 		
+		return setPreferredAndSave(patient);
+	}
+	
+	/**
+	 * @see org.openmrs.api.PatientService#savePatients(java.util.List)
+	 */
+	public List<Patient> savePatients(List<Patient> patients) throws APIException {
+		List<Patient> activePatients = new ArrayList<Patient>();
+		List<PatientIdentifier> activeIdentifiers = new ArrayList<PatientIdentifier>();
+		for (Patient patient : patients) {
+			requireSavePrivileges(patient);
+			if (!patient.isVoided()) {
+				activePatients.add(patient);
+				activeIdentifiers.addAll(patient.getActiveIdentifiers());
+			}
+		}
+		
+		checkPatientIdentifiers(activePatients);
+		
+		List<Patient> savedPatients = new ArrayList<Patient>(patients.size());
+		// the identifiers were all checked above, the validators must not query each of them again
+		PatientIdentifierValidator.setUniquenessChecked(activeIdentifiers);
+		try {
+			for (Patient patient : patients) {
+				// savePatient(Patient) is validated by the RequiredDataAdvice, the patients in a list are not
+				ValidateUtil.validate(patient);
+				
+				if (!patient.isVoided() && patient.getIdentifiers().size() == 1) {
+					patient.getPatientIdentifier().setPreferred(true);
+				}
+				savedPatients.add(setPreferredAndSave(patient));
+			}
+		}
+		finally {
+			PatientIdentifierValidator.clearUniquenessChecked();
+		}
+		return savedPatients;
+	}
+	
+	private void requireSavePrivileges(Patient patient) {
+		if (patient.getPatientId() == null) {
+			Context.requirePrivilege(PrivilegeConstants.ADD_PATIENTS);
+		} else {
+			Context.requirePrivilege(PrivilegeConstants.EDIT_PATIENTS);
+		}
+		if (patient.isVoided()) {
+			Context.requirePrivilege(PrivilegeConstants.DELETE_PATIENTS);
+		}
+	}
+	
+	/**
+	 * Makes sure the patient has a preferred identifier, name and address if it has any that are
+	 * not voided, and saves it
+	 */
+	private Patient setPreferredAndSave(Patient patient) {
 		PatientIdentifier preferredIdentifier = null;
 		PatientIdentifier possiblePreferredId = patient.getPatientIdentifier();
 		if (possiblePreferredId != null && possiblePreferredId.isPreferred() && !possiblePreferredId.isVoided()) {
@@ -256,6 +307,174 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 */
 	@Transactional(readOnly = true)
 	public void checkPatientIdentifiers(Patient patient) throws PatientIdentifierException {
+		checkPatientIdentifiers(patient, Context.getPatientService().getPatientIdentifierTypes(null, null, true, null));
+	}
+	
+	/**
+	 * @see org.openmrs.api.PatientService#checkPatientIdentifiers(java.util.List)
+	 */
+	@Transactional(readOnly = true)
+	public void checkPatientIdentifiers(List<Patient> patients) throws PatientIdentifierException {
+		List<PatientIdentifier> identifiers = new ArrayList<PatientIdentifier>();
+		for (Patient patient : patients) {
+			if (!patient.isVoided()) {
+				identifiers.addAll(patient.getActiveIdentifiers());
+			}
+		}
+		
+		// check each patient in memory, the uniqueness of all identifiers is checked below
+		List<PatientIdentifierType> requiredTypes = Context.getPatientService().getPatientIdentifierTypes(null, null, true,
+		    null);
+		PatientIdentifierValidator.setUniquenessChecked(identifiers);
+		try {
+			for (Patient patient : patients) {
+				if (!patient.isVoided()) {
+					checkPatientIdentifiers(patient, requiredTypes);
+				}
+			}
+		}
+		finally {
+			PatientIdentifierValidator.clearUniquenessChecked();
+		}
+		
+		Map<PatientIdentifierType, List<PatientIdentifier>> identifiersByType = new LinkedHashMap<PatientIdentifierType, List<PatientIdentifier>>();
+		Map<String, List<PatientIdentifier>> identifiersUsed = new HashMap<String, List<PatientIdentifier>>();
+		for (PatientIdentifier pi : identifiers) {
+			PatientIdentifierType identifierType = pi.getIdentifierType();
+			if (identifierType.getUniquenessBehavior() == UniquenessBehavior.NON_UNIQUE) {
+				continue;
+			}
+			
+			// check the patients against each other
+			String key = identifierType.getUuid() + " " + pi.getIdentifier();
+			List<PatientIdentifier> sameIdentifier = identifiersUsed.get(key);
+			if (sameIdentifier == null) {
+				sameIdentifier = new ArrayList<PatientIdentifier>();
+				identifiersUsed.put(key, sameIdentifier);
+			}
+			for (PatientIdentifier other : sameIdentifier) {
+				if (other.getPatient() != pi.getPatient() && isSameLocation(pi, other)) {
+					throw newIdentifierNotUniqueException(pi);
+				}
+			}
+			sameIdentifier.add(pi);
+			
+			List<PatientIdentifier> ofType = identifiersByType.get(identifierType);
+			if (ofType == null) {
+				ofType = new ArrayList<PatientIdentifier>();
+				identifiersByType.put(identifierType, ofType);
+			}
+			ofType.add(pi);
+		}
+		
+		// check the patients against the database, one query per type
+		for (Map.Entry<PatientIdentifierType, List<PatientIdentifier>> entry : identifiersByType.entrySet()) {
+			Set<String> values = new HashSet<String>();
+			for (PatientIdentifier pi : entry.getValue()) {
+				values.add(pi.getIdentifier());
+			}
+			
+			Set<String> foldedValues = new HashSet<String>();
+			for (String value : values) {
+				foldedValues.add(foldIdentifier(value));
+			}
+			
+			// the database compares the values with its collation, e.g. case insensitively on mysql,
+			// so it may return rows for values that differ from them
+			Map<String, List<Object[]>> usagesByIdentifier = new HashMap<String, List<Object[]>>();
+			Map<String, Set<String>> usedIdentifiersByFolded = new HashMap<String, Set<String>>();
+			boolean unmatchedUsage = false;
+			for (Object[] usage : dao.getPatientIdentifierUsages(entry.getKey(), values)) {
+				String identifier = (String) usage[0];
+				List<Object[]> usages = usagesByIdentifier.get(identifier);
+				if (usages == null) {
+					usages = new ArrayList<Object[]>();
+					usagesByIdentifier.put(identifier, usages);
+				}
+				usages.add(usage);
+				
+				String folded = foldIdentifier(identifier);
+				Set<String> usedIdentifiers = usedIdentifiersByFolded.get(folded);
+				if (usedIdentifiers == null) {
+					usedIdentifiers = new HashSet<String>();
+					usedIdentifiersByFolded.put(folded, usedIdentifiers);
+				}
+				usedIdentifiers.add(identifier);
+				if (!values.contains(identifier) && !foldedValues.contains(folded)) {
+					unmatchedUsage = true;
+				}
+			}
+			
+			for (PatientIdentifier pi : entry.getValue()) {
+				List<Object[]> usages = usagesByIdentifier.get(pi.getIdentifier());
+				if (usages != null) {
+					for (Object[] usage : usages) {
+						if (isUsageByAnotherPatient(pi, (Integer) usage[1], (Integer) usage[2])) {
+							throw newIdentifierNotUniqueException(pi);
+						}
+					}
+				}
+				
+				// a row that the database returned for a value other than this one may still be a
+				// match for it, which the database decides like it does for a single patient
+				Set<String> similarIdentifiers = usedIdentifiersByFolded.get(foldIdentifier(pi.getIdentifier()));
+				boolean similarUsage = similarIdentifiers != null
+				        && (similarIdentifiers.size() > 1 || !similarIdentifiers.contains(pi.getIdentifier()));
+				if ((unmatchedUsage || similarUsage) && dao.isIdentifierInUseByAnotherPatient(pi)) {
+					throw newIdentifierNotUniqueException(pi);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Folds an identifier the way case and trailing space insensitive collations compare it
+	 */
+	private String foldIdentifier(String identifier) {
+		return StringUtils.stripEnd(identifier, " ").toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * Matches {@link PatientDAO#isIdentifierInUseByAnotherPatient(PatientIdentifier)}
+	 */
+	private boolean isUsageByAnotherPatient(PatientIdentifier pi, Integer patientId, Integer locationId) {
+		if (pi.getPatient() != null && pi.getPatient().getPatientId() != null
+		        && pi.getPatient().getPatientId().equals(patientId)) {
+			return false;
+		}
+		if (pi.getLocation() != null && pi.getIdentifierType().getUniquenessBehavior() == UniquenessBehavior.LOCATION) {
+			return pi.getLocation().getLocationId().equals(locationId);
+		}
+		return true;
+	}
+	
+	/**
+	 * Whether two identifiers with the same value and type clash, identifiers of types that are
+	 * unique per location only clash at the same location, or when either has no location like
+	 * {@link PatientDAO#isIdentifierInUseByAnotherPatient(PatientIdentifier)} checks one without a
+	 * location against all others
+	 */
+	private boolean isSameLocation(PatientIdentifier pi, PatientIdentifier other) {
+		if (pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.LOCATION || pi.getLocation() == null
+		        || other.getLocation() == null) {
+			return true;
+		}
+		return pi.getLocation().getLocationId().equals(other.getLocation().getLocationId());
+	}
+	
+	private IdentifierNotUniqueException newIdentifierNotUniqueException(PatientIdentifier pi) {
+		return new IdentifierNotUniqueException(Context.getMessageSourceService().getMessage(
+		    "PatientIdentifier.error.notUniqueWithParameter", new Object[] { pi.getIdentifier() }, Context.getLocale()), pi);
+	}
+	
+	/**
+	 * Checks the identifiers of one patient
+	 *
+	 * @param patient the patient to check
+	 * @param allRequiredTypes the identifier types every patient must have
+	 */
+	private void checkPatientIdentifiers(Patient patient, List<PatientIdentifierType> allRequiredTypes)
+	        throws PatientIdentifierException {
 		// check patient has at least one identifier
 		if (!patient.isVoided() && patient.getActiveIdentifiers().size() < 1) {
 			throw new InsufficientIdentifiersException("At least one nonvoided Patient Identifier is required");
@@ -264,10 +483,9 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		List<PatientIdentifier> identifiers = new Vector<PatientIdentifier>();
 		identifiers.addAll(patient.getIdentifiers());
 		List<String> identifiersUsed = new Vector<String>();
-		List<PatientIdentifierType> requiredTypes = Context.getPatientService().getPatientIdentifierTypes(null, null, true,
-		    null);
-		if (requiredTypes == null) {
-			requiredTypes = new ArrayList<PatientIdentifierType>();
+		List<PatientIdentifierType> requiredTypes = new ArrayList<PatientIdentifierType>();
+		if (allRequiredTypes != null) {
+			requiredTypes.addAll(allRequiredTypes);
 		}
 		List<PatientIdentifierType> foundRequiredTypes = new ArrayList<PatientIdentifierType>();
 		
@@ -543,6 +761,19 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 * @see org.openmrs.api.PatientService#mergePatients(org.openmrs.Patient, org.openmrs.Patient)
 	 */
 	public void mergePatients(Patient preferred, Patient notPreferred) throws APIException, SerializationException {
+		mergePatient(preferred, notPreferred, null);
+	}
+	
+	/**
+	 * Merges one non preferred patient into the preferred one, see
+	 * {@link #mergePatients(Patient, Patient)}. Visits, encounters with their observations and
+	 * orders and independent observations are re-parented with set based updates instead of being
+	 * saved one by one.
+	 * 
+	 * @param progress the progress to update, can be null
+	 */
+	private void mergePatient(Patient preferred, Patient notPreferred, PatientMergeProgress progress)
+	        throws APIException, SerializationException {
 		log.debug("Merging patients: (preferred)" + preferred.getPatientId() + ", (notPreferred) "
 		        + notPreferred.getPatientId());
 		if (preferred.getPatientId().equals(notPreferred.getPatientId())) {
@@ -556,11 +787,14 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 			}
 		}
 		PersonMergeLogData mergedData = new PersonMergeLogData();
-		mergeVisits(preferred, notPreferred, mergedData);
-		mergeEncounters(preferred, notPreferred, mergedData);
+		mergeVisits(preferred, notPreferred, mergedData, progress);
+		mergeEncounters(preferred, notPreferred, mergedData, progress);
+		startMergeStep(progress, "programs");
 		mergeProgramEnrolments(preferred, notPreferred, mergedData);
+		startMergeStep(progress, "relationships");
 		mergeRelationships(preferred, notPreferred, mergedData);
-		mergeObservationsNotContainedInEncounters(preferred, notPreferred, mergedData);
+		mergeObservationsNotContainedInEncounters(preferred, notPreferred, mergedData, progress);
+		startMergeStep(progress, "demographics");
 		mergeIdentifiers(preferred, notPreferred, mergedData);
 		
 		mergeNames(preferred, notPreferred, mergedData);
@@ -591,6 +825,16 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		personMergeLog.setLoser(notPreferred);
 		personMergeLog.setPersonMergeLogData(mergedData);
 		Context.getPersonService().savePersonMergeLog(personMergeLog);
+		
+		if (progress != null) {
+			progress.patientMerged();
+		}
+	}
+	
+	private void startMergeStep(PatientMergeProgress progress, String step) {
+		if (progress != null) {
+			progress.startStep(step);
+		}
 	}
 	
 	private void mergeProgramEnrolments(Patient preferred, Patient notPreferred, PersonMergeLogData mergedData) {
@@ -607,36 +851,37 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		}
 	}
 	
-	private void mergeVisits(Patient preferred, Patient notPreferred, PersonMergeLogData mergedData) {
+	private void mergeVisits(Patient preferred, Patient notPreferred, PersonMergeLogData mergedData,
+	        PatientMergeProgress progress) {
 		// move all visits, including voided ones (encounters will be handled below)
 		//TODO: this should be a copy, not a move
-		
-		VisitService visitService = Context.getVisitService();
-		
-		for (Visit visit : visitService.getVisitsByPatient(notPreferred, true, true)) {
-			if (log.isDebugEnabled()) {
-				log.debug("Merging visit " + visit.getVisitId() + " to " + preferred.getPatientId());
-			}
-			visit.setPatient(preferred);
-			Visit persisted = visitService.saveVisit(visit);
-			mergedData.addMovedVisit(persisted.getUuid());
+		startMergeStep(progress, "visits");
+		List<String> movedVisits = dao.moveVisits(notPreferred, preferred);
+		if (log.isDebugEnabled()) {
+			log.debug("Merged " + movedVisits.size() + " visits to " + preferred.getPatientId());
+		}
+		for (String uuid : movedVisits) {
+			mergedData.addMovedVisit(uuid);
+		}
+		if (progress != null) {
+			progress.addMovedRows(movedVisits.size());
 		}
 	}
 	
-	private void mergeEncounters(Patient preferred, Patient notPreferred, PersonMergeLogData mergedData) {
-		// change all encounters. This will cascade to obs and orders contained in those encounters
+	private void mergeEncounters(Patient preferred, Patient notPreferred, PersonMergeLogData mergedData,
+	        PatientMergeProgress progress) {
+		// move all encounters, including voided ones, together with their obs and orders
 		// TODO: this should be a copy, not a move
-		EncounterService es = Context.getEncounterService();
-
-		EncounterSearchCriteria notPreferredPatientEncounterSearchCriteria = new EncounterSearchCriteriaBuilder()
-				.setIncludeVoided(true)
-				.setPatient(notPreferred)
-				.createEncounterSearchCriteria();
-		for (Encounter e : es.getEncounters(notPreferredPatientEncounterSearchCriteria)) {
-			e.setPatient(preferred);
-			log.debug("Merging encounter " + e.getEncounterId() + " to " + preferred.getPatientId());
-			Encounter persisted = es.saveEncounter(e);
-			mergedData.addMovedEncounter(persisted.getUuid());
+		startMergeStep(progress, "encounters");
+		List<String> movedEncounters = dao.moveEncounters(notPreferred, preferred);
+		if (log.isDebugEnabled()) {
+			log.debug("Merged " + movedEncounters.size() + " encounters to " + preferred.getPatientId());
+		}
+		for (String uuid : movedEncounters) {
+			mergedData.addMovedEncounter(uuid);
+		}
+		if (progress != null) {
+			progress.addMovedRows(movedEncounters.size());
 		}
 	}
 	
@@ -689,16 +934,19 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	}
 	
 	private void mergeObservationsNotContainedInEncounters(Patient preferred, Patient notPreferred,
-	        PersonMergeLogData mergedData) {
+	        PersonMergeLogData mergedData, PatientMergeProgress progress) {
 		// move all obs that weren't contained in encounters
 		// TODO: this should be a copy, not a move
-		ObsService obsService = Context.getObsService();
-		for (Obs obs : obsService.getObservationsByPerson(notPreferred)) {
-			if (obs.getEncounter() == null && !obs.isVoided()) {
-				obs.setPerson(preferred);
-				Obs persisted = obsService.saveObs(obs, "Merged from patient #" + notPreferred.getPatientId());
-				mergedData.addMovedIndependentObservation(persisted.getUuid());
-			}
+		startMergeStep(progress, "observations");
+		List<String> movedObs = dao.moveIndependentObs(notPreferred, preferred);
+		if (log.isDebugEnabled()) {
+			log.debug("Merged " + movedObs.size() + " independent observations to " + preferred.getPatientId());
+		}
+		for (String uuid : movedObs) {
+			mergedData.addMovedIndependentObservation(uuid);
+		}
+		if (progress != null) {
+			progress.addMovedRows(movedObs.size());
 		}
 	}
 	
@@ -1330,6 +1578,70 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientService#mergePatients(org.openmrs.Patient, java.util.List,
+	 *      org.openmrs.person.PatientMergeProgress)
+	 */
+	@Override
+	public void mergePatients(Patient preferred, List<Patient> notPreferred, PatientMergeProgress progress)
+	        throws APIException, SerializationException {
+		if (progress != null) {
+			rollBackProgressWithTransaction(progress);
+		}
+		// the patients may come from another thread's session, so work with the ones of this session
+		Patient winner = dao.getPatient(preferred.getPatientId());
+		for (Patient nonPreferred : notPreferred) {
+			mergePatient(winner, dao.getPatient(nonPreferred.getPatientId()), progress);
+		}
+	}
+	
+	/**
+	 * Takes back what the merge counted in the given progress if the current transaction is rolled
+	 * back, since nothing it merged is kept then
+	 *
+	 * @param progress the progress of the merge
+	 */
+	private void rollBackProgressWithTransaction(final PatientMergeProgress progress) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			final int mergedPatientCount = progress.getMergedPatientCount();
+			final long movedRowCount = progress.getMovedRowCount();
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						progress.rollBackTo(mergedPatientCount, movedRowCount);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.api.PatientService#mergePatientsAsync(org.openmrs.Patient, java.util.List)
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public PatientMergeProgress mergePatientsAsync(final Patient preferred, List<Patient> notPreferred) {
+		final List<Patient> patients = new ArrayList<Patient>(notPreferred);
+		final PatientMergeProgress progress = new PatientMergeProgress(patients.size());
+		Daemon.runInNewThreadAsAuthenticatedUser(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					Context.getPatientService().mergePatients(preferred, patients, progress);
+					progress.finish(null);
+				}
+				catch (Throwable t) {
+					log.error("Unable to merge patients into patient #" + preferred.getPatientId(), t);
+					progress.finish(t);
+				}
+			}
+		}, "Merge patient #" + preferred.getPatientId());
+		return progress;
+	}
+	
 	/**
 	 * @see org.openmrs.api.PatientService#savePatientIdentifier(org.openmrs.PatientIdentifier)
 	 */
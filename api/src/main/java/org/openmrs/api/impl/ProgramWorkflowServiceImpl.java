@@ -23,6 +23,7 @@ import org.openmrs.ConceptAnswer;
 import org.openmrs.ConceptStateConversion;
 import org.openmrs.Patient;
 import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
 import org.openmrs.PatientState;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
@@ -278,6 +279,35 @@ public class ProgramWorkflowServiceImpl extends BaseOpenmrsService implements Pr
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.api.ProgramWorkflowService#getPatientProgramEnrollments(Cohort, Collection)
+	 */
+	@Transactional(readOnly = true)
+	public List<PatientProgramEnrollment> getPatientProgramEnrollments(Cohort cohort, Collection<Program> programs) {
+		final List<PatientProgramEnrollment> ret = new ArrayList<PatientProgramEnrollment>();
+		processPatientProgramEnrollments(cohort, programs, new PatientProgramEnrollment.Callback() {
+			
+			@Override
+			public void handle(PatientProgramEnrollment enrollment) {
+				ret.add(enrollment);
+			}
+		});
+		return ret;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ProgramWorkflowService#processPatientProgramEnrollments(Cohort, Collection,
+	 *      org.openmrs.PatientProgramEnrollment.Callback)
+	 */
+	@Transactional(readOnly = true)
+	public void processPatientProgramEnrollments(Cohort cohort, Collection<Program> programs,
+	        PatientProgramEnrollment.Callback callback) {
+		if (cohort != null && cohort.isEmpty()) {
+			return;
+		}
+		dao.processPatientProgramEnrollments(cohort == null ? null : cohort.getMemberIds(), programs, callback);
+	}
+	
 	/**
 	 * @see org.openmrs.api.ProgramWorkflowService#purgePatientProgram(org.openmrs.PatientProgram)
 	 */
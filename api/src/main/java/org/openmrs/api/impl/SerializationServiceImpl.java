@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -38,6 +39,10 @@ public class SerializationServiceImpl extends BaseOpenmrsService implements Seri
 	//***** Properties (set by spring)
 	private static Map<Class<? extends OpenmrsSerializer>, OpenmrsSerializer> serializerMap;
 	
+	// default serializers that are not registered, created once since building one can be expensive
+	private static final Map<Class<?>, OpenmrsSerializer> unregisteredSerializers = new ConcurrentHashMap<Class<?>, OpenmrsSerializer>(
+	        4);
+	
 	//***** Service method implementations *****
 	
 	/**
@@ -61,7 +66,15 @@ public class SerializationServiceImpl extends BaseOpenmrsService implements Seri
 			try {
 				Class<?> clazz = Context.loadClass(prop);
 				if (clazz != null && OpenmrsSerializer.class.isAssignableFrom(clazz)) {
-					return (OpenmrsSerializer) clazz.newInstance();
+					OpenmrsSerializer serializer = serializerMap.get(clazz);
+					if (serializer == null) {
+						serializer = unregisteredSerializers.get(clazz);
+					}
+					if (serializer == null) {
+						serializer = (OpenmrsSerializer) clazz.newInstance();
+						unregisteredSerializers.put(clazz, serializer);
+					}
+					return serializer;
 				}
 			}
 			catch (Exception e) {
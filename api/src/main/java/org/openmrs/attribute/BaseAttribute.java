@@ -10,6 +10,7 @@
 package org.openmrs.attribute;
 
 import org.openmrs.BaseOpenmrsData;
+import org.openmrs.customdatatype.CustomDatatype;
 import org.openmrs.customdatatype.CustomDatatypeUtil;
 import org.openmrs.customdatatype.Customizable;
 import org.openmrs.customdatatype.InvalidCustomValueException;
@@ -108,6 +109,29 @@ public abstract class BaseAttribute<AT extends AttributeType, OwningType extends
 		return value;
 	}
 	
+	/**
+	 * @return true if this attribute holds its typed value, i.e. {@link #getValue()} does not need
+	 *         to convert the value reference
+	 * @since 2.1.0
+	 */
+	public boolean isValueHydrated() {
+		return value != null;
+	}
+	
+	/**
+	 * Converts the value reference to the typed value with the given datatype, which must be the
+	 * datatype of the attribute type
+	 * 
+	 * @param datatype the datatype to convert the value reference with
+	 * @see CustomDatatypeUtil#hydrateValues(java.util.Collection)
+	 * @since 2.1.0
+	 */
+	public void hydrateValue(CustomDatatype<?> datatype) throws InvalidCustomValueException {
+		if (value == null) {
+			value = datatype.fromReferenceString(getValueReference());
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.attribute.Attribute#setValue(java.lang.Object)
 	 */
@@ -0,0 +1,61 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+/**
+ * The hashing and sizing shared by the int keyed open addressing collections of this package. Slots
+ * are probed linearly, a table is at most half full and its length is a power of two.
+ */
+final class IntHashing {
+	
+	/**
+	 * The key that marks a free slot, a collection keeps track of whether it holds this key itself
+	 * separately
+	 */
+	static final int FREE = 0;
+	
+	static final int MIN_CAPACITY = 8;
+	
+	static final int MAX_CAPACITY = 1 << 30;
+	
+	private IntHashing() {
+	}
+	
+	/**
+	 * Spreads sequential ids, which is what most keys are, over the whole table
+	 */
+	static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * @param expectedSize the number of keys to make room for
+	 * @return the table length that holds that many keys without growing
+	 */
+	static int tableSizeFor(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("The expected size must not be negative: " + expectedSize);
+		}
+		long wanted = Math.max(MIN_CAPACITY, 2L * expectedSize);
+		if (wanted >= MAX_CAPACITY) {
+			return MAX_CAPACITY;
+		}
+		return Integer.highestOneBit((int) wanted - 1) << 1;
+	}
+	
+	/**
+	 * @return true if a key whose home slot is home may be moved from slot from to the free slot
+	 *         to, i.e. if to lies cyclically between home and from
+	 */
+	static boolean canShift(int home, int to, int from) {
+		return to <= from ? home <= to || home > from : home <= to && home > from;
+	}
+}
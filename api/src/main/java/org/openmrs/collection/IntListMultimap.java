@@ -0,0 +1,117 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps int keys, e.g. patient ids, to lists of values, e.g. the encounters of each patient, without
+ * boxing the keys. The lists keep the values in the order they were added.
+ *
+ * @param <V> the type of the values
+ * @since 2.1.0
+ */
+public class IntListMultimap<V> {
+	
+	private final IntObjectMap<List<V>> lists;
+	
+	private int valueCount;
+	
+	public IntListMultimap() {
+		this(0);
+	}
+	
+	/**
+	 * @param expectedKeys the number of keys the multimap should hold without growing
+	 */
+	public IntListMultimap(int expectedKeys) {
+		lists = new IntObjectMap<List<V>>(expectedKeys);
+	}
+	
+	/**
+	 * Adds the value to the end of the list of the key
+	 *
+	 * @param key the key
+	 * @param value the value to add
+	 * @should add the values of a key in order
+	 */
+	public void put(int key, V value) {
+		List<V> list = lists.get(key);
+		if (list == null) {
+			list = new ArrayList<V>(4);
+			lists.put(key, list);
+		}
+		list.add(value);
+		valueCount++;
+	}
+	
+	/**
+	 * @param key the key
+	 * @return the values of the key, an empty list if there are none, it must not be changed
+	 * @should return an empty list for an unknown key
+	 */
+	public List<V> get(int key) {
+		List<V> list = lists.get(key);
+		return list == null ? Collections.<V> emptyList() : Collections.unmodifiableList(list);
+	}
+	
+	/**
+	 * @param key the key
+	 * @return true if the key has at least one value
+	 */
+	public boolean containsKey(int key) {
+		return lists.containsKey(key);
+	}
+	
+	/**
+	 * @param key the key to remove
+	 * @return the values the key had, an empty list if it had none
+	 */
+	public List<V> removeAll(int key) {
+		List<V> list = lists.remove(key);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		valueCount -= list.size();
+		return list;
+	}
+	
+	/**
+	 * @return the keys in no particular order
+	 */
+	public int[] keys() {
+		return lists.keys();
+	}
+	
+	/**
+	 * @return the number of keys
+	 */
+	public int keyCount() {
+		return lists.size();
+	}
+	
+	/**
+	 * @return the number of values of all keys
+	 */
+	public int size() {
+		return valueCount;
+	}
+	
+	public boolean isEmpty() {
+		return valueCount == 0;
+	}
+	
+	@Override
+	public String toString() {
+		return lists.toString();
+	}
+}
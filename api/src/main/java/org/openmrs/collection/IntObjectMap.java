@@ -0,0 +1,249 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from int keys, e.g. concept or patient ids, to objects that stores the keys in an open
+ * addressing table of primitive ints instead of boxing them and allocating an entry per mapping
+ * like a {@code Map<Integer, V>} does. <br>
+ * <br>
+ * Null values are not allowed, so {@link #get(int)} returning null means there is no mapping. Like
+ * the collections of java.util it is not thread safe, and its iteration order is undefined.
+ *
+ * @param <V> the type of the values
+ * @since 2.1.0
+ */
+public class IntObjectMap<V> {
+	
+	private int[] keys;
+	
+	private Object[] values;
+	
+	private int mask;
+	
+	private int size;
+	
+	// the value of IntHashing.FREE, which can't be stored in the table, or null
+	private V freeValue;
+	
+	public IntObjectMap() {
+		this(0);
+	}
+	
+	/**
+	 * @param expectedSize the number of mappings the map should hold without growing
+	 */
+	public IntObjectMap(int expectedSize) {
+		allocate(IntHashing.tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * @param key the key to look up
+	 * @return the value mapped to the key or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		if (key == IntHashing.FREE) {
+			return freeValue;
+		}
+		int slot = IntHashing.mix(key) & mask;
+		while (keys[slot] != IntHashing.FREE) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+	
+	/**
+	 * @param key the key to look up
+	 * @return true if a value is mapped to the key
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * @param key the key to map the value to
+	 * @param value the value, must not be null
+	 * @return the value that was mapped to the key before or null if there was none
+	 * @should replace the value of an existing key
+	 * @should fail for a null value
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null values are not supported, use remove instead");
+		}
+		if (key == IntHashing.FREE) {
+			V previous = freeValue;
+			freeValue = value;
+			if (previous == null) {
+				size++;
+			}
+			return previous;
+		}
+		int slot = IntHashing.mix(key) & mask;
+		while (keys[slot] != IntHashing.FREE) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length / 2) {
+			allocate(keys.length * 2);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param key the key to remove
+	 * @return the value that was mapped to the key or null if there was none
+	 * @should keep the other mappings with colliding hashes
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		if (key == IntHashing.FREE) {
+			V previous = freeValue;
+			if (previous != null) {
+				freeValue = null;
+				size--;
+			}
+			return previous;
+		}
+		int slot = IntHashing.mix(key) & mask;
+		while (keys[slot] != IntHashing.FREE) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				removeSlot(slot);
+				size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, IntHashing.FREE);
+		Arrays.fill(values, null);
+		freeValue = null;
+		size = 0;
+	}
+	
+	/**
+	 * @return the keys of the map in no particular order
+	 */
+	public int[] keys() {
+		int[] result = new int[size];
+		int i = 0;
+		if (freeValue != null) {
+			result[i++] = IntHashing.FREE;
+		}
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != IntHashing.FREE) {
+				result[i++] = keys[slot];
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return a new set of the keys of the map
+	 */
+	public IntSet keySet() {
+		IntSet result = new IntSet(size);
+		if (freeValue != null) {
+			result.add(IntHashing.FREE);
+		}
+		for (int key : keys) {
+			if (key != IntHashing.FREE) {
+				result.add(key);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return a new map of the boxed keys to the values, e.g. to pass to an api that takes a map
+	 * @should contain all mappings
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Integer, V> toMap() {
+		Map<Integer, V> result = new HashMap<Integer, V>(Math.max(16, size * 4 / 3 + 1));
+		if (freeValue != null) {
+			result.put(IntHashing.FREE, freeValue);
+		}
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != IntHashing.FREE) {
+				result.put(keys[slot], (V) values[slot]);
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+	
+	private void allocate(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		if (oldKeys != null) {
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != IntHashing.FREE) {
+					int slot = IntHashing.mix(oldKeys[i]) & mask;
+					while (keys[slot] != IntHashing.FREE) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+	}
+	
+	private void removeSlot(int slot) {
+		// shift the following mappings of the probe sequence back, so that lookups don't stop early
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (keys[next] != IntHashing.FREE) {
+			if (IntHashing.canShift(IntHashing.mix(keys[next]) & mask, free, next)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[free] = IntHashing.FREE;
+		values[free] = null;
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A set of int values, e.g. patient or concept ids, that stores them in an open addressing table of
+ * primitive ints instead of boxing each of them like a {@code Set<Integer>} does. It takes about a
+ * tenth of the memory of a {@link java.util.HashSet} or {@link TreeSet} of the same ids. <br>
+ * <br>
+ * Like the collections of java.util it is not thread safe, and its iteration order is undefined, use
+ * {@link #toSortedArray()} to get the values in order.
+ *
+ * @since 2.1.0
+ */
+public class IntSet {
+	
+	private int[] table;
+	
+	private int mask;
+	
+	private int size;
+	
+	// whether the set contains IntHashing.FREE, which can't be stored in the table
+	private boolean containsFree;
+	
+	public IntSet() {
+		this(0);
+	}
+	
+	/**
+	 * @param expectedSize the number of values the set should hold without growing
+	 */
+	public IntSet(int expectedSize) {
+		allocate(IntHashing.tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * @param values the values to add, must not contain null
+	 * @should contain the given values
+	 */
+	public IntSet(Collection<Integer> values) {
+		this(values.size());
+		for (Integer value : values) {
+			add(value);
+		}
+	}
+	
+	/**
+	 * @param value the value to add
+	 * @return true if the set did not already contain the value
+	 * @should add a value once
+	 * @should add zero
+	 */
+	public boolean add(int value) {
+		if (value == IntHashing.FREE) {
+			if (containsFree) {
+				return false;
+			}
+			containsFree = true;
+			size++;
+			return true;
+		}
+		int slot = IntHashing.mix(value) & mask;
+		while (table[slot] != IntHashing.FREE) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		if (++size > table.length / 2) {
+			allocate(table.length * 2);
+		}
+		return true;
+	}
+	
+	/**
+	 * @param value the value to look for
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(int value) {
+		if (value == IntHashing.FREE) {
+			return containsFree;
+		}
+		int slot = IntHashing.mix(value) & mask;
+		while (table[slot] != IntHashing.FREE) {
+			if (table[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param value the value to remove
+	 * @return true if the set contained the value
+	 * @should keep the other values with colliding hashes
+	 */
+	public boolean remove(int value) {
+		if (value == IntHashing.FREE) {
+			if (!containsFree) {
+				return false;
+			}
+			containsFree = false;
+			size--;
+			return true;
+		}
+		int slot = IntHashing.mix(value) & mask;
+		while (table[slot] != IntHashing.FREE) {
+			if (table[slot] == value) {
+				removeSlot(slot);
+				size--;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds all values of the given set
+	 *
+	 * @param other the set to add
+	 * @return true if this set changed
+	 */
+	public boolean addAll(IntSet other) {
+		int before = size;
+		if (other.containsFree) {
+			add(IntHashing.FREE);
+		}
+		for (int value : other.table) {
+			if (value != IntHashing.FREE) {
+				add(value);
+			}
+		}
+		return size != before;
+	}
+	
+	/**
+	 * Removes all values that the given set does not contain
+	 *
+	 * @param other the set to intersect with
+	 * @return true if this set changed
+	 * @should keep only the values of both sets
+	 */
+	public boolean retainAll(IntSet other) {
+		IntSet retained = new IntSet(Math.min(size, other.size));
+		IntSet smaller = size <= other.size ? this : other;
+		IntSet larger = smaller == this ? other : this;
+		if (smaller.containsFree && larger.containsFree) {
+			retained.add(IntHashing.FREE);
+		}
+		for (int value : smaller.table) {
+			if (value != IntHashing.FREE && larger.contains(value)) {
+				retained.add(value);
+			}
+		}
+		if (retained.size == size) {
+			return false;
+		}
+		replaceWith(retained);
+		return true;
+	}
+	
+	/**
+	 * Removes all values of the given set
+	 *
+	 * @param other the set to subtract
+	 * @return true if this set changed
+	 */
+	public boolean removeAll(IntSet other) {
+		int before = size;
+		if (other.size < size) {
+			if (other.containsFree) {
+				remove(IntHashing.FREE);
+			}
+			for (int value : other.table) {
+				if (value != IntHashing.FREE) {
+					remove(value);
+				}
+			}
+		} else {
+			IntSet kept = new IntSet(size);
+			if (containsFree && !other.containsFree) {
+				kept.add(IntHashing.FREE);
+			}
+			for (int value : table) {
+				if (value != IntHashing.FREE && !other.contains(value)) {
+					kept.add(value);
+				}
+			}
+			replaceWith(kept);
+		}
+		return size != before;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		Arrays.fill(table, IntHashing.FREE);
+		containsFree = false;
+		size = 0;
+	}
+	
+	/**
+	 * @return an iterator over the values of the set in no particular order, the set must not be
+	 *         changed while iterating
+	 */
+	public IntIterator iterator() {
+		return new IntIterator() {
+			
+			private int next = containsFree ? -1 : advance(0);
+			
+			@Override
+			public boolean hasNext() {
+				return next < table.length;
+			}
+			
+			@Override
+			public int next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int value = next < 0 ? IntHashing.FREE : table[next];
+				next = advance(next + 1);
+				return value;
+			}
+			
+			private int advance(int slot) {
+				while (slot < table.length && table[slot] == IntHashing.FREE) {
+					slot++;
+				}
+				return slot;
+			}
+		};
+	}
+	
+	/**
+	 * @return the values of the set in no particular order
+	 */
+	public int[] toArray() {
+		int[] values = new int[size];
+		int i = 0;
+		if (containsFree) {
+			values[i++] = IntHashing.FREE;
+		}
+		for (int value : table) {
+			if (value != IntHashing.FREE) {
+				values[i++] = value;
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * @return the values of the set in ascending order
+	 * @should return the values in ascending order
+	 */
+	public int[] toSortedArray() {
+		int[] values = toArray();
+		Arrays.sort(values);
+		return values;
+	}
+	
+	/**
+	 * @return a new sorted set of the boxed values, e.g. to pass to an api that takes a set of ids
+	 */
+	public SortedSet<Integer> toSortedSet() {
+		SortedSet<Integer> values = new TreeSet<Integer>();
+		for (int value : toSortedArray()) {
+			values.add(value);
+		}
+		return values;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IntSet)) {
+			return false;
+		}
+		IntSet other = (IntSet) obj;
+		if (size != other.size || containsFree != other.containsFree) {
+			return false;
+		}
+		for (int value : table) {
+			if (value != IntHashing.FREE && !other.contains(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int value : table) {
+			hash += value;
+		}
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return Arrays.toString(toSortedArray());
+	}
+	
+	private void allocate(int capacity) {
+		int[] old = table;
+		table = new int[capacity];
+		mask = capacity - 1;
+		if (old != null) {
+			for (int value : old) {
+				if (value != IntHashing.FREE) {
+					int slot = IntHashing.mix(value) & mask;
+					while (table[slot] != IntHashing.FREE) {
+						slot = (slot + 1) & mask;
+					}
+					table[slot] = value;
+				}
+			}
+		}
+	}
+	
+	private void removeSlot(int slot) {
+		// shift the following values of the probe sequence back, so that lookups don't stop early
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (table[next] != IntHashing.FREE) {
+			if (IntHashing.canShift(IntHashing.mix(table[next]) & mask, free, next)) {
+				table[free] = table[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[free] = IntHashing.FREE;
+	}
+	
+	private void replaceWith(IntSet other) {
+		table = other.table;
+		mask = other.mask;
+		size = other.size;
+		containsFree = other.containsFree;
+	}
+}
@@ -10,10 +10,12 @@
 package org.openmrs.customdatatype;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -23,17 +25,47 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.attribute.Attribute;
 import org.openmrs.attribute.AttributeType;
+import org.openmrs.attribute.BaseAttribute;
 import org.openmrs.serialization.SerializationException;
 import org.openmrs.util.OpenmrsConstants;
 
 /**
- * Helper methods for dealing with custom datatypes and their handlers
+ * Helper methods for dealing with custom datatypes and their handlers. <br>
+ * <br>
+ * Configured datatypes and handlers are cached by class name and configuration, so rendering a
+ * page of attribute values does not instantiate and configure a datatype for every value. The
+ * instances are shared, callers must not reconfigure them. The cache is cleared when an attribute
+ * type is saved and when the application context is refreshed, e.g. because a module was started
+ * or stopped.
  * @since 1.9
  */
 public class CustomDatatypeUtil {
 	
 	private static Log log = LogFactory.getLog(CustomDatatypeUtil.class);
 	
+	private static final Map<String, CustomDatatype<?>> datatypeCache = new ConcurrentHashMap<String, CustomDatatype<?>>();
+	
+	private static final Map<String, CustomDatatypeHandler> handlerCache = new ConcurrentHashMap<String, CustomDatatypeHandler>();
+	
+	/**
+	 * Clears the cached datatype and handler instances
+	 *
+	 * @since 2.1.0
+	 */
+	public static void clearCache() {
+		datatypeCache.clear();
+		handlerCache.clear();
+	}
+	
+	private static String getCacheKey(String... parts) {
+		StringBuilder key = new StringBuilder();
+		for (String part : parts) {
+			// keep null apart from the string "null"
+			key.append(part == null ? "\u0001" : part).append('\u0000');
+		}
+		return key.toString();
+	}
+	
 	/**
 	 * @param descriptor
 	 * @return a configured datatype appropriate for descriptor
@@ -46,8 +78,19 @@ public class CustomDatatypeUtil {
 	 * @param datatypeClassname
 	 * @param datatypeConfig
 	 * @return a configured datatype with the given classname and configuration
+	 * @should return the same instance for the same classname and configuration
 	 */
 	public static CustomDatatype<?> getDatatype(String datatypeClassname, String datatypeConfig) {
+		String key = getCacheKey(datatypeClassname, datatypeConfig);
+		CustomDatatype<?> ret = datatypeCache.get(key);
+		if (ret == null) {
+			ret = createDatatype(datatypeClassname, datatypeConfig);
+			datatypeCache.put(key, ret);
+		}
+		return ret;
+	}
+	
+	private static CustomDatatype<?> createDatatype(String datatypeClassname, String datatypeConfig) {
 		try {
 			Class dtClass = Context.loadClass(datatypeClassname);
 			CustomDatatype<?> ret = (CustomDatatype<?>) Context.getDatatypeService().getDatatype(dtClass, datatypeConfig);
@@ -91,6 +134,19 @@ public class CustomDatatypeUtil {
 	 * @return a configured datatype handler with the given classname and configuration
 	 */
 	public static CustomDatatypeHandler getHandler(CustomDatatype<?> dt, String preferredHandlerClassname,
+	        String handlerConfig) {
+		String key = getCacheKey(dt.getClass().getName(), preferredHandlerClassname, handlerConfig);
+		CustomDatatypeHandler handler = handlerCache.get(key);
+		if (handler == null) {
+			handler = createHandler(dt, preferredHandlerClassname, handlerConfig);
+			if (handler != null) {
+				handlerCache.put(key, handler);
+			}
+		}
+		return handler;
+	}
+	
+	private static CustomDatatypeHandler createHandler(CustomDatatype<?> dt, String preferredHandlerClassname,
 	        String handlerConfig) {
 		if (preferredHandlerClassname != null) {
 			try {
@@ -180,6 +236,36 @@ public class CustomDatatypeUtil {
 		return serializedAttributeValues;
 	}
 	
+	/**
+	 * Converts the value references of many attributes to their typed values at once, looking up the
+	 * datatype only once per attribute type. Attributes that already hold a value are skipped.
+	 *
+	 * @param attributes the attributes to convert the values of
+	 * @since 2.1.0
+	 * @should set the values of all attributes
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void hydrateValues(Collection<? extends Attribute> attributes) {
+		Map<AttributeType<?>, CustomDatatype<?>> datatypes = new HashMap<AttributeType<?>, CustomDatatype<?>>();
+		for (Attribute attribute : attributes) {
+			if (!(attribute instanceof BaseAttribute)) {
+				attribute.getValue();
+				continue;
+			}
+			BaseAttribute baseAttribute = (BaseAttribute) attribute;
+			if (baseAttribute.isValueHydrated()) {
+				continue;
+			}
+			AttributeType<?> attributeType = baseAttribute.getAttributeType();
+			CustomDatatype<?> datatype = datatypes.get(attributeType);
+			if (datatype == null) {
+				datatype = getDatatype(attributeType);
+				datatypes.put(attributeType, datatype);
+			}
+			baseAttribute.hydrateValue(datatype);
+		}
+	}
+	
 	/**
 	 * @return fully-qualified classnames of all registered datatypes
 	 */
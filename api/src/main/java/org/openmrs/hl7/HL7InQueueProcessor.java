@@ -9,9 +9,12 @@
  */
 package org.openmrs.hl7;
 
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
 import org.springframework.transaction.annotation.Transactional;
 
 import ca.uhn.hl7v2.HL7Exception;
@@ -95,6 +98,49 @@ public class HL7InQueueProcessor /* implements Runnable */{
 		return entryProcessed;
 	}
 	
+	/**
+	 * Transform the next pending HL7 inbound queue entries in one transaction. If the transaction
+	 * fails the entries are processed one by one, so that only the failing ones end up in the error
+	 * table.
+	 *
+	 * @param batchSize the maximum number of entries to process
+	 * @return the number of entries processed, 0 if the queue was empty
+	 * @see HL7Service#processHL7InQueueBatch(List)
+	 */
+	public int processNextHL7InQueueBatch(int batchSize) {
+		HL7Service hl7Service = Context.getHL7Service();
+		List<HL7InQueue> hl7InQueues = hl7Service.getNextHL7InQueues(batchSize);
+		if (hl7InQueues.isEmpty()) {
+			return 0;
+		}
+		
+		try {
+			hl7Service.processHL7InQueueBatch(hl7InQueues);
+		}
+		catch (Exception e) {
+			log.warn("Unable to process a batch of " + hl7InQueues.size()
+			        + " hl7 in queue entries, processing them one by one", e);
+			// the session still holds what was rolled back
+			Context.clearSession();
+			for (HL7InQueue hl7InQueue : hl7InQueues) {
+				HL7InQueue pending = hl7Service.getHL7InQueue(hl7InQueue.getHL7InQueueId());
+				if (pending != null) {
+					processHL7InQueue(pending);
+				}
+			}
+		}
+		
+		// the batch filled the session, clean it up before the next one
+		try {
+			hl7Service.garbageCollect();
+		}
+		catch (Exception e) {
+			log.error("Exception while performing garbagecollect in hl7 inbound processor", e);
+		}
+		
+		return hl7InQueues.size();
+	}
+	
 	/**
 	 * Starts up a thread to process all existing HL7InQueue entries
 	 */
@@ -108,8 +154,15 @@ public class HL7InQueueProcessor /* implements Runnable */{
 		}
 		try {
 			log.debug("Start processing hl7 in queue");
-			while (processNextHL7InQueue()) {
-				// loop until queue is empty
+			int batchSize = getBatchSize();
+			if (batchSize > 1) {
+				while (processNextHL7InQueueBatch(batchSize) > 0) {
+					// loop until queue is empty
+				}
+			} else {
+				while (processNextHL7InQueue()) {
+					// loop until queue is empty
+				}
 			}
 			log.debug("Done processing hl7 in queue");
 		}
@@ -118,4 +171,17 @@ public class HL7InQueueProcessor /* implements Runnable */{
 		}
 	}
 	
+	private int getBatchSize() {
+		String batchSize = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GLOBAL_PROPERTY_HL7_PROCESSOR_BATCH_SIZE, "1");
+		try {
+			return Integer.parseInt(batchSize.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Invalid value for global property " + OpenmrsConstants.GLOBAL_PROPERTY_HL7_PROCESSOR_BATCH_SIZE
+			        + ": " + batchSize);
+			return 1;
+		}
+	}
+	
 }
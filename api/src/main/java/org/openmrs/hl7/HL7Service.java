@@ -218,6 +218,17 @@ public interface HL7Service extends OpenmrsService {
 	@Authorized(PrivilegeConstants.GET_HL7_IN_QUEUE)
 	public HL7InQueue getNextHL7InQueue() throws APIException;
 	
+	/**
+	 * Get the first pending queue items in the database
+	 * 
+	 * @param count the maximum number of items to get
+	 * @return the first pending queue items, in the order they were queued
+	 * @since 2.1.0
+	 * @should return the pending queue items in the order they were queued
+	 */
+	@Authorized(PrivilegeConstants.GET_HL7_IN_QUEUE)
+	public List<HL7InQueue> getNextHL7InQueues(int count) throws APIException;
+	
 	/**
 	 * Completely delete the hl7 in queue item from the database.
 	 * 
@@ -421,6 +432,22 @@ public interface HL7Service extends OpenmrsService {
 	 */
 	public HL7InQueue processHL7InQueue(HL7InQueue inQueue) throws HL7Exception;
 	
+	/**
+	 * Process the given {@link HL7InQueue} items like {@link #processHL7InQueue(HL7InQueue)} does,
+	 * but all in one transaction that is flushed once at the end instead of before every query. A
+	 * message that fails is moved to the {@link HL7InError} table as usual and does not stop the
+	 * others. <br>
+	 * If the transaction itself fails, e.g. because one of the messages breaks a database
+	 * constraint, nothing of the batch is saved and the items are still pending, the caller should
+	 * then process them one by one.
+	 * 
+	 * @param inQueues the {@link HL7InQueue}s to parse and save all encounters/obs to the db
+	 * @return the processed {@link HL7InQueue}s
+	 * @since 2.1.0
+	 * @should archive the valid messages and move the failed ones to the error table
+	 */
+	public List<HL7InQueue> processHL7InQueueBatch(List<HL7InQueue> inQueues) throws HL7Exception;
+	
 	/**
 	 * Parses the given string and returns the resulting {@link Message}
 	 * 
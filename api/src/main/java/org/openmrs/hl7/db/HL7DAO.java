@@ -80,6 +80,11 @@ public interface HL7DAO {
 	 */
 	public HL7InQueue getNextHL7InQueue() throws DAOException;
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#getNextHL7InQueues(int)
+	 */
+	public List<HL7InQueue> getNextHL7InQueues(int count) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
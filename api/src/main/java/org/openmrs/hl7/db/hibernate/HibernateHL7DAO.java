@@ -198,6 +198,16 @@ public class HibernateHL7DAO implements HL7DAO {
 		return (HL7InQueue) query.uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#getNextHL7InQueues(int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<HL7InQueue> getNextHL7InQueues(int count) throws DAOException {
+		return sessionFactory.getCurrentSession().createQuery(
+		    "from HL7InQueue as hiq where hiq.messageState = ? order by HL7InQueueId").setParameter(0,
+		    HL7Constants.HL7_STATUS_PENDING, StandardBasicTypes.INTEGER).setMaxResults(count).list();
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.db.HL7DAO#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
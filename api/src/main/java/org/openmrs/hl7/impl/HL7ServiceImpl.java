@@ -28,6 +28,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
@@ -39,6 +40,7 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
+import org.openmrs.api.db.hibernate.HibernateUtil;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
@@ -296,6 +298,15 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		return dao.getNextHL7InQueue();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#getNextHL7InQueues(int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<HL7InQueue> getNextHL7InQueues(int count) {
+		return dao.getNextHL7InQueues(count);
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#getHL7InArchiveByState(java.lang.Integer)
 	 */
@@ -729,6 +740,37 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		return hl7InQueue;
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#processHL7InQueueBatch(java.util.List)
+	 */
+	@Override
+	public List<HL7InQueue> processHL7InQueueBatch(List<HL7InQueue> hl7InQueues) throws HL7Exception {
+		
+		if (hl7InQueues == null) {
+			throw new HL7Exception("hl7InQueues argument cannot be null");
+		}
+		
+		// the new rows get their ids, and so are inserted, as soon as they are saved, the only
+		// pending changes are updates of rows that the following messages don't query for, so there
+		// is no need to dirty check the whole, growing, session before every query
+		SessionFactory sessionFactory = Context.getRegisteredComponent("sessionFactory", SessionFactory.class);
+		boolean flushModeChanged = HibernateUtil.setFlushBeforeQueries(sessionFactory, false);
+		try {
+			for (HL7InQueue hl7InQueue : hl7InQueues) {
+				// NOT making a direct call here so that AOP can happen around this method
+				Context.getHL7Service().processHL7InQueue(hl7InQueue);
+			}
+			Context.flushSession();
+		}
+		finally {
+			if (flushModeChanged) {
+				HibernateUtil.setFlushBeforeQueries(sessionFactory, true);
+			}
+		}
+		
+		return hl7InQueues;
+	}
+	
 	/**
 	 * Convenience method to respond to fatal errors by moving the queue entry into an error bin
 	 * prior to aborting
@@ -10,11 +10,17 @@
 package org.openmrs.messagesource.impl;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openmrs.messagesource.MutableMessageSource;
 import org.openmrs.messagesource.PresentationMessage;
@@ -24,22 +30,40 @@ import org.springframework.context.support.AbstractMessageSource;
 /**
  * A MutableMessageSource backed by a localized map of PresentationMessageCollections, providing
  * in-memory storage of PresentationMessages. Useful for temporary storage, as a cache for other
- * sources, and for testing.
+ * sources, and for testing.<br>
+ * <br>
+ * The messages are held in an immutable snapshot that is replaced as a whole whenever messages are
+ * added, removed or merged, so any number of threads can resolve messages while another thread
+ * changes them. Each snapshot also caches, per locale, the messages resolved through the locale's
+ * fallback chain (e.g. en_GB falls back to en) and the message formats and texts created for them, so
+ * resolving a code is a single map lookup. Since every change copies the messages of the locales it
+ * touches, prefer {@link #addPresentations(Collection)} or
+ * {@link #merge(MutableMessageSource, boolean)} over many calls to
+ * {@link #addPresentation(PresentationMessage)} when loading messages in bulk.
  */
 public class CachedMessageSource extends AbstractMessageSource implements MutableMessageSource {
 	
-	Map<Locale, PresentationMessageMap> localizedMap = new HashMap<Locale, PresentationMessageMap>();
+	private volatile Snapshot snapshot = new Snapshot(new HashMap<Locale, PresentationMessageMap>());
 	
 	/* (non-Javadoc)
 	 * @see org.openmrs.messagesource.MutableMessageSource#addPresentation(org.openmrs.api.PresentationMessage)
 	 */
 	public void addPresentation(PresentationMessage message) {
-		PresentationMessageMap codeMessageMap = localizedMap.get(message.getLocale());
-		if (codeMessageMap == null) {
-			codeMessageMap = new PresentationMessageMap(message.getLocale());
-			localizedMap.put(message.getLocale(), codeMessageMap);
+		addPresentations(Collections.singleton(message));
+	}
+	
+	/**
+	 * Adds all given messages at once, copying the messages of each locale involved only once
+	 * 
+	 * @param messages the messages to add
+	 * @should add all messages
+	 */
+	public synchronized void addPresentations(Collection<PresentationMessage> messages) {
+		Map<Locale, PresentationMessageMap> localizedMap = snapshot.copyLocalizedMap(getLocales(messages));
+		for (PresentationMessage message : messages) {
+			put(localizedMap, message);
 		}
-		codeMessageMap.put(message.getCode(), message);
+		snapshot = new Snapshot(localizedMap);
 	}
 	
 	/**
@@ -47,7 +71,7 @@ public class CachedMessageSource extends AbstractMessageSource implements Mutabl
 	 * @should should be able to contain multiple locales
 	 */
 	public Collection<Locale> getLocales() {
-		return localizedMap.keySet();
+		return Collections.unmodifiableSet(snapshot.localizedMap.keySet());
 	}
 	
 	/* (non-Javadoc)
@@ -56,8 +80,7 @@ public class CachedMessageSource extends AbstractMessageSource implements Mutabl
 	public Collection<PresentationMessage> getPresentations() {
 		Collection<PresentationMessage> allMessages = new Vector<PresentationMessage>();
 		
-		for (Locale locale : localizedMap.keySet()) {
-			PresentationMessageMap codeMessageMap = localizedMap.get(locale);
+		for (PresentationMessageMap codeMessageMap : snapshot.localizedMap.values()) {
 			allMessages.addAll(codeMessageMap.values());
 		}
 		
@@ -67,17 +90,30 @@ public class CachedMessageSource extends AbstractMessageSource implements Mutabl
 	/* (non-Javadoc)
 	 * @see org.openmrs.messagesource.MutableMessageSource#removePresentation(org.openmrs.api.PresentationMessage)
 	 */
-	public void removePresentation(PresentationMessage message) {
-		PresentationMessageMap codeMessageMap = localizedMap.get(message.getLocale());
+	public synchronized void removePresentation(PresentationMessage message) {
+		PresentationMessageMap codeMessageMap = snapshot.localizedMap.get(message.getLocale());
 		if ((codeMessageMap != null) && codeMessageMap.containsKey(message.getCode())) {
-			codeMessageMap.remove(message.getCode());
+			Map<Locale, PresentationMessageMap> localizedMap = snapshot.copyLocalizedMap(Collections.singleton(message
+			        .getLocale()));
+			localizedMap.get(message.getLocale()).remove(message.getCode());
+			snapshot = new Snapshot(localizedMap);
 		}
 	}
 	
-	public void merge(MutableMessageSource fromSource, boolean overwrite) {
-		for (PresentationMessage message : fromSource.getPresentations()) {
-			addPresentation(message);
+	/**
+	 * @see org.openmrs.messagesource.MutableMessageSource#merge(MutableMessageSource, boolean)
+	 * @should not overwrite existing messages unless asked to
+	 */
+	public synchronized void merge(MutableMessageSource fromSource, boolean overwrite) {
+		Collection<PresentationMessage> messages = fromSource.getPresentations();
+		Map<Locale, PresentationMessageMap> localizedMap = snapshot.copyLocalizedMap(getLocales(messages));
+		for (PresentationMessage message : messages) {
+			PresentationMessageMap codeMessageMap = localizedMap.get(message.getLocale());
+			if (overwrite || codeMessageMap == null || !codeMessageMap.containsKey(message.getCode())) {
+				put(localizedMap, message);
+			}
 		}
+		snapshot = new Snapshot(localizedMap);
 	}
 	
 	/**
@@ -86,12 +122,8 @@ public class CachedMessageSource extends AbstractMessageSource implements Mutabl
 	 * @should match get message with presentation message
 	 */
 	public PresentationMessage getPresentation(String key, Locale forLocale) {
-		PresentationMessage foundPM = null;
-		PresentationMessageMap codeMessageMap = localizedMap.get(forLocale);
-		if ((codeMessageMap != null) && codeMessageMap.containsKey(key)) {
-			foundPM = codeMessageMap.get(key);
-		}
-		return foundPM;
+		PresentationMessageMap codeMessageMap = snapshot.localizedMap.get(forLocale);
+		return codeMessageMap == null ? null : codeMessageMap.get(key);
 	}
 	
 	/**
@@ -99,26 +131,185 @@ public class CachedMessageSource extends AbstractMessageSource implements Mutabl
 	 */
 	public Collection<PresentationMessage> getPresentationsInLocale(Locale locale) {
 		Collection<PresentationMessage> foundPresentations = null;
-		PresentationMessageMap codeMessageMap = localizedMap.get(locale);
+		PresentationMessageMap codeMessageMap = snapshot.localizedMap.get(locale);
 		if (codeMessageMap != null) {
-			foundPresentations = codeMessageMap.values();
+			foundPresentations = Collections.unmodifiableCollection(codeMessageMap.values());
 		}
 		return foundPresentations;
 	}
 	
+	/**
+	 * @see org.springframework.context.support.AbstractMessageSource#resolveCodeWithoutArguments(java.lang.String,
+	 *      java.util.Locale)
+	 * @should fall back to the language of the locale
+	 * @should unescape single quotes like a message format
+	 */
+	@Override
+	protected String resolveCodeWithoutArguments(String code, Locale locale) {
+		Snapshot current = snapshot;
+		Map<String, String> texts = current.getTextsWithoutArguments(locale);
+		String text = texts.get(code);
+		if (text == null) {
+			MessageFormat messageFormat = resolveCode(current, code, locale);
+			if (messageFormat != null) {
+				// formatted like AbstractMessageSource does, so that e.g. '' becomes a single quote
+				synchronized (messageFormat) {
+					text = messageFormat.format(new Object[0]);
+				}
+				texts.put(code, text);
+			}
+		}
+		return text;
+	}
+	
 	/**
 	 * @see org.springframework.context.support.AbstractMessageSource#resolveCode(java.lang.String,
 	 *      java.util.Locale)
 	 */
 	@Override
 	protected MessageFormat resolveCode(String code, Locale locale) {
-		MessageFormat resolvedMessageFormatForCode = null;
-		
-		PresentationMessage pmForCode = getPresentation(code, locale);
-		if (pmForCode != null) {
-			resolvedMessageFormatForCode = new MessageFormat(pmForCode.getMessage());
+		return resolveCode(snapshot, code, locale);
+	}
+	
+	/**
+	 * @param code the code to get the message of
+	 * @param locale the locale to resolve the message for
+	 * @return the message as it was added, without formatting it, or null if there is none
+	 */
+	String resolveMessage(String code, Locale locale) {
+		return snapshot.getResolvedMessages(locale).get(code);
+	}
+	
+	private MessageFormat resolveCode(Snapshot current, String code, Locale locale) {
+		Map<String, MessageFormat> formats = current.getMessageFormats(locale);
+		MessageFormat resolvedMessageFormatForCode = formats.get(code);
+		if (resolvedMessageFormatForCode == null) {
+			String message = current.getResolvedMessages(locale).get(code);
+			if (message != null) {
+				// only codes that have a message are cached, so the formats never outnumber the messages
+				resolvedMessageFormatForCode = createMessageFormat(message, locale);
+				formats.put(code, resolvedMessageFormatForCode);
+			}
 		}
 		return resolvedMessageFormatForCode;
 	}
 	
+	private static Set<Locale> getLocales(Collection<PresentationMessage> messages) {
+		Set<Locale> locales = new HashSet<Locale>();
+		for (PresentationMessage message : messages) {
+			locales.add(message.getLocale());
+		}
+		return locales;
+	}
+	
+	private static void put(Map<Locale, PresentationMessageMap> localizedMap, PresentationMessage message) {
+		PresentationMessageMap codeMessageMap = localizedMap.get(message.getLocale());
+		if (codeMessageMap == null) {
+			codeMessageMap = new PresentationMessageMap(message.getLocale());
+			localizedMap.put(message.getLocale(), codeMessageMap);
+		}
+		codeMessageMap.put(message.getCode(), message);
+	}
+	
+	/**
+	 * The messages at one point in time. Neither the maps nor the messages are changed once the
+	 * snapshot is created, only the resolution caches grow when new locales and codes are asked for.
+	 */
+	private static class Snapshot {
+		
+		private final Map<Locale, PresentationMessageMap> localizedMap;
+		
+		private final Map<Locale, Map<String, String>> resolvedMessages = new ConcurrentHashMap<Locale, Map<String, String>>();
+		
+		private final Map<Locale, Map<String, MessageFormat>> messageFormats = new ConcurrentHashMap<Locale, Map<String, MessageFormat>>();
+		
+		private final Map<Locale, Map<String, String>> textsWithoutArguments = new ConcurrentHashMap<Locale, Map<String, String>>();
+		
+		public Snapshot(Map<Locale, PresentationMessageMap> localizedMap) {
+			this.localizedMap = localizedMap;
+		}
+		
+		/**
+		 * @param changedLocales the locales whose messages are going to be changed
+		 * @return a copy of the messages that can be changed in the given locales and used for a new
+		 *         snapshot, the messages of the other locales are shared with this snapshot
+		 */
+		public Map<Locale, PresentationMessageMap> copyLocalizedMap(Set<Locale> changedLocales) {
+			Map<Locale, PresentationMessageMap> copy = new HashMap<Locale, PresentationMessageMap>(localizedMap);
+			for (Locale locale : changedLocales) {
+				PresentationMessageMap existing = localizedMap.get(locale);
+				if (existing != null) {
+					PresentationMessageMap codeMessageMap = new PresentationMessageMap(locale);
+					codeMessageMap.putAll(existing);
+					copy.put(locale, codeMessageMap);
+				}
+			}
+			return copy;
+		}
+		
+		/**
+		 * @param locale the locale to get the message formats of
+		 * @return the message formats created so far for the given locale, by code
+		 */
+		public Map<String, MessageFormat> getMessageFormats(Locale locale) {
+			Map<String, MessageFormat> formats = messageFormats.get(locale);
+			if (formats == null) {
+				formats = new ConcurrentHashMap<String, MessageFormat>();
+				messageFormats.put(locale, formats);
+			}
+			return formats;
+		}
+		
+		/**
+		 * @param locale the locale to get the texts of
+		 * @return the messages formatted without arguments so far for the given locale, by code
+		 */
+		public Map<String, String> getTextsWithoutArguments(Locale locale) {
+			Map<String, String> texts = textsWithoutArguments.get(locale);
+			if (texts == null) {
+				texts = new ConcurrentHashMap<String, String>();
+				textsWithoutArguments.put(locale, texts);
+			}
+			return texts;
+		}
+		
+		/**
+		 * Gets all messages available to the given locale, where messages of the locale itself take
+		 * precedence over those of its country and then its language.
+		 * 
+		 * @param locale the locale to resolve messages for
+		 * @return code to message map
+		 */
+		public Map<String, String> getResolvedMessages(Locale locale) {
+			Map<String, String> resolved = resolvedMessages.get(locale);
+			if (resolved == null) {
+				resolved = new HashMap<String, String>();
+				List<Locale> fallbackChain = getFallbackChain(locale);
+				for (int i = fallbackChain.size() - 1; i >= 0; i--) {
+					PresentationMessageMap codeMessageMap = localizedMap.get(fallbackChain.get(i));
+					if (codeMessageMap != null) {
+						for (PresentationMessage message : codeMessageMap.values()) {
+							resolved.put(message.getCode(), message.getMessage());
+						}
+					}
+				}
+				// concurrent callers may compute the same map, both results are equal
+				resolvedMessages.put(locale, resolved);
+			}
+			return resolved;
+		}
+		
+		private static List<Locale> getFallbackChain(Locale locale) {
+			List<Locale> fallbackChain = new ArrayList<Locale>(3);
+			fallbackChain.add(locale);
+			if (locale.getVariant().length() > 0) {
+				fallbackChain.add(new Locale(locale.getLanguage(), locale.getCountry()));
+			}
+			if (locale.getCountry().length() > 0) {
+				fallbackChain.add(new Locale(locale.getLanguage()));
+			}
+			return fallbackChain;
+		}
+	}
+	
 }
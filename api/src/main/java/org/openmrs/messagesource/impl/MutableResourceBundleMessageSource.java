@@ -11,6 +11,7 @@ package org.openmrs.messagesource.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -21,6 +22,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,7 +40,14 @@ import org.springframework.core.io.Resource;
 
 /**
  * ResourceBundleMessageSource extends ReloadableResourceBundleMessageSource to provide the
- * additional features of a MutableMessageSource.
+ * additional features of a MutableMessageSource. <br>
+ * <br>
+ * The first time a locale is asked for, all messages of that locale are merged from the properties
+ * files of every basename and its fallbacks, like the resource bundles would resolve them, into a
+ * {@link CachedMessageSource}. After that resolving a code, including one that has no message, is a
+ * single lookup in it. The merged messages are dropped when messages are changed through this class,
+ * and when Spring reloads one of the properties files after the configured cache seconds, or on any
+ * access if the cache seconds are 0.
  */
 public class MutableResourceBundleMessageSource extends ReloadableResourceBundleMessageSource implements MutableMessageSource, ApplicationContextAware {
 	
@@ -60,6 +69,12 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	/** Cached list of available locales. */
 	private Collection<Locale> locales;
 	
+	/** All basenames including the ones of the modules, as passed to the resource bundles */
+	private String[] allBasenames = new String[0];
+	
+	/** The messages merged for the locales asked for so far */
+	private volatile MergedMessages mergedMessages = new MergedMessages();
+	
 	/**
 	 * @see org.openmrs.messagesource.MessageSourceService#getLocales()
 	 */
@@ -79,6 +94,111 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		super.setCacheSeconds(cacheSeconds);
 	}
 	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCodeWithoutArguments(java.lang.String,
+	 *      java.util.Locale)
+	 * @should return null for a code without a message
+	 * @should reload changed files on every access if the cache seconds are 0
+	 */
+	@Override
+	protected String resolveCodeWithoutArguments(String code, Locale locale) {
+		// the text as it is in the file, like the resource bundles return it
+		return getMergedMessages(locale).resolveMessage(code, locale);
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#resolveCode(java.lang.String,
+	 *      java.util.Locale)
+	 * @should resolve messages with arguments
+	 */
+	@Override
+	protected MessageFormat resolveCode(String code, Locale locale) {
+		return getMergedMessages(locale).resolveCode(code, locale);
+	}
+	
+	/**
+	 * @see org.springframework.context.support.ReloadableResourceBundleMessageSource#clearCache()
+	 */
+	@Override
+	public void clearCache() {
+		super.clearCache();
+		clearResolvedMessages();
+	}
+	
+	/**
+	 * Gets the messages merged for the given locale, merging them first if needed
+	 *
+	 * @param locale the locale that is asked for
+	 * @return the merged messages that hold all messages of the locale
+	 */
+	private CachedMessageSource getMergedMessages(Locale locale) {
+		MergedMessages merged = mergedMessages;
+		// like the resource bundles, check the files on every access if the cache seconds are 0
+		if (cacheMilliseconds == 0
+		        || (cacheMilliseconds > 0 && System.currentTimeMillis() - merged.checked > cacheMilliseconds)) {
+			// the files are only reloaded by the resource bundles if they changed
+			merged.checked = System.currentTimeMillis();
+			for (Map.Entry<Locale, List<Properties>> entry : merged.files.entrySet()) {
+				if (!isSame(entry.getValue(), getPropertiesFiles(entry.getKey()))) {
+					clearResolvedMessages();
+					merged = mergedMessages;
+					break;
+				}
+			}
+		}
+		
+		if (!merged.files.containsKey(locale)) {
+			List<Properties> files = getPropertiesFiles(locale);
+			// later basenames and less specific files are overridden by earlier ones
+			Properties properties = new Properties();
+			for (int i = files.size() - 1; i >= 0; i--) {
+				if (files.get(i) != null) {
+					properties.putAll(files.get(i));
+				}
+			}
+			List<PresentationMessage> messages = new ArrayList<PresentationMessage>(properties.size());
+			for (String code : properties.stringPropertyNames()) {
+				messages.add(new PresentationMessage(code, locale, properties.getProperty(code), null));
+			}
+			merged.messages.addPresentations(messages);
+			merged.files.put(locale, files);
+		}
+		return merged.messages;
+	}
+	
+	/**
+	 * @return the contents of the properties files for the given locale in the order of precedence,
+	 *         null for the files that don't exist
+	 */
+	private List<Properties> getPropertiesFiles(Locale locale) {
+		List<Properties> files = new ArrayList<Properties>();
+		for (String basename : allBasenames) {
+			for (String filename : calculateAllFilenames(basename, locale)) {
+				files.add(getProperties(filename).getProperties());
+			}
+		}
+		return files;
+	}
+	
+	/**
+	 * The resource bundles keep the same properties instance as long as a file did not change
+	 */
+	private static boolean isSame(List<Properties> files, List<Properties> otherFiles) {
+		if (files.size() != otherFiles.size()) {
+			return false;
+		}
+		for (int i = 0; i < files.size(); i++) {
+			if (files.get(i) != otherFiles.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void clearResolvedMessages() {
+		mergedMessages = new MergedMessages();
+	}
+	
 	/**
 	 * This method looks at the current property files and deduces what locales are available from
 	 * those
@@ -185,6 +305,8 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 	public void setBasename(String basename) {
 		super.setBasename(basename);
 		this.basenames = new String[] { basename };
+		allBasenames = new String[] { basename };
+		clearResolvedMessages();
 	}
 	
 	/**
@@ -215,6 +337,8 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		}
 		
 		super.setBasenames(basenames);
+		allBasenames = basenames == null ? new String[0] : Arrays.copyOf(basenames, basenames.length);
+		clearResolvedMessages();
 	}
 	
 	/**
@@ -232,6 +356,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 			catch (Exception e) {
 				log.error("Error generated", e);
 			}
+			clearResolvedMessages();
 		}
 	}
 	
@@ -250,6 +375,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 			catch (Exception e) {
 				log.error("Error generated", e);
 			}
+			clearResolvedMessages();
 		}
 	}
 	
@@ -391,6 +517,7 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 			
 			message.getCode();
 		}
+		clearResolvedMessages();
 	}
 	
 	/**
@@ -410,4 +537,16 @@ public class MutableResourceBundleMessageSource extends ReloadableResourceBundle
 		return null;
 	}
 	
+	/**
+	 * The messages merged from the properties files, and the contents of the files they were merged
+	 * from per locale
+	 */
+	private static class MergedMessages {
+		
+		private final CachedMessageSource messages = new CachedMessageSource();
+		
+		private final Map<Locale, List<Properties>> files = new ConcurrentHashMap<Locale, List<Properties>>();
+		
+		private volatile long checked = System.currentTimeMillis();
+	}
 }
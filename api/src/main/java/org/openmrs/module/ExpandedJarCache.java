@@ -0,0 +1,385 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.util.OpenmrsUtil;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Keeps the expanded contents of module and library jars in the {@link #CACHE_FOLDER} of the
+ * application data directory across restarts, keyed by the md5 of the jar, so that jars that did not
+ * change since the last startup are not expanded again. The files of a cached expansion are hard
+ * linked into the folder the jar is expanded to, or copied where the file system does not support
+ * links, so expanded files must be replaced rather than written to. Jars that have to be expanded
+ * have their entries written in parallel. <br>
+ * <br>
+ * The cache only keeps the latest version of a jar with a given file name, older expansions are
+ * deleted when a changed jar is expanded. Jars that are renamed on upgrade, like module files with
+ * the version in their name, leave their expansions behind, so {@link #prune()} deletes the
+ * expansions that were not used for {@link #MAX_UNUSED_DAYS} days once the modules are started. Any
+ * problem with the cache falls back to expanding the jar directly.
+ *
+ * @see ModuleUtil#expandJar(File, File, String, boolean)
+ * @since 2.1.0
+ */
+public class ExpandedJarCache {
+	
+	private static final Log log = LogFactory.getLog(ExpandedJarCache.class);
+	
+	public static final String CACHE_FOLDER = ".openmrs-jar-cache";
+	
+	// lists the entries of a cached expansion, it is written last so it marks the expansion complete
+	private static final String MANIFEST = ".expanded";
+	
+	// below this, starting threads takes longer than writing the files
+	private static final int MIN_PARALLEL_ENTRIES = 16;
+	
+	private static final int MAX_THREADS = 8;
+	
+	/**
+	 * Expansions that were not used for this many days are deleted by {@link #prune()}
+	 */
+	public static final int MAX_UNUSED_DAYS = 30;
+	
+	// the name of the folder of an expansion is the jar name followed by the md5 of the jar
+	private static final String EXPANSION_PATTERN = ".+-[0-9a-f]{32}";
+	
+	// the md5 of each jar by path, length and modification time
+	private static final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+	
+	private static File cacheFolder;
+	
+	private ExpandedJarCache() {
+	}
+	
+	/**
+	 * Expands the entries of the jar whose names start with the given name to the folder, from the
+	 * cache if the same jar was expanded before
+	 *
+	 * @param jar the jar to expand
+	 * @param folder the folder to expand to
+	 * @param name the start of the names of the entries to expand, or null for all entries
+	 * @param keepFullPath if false, the name is removed from the start of the paths of the files
+	 * @throws IOException if the jar cannot be read or the folder cannot be written
+	 * @should expand the entries that start with the name
+	 * @should reuse the expansion of an unchanged jar
+	 * @should expand a changed jar again
+	 * @should expand the jar directly if a cached file is missing
+	 */
+	public static void expand(File jar, File folder, String name, boolean keepFullPath) throws IOException {
+		long start = System.currentTimeMillis();
+		File expansion = null;
+		List<String> manifest;
+		boolean reused;
+		try {
+			expansion = new File(getCacheFolder(), jar.getName() + "-" + getHash(jar) + File.separator + getKey(name));
+			// the modification time of the folder of a jar tells prune when it was last used
+			expansion.getParentFile().mkdirs();
+			expansion.getParentFile().setLastModified(System.currentTimeMillis());
+			File manifestFile = new File(expansion, MANIFEST);
+			reused = manifestFile.isFile();
+			if (reused) {
+				manifest = FileUtils.readLines(manifestFile, "UTF-8");
+			} else {
+				manifest = cache(jar, name, expansion);
+			}
+			
+			for (String entryName : manifest.subList(1, manifest.size())) {
+				String path = getPath(entryName, name, keepFullPath);
+				File file = new File(folder, path);
+				if (path.endsWith("/") || "".equals(path)) {
+					file.mkdirs();
+				} else {
+					file.getParentFile().mkdirs();
+					link(new File(expansion, entryName), file);
+				}
+			}
+		}
+		catch (IOException e) {
+			log.warn("Unable to cache the expansion of " + jar.getName() + ", expanding it directly", e);
+			// e.g. a cached file was deleted meanwhile, so the expansion is cached again next time
+			if (expansion != null) {
+				FileUtils.deleteQuietly(expansion);
+			}
+			extract(jar, name, folder, keepFullPath);
+			return;
+		}
+		
+		if (reused && log.isInfoEnabled()) {
+			long expansionTime = Long.parseLong(manifest.get(0));
+			long time = System.currentTimeMillis() - start;
+			log.info("Reused the expanded " + (name == null ? "" : name + " of ") + jar.getName() + " in " + time
+			        + " ms, saving " + Math.max(0, expansionTime - time) + " ms");
+		}
+	}
+	
+	/**
+	 * Deletes the expansions that were not used for {@link #MAX_UNUSED_DAYS} days, which are left
+	 * behind by upgraded or removed modules
+	 *
+	 * @should delete expansions that were not used recently
+	 * @should keep expansions that were used recently
+	 */
+	public static synchronized void prune() {
+		long unusedSince = System.currentTimeMillis() - MAX_UNUSED_DAYS * 24L * 60 * 60 * 1000;
+		File[] expansions = getCacheFolder().listFiles();
+		for (File expansion : expansions == null ? new File[0] : expansions) {
+			if (expansion.getName().matches(EXPANSION_PATTERN) && expansion.lastModified() < unusedSince) {
+				log.debug("Deleting the unused expansion " + expansion.getName());
+				try {
+					OpenmrsUtil.deleteDirectory(expansion);
+				}
+				catch (IOException e) {
+					log.warn("Unable to delete the unused expansion " + expansion.getAbsolutePath(), e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Forgets all cached expansions
+	 */
+	public static synchronized void clear() throws IOException {
+		hashes.clear();
+		File folder = getCacheFolder();
+		if (folder.exists()) {
+			OpenmrsUtil.deleteDirectory(folder);
+		}
+	}
+	
+	/**
+	 * @param folder the folder to cache expansions in instead of the {@link #CACHE_FOLDER} in the
+	 *            application data directory
+	 */
+	static synchronized void setCacheFolder(File folder) {
+		cacheFolder = folder;
+	}
+	
+	private static synchronized File getCacheFolder() {
+		if (cacheFolder == null) {
+			cacheFolder = new File(OpenmrsUtil.getApplicationDataDirectory(), CACHE_FOLDER);
+		}
+		return cacheFolder;
+	}
+	
+	/**
+	 * Expands the jar into a new folder of the cache and deletes the expansions of older versions of
+	 * the jar
+	 *
+	 * @return the manifest of the expansion, its time in ms followed by the names of the entries
+	 */
+	private static List<String> cache(File jar, String name, File expansion) throws IOException {
+		long start = System.currentTimeMillis();
+		File tmp = new File(expansion.getParentFile(), expansion.getName() + ".tmp" + System.nanoTime());
+		List<String> manifest = new ArrayList<String>();
+		try {
+			manifest.addAll(extract(jar, name, tmp, true));
+			long time = System.currentTimeMillis() - start;
+			manifest.add(0, String.valueOf(time));
+			FileUtils.writeLines(new File(tmp, MANIFEST), "UTF-8", manifest);
+			if (!tmp.renameTo(expansion) && !new File(expansion, MANIFEST).isFile()) {
+				throw new IOException("Unable to move " + tmp + " to " + expansion);
+			}
+			if (log.isInfoEnabled()) {
+				log.info("Expanded " + (name == null ? "" : name + " of ") + jar.getName() + " in " + time + " ms");
+			}
+		}
+		finally {
+			if (tmp.exists()) {
+				OpenmrsUtil.deleteDirectory(tmp);
+			}
+		}
+		
+		String prefix = jar.getName() + "-";
+		File[] versions = getCacheFolder().listFiles();
+		for (File version : versions == null ? new File[0] : versions) {
+			String suffix = version.getName().substring(Math.min(prefix.length(), version.getName().length()));
+			if (version.getName().startsWith(prefix) && version.getName().matches(EXPANSION_PATTERN)
+			        && suffix.length() == 32 && !version.equals(expansion.getParentFile())) {
+				log.debug("Deleting the expansion of an older version of " + jar.getName());
+				OpenmrsUtil.deleteDirectory(version);
+			}
+		}
+		return manifest;
+	}
+	
+	/**
+	 * Writes the entries of the jar whose names start with the given name to the folder, the files in
+	 * parallel if there are many
+	 *
+	 * @return the names of the entries written
+	 */
+	private static List<String> extract(File jar, String name, final File folder, final boolean keepFullPath)
+	        throws IOException {
+		List<String> entryNames = new ArrayList<String>();
+		final JarFile jarFile = new JarFile(jar);
+		try {
+			List<JarEntry> files = new ArrayList<JarEntry>();
+			Enumeration<JarEntry> jarEntries = jarFile.entries();
+			while (jarEntries.hasMoreElements()) {
+				JarEntry jarEntry = jarEntries.nextElement();
+				if (name == null || jarEntry.getName().startsWith(name)) {
+					entryNames.add(jarEntry.getName());
+					String path = getPath(jarEntry.getName(), name, keepFullPath);
+					int last = path.lastIndexOf('/');
+					if (last >= 0) {
+						new File(folder, path.substring(0, last)).mkdirs();
+					}
+					// we don't want to "expand" directories or empty names
+					if (!path.endsWith("/") && !"".equals(path)) {
+						files.add(jarEntry);
+					}
+				}
+			}
+			folder.mkdirs();
+			
+			if (files.size() < MIN_PARALLEL_ENTRIES) {
+				for (JarEntry file : files) {
+					write(jarFile, file, new File(folder, getPath(file.getName(), name, keepFullPath)));
+				}
+				return entryNames;
+			}
+			
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, Runtime.getRuntime()
+			        .availableProcessors()));
+			try {
+				List<Future<Void>> futures = new ArrayList<Future<Void>>();
+				for (final JarEntry file : files) {
+					final File target = new File(folder, getPath(file.getName(), name, keepFullPath));
+					futures.add(executor.submit(new Callable<Void>() {
+						
+						@Override
+						public Void call() throws IOException {
+							write(jarFile, file, target);
+							return null;
+						}
+					}));
+				}
+				for (Future<Void> future : futures) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException e) {
+						if (e.getCause() instanceof IOException) {
+							throw (IOException) e.getCause();
+						}
+						throw new IOException("Unable to expand " + jar.getName(), e.getCause());
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while expanding " + jar.getName(), e);
+					}
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		finally {
+			jarFile.close();
+		}
+		return entryNames;
+	}
+	
+	private static void write(JarFile jarFile, JarEntry entry, File file) throws IOException {
+		if (log.isDebugEnabled()) {
+			log.debug("expanding: " + entry.getName());
+		}
+		// the file may be a link to a cached file left by an expansion from the cache that failed
+		Files.deleteIfExists(file.toPath());
+		InputStream in = jarFile.getInputStream(entry);
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				OpenmrsUtil.copyFile(in, out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Links the cached file to its place in the expanded folder, or copies it if it cannot be linked
+	 */
+	private static void link(File cached, File file) throws IOException {
+		Files.deleteIfExists(file.toPath());
+		try {
+			Files.createLink(file.toPath(), cached.toPath());
+		}
+		catch (IOException e) {
+			Files.copy(cached.toPath(), file.toPath());
+		}
+		catch (UnsupportedOperationException e) {
+			Files.copy(cached.toPath(), file.toPath());
+		}
+	}
+	
+	private static String getPath(String entryName, String name, boolean keepFullPath) {
+		// trim out the name path from the name of the new file
+		if (!keepFullPath && name != null) {
+			return entryName.replaceFirst(name, "");
+		}
+		return entryName;
+	}
+	
+	/**
+	 * @return the name of the folder of the cached expansion of the entries starting with the name
+	 */
+	private static String getKey(String name) {
+		if (name == null) {
+			return "all";
+		}
+		return name.replaceAll("[^A-Za-z0-9.-]", "_") + "-" + Integer.toHexString(name.hashCode());
+	}
+	
+	private static String getHash(File jar) throws IOException {
+		String key = jar.getAbsolutePath() + ":" + jar.length() + ":" + jar.lastModified();
+		String hash = hashes.get(key);
+		if (hash == null) {
+			InputStream in = new FileInputStream(jar);
+			try {
+				hash = DigestUtils.md5DigestAsHex(in);
+			}
+			finally {
+				IOUtils.closeQuietly(in);
+			}
+			hashes.put(key, hash);
+		}
+		return hash;
+	}
+}
@@ -267,6 +267,9 @@ public class ModuleFactory {
 				}
 			}		
 		}
+		
+		// the started modules have marked their expansions as used, old ones belong to upgraded or removed modules
+		ExpandedJarCache.prune();
 	}
 	
 	/**
@@ -48,6 +48,7 @@ import org.openmrs.GlobalProperty;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ServiceContext;
+import org.openmrs.customdatatype.CustomDatatypeUtil;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsUtil;
@@ -496,7 +497,8 @@ public class ModuleUtil {
 	}
 	
 	/**
-	 * Expand the given <code>fileToExpand</code> jar to the <code>tmpModuleFile</code> directory
+	 * Expand the given <code>fileToExpand</code> jar to the <code>tmpModuleFile</code> directory,
+	 * reusing the files of an earlier expansion of the same jar if there is one
 	 *
 	 * If <code>name</code> is null, the entire jar is expanded. If<code>name</code> is not null,
 	 * then only that path/file is expanded.
@@ -507,95 +509,10 @@ public class ModuleUtil {
 	 * @param keepFullPath if true, will recreate entire directory structure in tmpModuleDir
 	 *            relating to <code>name</code>. if false will start directory structure at
 	 *            <code>name</code>
+	 * @see ExpandedJarCache
 	 */
 	public static void expandJar(File fileToExpand, File tmpModuleDir, String name, boolean keepFullPath) throws IOException {
-		JarFile jarFile = null;
-		InputStream input = null;
-		String docBase = tmpModuleDir.getAbsolutePath();
-		try {
-			jarFile = new JarFile(fileToExpand);
-			Enumeration<JarEntry> jarEntries = jarFile.entries();
-			boolean foundName = (name == null);
-			
-			// loop over all of the elements looking for the match to 'name'
-			while (jarEntries.hasMoreElements()) {
-				JarEntry jarEntry = jarEntries.nextElement();
-				if (name == null || jarEntry.getName().startsWith(name)) {
-					String entryName = jarEntry.getName();
-					// trim out the name path from the name of the new file
-					if (!keepFullPath && name != null) {
-						entryName = entryName.replaceFirst(name, "");
-					}
-					
-					// if it has a slash, it's in a directory
-					int last = entryName.lastIndexOf('/');
-					if (last >= 0) {
-						File parent = new File(docBase, entryName.substring(0, last));
-						parent.mkdirs();
-						log.debug("Creating parent dirs: " + parent.getAbsolutePath());
-					}
-					// we don't want to "expand" directories or empty names
-					if (entryName.endsWith("/") || "".equals(entryName)) {
-						continue;
-					}
-					input = jarFile.getInputStream(jarEntry);
-					expand(input, docBase, entryName);
-					input.close();
-					input = null;
-					foundName = true;
-				}
-			}
-			if (!foundName) {
-				log.debug("Unable to find: " + name + " in file " + fileToExpand.getAbsolutePath());
-			}
-			
-		}
-		catch (IOException e) {
-			log.warn("Unable to delete tmpModuleFile on error", e);
-			throw e;
-		}
-		finally {
-			try {
-				input.close();
-			}
-			catch (Exception e) { /* pass */}
-			try {
-				jarFile.close();
-			}
-			catch (Exception e) { /* pass */}
-		}
-	}
-	
-	/**
-	 * Expand the given file in the given stream to a location (fileDir/name) The <code>input</code>
-	 * InputStream is not closed in this method
-	 *
-	 * @param input stream to read from
-	 * @param fileDir directory to copy to
-	 * @param name file/directory within the <code>fileDir</code> to which we expand
-	 *            <code>input</code>
-	 * @return File the file created by the expansion.
-	 * @throws IOException if an error occurred while copying
-	 */
-	private static File expand(InputStream input, String fileDir, String name) throws IOException {
-		if (log.isDebugEnabled()) {
-			log.debug("expanding: " + name);
-		}
-		
-		File file = new File(fileDir, name);
-		FileOutputStream outStream = null;
-		try {
-			outStream = new FileOutputStream(file);
-			OpenmrsUtil.copyFile(input, outStream);
-		}
-		finally {
-			try {
-				outStream.close();
-			}
-			catch (Exception e) { /* pass */}
-		}
-		
-		return file;
+		ExpandedJarCache.expand(fileToExpand, tmpModuleDir, name, keepFullPath);
 	}
 	
 	/**
@@ -834,6 +751,8 @@ public class ModuleUtil {
 			// pass
 		}
 		OpenmrsClassLoader.destroyInstance();
+		// the cached datatypes and handlers may be instances of classes of the old class loader
+		CustomDatatypeUtil.clearCache();
 		ctx.setClassLoader(OpenmrsClassLoader.getInstance());
 		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
 		
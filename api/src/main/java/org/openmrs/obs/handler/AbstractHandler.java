@@ -11,6 +11,7 @@ package org.openmrs.obs.handler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -27,7 +28,8 @@ import org.openmrs.util.OpenmrsUtil;
 
 /**
  * Abstract handler for some convenience methods Files are stored in the location specified by the
- * global property: "obs.complex_obs_dir"
+ * global property: "obs.complex_obs_dir", spread over sub directories by the
+ * {@link ComplexObsFileStore}
  * 
  * @since 1.5
  */
@@ -53,7 +55,8 @@ public class AbstractHandler {
 	/**
 	 * Returns a {@link File} for the given obs complex data to be written to. The output file
 	 * location is determined off of the {@link OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR}
-	 * and the file name is determined off the current obs.getComplexData().getTitle().
+	 * and the file name is determined off the current obs.getComplexData().getTitle(). The
+	 * directory the file is in is created if needed.
 	 * 
 	 * @param obs the Obs with a non-null complex data on it
 	 * @return File that the complex data should be written to
@@ -65,35 +68,31 @@ public class AbstractHandler {
 		String extension = getExtension(t);
 		String title = obs.getComplexData().getTitle();
 		
-		File dir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService().getGlobalProperty(
-		    OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
-		File outputfile = null;
+		ComplexObsFileStore store = getComplexObsFileStore();
+		String filename;
 		
-		// Get the output stream
+		// Get the output file name
 		if (null == title) {
-			String now = longfmt.format(new Date());
-			outputfile = new File(dir, now);
+			filename = longfmt.format(new Date());
 		} else {
 			title = title.replace("." + extension, "");
-			outputfile = new File(dir, title + "." + extension);
-			// outputfile = new File(dir, title);
+			filename = title + "." + extension;
 		}
 		
 		int i = 0;
-		String tmp = null;
+		String basename = filename.replace("." + extension, "");
 		
 		// If the Obs does not exist, but the File does, append a two-digit
 		// count number to the filename and save it.
-		while (obs.getObsId() == null && outputfile.exists() && i < 100) {
-			tmp = null;
-			// Remove the extension from the filename.
-			tmp = String.valueOf(outputfile.getAbsolutePath().replace("." + extension, ""));
-			outputfile = null;
-			// Append two-digit count number to the filename.
-			String filename = (i < 1) ? tmp + "_" + nf.format(Integer.valueOf(++i)) : tmp.replace(nf.format(Integer
-			        .valueOf(i)), nf.format(Integer.valueOf(++i)));
-			// Append the extension to the filename.
-			outputfile = new File(filename + "." + extension);
+		while (obs.getObsId() == null && store.exists(filename) && i < 100) {
+			// Append two-digit count number and the extension to the filename.
+			filename = basename + "_" + nf.format(Integer.valueOf(++i)) + "." + extension;
+		}
+		
+		File outputfile = store.getShardedFile(filename);
+		File dir = outputfile.getParentFile();
+		if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+			throw new IOException("Unable to create directory " + dir.getAbsolutePath());
 		}
 		
 		return outputfile;
@@ -164,9 +163,35 @@ public class AbstractHandler {
 	public static File getComplexDataFile(Obs obs) {
 		String[] names = obs.getValueComplex().split("\\|");
 		String filename = names.length < 2 ? names[0] : names[names.length - 1];
+		return getComplexObsFileStore().getFile(filename);
+	}
+	
+	/**
+	 * Gets the store for the directory specified by the
+	 * {@link OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR} global property
+	 * 
+	 * @return the complex obs file store
+	 * @since 2.1.0
+	 */
+	public static ComplexObsFileStore getComplexObsFileStore() {
 		File dir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(Context.getAdministrationService().getGlobalProperty(
 		    OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
-		return new File(dir, filename);
+		return new ComplexObsFileStore(dir);
+	}
+	
+	/**
+	 * Opens a stream over part of the complex data of the given obs, so that large files can be
+	 * served in ranges without reading them completely
+	 * 
+	 * @param obs the obs with a stored complex data file
+	 * @param offset the position of the first byte to read
+	 * @param length the maximum number of bytes to read, a negative value reads to the end of the file
+	 * @return a stream over the range, the caller must close it
+	 * @throws IOException if the file cannot be opened
+	 * @since 2.1.0
+	 */
+	public InputStream getComplexDataStream(Obs obs, long offset, long length) throws IOException {
+		return ComplexObsFileStore.openStream(getComplexDataFile(obs), offset, length);
 	}
 	
 	/**
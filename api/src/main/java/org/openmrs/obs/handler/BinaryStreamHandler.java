@@ -10,10 +10,7 @@
 package org.openmrs.obs.handler;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.InputStream;
-import java.io.OutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -25,10 +22,11 @@ import org.openmrs.api.APIException;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
 import org.openmrs.util.OpenmrsConstants;
-import org.openmrs.util.OpenmrsUtil;
 
 /**
- * Handler for storing generic binary data for complex obs to the file system.
+ * Handler for storing generic binary data for complex obs to the file system. The data is streamed
+ * in both directions and stored under a name derived from its content, see
+ * {@link ComplexObsFileStore#write(InputStream, String)}.
  * 
  * @see OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR
  * @since 1.8
@@ -59,6 +57,21 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 	 */
 	@Override
 	public Obs getObs(Obs obs, String view) {
+		return getObs(obs, view, 0, -1);
+	}
+	
+	/**
+	 * Same as {@link #getObs(Obs, String)} but the data stream only covers the given range of the
+	 * file and the length of the complex data is the length of that range
+	 * 
+	 * @param obs the obs to get the complex data of
+	 * @param view the view, only {@link ComplexObsHandler#RAW_VIEW} is supported
+	 * @param offset the position of the first byte to read
+	 * @param length the maximum number of bytes to read, a negative value reads to the end of the file
+	 * @return the obs with the complex data set or null if the view is not supported
+	 * @since 2.1.0
+	 */
+	public Obs getObs(Obs obs, String view, long offset, long length) {
 		ComplexData complexData = null;
 		
 		// Raw stream
@@ -70,8 +83,12 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 				originalFilename = originalFilename.replace(",", "").replace(" ", "");
 				
 				if (file.exists()) {
-					FileInputStream fileInputStream = new FileInputStream(file);
-					complexData = new ComplexData(originalFilename, fileInputStream);
+					long rangeLength = Math.max(0, file.length() - offset);
+					if (length >= 0) {
+						rangeLength = Math.min(length, rangeLength);
+					}
+					complexData = new ComplexData(originalFilename, ComplexObsFileStore.openStream(file, offset, length));
+					complexData.setLength(rangeLength);
 				} else {
 					log.error("Unable to find file associated with complex obs " + obs.getId());
 				}
@@ -104,20 +121,19 @@ public class BinaryStreamHandler extends AbstractHandler implements ComplexObsHa
 	 * @see ComplexObsHandler#saveObs(Obs)
 	 */
 	public Obs saveObs(Obs obs) throws APIException {
+		InputStream in = (InputStream) obs.getComplexData().getData();
+		if (in == null) {
+			throw new APIException("Obs.error.cannot.save.complex", new Object[] { obs.getObsId() });
+		}
+		
 		try {
-			// Write the File to the File System
+			// Stream the data to the File System, the store closes the stream
 			String fileName = obs.getComplexData().getTitle();
-			InputStream in = (InputStream) obs.getComplexData().getData();
-			File outfile = getOutputFileToWrite(obs);
-			OutputStream out = new FileOutputStream(outfile, false);
-			OpenmrsUtil.copyFile(in, out);
+			String storedName = getComplexObsFileStore().write(in, getExtension(fileName));
 			
 			// Store the filename in the Obs
 			obs.setComplexData(null);
-			obs.setValueComplex(fileName + "|" + outfile.getName());
-			
-			// close the stream
-			out.close();
+			obs.setValueComplex(fileName + "|" + storedName);
 		}
 		catch (Exception e) {
 			throw new APIException("Obs.error.writing.binary.data.complex", null, e);
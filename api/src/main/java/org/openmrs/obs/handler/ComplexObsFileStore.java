@@ -0,0 +1,379 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.obs.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.util.OpenmrsUtil;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Stores the files of complex obs in the complex obs directory. Files are spread over two levels of
+ * sub directories derived from a hash of the file name, e.g. "nameOfFile.txt" is stored as
+ * "3f/a2/nameOfFile.txt", so that no single directory grows too big. Obs only record the file
+ * name, the sub directories are always derived from it. Files written before the store existed
+ * are still found directly in the complex obs directory until they are moved by
+ * {@link #migrateFlatLayout()}. <br>
+ * <br>
+ * Content written through {@link #write(InputStream, String)} is streamed to disk and named after
+ * the SHA-256 hash of the content, so identical content is stored only once.
+ *
+ * @since 2.1.0
+ */
+public class ComplexObsFileStore {
+	
+	private static final Log log = LogFactory.getLog(ComplexObsFileStore.class);
+	
+	/**
+	 * The directory, within the complex obs directory, that content is written to before it is
+	 * moved to its final location
+	 */
+	public static final String TEMP_DIRECTORY = ".tmp";
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final File directory;
+	
+	/**
+	 * @param directory the complex obs directory
+	 */
+	public ComplexObsFileStore(File directory) {
+		this.directory = directory;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Gets the location in the sharded layout of the file with the given name, regardless of whether
+	 * it exists
+	 *
+	 * @param fileName the file name recorded on the obs
+	 * @return the file
+	 * @should return a file two levels below the directory
+	 * @should return the same file for the same name
+	 */
+	public File getShardedFile(String fileName) {
+		String hash;
+		try {
+			hash = DigestUtils.md5DigestAsHex(fileName.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		File shard = new File(new File(directory, hash.substring(0, 2)), hash.substring(2, 4));
+		return new File(shard, fileName);
+	}
+	
+	/**
+	 * Gets the stored file with the given name, looking in the sharded layout first and then in the
+	 * flat layout used before this store existed
+	 *
+	 * @param fileName the file name recorded on the obs
+	 * @return the file, if it exists in neither layout the location in the sharded layout is returned
+	 * @should find a file in the flat layout
+	 * @should prefer the sharded layout
+	 */
+	public File getFile(String fileName) {
+		File sharded = getShardedFile(fileName);
+		if (sharded.exists()) {
+			return sharded;
+		}
+		File flat = new File(directory, fileName);
+		if (flat.exists()) {
+			return flat;
+		}
+		return sharded;
+	}
+	
+	/**
+	 * @param fileName the file name recorded on the obs
+	 * @return true if a file with the given name is stored in either layout
+	 */
+	public boolean exists(String fileName) {
+		return getShardedFile(fileName).exists() || new File(directory, fileName).exists();
+	}
+	
+	/**
+	 * Streams the given content into the store. The content never needs to fit in memory, it is
+	 * copied through a channel to a temporary file while its hash is computed and then moved to its
+	 * final location. Content that is already stored, e.g. for an obs that is edited, is not stored
+	 * again, its name is returned instead, and purging an obs keeps content that other obs still refer
+	 * to. Different content with the same hash is stored under a numbered name. The name is claimed by
+	 * creating the file, so concurrent writes of identical content may still store it twice.
+	 *
+	 * @param in the content, it is read to the end and closed
+	 * @param extension the file extension to use, without the dot
+	 * @return the name of the stored file, to be recorded on the obs
+	 * @should name the file after the hash of the content
+	 * @should store identical content only once
+	 * @should not overwrite different content with the same hash
+	 * @should close the stream
+	 */
+	public String write(InputStream in, String extension) throws IOException {
+		File tempFile = null;
+		try {
+			File tempDirectory = new File(directory, TEMP_DIRECTORY);
+			if (!tempDirectory.exists() && !tempDirectory.mkdirs()) {
+				throw new IOException("Unable to create directory " + tempDirectory.getAbsolutePath());
+			}
+			tempFile = File.createTempFile("complex", ".tmp", tempDirectory);
+			
+			MessageDigest digest = getContentDigest();
+			ReadableByteChannel source = Channels.newChannel(in);
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				FileChannel target = out.getChannel();
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (source.read(buffer) != -1) {
+					buffer.flip();
+					digest.update(buffer.array(), 0, buffer.limit());
+					while (buffer.hasRemaining()) {
+						target.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+			finally {
+				out.close();
+			}
+			
+			String hash = toHex(digest.digest());
+			String fileName = hash + "." + extension;
+			int suffix = 0;
+			while (true) {
+				File stored = getFile(fileName);
+				if (stored.exists()) {
+					// the same content is shared, different content means the hashes collide
+					if (FileUtils.contentEquals(stored, tempFile)) {
+						return fileName;
+					}
+					suffix++;
+					fileName = hash + "-" + suffix + "." + extension;
+				} else if (claim(fileName)) {
+					break;
+				}
+			}
+			
+			File file = getShardedFile(fileName);
+			try {
+				// replaces the empty file that claimed the name, no obs refers to it yet
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException e) {
+				Files.deleteIfExists(file.toPath());
+				throw e;
+			}
+			return fileName;
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+			if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+				log.warn("Unable to delete temporary file " + tempFile.getAbsolutePath());
+			}
+		}
+	}
+	
+	/**
+	 * Claims the given name by creating an empty file in the sharded layout, which fails if another
+	 * write created it first
+	 *
+	 * @return true if the name was free and is now claimed
+	 */
+	private boolean claim(String fileName) throws IOException {
+		if (new File(directory, fileName).exists()) {
+			return false;
+		}
+		File file = getShardedFile(fileName);
+		createParentDirectory(file);
+		try {
+			Files.createFile(file.toPath());
+			return true;
+		}
+		catch (FileAlreadyExistsException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Opens a stream over part of a stored file. Only the requested range is read from disk, so
+	 * large media can be served in pieces without loading the whole file.
+	 *
+	 * @param file the stored file
+	 * @param offset the position of the first byte to read
+	 * @param length the maximum number of bytes to read, a negative value reads to the end of the file
+	 * @return a stream over the range, the caller must close it
+	 * @should read only the requested range
+	 * @should read to the end of the file if the length is negative
+	 */
+	public static InputStream openStream(File file, long offset, long length) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long end = length < 0 ? channel.size() : Math.min(channel.size(), offset + length);
+			return new RangeInputStream(in, channel, offset, end);
+		}
+		catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Moves the files that were written before the sharded layout existed from the complex obs
+	 * directory into their sharded location. The obs do not change because they only record the
+	 * file name. The directory is streamed, so it does not matter how many files it contains, and
+	 * migrating again after an interruption carries on with the files that are left.
+	 *
+	 * @return the number of files that were moved
+	 * @should move files in the flat layout to the sharded layout
+	 * @should not overwrite files in the sharded layout
+	 */
+	public int migrateFlatLayout() throws IOException {
+		int moved = 0;
+		if (!directory.isDirectory()) {
+			return moved;
+		}
+		
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory.toPath());
+		try {
+			for (Path path : files) {
+				if (!Files.isRegularFile(path)) {
+					continue;
+				}
+				
+				File flat = path.toFile();
+				File sharded = getShardedFile(flat.getName());
+				if (sharded.exists()) {
+					log.warn("Not moving " + flat.getAbsolutePath() + " because " + sharded.getAbsolutePath()
+					        + " already exists");
+					continue;
+				}
+				
+				createParentDirectory(sharded);
+				Files.move(path, sharded.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				moved++;
+				if (moved % 1000 == 0) {
+					log.info("Moved " + moved + " complex obs files to the sharded layout");
+				}
+			}
+		}
+		finally {
+			OpenmrsUtil.closeStream(files);
+		}
+		
+		log.info("Moved " + moved + " complex obs files to the sharded layout");
+		return moved;
+	}
+	
+	private static void createParentDirectory(File file) throws IOException {
+		File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+			throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+		}
+	}
+	
+	private static MessageDigest getContentDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not supported by this JVM", e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * Reads a range of a file with positional channel reads
+	 */
+	private static class RangeInputStream extends InputStream {
+		
+		private final FileInputStream in;
+		
+		private final FileChannel channel;
+		
+		private final long end;
+		
+		private long position;
+		
+		public RangeInputStream(FileInputStream in, FileChannel channel, long offset, long end) {
+			this.in = in;
+			this.channel = channel;
+			this.position = offset;
+			this.end = end;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= end) {
+				return -1;
+			}
+			
+			int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+			if (count > 0) {
+				position += count;
+			}
+			return count;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0, Math.min(n, end - position));
+			position += skipped;
+			return skipped;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
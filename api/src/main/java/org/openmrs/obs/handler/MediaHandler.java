@@ -10,11 +10,8 @@
 package org.openmrs.obs.handler;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +24,8 @@ import org.openmrs.util.OpenmrsUtil;
 /**
  * Handler for storing audio and video for complex obs to the file system. The mime type used is
  * taken from the file name. Media are stored in the location specified by the global property: "obs.complex_obs_dir"
+ * under a name derived from their content, and can be read in ranges with
+ * {@link #getObs(Obs, String, long, long)}.
  *
  * @see org.openmrs.util.OpenmrsConstants#GLOBAL_PROPERTY_COMPLEX_OBS_DIR
  * @since 1.12
@@ -48,6 +47,22 @@ public class MediaHandler extends AbstractHandler implements ComplexObsHandler {
 	 * @see org.openmrs.obs.ComplexObsHandler#getObs(org.openmrs.Obs, java.lang.String)
 	 */
 	public Obs getObs(Obs obs, String view) {
+		return getObs(obs, view, 0, -1);
+	}
+	
+	/**
+	 * Same as {@link #getObs(Obs, String)} but the media stream only covers the given range of the
+	 * file, e.g. to answer an HTTP range request for a video, and the length of the complex data is
+	 * the length of that range
+	 *
+	 * @param obs the obs to get the media of
+	 * @param view the view, only {@link ComplexObsHandler#RAW_VIEW} is supported
+	 * @param offset the position of the first byte to read
+	 * @param length the maximum number of bytes to read, a negative value reads to the end of the file
+	 * @return the obs with the complex data set or null if the view is not supported
+	 * @since 2.1.0
+	 */
+	public Obs getObs(Obs obs, String view, long offset, long length) {
 		File file = getComplexDataFile(obs);
 		
 		// Raw media
@@ -57,16 +72,17 @@ public class MediaHandler extends AbstractHandler implements ComplexObsHandler {
 				String originalFilename = names[0];
 				originalFilename = originalFilename.replace(",", "").replace(" ", "");
 				
-				FileInputStream mediaStream = new FileInputStream(file);
+				InputStream mediaStream = ComplexObsFileStore.openStream(file, offset, length);
 				ComplexData complexData = new ComplexData(originalFilename, mediaStream);
 				
 				complexData.setMimeType(OpenmrsUtil.getFileMimeType(file));
 				
-				complexData.setLength(file.length());
+				long rangeLength = Math.max(0, file.length() - offset);
+				complexData.setLength(length < 0 ? rangeLength : Math.min(length, rangeLength));
 				
 				obs.setComplexData(complexData);
 			}
-			catch (FileNotFoundException e) {
+			catch (IOException e) {
 				log.error("Trying to create media file stream from " + file.getAbsolutePath(), e);
 			}
 		}
@@ -91,21 +107,19 @@ public class MediaHandler extends AbstractHandler implements ComplexObsHandler {
 	 * @see org.openmrs.obs.ComplexObsHandler#saveObs(org.openmrs.Obs)
 	 */
 	public Obs saveObs(Obs obs) throws APIException {
+		InputStream mediaStream = (InputStream) obs.getComplexData().getData();
+		if (mediaStream == null) {
+			throw new APIException("Obs.error.cannot.save.complex", new Object[] { obs.getObsId() });
+		}
 		
 		try {
-			// Write the File to the File System
+			// Stream the media to the File System, the store closes the stream
 			String fileName = obs.getComplexData().getTitle();
-			File outfile = getOutputFileToWrite(obs);
-			OutputStream out = new FileOutputStream(outfile, false);
-			FileInputStream mediaStream = (FileInputStream) obs.getComplexData().getData();
-			OpenmrsUtil.copyFile(mediaStream, out);
+			String storedName = getComplexObsFileStore().write(mediaStream, getExtension(fileName));
 			
 			// Store the filename in the Obs
 			obs.setComplexData(null);
-			obs.setValueComplex(fileName + "|" + outfile.getName());
-			
-			// close the stream
-			out.close();
+			obs.setValueComplex(fileName + "|" + storedName);
 		}
 		catch (IOException ioe) {
 			throw new APIException("Obs.error.trying.write.complex", null, ioe);
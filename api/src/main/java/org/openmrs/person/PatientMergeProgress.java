@@ -0,0 +1,147 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.person;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmrs.api.PatientService;
+
+/**
+ * Tracks the progress of a merge of one or more non-preferred patients into a preferred patient.
+ * It is updated by the thread doing the merge and can be read from any other thread, e.g. to show
+ * the progress of a merge started with
+ * {@link PatientService#mergePatientsAsync(org.openmrs.Patient, java.util.List)}.
+ *
+ * @see PatientService#mergePatients(org.openmrs.Patient, java.util.List, PatientMergeProgress)
+ * @since 2.1.0
+ */
+public class PatientMergeProgress {
+	
+	private final int patientCount;
+	
+	private final AtomicInteger mergedPatientCount = new AtomicInteger();
+	
+	private final AtomicLong movedRowCount = new AtomicLong();
+	
+	private final CountDownLatch finished = new CountDownLatch(1);
+	
+	private volatile String currentStep;
+	
+	private volatile Throwable error;
+	
+	/**
+	 * @param patientCount the number of non-preferred patients to merge
+	 */
+	public PatientMergeProgress(int patientCount) {
+		this.patientCount = patientCount;
+	}
+	
+	/**
+	 * @return the number of non-preferred patients to merge
+	 */
+	public int getPatientCount() {
+		return patientCount;
+	}
+	
+	/**
+	 * @return the number of non-preferred patients that were merged so far, which goes back to what
+	 *         it was before the merge if the merge is rolled back
+	 */
+	public int getMergedPatientCount() {
+		return mergedPatientCount.get();
+	}
+	
+	/**
+	 * @return the number of visits, encounters and independent observations that were moved so far,
+	 *         which goes back to what it was before the merge if the merge is rolled back
+	 */
+	public long getMovedRowCount() {
+		return movedRowCount.get();
+	}
+	
+	/**
+	 * @return what the merge is busy with, e.g. "encounters", or null if it has not started or is
+	 *         finished
+	 */
+	public String getCurrentStep() {
+		return currentStep;
+	}
+	
+	/**
+	 * @return true if the merge finished, successfully or not
+	 */
+	public boolean isFinished() {
+		return finished.getCount() == 0;
+	}
+	
+	/**
+	 * @return the error that stopped the merge, in which case nothing was merged, or null
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	/**
+	 * Waits for the merge to finish
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if the merge finished, false if the time ran out
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+	
+	public void startStep(String step) {
+		currentStep = step;
+	}
+	
+	public void addMovedRows(int count) {
+		movedRowCount.addAndGet(count);
+	}
+	
+	public void patientMerged() {
+		mergedPatientCount.incrementAndGet();
+	}
+	
+	/**
+	 * Sets the counts back to what they were before a merge whose transaction was rolled back
+	 *
+	 * @param mergedPatientCount the number of merged patients before the merge started
+	 * @param movedRowCount the number of moved rows before the merge started
+	 */
+	public void rollBackTo(int mergedPatientCount, long movedRowCount) {
+		this.mergedPatientCount.set(mergedPatientCount);
+		this.movedRowCount.set(movedRowCount);
+	}
+	
+	/**
+	 * Marks the merge as finished
+	 *
+	 * @param error the error that stopped the merge or null if it succeeded
+	 */
+	public void finish(Throwable error) {
+		this.error = error;
+		currentStep = null;
+		finished.countDown();
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatientMergeProgress[merged=" + mergedPatientCount + "/" + patientCount + ", movedRows=" + movedRowCount
+		        + ", step=" + currentStep + ", finished=" + isFinished() + ", error=" + error + "]";
+	}
+}
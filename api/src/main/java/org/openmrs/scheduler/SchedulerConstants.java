@@ -33,4 +33,19 @@ public class SchedulerConstants {
 	/** Scheduler admin email property - Used to email administrator if a task fails */
 	public static String SCHEDULER_ADMIN_EMAIL_PROPERTY = "scheduler.admin_email";
 	
+	/**
+	 * Task definition property holding the {@link TaskConcurrencyPolicy} of the task
+	 * 
+	 * @since 2.1.0
+	 */
+	public final static String TASK_CONCURRENCY_POLICY_PROPERTY = "concurrencyPolicy";
+	
+	/**
+	 * Runtime property that makes the scheduler run tasks on virtual threads when the JVM supports
+	 * them
+	 * 
+	 * @since 2.1.0
+	 */
+	public final static String SCHEDULER_VIRTUAL_THREADS_RUNTIME_PROPERTY = "scheduler.use_virtual_threads";
+	
 }
@@ -31,6 +31,18 @@ public interface SchedulerService extends OpenmrsService {
 	@Authorized( { "Manage Scheduler" })
 	public String getStatus(Integer id);
 	
+	/**
+	 * Gets the run time and lag statistics recorded for a scheduled task since it was last scheduled
+	 *
+	 * @param id the id of the task definition
+	 * @return the statistics or null if the task is not scheduled
+	 * @since 2.1.0
+	 * @should return null for a task that is not scheduled
+	 * @should return statistics for a scheduled task
+	 */
+	@Authorized( { "Manage Scheduler" })
+	public TaskRunStatistics getTaskRunStatistics(Integer id);
+	
 	/**
 	 * Start all tasks that are scheduled to run on startup.
 	 */
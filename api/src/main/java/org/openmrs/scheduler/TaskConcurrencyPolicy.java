@@ -0,0 +1,56 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.scheduler;
+
+/**
+ * Decides what the scheduler does when a task is due to run again while its previous run is still
+ * executing. The policy of a task is read from its {@link TaskDefinition} property named
+ * {@link SchedulerConstants#TASK_CONCURRENCY_POLICY_PROPERTY}, a task without the property uses
+ * {@link #COALESCE}.
+ *
+ * @since 2.1.0
+ */
+public enum TaskConcurrencyPolicy {
+	
+	/**
+	 * Drops runs that are due while the task is executing
+	 */
+	SKIP,
+	
+	/**
+	 * Queues every run that is due while the task is executing, they are executed one after the
+	 * other once the current run finishes
+	 */
+	QUEUE,
+	
+	/**
+	 * Collapses all runs that are due while the task is executing into a single run that is executed
+	 * once the current run finishes
+	 */
+	COALESCE;
+	
+	/**
+	 * Gets the policy configured for the given task
+	 *
+	 * @param taskDefinition the task definition
+	 * @return the configured policy or {@link #COALESCE} if none or an unknown one is configured
+	 */
+	public static TaskConcurrencyPolicy getPolicy(TaskDefinition taskDefinition) {
+		String value = taskDefinition.getProperty(SchedulerConstants.TASK_CONCURRENCY_POLICY_PROPERTY);
+		if (value != null) {
+			for (TaskConcurrencyPolicy policy : values()) {
+				if (policy.name().equalsIgnoreCase(value.trim())) {
+					return policy;
+				}
+			}
+		}
+		return COALESCE;
+	}
+}
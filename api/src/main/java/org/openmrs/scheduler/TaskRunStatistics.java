@@ -0,0 +1,142 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.scheduler;
+
+import java.util.Date;
+
+/**
+ * A point in time copy of the run time and lag figures the scheduler records for a scheduled task.
+ * All durations are in milliseconds. The lag of a run is the time between the moment it was due
+ * and the moment it actually started, it grows when the task overruns its repeat interval or when
+ * the scheduler is short of threads.
+ *
+ * @see SchedulerService#getTaskRunStatistics(Integer)
+ * @since 2.1.0
+ */
+public class TaskRunStatistics {
+	
+	private final TaskConcurrencyPolicy concurrencyPolicy;
+	
+	private final boolean executing;
+	
+	private final int pendingRuns;
+	
+	private final long runCount;
+	
+	private final long failureCount;
+	
+	private final long skippedCount;
+	
+	private final Date lastRunStart;
+	
+	private final long lastRunTime;
+	
+	private final long maxRunTime;
+	
+	private final long totalRunTime;
+	
+	private final long lastLag;
+	
+	private final long maxLag;
+	
+	public TaskRunStatistics(TaskConcurrencyPolicy concurrencyPolicy, boolean executing, int pendingRuns, long runCount,
+	    long failureCount, long skippedCount, Date lastRunStart, long lastRunTime, long maxRunTime, long totalRunTime,
+	    long lastLag, long maxLag) {
+		this.concurrencyPolicy = concurrencyPolicy;
+		this.executing = executing;
+		this.pendingRuns = pendingRuns;
+		this.runCount = runCount;
+		this.failureCount = failureCount;
+		this.skippedCount = skippedCount;
+		this.lastRunStart = lastRunStart == null ? null : (Date) lastRunStart.clone();
+		this.lastRunTime = lastRunTime;
+		this.maxRunTime = maxRunTime;
+		this.totalRunTime = totalRunTime;
+		this.lastLag = lastLag;
+		this.maxLag = maxLag;
+	}
+	
+	public TaskConcurrencyPolicy getConcurrencyPolicy() {
+		return concurrencyPolicy;
+	}
+	
+	/**
+	 * @return true if the task was executing when the statistics were taken
+	 */
+	public boolean isExecuting() {
+		return executing;
+	}
+	
+	/**
+	 * @return the number of runs waiting for the current run to finish
+	 */
+	public int getPendingRuns() {
+		return pendingRuns;
+	}
+	
+	/**
+	 * @return the number of completed runs, including failed ones
+	 */
+	public long getRunCount() {
+		return runCount;
+	}
+	
+	public long getFailureCount() {
+		return failureCount;
+	}
+	
+	/**
+	 * @return the number of runs that were dropped or coalesced because the task was still executing
+	 */
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+	
+	public Date getLastRunStart() {
+		return lastRunStart == null ? null : (Date) lastRunStart.clone();
+	}
+	
+	public long getLastRunTime() {
+		return lastRunTime;
+	}
+	
+	public long getMaxRunTime() {
+		return maxRunTime;
+	}
+	
+	public long getTotalRunTime() {
+		return totalRunTime;
+	}
+	
+	/**
+	 * @return the average run time or 0 if the task has not run yet
+	 */
+	public long getAverageRunTime() {
+		return runCount == 0 ? 0 : totalRunTime / runCount;
+	}
+	
+	public long getLastLag() {
+		return lastLag;
+	}
+	
+	public long getMaxLag() {
+		return maxLag;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TaskRunStatistics[policy=" + concurrencyPolicy + ", runs=" + runCount + ", failures=" + failureCount
+		        + ", skipped=" + skippedCount + ", pending=" + pendingRuns + ", averageRunTime=" + getAverageRunTime()
+		        + ", maxRunTime=" + maxRunTime + ", lastLag=" + lastLag + ", maxLag=" + maxLag + "]";
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.scheduler.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.obs.handler.AbstractHandler;
+import org.openmrs.obs.handler.ComplexObsFileStore;
+
+/**
+ * A task that moves the complex obs files that are still stored directly in the complex obs
+ * directory into the sharded layout of the {@link ComplexObsFileStore}. The obs themselves are not
+ * changed, so the task can safely be run while the application is in use and again if it is
+ * interrupted.
+ *
+ * @see ComplexObsFileStore#migrateFlatLayout()
+ * @since 2.1.0
+ */
+public class MigrateComplexObsFilesTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(MigrateComplexObsFilesTask.class);
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled()) {
+				log.debug("Starting Migrate Complex Obs Files Task...");
+			}
+			
+			startExecuting();
+			try {
+				AbstractHandler.getComplexObsFileStore().migrateFlatLayout();
+			}
+			catch (Exception e) {
+				log.error("Error while migrating complex obs files:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
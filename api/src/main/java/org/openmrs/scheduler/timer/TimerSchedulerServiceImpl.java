@@ -12,34 +12,44 @@ package org.openmrs.scheduler.timer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.Timer;
 import java.util.TreeMap;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.scheduler.SchedulerConstants;
 import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskConcurrencyPolicy;
 import org.openmrs.scheduler.TaskDefinition;
 import org.openmrs.scheduler.TaskFactory;
+import org.openmrs.scheduler.TaskRunStatistics;
 import org.openmrs.scheduler.db.SchedulerDAO;
 import org.openmrs.util.OpenmrsMemento;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Simple scheduler service that uses JDK timer to trigger and execute scheduled tasks.
+ * Simple scheduler service that triggers all scheduled tasks from one shared
+ * {@link ScheduledExecutorService} and executes them on a pool of worker threads, or on virtual
+ * threads when the {@link SchedulerConstants#SCHEDULER_VIRTUAL_THREADS_RUNTIME_PROPERTY} runtime
+ * property is true and the JVM supports them.
  */
 @Transactional
 public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements SchedulerService {
@@ -57,17 +67,18 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	/**
 	 * Scheduled Task Map
 	 */
-	private static Map<Integer, TimerSchedulerTask> scheduledTasks = new WeakHashMap<Integer, TimerSchedulerTask>();
+	private static Map<Integer, TimerSchedulerTask> scheduledTasks = new ConcurrentHashMap<Integer, TimerSchedulerTask>();
 	
 	/**
-	 * A single timer used to keep track of all scheduled tasks. The Timer's associated thread
-	 * should run as a daemon. A deamon thread is called for if the timer will be used to schedule
-	 * repeating "maintenance activities", which must be performed as long as the application is
-	 * running, but should not prolong the lifetime of the application.
-	 *
-	 * @see java.util.Timer#Timer(boolean)
+	 * The scheduler that triggers all scheduled tasks, it only hands the runs off to the
+	 * {@link #taskExecutor} so a single daemon thread is enough
+	 */
+	private static ScheduledExecutorService scheduler;
+	
+	/**
+	 * Executes the runs of the scheduled tasks
 	 */
-	private Map<TaskDefinition, Timer> taskDefinitionTimerMap = new HashMap<TaskDefinition, Timer>();
+	private static ExecutorService taskExecutor;
 	
 	/**
 	 * Global data access object context
@@ -119,7 +130,7 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		if (scheduledTasks != null) {
 			TimerSchedulerServiceImpl.scheduledTasks = scheduledTasks;
 		} else {
-			TimerSchedulerServiceImpl.scheduledTasks = new WeakHashMap<Integer, TimerSchedulerTask>();
+			TimerSchedulerServiceImpl.scheduledTasks = new ConcurrentHashMap<Integer, TimerSchedulerTask>();
 		}
 	}
 	
@@ -131,7 +142,7 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		// gracefully shutdown all tasks and remove all references to the timers, scheduler
 		try {
 			shutdownAllTasks();
-			cancelAllTimers(); // Just a precaution - this shouldn't be necessary if shutdownAllTasks() does its job
+			shutdownExecutors(); // Just a precaution - this shouldn't be necessary if shutdownAllTasks() does its job
 		}
 		catch (APIException e) {
 			log.error("Failed to stop all tasks due to API exception", e);
@@ -143,11 +154,16 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	}
 	
 	/**
-	 * Convenience method to stop all tasks in the {@link #taskDefinitionTimerMap}
+	 * Stops the scheduler and the task executor, runs that are executing are allowed to finish
 	 */
-	private void cancelAllTimers() {
-		for (Timer timer : taskDefinitionTimerMap.values()) {
-			timer.cancel();
+	private static synchronized void shutdownExecutors() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		if (taskExecutor != null) {
+			taskExecutor.shutdown();
+			taskExecutor = null;
 		}
 	}
 	
@@ -173,22 +189,52 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	}
 	
 	/**
-	 * Get the {@link Timer} that is assigned to the given {@link TaskDefinition} object. If a Timer
-	 * doesn't exist yet, one is created, added to {@link #taskDefinitionTimerMap} and then returned
+	 * Schedules the given task on the shared scheduler, the scheduler and task executor are created
+	 * the first time a task is scheduled
 	 *
-	 * @param taskDefinition the {@link TaskDefinition} to look for
-	 * @return the {@link Timer} associated with the given {@link TaskDefinition}
+	 * @param schedulerTask the task to schedule
+	 * @param firstExecutionTime the time of the first run
+	 * @param repeatInterval the interval between runs in milliseconds, 0 for a single run
 	 */
-	private Timer getTimer(TaskDefinition taskDefinition) {
-		Timer timer;
-		if (taskDefinitionTimerMap.containsKey(taskDefinition)) {
-			timer = taskDefinitionTimerMap.get(taskDefinition);
-		} else {
-			timer = new Timer(true);
-			taskDefinitionTimerMap.put(taskDefinition, timer);
+	private static synchronized void schedule(TimerSchedulerTask schedulerTask, long firstExecutionTime,
+	        long repeatInterval) {
+		if (scheduler == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(
+			        "OpenMRS Scheduler"));
+			executor.setRemoveOnCancelPolicy(true);
+			scheduler = executor;
+		}
+		if (taskExecutor == null) {
+			taskExecutor = createTaskExecutor();
+		}
+		schedulerTask.schedule(scheduler, taskExecutor, firstExecutionTime, repeatInterval);
+	}
+	
+	/**
+	 * Creates the executor the task runs are executed on. Each run blocks a thread until the task
+	 * completes, so the platform thread pool is unbounded and threads are reused across tasks.
+	 */
+	private static ExecutorService createTaskExecutor() {
+		String useVirtualThreads = null;
+		try {
+			useVirtualThreads = Context.getRuntimeProperties().getProperty(
+			    SchedulerConstants.SCHEDULER_VIRTUAL_THREADS_RUNTIME_PROPERTY);
+		}
+		catch (Exception e) {
+			LogFactory.getLog(TimerSchedulerServiceImpl.class).debug("Unable to read the runtime properties", e);
 		}
 		
-		return timer;
+		if (Boolean.parseBoolean(useVirtualThreads)) {
+			try {
+				// looked up reflectively so that the scheduler still runs on JVMs without virtual threads
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch (Exception e) {
+				LogFactory.getLog(TimerSchedulerServiceImpl.class).warn(
+				    "Virtual threads are not supported by this JVM, scheduled tasks will run on platform threads");
+			}
+		}
+		return Executors.newCachedThreadPool(new DaemonThreadFactory("OpenMRS Scheduler Task"));
 	}
 	
 	/**
@@ -196,6 +242,7 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	 *
 	 * @param taskDefinition the task to be scheduled
 	 * @should should handle zero repeat interval
+	 * @should cancel the timer if the task definition cannot be saved
 	 */
 	public Task scheduleTask(TaskDefinition taskDefinition) throws SchedulerException {
 		Task clientTask = null;
@@ -204,13 +251,15 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 			// Cancel any existing timer tasks for the same task definition
 			// TODO Make sure this is the desired behavior 
 			// TODO Do we ever want the same task definition to run more than once?
-			TimerSchedulerTask schedulerTask = scheduledTasks.get(taskDefinition.getId());
+			TimerSchedulerTask schedulerTask = getScheduledTask(taskDefinition.getId());
 			if (schedulerTask != null) {
 				//schedulerTask.cancel();					
 				log.info("Shutting down the existing instance of this task to avoid conflicts!!");
 				schedulerTask.shutdown();
 			}
 			
+			// set once the new timer is running, until it is registered it has to be cancelled on errors
+			TimerSchedulerTask unregisteredTask = null;
 			try {
 				
 				// Create new task from task definition 
@@ -219,11 +268,12 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 				// if we were unable to get a class, just quit
 				if (clientTask != null) {
 					
-					schedulerTask = new TimerSchedulerTask(clientTask);
+					schedulerTask = new TimerSchedulerTask(clientTask, TaskConcurrencyPolicy.getPolicy(taskDefinition));
+					unregisteredTask = schedulerTask;
 					taskDefinition.setTaskInstance(clientTask);
 					
-					// Once this method is called, the timer is set to start at the given start time.
-					// NOTE:  We need to adjust the repeat interval as the JDK Timer expects time in milliseconds and 
+					// Once this method is called, the task is set to start at the given start time.
+					// NOTE:  We need to adjust the repeat interval as the scheduler expects time in milliseconds and 
 					// we record by seconds.  
 					
 					long repeatInterval = 0;
@@ -233,43 +283,44 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 					
 					if (taskDefinition.getStartTime() != null) {
 						// Need to calculate the "next execution time" because the scheduled time is most likely in the past
-						// and the JDK timer will run the task X number of times from the start time until now to catch up.
+						// and a fixed rate schedule would run the task X number of times from the start time until now to catch up.
 						Date nextTime = SchedulerUtil.getNextExecution(taskDefinition);
 						
 						// Start task at fixed rate at given future date and repeat as directed 							
 						log.info("Starting task ... the task will execute for the first time at " + nextTime);
 						
-						if (repeatInterval > 0) {
-							// Schedule the task to run at a fixed rate
-							getTimer(taskDefinition).scheduleAtFixedRate(schedulerTask, nextTime, repeatInterval);
-						} else {
-							// Schedule the task to be non-repeating
-							getTimer(taskDefinition).schedule(schedulerTask, nextTime);
-						}
+						// Schedule the task to run at a fixed rate or only once if there is no repeat interval
+						schedule(schedulerTask, nextTime.getTime(), repeatInterval);
 						
 					} else if (repeatInterval > 0) {
 						// Start task on repeating schedule, delay for SCHEDULER_DEFAULT_DELAY seconds	
 						log.info("Delaying start time by " + SchedulerConstants.SCHEDULER_DEFAULT_DELAY + " seconds");
-						getTimer(taskDefinition).scheduleAtFixedRate(schedulerTask,
-						    SchedulerConstants.SCHEDULER_DEFAULT_DELAY, repeatInterval);
+						schedule(schedulerTask, System.currentTimeMillis() + SchedulerConstants.SCHEDULER_DEFAULT_DELAY,
+						    repeatInterval);
 					} else {
 						// schedule for single execution, starting now
 						log.info("Starting one-shot task");
-						getTimer(taskDefinition).schedule(schedulerTask, new Date());
+						schedule(schedulerTask, System.currentTimeMillis(), 0);
 					}
 					
+					// Update the timer status in the database, this assigns an id to new task definitions
+					taskDefinition.setStarted(true);
+					saveTaskDefinition(taskDefinition);
+					
 					// Update task that has been started
 					log.debug("Registering timer for task " + taskDefinition.getId());
 					
 					//  Add the new timer to the scheduler running task list  
 					scheduledTasks.put(taskDefinition.getId(), schedulerTask);
-					
-					// Update the timer status in the database
-					taskDefinition.setStarted(true);
-					saveTaskDefinition(taskDefinition);
+					unregisteredTask = null;
 				}
 			}
 			catch (Exception e) {
+				if (unregisteredTask != null) {
+					// nothing could shut it down later on
+					unregisteredTask.shutdown();
+					taskDefinition.setStarted(false);
+				}
 				log.error("Failed to schedule task " + taskDefinition.getName(), e);
 				throw new SchedulerException("Failed to schedule task", e);
 			}
@@ -287,7 +338,10 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		if (taskDefinition != null) {
 			
 			// Remove the task from the scheduled tasks and shutdown the timer
-			TimerSchedulerTask schedulerTask = scheduledTasks.remove(taskDefinition.getId());
+			TimerSchedulerTask schedulerTask = null;
+			if (taskDefinition.getId() != null) {
+				schedulerTask = scheduledTasks.remove(taskDefinition.getId());
+			}
 			if (schedulerTask != null) {
 				schedulerTask.shutdown(); // Stops the timer and tells the timer task to release its resources 
 			}
@@ -497,18 +551,33 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 	public String getStatus(Integer id) {
 		
 		// Get the scheduled timer task
-		TimerSchedulerTask scheduledTask = scheduledTasks.get(id);
+		TimerSchedulerTask scheduledTask = getScheduledTask(id);
 		
 		if (scheduledTask != null) {
-			if (scheduledTask.scheduledExecutionTime() > 0) {
-				return "Scheduled to execute at " + new Date(scheduledTask.scheduledExecutionTime());
-			} else {
+			if (scheduledTask.isExecuting()) {
 				return "Currently executing";
 			}
+			Date nextExecutionTime = scheduledTask.getNextExecutionTime();
+			if (nextExecutionTime != null) {
+				return "Scheduled to execute at " + nextExecutionTime;
+			}
 		}
 		return "Not Running";
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#getTaskRunStatistics(java.lang.Integer)
+	 */
+	@Override
+	public TaskRunStatistics getTaskRunStatistics(Integer id) {
+		TimerSchedulerTask scheduledTask = getScheduledTask(id);
+		return scheduledTask == null ? null : scheduledTask.getStatistics();
+	}
+	
+	private static TimerSchedulerTask getScheduledTask(Integer id) {
+		return id == null ? null : scheduledTasks.get(id);
+	}
+	
 	@Override
 	public void scheduleIfNotRunning(TaskDefinition taskDef) {
 		Task task = taskDef.getTaskInstance();
@@ -529,4 +598,25 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		}
 	}
 	
+	/**
+	 * Creates named daemon threads, the scheduler must not prolong the lifetime of the application
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		
+		private final String namePrefix;
+		
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		
+		DaemonThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + " " + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+	
 }
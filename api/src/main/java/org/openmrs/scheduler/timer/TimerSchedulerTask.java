@@ -9,8 +9,14 @@
  */
 package org.openmrs.scheduler.timer;
 
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.TimerTask;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -19,40 +25,220 @@ import org.openmrs.api.context.Daemon;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.SchedulerUtil;
 import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskConcurrencyPolicy;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskRunStatistics;
 
-public class TimerSchedulerTask extends TimerTask {
+/**
+ * Wraps a {@link Task} so that it can be scheduled. The scheduler thread only calls
+ * {@link #trigger(long)} when a run is due, the run itself is handed off to a worker executor so
+ * that a slow task never holds up the scheduler or the other tasks. Runs that are due while the
+ * task is still executing are handled according to the task's {@link TaskConcurrencyPolicy}.
+ */
+public class TimerSchedulerTask implements Runnable {
 	
-	/** The task that will be executed by the JDK timer. */
+	/** The task that will be executed by the scheduler. */
 	private Task task;
 	
 	/** Logger */
 	private static Log log = LogFactory.getLog(TimerSchedulerTask.class);
 	
+	private final TaskConcurrencyPolicy concurrencyPolicy;
+	
+	// the fields below are guarded by this
+	
+	private Executor executor;
+	
+	private ScheduledFuture<?> scheduledFuture;
+	
+	private boolean cancelled = false;
+	
+	private boolean executing = false;
+	
+	// the times the queued runs were due at
+	private final Deque<Long> pendingRuns = new ArrayDeque<Long>();
+	
+	private long runCount;
+	
+	private long failureCount;
+	
+	private long skippedCount;
+	
+	private Date lastRunStart;
+	
+	private long lastRunTime;
+	
+	private long maxRunTime;
+	
+	private long totalRunTime;
+	
+	private long lastLag;
+	
+	private long maxLag;
+	
 	/** * Public constructor */
 	public TimerSchedulerTask(Task task) {
+		this(task, TaskConcurrencyPolicy.COALESCE);
+	}
+	
+	/**
+	 * @param task the task to execute
+	 * @param concurrencyPolicy what to do with runs that are due while the task is executing
+	 * @since 2.1.0
+	 */
+	public TimerSchedulerTask(Task task, TaskConcurrencyPolicy concurrencyPolicy) {
 		this.task = task;
+		this.concurrencyPolicy = concurrencyPolicy;
 	}
 	
 	/**
-	 * * Executes the action to be performed by this timer task.
+	 * Executes the task in the current thread as the daemon user, the worker executor calls this
+	 * for every run
 	 * 
-	 * @see java.util.TimerTask#run()
+	 * @see java.lang.Runnable#run()
 	 */
 	@Override
 	public void run() {
 		try {
-			Daemon.executeScheduledTask(task);
+			Daemon.executeScheduledTaskInCurrentThread(task);
 		}
 		catch (Exception t) {
 			// Fix #862: IllegalStateException: Timer already cancelled.
 			// Suppress error in order to keep the scheduler's Timer from completely failing.
 			log.error(
 			    "FATAL ERROR: Task [" + task.getClass() + "] failed due to exception [" + t.getClass().getName() + "]", t);
+			synchronized (this) {
+				failureCount++;
+			}
 			SchedulerUtil.sendSchedulerError(t);
 		}
 	}
 	
+	/**
+	 * Schedules this task on the given scheduler, the runs are executed by the given executor
+	 * 
+	 * @param scheduler the scheduler that triggers the runs
+	 * @param executor the executor that executes the runs
+	 * @param firstExecutionTime the time of the first run
+	 * @param repeatInterval the interval between runs in milliseconds, 0 for a single run
+	 */
+	synchronized void schedule(ScheduledExecutorService scheduler, Executor executor, final long firstExecutionTime,
+	        final long repeatInterval) {
+		this.executor = executor;
+		long delay = Math.max(0, firstExecutionTime - System.currentTimeMillis());
+		Runnable trigger = new Runnable() {
+			
+			private long runs = 0;
+			
+			@Override
+			public void run() {
+				trigger(firstExecutionTime + runs++ * repeatInterval);
+			}
+		};
+		
+		if (repeatInterval > 0) {
+			scheduledFuture = scheduler.scheduleAtFixedRate(trigger, delay, repeatInterval, TimeUnit.MILLISECONDS);
+		} else {
+			scheduledFuture = scheduler.schedule(trigger, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Called by the scheduler when a run is due, starts the run on the executor or applies the
+	 * concurrency policy if the task is still executing
+	 * 
+	 * @param dueTime the time the run was due at
+	 */
+	void trigger(final long dueTime) {
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			if (executing) {
+				if (concurrencyPolicy == TaskConcurrencyPolicy.QUEUE
+				        || (concurrencyPolicy == TaskConcurrencyPolicy.COALESCE && pendingRuns.isEmpty())) {
+					pendingRuns.add(dueTime);
+				} else {
+					skippedCount++;
+				}
+				return;
+			}
+			executing = true;
+		}
+		
+		try {
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					executeRuns(dueTime);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			log.warn("Unable to start task " + task.getClass() + ", the scheduler is shutting down");
+			synchronized (this) {
+				executing = false;
+			}
+		}
+	}
+	
+	/**
+	 * Runs the task and then any runs that were queued while it was executing
+	 */
+	private void executeRuns(long dueTime) {
+		while (true) {
+			long start = System.currentTimeMillis();
+			run();
+			long end = System.currentTimeMillis();
+			
+			synchronized (this) {
+				runCount++;
+				lastRunStart = new Date(start);
+				lastRunTime = end - start;
+				maxRunTime = Math.max(maxRunTime, lastRunTime);
+				totalRunTime += lastRunTime;
+				lastLag = Math.max(0, start - dueTime);
+				maxLag = Math.max(maxLag, lastLag);
+				
+				if (cancelled || pendingRuns.isEmpty()) {
+					pendingRuns.clear();
+					executing = false;
+					return;
+				}
+				dueTime = pendingRuns.poll();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if a run of the task is executing
+	 * @since 2.1.0
+	 */
+	public synchronized boolean isExecuting() {
+		return executing;
+	}
+	
+	/**
+	 * @return the time the next run is due at or null if no run is scheduled
+	 * @since 2.1.0
+	 */
+	public synchronized Date getNextExecutionTime() {
+		if (cancelled || scheduledFuture == null || scheduledFuture.isDone()) {
+			return null;
+		}
+		return new Date(System.currentTimeMillis() + scheduledFuture.getDelay(TimeUnit.MILLISECONDS));
+	}
+	
+	/**
+	 * @return a copy of the statistics recorded since this task was scheduled
+	 * @since 2.1.0
+	 */
+	public synchronized TaskRunStatistics getStatistics() {
+		return new TaskRunStatistics(concurrencyPolicy, executing, pendingRuns.size(), runCount, failureCount,
+		        skippedCount, lastRunStart, lastRunTime, maxRunTime, totalRunTime, lastLag, maxLag);
+	}
+	
 	/**
 	 * Save the last execution time in the TaskDefinition
 	 */
@@ -83,7 +269,13 @@ public class TimerSchedulerTask extends TimerTask {
 	 * Shutdown the timer task and invoke the task's shutdown() callback method.
 	 */
 	public void shutdown() {
-		super.cancel();
+		synchronized (this) {
+			cancelled = true;
+			pendingRuns.clear();
+			if (scheduledFuture != null) {
+				scheduledFuture.cancel(false);
+			}
+		}
 		task.shutdown();
 	}
 	
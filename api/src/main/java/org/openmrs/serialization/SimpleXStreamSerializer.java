@@ -38,10 +38,18 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
  *   ...
  * &lt;/patient&gt;
  * </code>
+ * <br>
+ * Building an XStream instance is expensive, so instances of this class are meant to be shared:
+ * the one registered with the serialization service is used for every serialization. Once it is
+ * configured, serializing and deserializing with it is thread safe, modules that configure it
+ * through {@link #getXstream()} should do so when they are started.
  *
  */
 public class SimpleXStreamSerializer implements OpenmrsSerializer {
 	
+	// stateless, so it is shared by all serializers
+	private static final OpenmrsDynamicProxyConverter PROXY_CONVERTER = new OpenmrsDynamicProxyConverter();
+	
 	// cached xstream object
 	public XStream xstream = null;
 	
@@ -67,7 +75,7 @@ public class SimpleXStreamSerializer implements OpenmrsSerializer {
 		} else {
 			this.xstream = customXstream;
 		}
-		xstream.registerConverter(new OpenmrsDynamicProxyConverter(), XStream.PRIORITY_VERY_HIGH);
+		xstream.registerConverter(PROXY_CONVERTER, XStream.PRIORITY_VERY_HIGH);
 		
 		//this is added to read the prior simpleframework-serialized values.
 		// TODO find a better way to do this.
@@ -116,7 +124,7 @@ public class SimpleXStreamSerializer implements OpenmrsSerializer {
 	 *
 	 * @see <a href="http://tinyurl.com/ord2rry">this blog</a>
 	 */
-	private class OpenmrsDynamicProxyConverter extends DynamicProxyConverter {
+	private static class OpenmrsDynamicProxyConverter extends DynamicProxyConverter {
 		
 		OpenmrsDynamicProxyConverter() {
 			super(null);
@@ -0,0 +1,216 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Remembers which liquibase changelogs, core and module ones, were completely applied to the
+ * database, so that startup can skip parsing them and comparing their changesets with the
+ * liquibasechangelog table when nothing changed. <br>
+ * <br>
+ * A changelog is up to date if the md5 of its content and the number and latest execution date of
+ * the rows in the liquibasechangelog table are the same as when it was last recorded, for the same
+ * database connection url. Anything else, including errors while checking, means the full liquibase
+ * check has to run. Changelogs with changesets that liquibase runs again although they were applied
+ * (runAlways or runOnChange), or that include other changelogs, are never fingerprinted. The
+ * fingerprints are kept in the {@link #FINGERPRINTS_FILE} in the application
+ * data directory, deleting it forces the full check.
+ *
+ * @see DatabaseUpdater
+ * @since 2.1.0
+ */
+public class ChangeLogFingerprints {
+	
+	private static final Log log = LogFactory.getLog(ChangeLogFingerprints.class);
+	
+	public static final String FINGERPRINTS_FILE = "liquibase-fingerprints.properties";
+	
+	private static final String CONNECTION_URL = "connection.url";
+	
+	// changesets that are run again although they were applied, and included changelogs whose
+	// content is not part of the md5
+	private static final Pattern NOT_FINGERPRINTED = Pattern
+	        .compile("run(Always|OnChange)\\s*=\\s*[\"']true[\"']|<include");
+	
+	private ChangeLogFingerprints() {
+	}
+	
+	/**
+	 * @param changeLogFile the changelog on the classpath of the class loader or the file system
+	 * @param cl the class loader of the module the changelog belongs to, or null for core
+	 * @return true if the changelog was applied completely and neither it nor the database changed
+	 *         since
+	 * @should return true for a recorded changelog
+	 * @should return false after the changelog changed
+	 * @should return false for a changelog with changesets that run always
+	 * @should keep the changelogs of different class loaders apart
+	 */
+	public static synchronized boolean isUpToDate(String changeLogFile, ClassLoader cl) {
+		try {
+			URL changeLog = getChangeLog(changeLogFile, cl);
+			String fingerprint = getFingerprint(changeLog);
+			if (fingerprint == null) {
+				return false;
+			}
+			Properties fingerprints = load();
+			String url = DatabaseUpdater.getConnectionUrl();
+			if (url == null || !url.equals(fingerprints.getProperty(CONNECTION_URL))) {
+				return false;
+			}
+			return fingerprint.equals(fingerprints.getProperty(changeLog.toString()));
+		}
+		catch (Exception e) {
+			log.debug("Unable to check the fingerprint of " + changeLogFile + ", checking it with liquibase", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Records that all changesets of the given changelog are applied to the current state of the
+	 * database
+	 *
+	 * @param changeLogFile the changelog on the classpath of the class loader or the file system
+	 * @param cl the class loader of the module the changelog belongs to, or null for core
+	 */
+	public static synchronized void recordUpToDate(String changeLogFile, ClassLoader cl) {
+		try {
+			URL changeLog = getChangeLog(changeLogFile, cl);
+			String fingerprint = getFingerprint(changeLog);
+			String url = DatabaseUpdater.getConnectionUrl();
+			if (fingerprint == null || url == null) {
+				return;
+			}
+			Properties fingerprints = load();
+			if (!url.equals(fingerprints.getProperty(CONNECTION_URL))) {
+				// the fingerprints of another database are of no use
+				fingerprints.clear();
+				fingerprints.setProperty(CONNECTION_URL, url);
+			}
+			fingerprints.setProperty(changeLog.toString(), fingerprint);
+			store(fingerprints);
+		}
+		catch (Exception e) {
+			log.warn("Unable to record the fingerprint of " + changeLogFile + ", it will be checked again next time", e);
+		}
+	}
+	
+	/**
+	 * Forgets all fingerprints, so that every changelog is checked with liquibase again
+	 */
+	public static synchronized void clear() {
+		File file = getFile();
+		if (file.exists() && !file.delete()) {
+			log.warn("Unable to delete " + file.getAbsolutePath());
+		}
+	}
+	
+	/**
+	 * @return the url of the changelog, which keeps changelogs with the same name apart, or null if
+	 *         it cannot be found
+	 */
+	private static URL getChangeLog(String changeLogFile, ClassLoader cl) throws IOException {
+		URL url = (cl == null ? OpenmrsClassLoader.getInstance() : cl).getResource(changeLogFile);
+		if (url == null && new File(changeLogFile).isFile()) {
+			url = new File(changeLogFile).toURI().toURL();
+		}
+		return url;
+	}
+	
+	/**
+	 * @return the md5 of the changelog followed by the state of the liquibasechangelog table, or null
+	 *         if the changelog cannot be found or must not be fingerprinted
+	 */
+	private static String getFingerprint(URL changeLog) throws Exception {
+		if (changeLog == null) {
+			return null;
+		}
+		byte[] content;
+		InputStream in = changeLog.openStream();
+		try {
+			content = IOUtils.toByteArray(in);
+		}
+		finally {
+			IOUtils.closeQuietly(in);
+		}
+		if (NOT_FINGERPRINTED.matcher(new String(content, "UTF-8")).find()) {
+			return null;
+		}
+		return DigestUtils.md5DigestAsHex(content) + ":" + getAppliedChangeSets();
+	}
+	
+	/**
+	 * @return the number of applied changesets and the time the last one was applied
+	 */
+	private static String getAppliedChangeSets() throws Exception {
+		Connection connection = DatabaseUpdater.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet results = statement.executeQuery("select count(*), max(dateexecuted) from liquibasechangelog");
+				results.next();
+				Timestamp lastExecuted = results.getTimestamp(2);
+				return results.getLong(1) + ":" + (lastExecuted == null ? 0 : lastExecuted.getTime());
+			}
+			finally {
+				statement.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+	}
+	
+	private static File getFile() {
+		return new File(OpenmrsUtil.getApplicationDataDirectory(), FINGERPRINTS_FILE);
+	}
+	
+	private static Properties load() throws IOException {
+		Properties fingerprints = new Properties();
+		File file = getFile();
+		if (file.exists()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				fingerprints.load(in);
+			}
+			finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+		return fingerprints;
+	}
+	
+	private static void store(Properties fingerprints) throws IOException {
+		OutputStream out = new FileOutputStream(getFile());
+		try {
+			fingerprints.store(out, "Fingerprints of the completely applied liquibase changelogs");
+		}
+		finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+}
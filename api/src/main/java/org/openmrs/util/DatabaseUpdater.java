@@ -81,6 +81,11 @@ public class DatabaseUpdater {
 	 */
 	private static volatile List<String> updateWarnings = null;
 	
+	/**
+	 * The callback of the changelog that is being executed, if it wants to know about progress
+	 */
+	private static volatile ChangeSetProgressCallback progressCallback = null;
+	
 	/**
 	 * Convenience method to run the changesets using Liquibase to bring the database up to a
 	 * version compatible with the code
@@ -125,6 +130,22 @@ public class DatabaseUpdater {
 		public void executing(ChangeSet changeSet, int numChangeSetsToRun);
 	}
 	
+	/**
+	 * A callback that is also told about the progress of long running changesets, see
+	 * {@link #reportProgress(String)}
+	 *
+	 * @since 2.1.0
+	 */
+	public interface ChangeSetProgressCallback extends ChangeSetExecutorCallback {
+		
+		/**
+		 * This method is called while a changeset is executing to report how far it got
+		 *
+		 * @param message describes the progress of the changeset
+		 */
+		public void progress(String message);
+	}
+	
 	/**
 	 * Executes the given changelog file. This file is assumed to be on the classpath. If no file is
 	 * given, the default {@link #CHANGE_LOG_FILE} is ran.
@@ -155,7 +176,8 @@ public class DatabaseUpdater {
 	
 	/**
 	 * This code was borrowed from the liquibase jar so that we can call the given callback
-	 * function.
+	 * function. Changelogs run in the core context or without a context, like the module ones, are
+	 * skipped if they are up to date according to {@link ChangeLogFingerprints}.
 	 *
 	 * @param changeLogFile the file to execute
 	 * @param contexts the liquibase changeset context
@@ -163,8 +185,10 @@ public class DatabaseUpdater {
 	 * @param callback the function to call after every changeset
 	 * @param cl {@link ClassLoader} to use to find the changeLogFile (or null to use
 	 *            {@link OpenmrsClassLoader})
-	 * @return A list of messages or warnings generated by the executed changesets
+	 * @return A list of messages or warnings generated by the executed changesets, or null if the
+	 *         changelog was skipped
 	 * @throws Exception
+	 * @should skip a module changelog that is already applied
 	 */
 	public static List<String> executeChangelog(String changeLogFile, String contexts, Map<String, Object> userInput,
 	        ChangeSetExecutorCallback callback, ClassLoader cl) throws Exception {
@@ -190,6 +214,14 @@ public class DatabaseUpdater {
 			}
 		}
 		
+		// module changelogs are run without a context, which includes the changesets of all contexts
+		boolean fingerprinted = contexts == null || CONTEXT.equals(contexts);
+		if (fingerprinted && ChangeLogFingerprints.isUpToDate(changeLogFile, cl)) {
+			log.debug("Skipping changelog " + changeLogFile + ", it is already applied");
+			return null;
+		}
+		ClassLoader fingerprintClassLoader = cl;
+		
 		if (cl == null) {
 			cl = OpenmrsClassLoader.getInstance();
 		}
@@ -215,12 +247,20 @@ public class DatabaseUpdater {
 			ChangeLogIterator logIterator = new ChangeLogIterator(changeLog, new ShouldRunChangeSetFilter(database),
 			        new ContextChangeSetFilter(contexts), new DbmsChangeSetFilter(database));
 			database.checkDatabaseChangeLogTable(true, changeLog, new String[] { contexts });
+			if (callback instanceof ChangeSetProgressCallback) {
+				progressCallback = (ChangeSetProgressCallback) callback;
+			}
 			logIterator.run(new OpenmrsUpdateVisitor(database, callback, numChangeSetsToRun), database);
+			
+			if (fingerprinted) {
+				ChangeLogFingerprints.recordUpToDate(changeLogFile, fingerprintClassLoader);
+			}
 		}
 		catch (LiquibaseException e) {
 			throw e;
 		}
 		finally {
+			progressCallback = null;
 			try {
 				lockHandler.releaseLock();
 			}
@@ -239,28 +279,42 @@ public class DatabaseUpdater {
 	}
 	
 	/**
-	 * Ask Liquibase if it needs to do any updates. Only looks at the {@link #CHANGE_LOG_FILE}
+	 * Ask Liquibase if it needs to do any updates. Only looks at the {@link #CHANGE_LOG_FILE}, and
+	 * only if it or the database changed since it was last completely applied, see
+	 * {@link ChangeLogFingerprints}
 	 *
 	 * @return true/false whether database updates are required
 	 * @should always have a valid update to latest file
 	 */
 	public static boolean updatesRequired() throws Exception {
 		log.debug("checking for updates");
-		List<OpenMRSChangeSet> changesets = getUnrunDatabaseChanges();
+		long start = System.currentTimeMillis();
+		
+		// skip parsing the changelog if it is unchanged since it was last completely applied
+		boolean upToDate = ChangeLogFingerprints.isUpToDate(CHANGE_LOG_FILE, null);
+		int unrunChangeSets = 0;
+		if (!upToDate) {
+			unrunChangeSets = getUnrunDatabaseChanges().size();
+		}
 		
 		// if the db is locked, it means there was a crash
 		// or someone is executing db updates right now. either way
 		// returning true here stops the openmrs startup and shows
 		// the user the maintenance wizard for updates
-		if (isLocked() && changesets.size() == 0) {
+		if (unrunChangeSets == 0 && isLocked()) {
 			// if there is a db lock but there are no db changes we undo the
 			// lock
 			DatabaseUpdater.releaseDatabaseLock();
 			log.debug("db lock found and released automatically");
-			return false;
 		}
 		
-		return changesets.size() > 0;
+		if (unrunChangeSets == 0 && !upToDate) {
+			ChangeLogFingerprints.recordUpToDate(CHANGE_LOG_FILE, null);
+		}
+		log.info("Checked for database updates in " + (System.currentTimeMillis() - start) + " ms"
+		        + (upToDate ? ", the changelog fingerprint matched" : ""));
+		
+		return unrunChangeSets > 0;
 	}
 	
 	/**
@@ -415,11 +469,24 @@ public class DatabaseUpdater {
 		if (url.contains("mysql") && !url.contains("InnoDB")) {
 			url = url + "&sessionVariables=default_storage_engine=InnoDB";
 		}
+		// lets the driver send the batches of custom changesets in one statement, see BulkMigration
+		if (url.contains("mysql") && !url.contains("rewriteBatchedStatements")) {
+			url = url + "&rewriteBatchedStatements=true";
+		}
 		
 		Class.forName(driver);
 		return DriverManager.getConnection(url, username, password);
 	}
 	
+	/**
+	 * @return the url of the database that {@link #getConnection()} connects to
+	 */
+	static String getConnectionUrl() {
+		Properties props = Context.getRuntimeProperties();
+		mergeDefaultRuntimeProperties(props);
+		return props.getProperty("hibernate.connection.url");
+	}
+	
 	/**
 	 * Represents each change in the liquibase-update-to-latest
 	 */
@@ -662,6 +729,20 @@ public class DatabaseUpdater {
 		updateWarnings.addAll(warnings);
 	}
 	
+	/**
+	 * This method is called by an executing custom changeset to report its progress, e.g. to the
+	 * update wizard
+	 *
+	 * @param message describes the progress of the changeset
+	 * @since 2.1.0
+	 */
+	public static void reportProgress(String message) {
+		ChangeSetProgressCallback callback = progressCallback;
+		if (callback != null) {
+			callback.progress(message);
+		}
+	}
+	
 	/**
 	 * This method writes the given text to the database updates log file located in the application
 	 * data directory.
@@ -11,6 +11,7 @@ package org.openmrs.util;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
@@ -26,6 +27,8 @@ import org.openmrs.ConceptName;
 import org.openmrs.Drug;
 import org.openmrs.Form;
 import org.openmrs.FormField;
+import org.openmrs.FormStructure;
+import org.openmrs.api.context.Context;
 import org.openmrs.hl7.HL7Constants;
 
 /**
@@ -150,14 +153,31 @@ public class FormUtil {
 	 * <code>FormField</code>s (as defined by the <em>.equals()</em> and <em>.compareTo()</em>
 	 * methods).
 	 *
+	 * <br>
+	 * Saved forms are sorted with the positions of their cached
+	 * {@link org.openmrs.api.FormService#getFormStructure(Form)}, which needs the
+	 * {@link PrivilegeConstants#GET_FORMS} privilege. Without it, or when form fields were added,
+	 * removed or moved and not saved yet, the form fields are compared with each other instead.
+	 *
 	 * @param form form for which structure is requested
 	 * @return sorted map of <code>FormField</code>s, where the top-level fields are under the key
 	 *         zero and all other leaves are stored under their parent <code>FormField</code>'s id.
+	 * @should order form fields by their unsaved positions
 	 */
 	public static Map<Integer, TreeSet<FormField>> getFormStructure(Form form) {
+		// order the form fields by their position in the cached structure, so that sorting them
+		// doesn't load the field of every form field
+		Comparator<FormField> comparator = null;
+		if (form.getFormId() != null && Context.hasPrivilege(PrivilegeConstants.GET_FORMS)) {
+			FormStructure structure = Context.getFormService().getFormStructure(form);
+			if (structure != null && isCurrent(structure, form.getFormFields())) {
+				comparator = structure.getComparator();
+			}
+		}
+		
 		Map<Integer, TreeSet<FormField>> formStructure = new TreeMap<Integer, TreeSet<FormField>>();
 		Integer base = Integer.valueOf(0);
-		formStructure.put(base, new TreeSet<FormField>());
+		formStructure.put(base, new TreeSet<FormField>(comparator));
 		
 		for (FormField formField : form.getFormFields()) {
 			FormField parent = formField.getParent();
@@ -167,7 +187,7 @@ public class FormUtil {
 			} else {
 				// child branches/leaves are added to their parent's branch
 				if (!formStructure.containsKey(parent.getFormFieldId())) {
-					formStructure.put(parent.getFormFieldId(), new TreeSet<FormField>());
+					formStructure.put(parent.getFormFieldId(), new TreeSet<FormField>(comparator));
 				}
 				formStructure.get(parent.getFormFieldId()).add(formField);
 			}
@@ -176,6 +196,22 @@ public class FormUtil {
 		return formStructure;
 	}
 	
+	/**
+	 * @return true if the given form fields are the ones on the form when the structure was taken,
+	 *         at the same positions
+	 */
+	private static boolean isCurrent(FormStructure structure, Set<FormField> formFields) {
+		if (formFields.size() != structure.getFormFieldCount()) {
+			return false;
+		}
+		for (FormField formField : formFields) {
+			if (!structure.contains(formField) || !structure.isPositionUnchanged(formField)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public static String dateToString() {
 		return dateToString(new Date());
 	}
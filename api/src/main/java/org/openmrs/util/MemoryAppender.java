@@ -10,35 +10,139 @@
 package org.openmrs.util;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import org.apache.commons.collections.buffer.CircularFifoBuffer;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
 /**
  * This class stores a few lines of the output to the log file. This class is set in the log4j
- * descriptor file: /metadata/api/log4j/log4j.xml
+ * descriptor file: /metadata/api/log4j/log4j.xml <br>
+ * <br>
+ * The lines are formatted when they are logged, cut to {@link #getMaxLineLength()} characters and
+ * kept in a ring of {@link #getBufferSize()} slots, so the appender never holds more than
+ * bufferSize * maxLineLength characters. Logging threads do not wait for each other or for
+ * readers: each one claims the next position of the ring with an atomic counter. Readers can poll
+ * for new lines with the cursor of {@link #getLogLines(long)}.
  */
 public class MemoryAppender extends AppenderSkeleton {
 	
-	private CircularFifoBuffer buffer;
+	private AtomicReferenceArray<LogLine> buffer;
+	
+	// the position of the next line that is logged, the number of lines logged so far
+	private final AtomicLong next = new AtomicLong();
 	
 	private int bufferSize = 100;
 	
+	private int maxLineLength = 2000;
+	
+	// PatternLayout reuses a buffer while formatting, concurrent threads format with copies of it
+	private final Queue<PatternLayout> layoutCopies = new ConcurrentLinkedQueue<PatternLayout>();
+	
 	public MemoryAppender() {
 	}
 	
+	/**
+	 * Does the same checks as {@link AppenderSkeleton#doAppend(LoggingEvent)}, without holding the
+	 * lock of the appender
+	 *
+	 * @see org.apache.log4j.AppenderSkeleton#doAppend(org.apache.log4j.spi.LoggingEvent)
+	 */
+	@Override
+	public void doAppend(LoggingEvent loggingEvent) {
+		if (closed) {
+			LogLog.error("Attempted to append to closed appender named [" + getName() + "].");
+			return;
+		}
+		if (!isAsSevereAsThreshold(loggingEvent.getLevel())) {
+			return;
+		}
+		for (Filter filter = getFilter(); filter != null; filter = filter.getNext()) {
+			int decision = filter.decide(loggingEvent);
+			if (decision == Filter.DENY) {
+				return;
+			} else if (decision == Filter.ACCEPT) {
+				break;
+			}
+		}
+		append(loggingEvent);
+	}
+	
+	/**
+	 * @should drop the oldest lines when the buffer is full
+	 * @should cut lines to the maximum line length
+	 */
 	protected void append(LoggingEvent loggingEvent) {
+		AtomicReferenceArray<LogLine> buffer = this.buffer;
 		if (buffer != null) {
-			buffer.add(loggingEvent);
+			String line = format(loggingEvent);
+			if (line.length() > maxLineLength) {
+				line = line.substring(0, maxLineLength);
+			}
+			long position = next.getAndIncrement();
+			int slot = (int) (position % buffer.length());
+			LogLine logLine = new LogLine(position, line);
+			while (true) {
+				LogLine current = buffer.get(slot);
+				if (current != null && current.position > position) {
+					// a thread that went around the ring faster already stored a newer line here
+					break;
+				}
+				if (buffer.compareAndSet(slot, current, logLine)) {
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @should format lines with the current layout
+	 */
+	@Override
+	public void setLayout(Layout layout) {
+		super.setLayout(layout);
+		layoutCopies.clear();
+	}
+	
+	private String format(LoggingEvent loggingEvent) {
+		Layout layout = getLayout();
+		if (layout == null) {
+			return loggingEvent.getRenderedMessage();
+		}
+		if (layout.getClass() != PatternLayout.class) {
+			synchronized (layout) {
+				return layout.format(loggingEvent);
+			}
+		}
+		
+		String pattern = ((PatternLayout) layout).getConversionPattern();
+		PatternLayout copy = layoutCopies.poll();
+		if (copy == null || !copy.getConversionPattern().equals(pattern)) {
+			copy = new PatternLayout(pattern);
+		}
+		try {
+			return copy.format(loggingEvent);
+		}
+		finally {
+			layoutCopies.offer(copy);
 		}
 	}
 	
 	public void close() {
-		buffer.clear();
+		if (buffer != null) {
+			for (int i = 0; i < buffer.length(); i++) {
+				buffer.set(i, null);
+			}
+		}
 	}
 	
 	public boolean requiresLayout() {
@@ -46,17 +150,51 @@ public class MemoryAppender extends AppenderSkeleton {
 	}
 	
 	public void activateOptions() {
-		this.buffer = new CircularFifoBuffer(bufferSize);
+		this.buffer = new AtomicReferenceArray<LogLine>(bufferSize);
 	}
 	
+	/**
+	 * @return the lines in the buffer, oldest first
+	 */
 	public List<String> getLogLines() {
-		List<String> logLines = new ArrayList<String>(buffer.size());
-		Layout layout = this.getLayout();
-		for (Iterator<?> iterBuffer = buffer.iterator(); iterBuffer.hasNext();) {
-			LoggingEvent loggingEvent = (LoggingEvent) iterBuffer.next();
-			logLines.add(layout.format(loggingEvent));
+		return getLogLines(0).getLines();
+	}
+	
+	/**
+	 * Gets the lines logged since the given cursor that are still in the buffer. Pass the cursor of
+	 * the result to the next call to only get the lines logged in between.
+	 *
+	 * @param cursor 0 to get all lines in the buffer or the cursor of an earlier result
+	 * @return the lines, oldest first, and the cursor to continue from
+	 * @should return the lines logged after the cursor
+	 */
+	public LogLines getLogLines(long cursor) {
+		AtomicReferenceArray<LogLine> buffer = this.buffer;
+		long end = next.get();
+		if (buffer == null) {
+			return new LogLines(Collections.<String> emptyList(), end);
 		}
-		return logLines;
+		long position = Math.max(Math.max(cursor, 0), end - buffer.length());
+		List<String> lines = new ArrayList<String>((int) Math.max(0, end - position));
+		for (; position < end; position++) {
+			LogLine line = buffer.get((int) (position % buffer.length()));
+			if (line == null || line.position < position) {
+				// the thread that claimed this position has not stored its line yet
+				break;
+			}
+			if (line.position == position) {
+				lines.add(line.text);
+			}
+			// else the line was overwritten by a newer one while reading
+		}
+		return new LogLines(lines, position);
+	}
+	
+	/**
+	 * @return the cursor after the last line that was logged
+	 */
+	public long getCursor() {
+		return next.get();
 	}
 	
 	public int getBufferSize() {
@@ -66,4 +204,50 @@ public class MemoryAppender extends AppenderSkeleton {
 	public void setBufferSize(int bufferSize) {
 		this.bufferSize = bufferSize;
 	}
+	
+	/**
+	 * @return the number of characters a line is cut to
+	 */
+	public int getMaxLineLength() {
+		return maxLineLength;
+	}
+	
+	public void setMaxLineLength(int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+	
+	/**
+	 * Log lines read from the buffer and the cursor to read the next ones from
+	 */
+	public static class LogLines {
+		
+		private final List<String> lines;
+		
+		private final long cursor;
+		
+		public LogLines(List<String> lines, long cursor) {
+			this.lines = lines;
+			this.cursor = cursor;
+		}
+		
+		public List<String> getLines() {
+			return lines;
+		}
+		
+		public long getCursor() {
+			return cursor;
+		}
+	}
+	
+	private static class LogLine {
+		
+		private final long position;
+		
+		private final String text;
+		
+		public LogLine(long position, String text) {
+			this.position = position;
+			this.text = text;
+		}
+	}
 }
@@ -328,6 +328,13 @@ public final class OpenmrsConstants {
 	
 	public static final String GLOBAL_PROPERTY_IGNORE_MISSING_NONLOCAL_PATIENTS = "hl7_processor.ignore_missing_patient_non_local";
 	
+	/**
+	 * The number of hl7 in queue entries the processor handles in one transaction
+	 * 
+	 * @since 2.1.0
+	 */
+	public static final String GLOBAL_PROPERTY_HL7_PROCESSOR_BATCH_SIZE = "hl7_processor.batch_size";
+	
 	public static final String GLOBAL_PROPERTY_TRUE_CONCEPT = "concept.true";
 	
 	public static final String GLOBAL_PROPERTY_FALSE_CONCEPT = "concept.false";
@@ -541,6 +548,14 @@ public final class OpenmrsConstants {
 	
 	public static final String GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT = "security.allowedFailedLoginsBeforeLockout";
 	
+	/**
+	 * The number of seconds after which failed login attempts and lockouts are written to the user
+	 * properties, 0 or less to only keep them in memory
+	 * 
+	 * @since 2.1.0
+	 */
+	public static final String GP_LOGIN_STATE_WRITE_BEHIND_DELAY = "security.loginStateWriteBehindDelay";
+	
 	/**
 	 * @since 1.9.9, 1.10.2, 1.11
 	 */
@@ -871,6 +886,10 @@ public final class OpenmrsConstants {
 		        "If true, hl7 messages for patients that are not found and are non-local will silently be dropped/ignored",
 		        BooleanDatatype.class, null));
 		
+		props.add(new GlobalProperty(GLOBAL_PROPERTY_HL7_PROCESSOR_BATCH_SIZE, "1",
+		        "The number of hl7 in queue entries processed in one transaction, a larger number speeds up high volume"
+		                + " feeds. If a batch fails its entries are processed one by one."));
+		
 		props
 		        .add(new GlobalProperty(
 		                GLOBAL_PROPERTY_SHOW_PATIENT_NAME,
@@ -961,6 +980,10 @@ public final class OpenmrsConstants {
 		props.add(new GlobalProperty(GP_ALLOWED_FAILED_LOGINS_BEFORE_LOCKOUT, "7",
 		        "Maximum number of failed logins allowed after which username is locked out"));
 		
+		props.add(new GlobalProperty(GP_LOGIN_STATE_WRITE_BEHIND_DELAY, "30",
+		        "The number of seconds after which failed login attempts and lockouts, which are held in memory, are"
+		                + " written to the user properties so they survive a restart. 0 or less keeps them in memory only."));
+		
 		props.add(new GlobalProperty(GP_DEFAULT_CONCEPT_MAP_TYPE, "NARROWER-THAN",
 		        "Default concept map type which is used when no other is set"));
 		
@@ -1134,13 +1157,13 @@ public final class OpenmrsConstants {
 	
 	/**
 	 * Name of the user_property that stores the number of unsuccessful login attempts this user has
-	 * made
+	 * made. It is owned by the LoginThrottle, which writes it behind the logins.
 	 */
 	public static final String USER_PROPERTY_LOGIN_ATTEMPTS = "loginAttempts";
 	
 	/**
 	 * Name of the user_property that stores the time the user was locked out due to too many login
-	 * attempts
+	 * attempts. It is owned by the LoginThrottle, which writes it behind the logins.
 	 */
 	public static final String USER_PROPERTY_LOCKOUT_TIMESTAMP = "lockoutTimestamp";
 	
@@ -0,0 +1,119 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Sends the rows of a prepared insert or update statement to the database in JDBC batches of a
+ * fixed size instead of one round trip per row. Set the parameters of a row on
+ * {@link #getStatement()} and call {@link #add()}, call {@link #flush()} before committing.
+ *
+ * @see BulkMigration
+ * @since 2.1.0
+ */
+public class BatchedStatement {
+	
+	private final PreparedStatement statement;
+	
+	private final int batchSize;
+	
+	private int expectedUpdateCount = -1;
+	
+	private int pending = 0;
+	
+	private long updateCount = 0;
+	
+	/**
+	 * @param statement the statement to batch, it is closed by {@link #close()}
+	 * @param batchSize the number of rows to send at once
+	 */
+	public BatchedStatement(PreparedStatement statement, int batchSize) {
+		this.statement = statement;
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	/**
+	 * @return the statement to set the parameters of the next row on
+	 */
+	public PreparedStatement getStatement() {
+		return statement;
+	}
+	
+	/**
+	 * Makes {@link #flush()} fail if a row of the batch did not change exactly the given number of
+	 * rows, drivers that don't report the counts of batched rows are not checked
+	 *
+	 * @param expectedUpdateCount the number of rows each row of the batch has to change
+	 */
+	public void setExpectedUpdateCount(int expectedUpdateCount) {
+		this.expectedUpdateCount = expectedUpdateCount;
+	}
+	
+	/**
+	 * Adds the row with the current parameters to the batch and sends the batch once it is full
+	 *
+	 * @throws SQLException if sending the batch failed
+	 * @should send the batch once it is full
+	 */
+	public void add() throws SQLException {
+		statement.addBatch();
+		pending++;
+		if (pending >= batchSize) {
+			flush();
+		}
+	}
+	
+	/**
+	 * Sends the rows added since the last flush
+	 *
+	 * @return the number of rows changed by the batch, as far as the driver reports it
+	 * @throws SQLException if a row failed or did not change the expected number of rows
+	 * @should fail if a row did not change the expected number of rows
+	 */
+	public int flush() throws SQLException {
+		if (pending == 0) {
+			return 0;
+		}
+		int[] counts = statement.executeBatch();
+		pending = 0;
+		int changed = 0;
+		for (int count : counts) {
+			if (count == Statement.EXECUTE_FAILED) {
+				throw new SQLException("A row of the batch failed: " + statement);
+			}
+			if (count >= 0) {
+				if (expectedUpdateCount >= 0 && count != expectedUpdateCount) {
+					throw new SQLException("A row of the batch changed " + count + " rows instead of " + expectedUpdateCount
+					        + ": " + statement);
+				}
+				changed += count;
+			}
+		}
+		updateCount += changed;
+		return changed;
+	}
+	
+	/**
+	 * @return the number of rows changed by all batches sent so far
+	 */
+	public long getUpdateCount() {
+		return updateCount;
+	}
+	
+	/**
+	 * Closes the statement, rows that were not flushed are discarded
+	 */
+	public void close() throws SQLException {
+		statement.close();
+	}
+}
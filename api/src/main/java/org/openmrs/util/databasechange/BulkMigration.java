@@ -0,0 +1,691 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util.databasechange;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.DatabaseUpdater;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Migrates all rows of a table in batches, for custom changesets that have to touch every row of
+ * tables that can be very large, like obs. <br>
+ * <br>
+ * Rows are read in pages of {@link #getBatchSize()} rows ordered by a key column, each page starts
+ * after the last key of the previous one instead of at an offset. A {@link RowMigrator} sets the
+ * parameters of the write statement for each row, the writes of a page are sent as JDBC batches and
+ * committed together. Migrations that are a single statement over a range of keys, e.g. an update
+ * using a database function, leave the row migrator out: the write statement is then run for
+ * ranges of {@link #getBatchSize()} keys without reading the rows. <br>
+ * <br>
+ * Numeric keys can be split into ranges that are migrated in parallel on connections of their own,
+ * see {@link #setPartitions(int)}. The last committed key of each range is written to the
+ * {@link #CHECKPOINTS_FILE} in the application data directory together with the smallest and
+ * largest key, so that an interrupted migration resumes after it rather than starting over as long
+ * as the ranges are the same, the checkpoints are removed once the migration completes. Checkpoints
+ * are written after the commits they refer to and at most every second, so rows after a checkpoint
+ * may already be migrated: the condition has to leave out migrated rows or migrating a row twice
+ * has to do no harm. Tables with keys that are not numbers are migrated in a single run without
+ * checkpoints. <br>
+ * <br>
+ * Progress is logged and shown in the update wizard, see
+ * {@link DatabaseUpdater#reportProgress(String)}. The batch size and the number of partitions
+ * default to the {@link #BATCH_SIZE_PROPERTY} and {@link #PARTITIONS_PROPERTY} runtime properties.
+ *
+ * @since 2.1.0
+ */
+public class BulkMigration {
+	
+	private static final Log log = LogFactory.getLog(BulkMigration.class);
+	
+	/**
+	 * The runtime property with the default number of rows per batch
+	 */
+	public static final String BATCH_SIZE_PROPERTY = "bulk_migration.batch_size";
+	
+	/**
+	 * The runtime property with the default number of partitions migrated in parallel
+	 */
+	public static final String PARTITIONS_PROPERTY = "bulk_migration.partitions";
+	
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	public static final String CHECKPOINTS_FILE = "bulk-migration-checkpoints.properties";
+	
+	private static final String CONNECTION_URL = "connection.url";
+	
+	private static final long CHECKPOINT_INTERVAL = 1000;
+	
+	private static final long REPORT_INTERVAL = 10000;
+	
+	// all migrations share the checkpoints file
+	private static final Object checkpointsLock = new Object();
+	
+	/**
+	 * Sets the parameters of the write statement for a row of the table
+	 */
+	public interface RowMigrator {
+		
+		/**
+		 * @param row the current row, the key is the first column followed by the selected columns
+		 * @param write the write statement
+		 * @return true if the parameters of the write statement are set, false to leave out the row
+		 */
+		public boolean migrate(ResultSet row, PreparedStatement write) throws SQLException;
+	}
+	
+	/**
+	 * Opens the connections that partitions are migrated on
+	 */
+	public interface ConnectionFactory {
+		
+		public Connection getConnection() throws Exception;
+	}
+	
+	private final String name;
+	
+	private final String table;
+	
+	private final String keyColumn;
+	
+	private String columns;
+	
+	private String condition;
+	
+	private String writeSql;
+	
+	private RowMigrator rowMigrator;
+	
+	private int batchSize;
+	
+	private int partitions;
+	
+	private ConnectionFactory connectionFactory;
+	
+	private File checkpointsFile;
+	
+	/**
+	 * @param name identifies the checkpoints of the migration, has to be unique among migrations
+	 * @param table the table to migrate
+	 * @param keyColumn the column to read the table in the order of, preferably the primary key
+	 */
+	public BulkMigration(String name, String table, String keyColumn) {
+		this.name = name;
+		this.table = table;
+		this.keyColumn = keyColumn;
+		Properties runtimeProperties = Context.getRuntimeProperties();
+		this.batchSize = getInt(runtimeProperties, BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+		this.partitions = getInt(runtimeProperties, PARTITIONS_PROPERTY, 1);
+		this.connectionFactory = new ConnectionFactory() {
+			
+			@Override
+			public Connection getConnection() throws Exception {
+				return DatabaseUpdater.getConnection();
+			}
+		};
+	}
+	
+	/**
+	 * @param columns the comma separated columns to read after the key, for the row migrator
+	 */
+	public void setColumns(String columns) {
+		this.columns = columns;
+	}
+	
+	/**
+	 * @param condition the sql condition that selects the rows to migrate, e.g. "uuid is null"
+	 */
+	public void setCondition(String condition) {
+		this.condition = condition;
+	}
+	
+	/**
+	 * @param writeSql the insert or update statement, with a row migrator its parameters are set for
+	 *            each row, without one its two parameters are the first and the last key of a range
+	 */
+	public void setWriteSql(String writeSql) {
+		this.writeSql = writeSql;
+	}
+	
+	/**
+	 * @param rowMigrator sets the parameters of the write statement for each row, or null to run the
+	 *            write statement for ranges of keys
+	 */
+	public void setRowMigrator(RowMigrator rowMigrator) {
+		this.rowMigrator = rowMigrator;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of rows, or keys without a row migrator, written per commit
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	public int getPartitions() {
+		return partitions;
+	}
+	
+	/**
+	 * @param partitions the number of key ranges to migrate in parallel, each on its own connection
+	 *            from the connection factory
+	 */
+	public void setPartitions(int partitions) {
+		this.partitions = Math.max(1, partitions);
+	}
+	
+	/**
+	 * @param connectionFactory opens the connections of the partitions, by default
+	 *            {@link DatabaseUpdater#getConnection()}
+	 */
+	public void setConnectionFactory(ConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+	
+	/**
+	 * @param checkpointsFile the file to keep the checkpoints in instead of the {@link #CHECKPOINTS_FILE}
+	 *            in the application data directory
+	 */
+	public void setCheckpointsFile(File checkpointsFile) {
+		this.checkpointsFile = checkpointsFile;
+	}
+	
+	/**
+	 * Migrates the table, after the checkpoints of an interrupted run of the migration if there are
+	 * any
+	 *
+	 * @param connection the connection of the changeset, its auto commit mode is restored afterwards
+	 * @return the number of rows written
+	 * @throws SQLException if reading or writing failed, the batches committed so far are kept
+	 * @should migrate the rows that match the condition
+	 * @should resume after the checkpoints of an interrupted run
+	 * @should start over if the bounds of the keys changed since the interrupted run
+	 * @should migrate partitions in parallel
+	 * @should run the write statement for ranges of keys without a row migrator
+	 * @should store the checkpoints committed before a failure
+	 */
+	public long execute(Connection connection) throws SQLException {
+		long start = System.currentTimeMillis();
+		Run run = new Run(connection.getMetaData().getURL());
+		List<Partition> parts = getPartitions(connection, run);
+		boolean complete = false;
+		try {
+			if (parts.size() == 1) {
+				migrate(connection, parts.get(0), run);
+			} else if (parts.size() > 1) {
+				migrateInParallel(connection, parts, run);
+			}
+			complete = true;
+		}
+		finally {
+			if (complete) {
+				run.finish();
+			} else {
+				run.interrupted();
+			}
+		}
+		log.info("Migrated " + run.written + " rows of " + table + " in " + (System.currentTimeMillis() - start) + " ms");
+		return run.written;
+	}
+	
+	/**
+	 * Splits the keys of the table into ranges, which start after their checkpoints
+	 */
+	private List<Partition> getPartitions(Connection connection, Run run) throws SQLException {
+		List<Partition> parts = new ArrayList<Partition>();
+		Object min;
+		Object max;
+		// without the condition, the bounds come from the index of the key
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet results = statement.executeQuery("select min(" + keyColumn + "), max(" + keyColumn + ") from " + table);
+			results.next();
+			min = results.getObject(1);
+			max = results.getObject(2);
+		}
+		finally {
+			statement.close();
+		}
+		if (min == null) {
+			return parts;
+		}
+		if (!(min instanceof Number) || !(max instanceof Number)) {
+			parts.add(new Partition(min, max));
+			return parts;
+		}
+		
+		long first = ((Number) min).longValue();
+		long keys = ((Number) max).longValue() - first + 1;
+		int count = (int) Math.min(partitions, keys);
+		String bounds = first + "-" + max;
+		// checkpoints are only of use for the same ranges, which move when keys are added or removed
+		if (!String.valueOf(count).equals(run.checkpoints.getProperty(name + ".partitions"))
+		        || !bounds.equals(run.checkpoints.getProperty(name + ".bounds"))) {
+			if (run.checkpoints.getProperty(name + ".partitions") != null) {
+				log.info("The keys of " + table + " changed since the migration was interrupted, starting over");
+			}
+			run.removeCheckpoints();
+		}
+		run.checkpoints.setProperty(name + ".partitions", String.valueOf(count));
+		run.checkpoints.setProperty(name + ".bounds", bounds);
+		run.keys = keys;
+		for (int i = 0; i < count; i++) {
+			Partition part = new Partition(name + "." + i, first - 1 + keys * i / count, first - 1 + keys * (i + 1) / count);
+			String checkpoint = run.checkpoints.getProperty(part.key);
+			if (checkpoint != null) {
+				long after = Math.min(Math.max(part.after, Long.parseLong(checkpoint)), part.to);
+				run.done += after - part.after;
+				part.after = after;
+			}
+			parts.add(part);
+		}
+		if (run.done > 0) {
+			log.info("Resuming the migration of " + table + " after its checkpoints");
+		}
+		return parts;
+	}
+	
+	private void migrateInParallel(Connection connection, List<Partition> parts, final Run run) throws SQLException {
+		List<Connection> connections = new ArrayList<Connection>();
+		try {
+			for (int i = 0; i < parts.size(); i++) {
+				connections.add(connectionFactory.getConnection());
+			}
+		}
+		catch (Exception e) {
+			log.warn("Unable to open a connection for each partition of " + table + ", migrating them one by one", e);
+			closeQuietly(connections);
+			for (Partition part : parts) {
+				migrate(connection, part, run);
+			}
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(parts.size());
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < parts.size(); i++) {
+				final Connection partConnection = connections.get(i);
+				final Partition part = parts.get(i);
+				futures.add(executor.submit(new Callable<Void>() {
+					
+					@Override
+					public Void call() throws SQLException {
+						migrate(partConnection, part, run);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof SQLException) {
+						throw (SQLException) e.getCause();
+					}
+					throw new SQLException("Unable to migrate " + table, e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while migrating " + table, e);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			closeQuietly(connections);
+		}
+	}
+	
+	private void migrate(Connection connection, Partition part, Run run) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			if (rowMigrator == null) {
+				migrateRanges(connection, part, run);
+			} else {
+				migrateRows(connection, part, run);
+			}
+		}
+		catch (SQLException e) {
+			rollbackQuietly(connection);
+			throw e;
+		}
+		catch (RuntimeException e) {
+			rollbackQuietly(connection);
+			throw e;
+		}
+		finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+	
+	private void migrateRows(Connection connection, Partition part, Run run) throws SQLException {
+		StringBuilder sql = new StringBuilder("select ").append(keyColumn);
+		if (StringUtils.isNotBlank(columns)) {
+			sql.append(", ").append(columns);
+		}
+		sql.append(" from ").append(table).append(" where 1 = 1");
+		if (part.bounded) {
+			sql.append(" and ").append(keyColumn).append(" > ? and ").append(keyColumn).append(" <= ?");
+		}
+		if (StringUtils.isNotBlank(condition)) {
+			sql.append(" and (").append(condition).append(")");
+		}
+		sql.append(" order by ").append(keyColumn);
+		
+		PreparedStatement read = connection.prepareStatement(sql.toString());
+		BatchedStatement write = new BatchedStatement(connection.prepareStatement(writeSql), batchSize);
+		try {
+			read.setFetchSize(batchSize);
+			if (part.bounded) {
+				read.setMaxRows(batchSize);
+			}
+			boolean more = true;
+			while (more) {
+				if (part.bounded) {
+					read.setLong(1, part.after);
+					read.setLong(2, part.to);
+				}
+				long written = write.getUpdateCount();
+				long last = part.to;
+				int rows = 0;
+				ResultSet results = read.executeQuery();
+				try {
+					while (results.next()) {
+						rows++;
+						if (part.bounded) {
+							last = results.getLong(1);
+						}
+						if (rowMigrator.migrate(results, write.getStatement())) {
+							write.add();
+						}
+					}
+				}
+				finally {
+					results.close();
+				}
+				write.flush();
+				connection.commit();
+				
+				// a page that isn't full is the last one
+				more = part.bounded && rows == batchSize;
+				run.committed(part, more ? last : part.to, write.getUpdateCount() - written);
+			}
+		}
+		finally {
+			closeQuietly(read);
+			write.close();
+		}
+	}
+	
+	private void migrateRanges(Connection connection, Partition part, Run run) throws SQLException {
+		PreparedStatement write = connection.prepareStatement(writeSql);
+		try {
+			if (!part.bounded) {
+				write.setObject(1, part.min);
+				write.setObject(2, part.max);
+				int written = write.executeUpdate();
+				connection.commit();
+				run.committed(part, part.to, written);
+				return;
+			}
+			while (part.after < part.to) {
+				long last = Math.min(part.after + batchSize, part.to);
+				write.setLong(1, part.after + 1);
+				write.setLong(2, last);
+				int written = write.executeUpdate();
+				connection.commit();
+				run.committed(part, last, written);
+			}
+		}
+		finally {
+			closeQuietly(write);
+		}
+	}
+	
+	private File getCheckpointsFile() {
+		if (checkpointsFile == null) {
+			checkpointsFile = new File(OpenmrsUtil.getApplicationDataDirectory(), CHECKPOINTS_FILE);
+		}
+		return checkpointsFile;
+	}
+	
+	private static int getInt(Properties properties, String name, int defaultValue) {
+		String value = properties.getProperty(name);
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				return Math.max(1, Integer.parseInt(value.trim()));
+			}
+			catch (NumberFormatException e) {
+				log.warn("Ignoring the invalid value " + value + " of the runtime property " + name);
+			}
+		}
+		return defaultValue;
+	}
+	
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		}
+		catch (SQLException e) {
+			log.warn("Failed to close the statement", e);
+		}
+	}
+	
+	private static void closeQuietly(List<Connection> connections) {
+		for (Connection connection : connections) {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				log.warn("Failed to close the connection", e);
+			}
+		}
+	}
+	
+	private static void rollbackQuietly(Connection connection) {
+		try {
+			connection.rollback();
+		}
+		catch (SQLException e) {
+			log.error("Failed to roll back", e);
+		}
+	}
+	
+	/**
+	 * A range of keys, after the last committed key up to and including its last key, or all rows of
+	 * a table with keys that are not numbers
+	 */
+	private static class Partition {
+		
+		private final String key;
+		
+		private final boolean bounded;
+		
+		private long after;
+		
+		private final long to;
+		
+		private final Object min;
+		
+		private final Object max;
+		
+		public Partition(String key, long after, long to) {
+			this.key = key;
+			this.bounded = true;
+			this.after = after;
+			this.to = to;
+			this.min = null;
+			this.max = null;
+		}
+		
+		public Partition(Object min, Object max) {
+			this.key = null;
+			this.bounded = false;
+			this.after = 0;
+			this.to = 0;
+			this.min = min;
+			this.max = max;
+		}
+	}
+	
+	/**
+	 * The state of a run of the migration shared by its partitions: the checkpoints and the progress
+	 */
+	private class Run {
+		
+		private final Properties checkpoints;
+		
+		private long keys = 0;
+		
+		private long done = 0;
+		
+		private long written = 0;
+		
+		private long lastStored = System.currentTimeMillis();
+		
+		private long lastReported = System.currentTimeMillis();
+		
+		public Run(String url) {
+			checkpoints = load();
+			if (url == null || !url.equals(checkpoints.getProperty(CONNECTION_URL))) {
+				// the checkpoints of another database are of no use
+				checkpoints.clear();
+				if (url != null) {
+					checkpoints.setProperty(CONNECTION_URL, url);
+				}
+			}
+		}
+		
+		/**
+		 * Records that the keys of the partition up to the given one are migrated and committed
+		 */
+		public synchronized void committed(Partition part, long last, long rows) {
+			written += rows;
+			long now = System.currentTimeMillis();
+			if (part.bounded) {
+				done += last - part.after;
+				part.after = last;
+				checkpoints.setProperty(part.key, String.valueOf(last));
+				if (now - lastStored >= CHECKPOINT_INTERVAL) {
+					store();
+					lastStored = now;
+				}
+			}
+			if (now - lastReported >= REPORT_INTERVAL) {
+				String message = "Migrated " + written + " rows of " + table;
+				if (keys > 0) {
+					message += " (" + (done * 100 / keys) + "%)";
+				}
+				log.info(message);
+				DatabaseUpdater.reportProgress(message);
+				lastReported = now;
+			}
+		}
+		
+		/**
+		 * Removes the checkpoints of the migration once it is complete
+		 */
+		public synchronized void finish() {
+			removeCheckpoints();
+			store();
+		}
+		
+		/**
+		 * Stores the checkpoints committed since the last stored ones when the migration fails
+		 */
+		public synchronized void interrupted() {
+			store();
+		}
+		
+		public synchronized void removeCheckpoints() {
+			for (String property : checkpoints.stringPropertyNames()) {
+				if (property.startsWith(name + ".")) {
+					checkpoints.remove(property);
+				}
+			}
+		}
+		
+		private Properties load() {
+			Properties properties = new Properties();
+			synchronized (checkpointsLock) {
+				File file = getCheckpointsFile();
+				if (file.exists()) {
+					InputStream in = null;
+					try {
+						in = new FileInputStream(file);
+						properties.load(in);
+					}
+					catch (IOException e) {
+						log.warn("Unable to read the checkpoints in " + file.getAbsolutePath() + ", starting over", e);
+					}
+					finally {
+						IOUtils.closeQuietly(in);
+					}
+				}
+			}
+			return properties;
+		}
+		
+		private void store() {
+			synchronized (checkpointsLock) {
+				File file = getCheckpointsFile();
+				if (checkpoints.size() == (checkpoints.containsKey(CONNECTION_URL) ? 1 : 0)) {
+					// no migration was interrupted
+					if (file.exists() && !file.delete()) {
+						log.warn("Unable to delete " + file.getAbsolutePath());
+					}
+					return;
+				}
+				OutputStream out = null;
+				try {
+					out = new FileOutputStream(file);
+					checkpoints.store(out, "Checkpoints of interrupted bulk migrations");
+				}
+				catch (IOException e) {
+					// only costs redoing the work after the last stored checkpoint
+					log.warn("Unable to write the checkpoints to " + file.getAbsolutePath(), e);
+				}
+				finally {
+					IOUtils.closeQuietly(out);
+				}
+			}
+		}
+	}
+}
@@ -12,7 +12,7 @@ package org.openmrs.util.databasechange;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,7 +25,6 @@ import liquibase.change.custom.CustomTaskChange;
 import liquibase.database.Database;
 import liquibase.database.jvm.JdbcConnection;
 import liquibase.exception.CustomChangeException;
-import liquibase.exception.DatabaseException;
 import liquibase.exception.SetupException;
 import liquibase.exception.ValidationErrors;
 import liquibase.resource.ResourceAccessor;
@@ -35,7 +34,8 @@ import liquibase.resource.ResourceAccessor;
  * parameter.
  * <br/>
  * If run on MySQL, it generates SQL statements using the in-built uuid() MySQL function,
- * otherwise it uses Java's {@link UUID} class, which is less efficient.<br/>
+ * otherwise it uses Java's {@link UUID} class, which is less efficient. Either way the rows are
+ * updated in batches with a {@link BulkMigration}, which can resume an interrupted run.<br/>
  * <br/>
  * Expects parameter: "tableNames" : whitespace delimited list of table names to add <br/>
  * Expects parameter: "columnName" : name of the column to change. Default: "uuid" <br/>
@@ -43,12 +43,18 @@ import liquibase.resource.ResourceAccessor;
  * convention. Should be a pipe-separated list of key=value, where key is the name an id column
  * would have by convention, and value is the name it actually has. In this example the id of the
  * field_answer table is 'field_id' rather than 'field_answer_id', etc:
- * "field_answer_id=field_id|role_id=role|privilege_id=privilege"
+ * "field_answer_id=field_id|role_id=role|privilege_id=privilege" <br/>
+ * Optional parameter: "batchSize" : number of rows to update per commit
  */
 public class GenerateUuid implements CustomTaskChange {
 	
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * @deprecated the rows are updated in batches of {@link BulkMigration#getBatchSize()} rows, see
+	 *             {@link #setBatchSize(Integer)}
+	 */
+	@Deprecated
 	public static final Integer TRANSACTION_BATCH_SIZE_LIMIT = 512;
 	
 	/**
@@ -81,135 +87,57 @@ public class GenerateUuid implements CustomTaskChange {
 	private String[] tableNamesArray = null;
 	
 	/**
-	 * The sql statement to select out the ids. Generated in the {@link #setUp()} method.
+	 * The "batchSize" parameter defined in the liquibase xml changeSet element that is calling this
+	 * class, the number of rows to update per commit. Defaults to {@link BulkMigration#getBatchSize()}
 	 */
-	private String genericIdSql;
+	private Integer batchSize = null;
 	
 	/**
-	 * The sql statement to update the rows with the uuids. Generated in the {@link #setUp()}
-	 * method.
-	 */
-	private String genericUpdateSql;
-	
-	/**
-	 * Adds UUIDs to all rows for the specified tables. It generates UUIDs using Java and updates one row at a time, thus
-	 * it is not very efficient. When running on the MySQL database, we generate SQL statements using the uuid MySQL function,
-	 * which is much faster.
+	 * Adds UUIDs to all rows for the specified tables, in batches of rows with a {@link BulkMigration}.
+	 * It generates UUIDs using Java and sends the updates as JDBC batches. When running on the MySQL
+	 * database, it updates ranges of rows with the uuid MySQL function instead, which is much faster.
 	 *
 	 * @see liquibase.change.custom.CustomTaskChange#execute(liquibase.database.Database)
 	 */
 	@Override
 	public void execute(Database database) throws CustomChangeException {
 		JdbcConnection connection = (JdbcConnection) database.getConnection();
-		boolean initialAutoCommit = true;
-		try {
-			initialAutoCommit = connection.getAutoCommit();
-			connection.setAutoCommit(false);
+		boolean mysql = database.getTypeName().equals("mysql");
+		// loop over all tables
+		for (String tableName : tableNamesArray) {
+			String idColumn = tableName + "_id";
+			// deal with tables that don't follow the tableName_id convention
+			if (idExceptionsMap.containsKey(idColumn)) {
+				idColumn = idExceptionsMap.get(idColumn);
+			}
 			
-			if (database.getTypeName().equals("mysql")) {
-				String updateSql = "update %s set " + columnName + " = uuid() where " + columnName + " is null";
-				for (String tablename : tableNamesArray) {
-					String rawSql = String.format(updateSql, tablename);
-					
-					Statement statement = null;
-					try {
-						statement = connection.createStatement();
-						statement.execute(rawSql);
-						statement.close();
-						connection.commit();
-					}
-					catch (SQLException e) {
-						throw new CustomChangeException(e);
-					}
-					finally {
-						if (statement != null) {
-							try {
-								statement.close();
-							}
-							catch (SQLException e) {
-								log.warn(e);
-							}
-						}
-					}
-					
-				}
+			BulkMigration migration = new BulkMigration("generate_uuid." + tableName + "." + columnName, tableName,
+			        idColumn);
+			migration.setCondition(columnName + " is null");
+			if (batchSize != null) {
+				migration.setBatchSize(batchSize);
+			}
+			if (mysql) {
+				migration.setWriteSql("update " + tableName + " set " + columnName + " = uuid() where " + idColumn
+				        + " >= ? and " + idColumn + " <= ? and " + columnName + " is null");
 			} else {
-				int transactionBatchSize = 0;
-				// loop over all tables
-				for (String tableName : tableNamesArray) {
-					try {
-						Statement idStatement = null;
-						PreparedStatement updateStatement = null;
-						try {
-							String idSql = genericIdSql.replaceAll("tablename", tableName);
-							String updateSql = genericUpdateSql.replaceAll("tablename", tableName);
-							
-							// hacky way to deal with tables that don't follow the tableNam_id convention
-							for (Map.Entry<String, String> idException : idExceptionsMap.entrySet()) {
-								idSql = idSql.replaceFirst(idException.getKey(), idException.getValue());
-								updateSql = updateSql.replaceFirst(idException.getKey(), idException.getValue());
-							}
-							
-							idStatement = connection.createStatement();
-							updateStatement = connection.prepareStatement(updateSql);
-							
-							ResultSet ids = idStatement.executeQuery(idSql);
-							while (ids.next()) {
-								updateStatement.setObject(2, ids.getObject(1)); // set the primary key number
-								updateStatement.setString(1, UUID.randomUUID().toString()); // set the uuid for this row
-								updateStatement.executeUpdate();
-								
-								transactionBatchSize++;
-								if (transactionBatchSize > TRANSACTION_BATCH_SIZE_LIMIT) {
-									transactionBatchSize = 0;
-									connection.commit();
-								}
-							}
-							
-							idStatement.close();
-							updateStatement.close();
-						}
-						finally {
-							if (idStatement != null) {
-								try {
-									idStatement.close();
-								}
-								catch (SQLException e) {
-									log.warn(e);
-								}
-							}
-							if (updateStatement != null) {
-								try {
-									updateStatement.close();
-								}
-								catch (SQLException e) {
-									log.warn(e);
-								}
-							}
-						}
-					}
-					catch (DatabaseException e) {
-						throw new CustomChangeException("Unable to set uuid on table: " + tableName, e);
-					}
-					catch (SQLException e) {
-						throw new CustomChangeException("Unable to set uuid on table: " + tableName, e);
+				migration.setWriteSql("update " + tableName + " set " + columnName + " = ? where " + idColumn + " = ?");
+				migration.setRowMigrator(new BulkMigration.RowMigrator() {
+					
+					@Override
+					public boolean migrate(ResultSet row, PreparedStatement write) throws SQLException {
+						write.setString(1, UUID.randomUUID().toString()); // set the uuid for this row
+						write.setObject(2, row.getObject(1)); // set the primary key number
+						return true;
 					}
-				}
-				
-				connection.commit();
+				});
 			}
 			
-			connection.setAutoCommit(initialAutoCommit);
-		}
-		catch (DatabaseException e) {
-			throw new CustomChangeException(e);
-		}
-		finally {
 			try {
-				connection.setAutoCommit(initialAutoCommit);
+				migration.execute(connection.getUnderlyingConnection());
 			}
-			catch (DatabaseException e) {
-				//silently ignore so that the actual error is not hidden
+			catch (SQLException e) {
+				throw new CustomChangeException("Unable to set uuid on table: " + tableName, e);
 			}
 		}
 	}
@@ -242,14 +170,11 @@ public class GenerateUuid implements CustomTaskChange {
 		}
 		
 		tableNamesArray = StringUtils.split(tableNames);
-		idExceptionsMap = OpenmrsUtil.parseParameterList(idExceptions);
-		
-		genericIdSql = "select tablename_id from tablename where columnName is null";
-		genericIdSql = genericIdSql.replace("columnName", columnName);
-		
-		genericUpdateSql = "update tablename set columnName = ? where tablename_id = ?";
-		genericUpdateSql = genericUpdateSql.replace("columnName", columnName);
-		
+		idExceptionsMap = new HashMap<String, String>();
+		// the list may be spread over several lines
+		for (Map.Entry<String, String> idException : OpenmrsUtil.parseParameterList(idExceptions).entrySet()) {
+			idExceptionsMap.put(idException.getKey().trim(), idException.getValue().trim());
+		}
 	}
 	
 	/**
@@ -287,4 +212,14 @@ public class GenerateUuid implements CustomTaskChange {
 		this.idExceptions = idExceptions;
 	}
 	
+	/**
+	 * This is called by liquibase to set the parameter "batchSize" onto this change.
+	 *
+	 * @param batchSize the number of rows to update per commit
+	 * @since 2.1.0
+	 */
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+	
 }
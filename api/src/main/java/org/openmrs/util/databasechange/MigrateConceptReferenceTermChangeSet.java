@@ -52,9 +52,9 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 		PreparedStatement selectTypes = null;
 		PreparedStatement batchUpdateMap = null;
 		PreparedStatement selectMap = null;
-		PreparedStatement updateMapTerm = null;
-		PreparedStatement insertTerm = null;
-		PreparedStatement updateMapType = null;
+		BatchedStatement updateMapTerm = null;
+		BatchedStatement insertTerm = null;
+		BatchedStatement updateMapType = null;
 		
 		try {
 			prevAutoCommit = connection.getAutoCommit();
@@ -81,14 +81,17 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 			batchUpdateMap.execute();
 			batchUpdateMap.close();
 			
-			//Preparing statements for use in the loop.
-			updateMapTerm = connection.prepareStatement("update concept_reference_map set"
-			        + " concept_reference_term_id = ? where concept_map_id = ?");
-			insertTerm = connection.prepareStatement("insert into concept_reference_term"
+			//Preparing statements for use in the loop, their rows are sent to the database in batches.
+			int batchSize = BulkMigration.DEFAULT_BATCH_SIZE;
+			updateMapTerm = new BatchedStatement(connection.prepareStatement("update concept_reference_map set"
+			        + " concept_reference_term_id = ? where concept_map_id = ?"), batchSize);
+			updateMapTerm.setExpectedUpdateCount(1);
+			insertTerm = new BatchedStatement(connection.prepareStatement("insert into concept_reference_term"
 			        + " (concept_reference_term_id, uuid, concept_source_id, code, creator, date_created, description)"
-			        + " values (?, ?, ?, ?, ?, ?, ?)");
-			updateMapType = connection.prepareStatement("update concept_reference_map set"
-			        + " concept_map_type_id = ? where concept_map_id = ?");
+			        + " values (?, ?, ?, ?, ?, ?, ?)"), batchSize);
+			updateMapType = new BatchedStatement(connection.prepareStatement("update concept_reference_map set"
+			        + " concept_map_type_id = ? where concept_map_id = ?"), batchSize);
+			updateMapType.setExpectedUpdateCount(1);
 			
 			int prevSource = -1;
 			String prevSourceCode = null;
@@ -113,13 +116,9 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 				
 				final Integer mapTypeId = determineMapTypeId(comment, typesToIds);
 				final int updatedMapTypeId = (mapTypeId == null) ? typesToIds.get(DEFAULT_CONCEPT_MAP_TYPE) : mapTypeId;
-				updateMapType.setInt(1, updatedMapTypeId);
-				updateMapType.setInt(2, conceptMapId);
-				updateMapType.execute();
-				if (updateMapType.getUpdateCount() != 1) {
-					throw new CustomChangeException("Failed to set map type: " + mapTypeId + " for map: " + conceptMapId
-					        + ", updated rows: " + updateMapType.getUpdateCount());
-				}
+				updateMapType.getStatement().setInt(1, updatedMapTypeId);
+				updateMapType.getStatement().setInt(2, conceptMapId);
+				updateMapType.add();
 				
 				if (source == prevSource
 				        && (sourceCode == prevSourceCode || (sourceCode != null && sourceCode.equals(prevSourceCode)))) {
@@ -129,29 +128,25 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 					}
 					
 					//We need to use the last inserted term.
-					updateMapTerm.setInt(1, prevInsertedTerm);
-					updateMapTerm.setInt(2, conceptMapId);
-					
-					updateMapTerm.execute();
-					if (updateMapTerm.getUpdateCount() != 1) {
-						throw new CustomChangeException("Failed to set reference term: " + prevInsertedTerm + " for map: "
-						        + conceptMapId + ", updated rows: " + updateMapTerm.getUpdateCount());
-					}
+					updateMapTerm.getStatement().setInt(1, prevInsertedTerm);
+					updateMapTerm.getStatement().setInt(2, conceptMapId);
+					updateMapTerm.add();
 				} else {
-					insertTerm.setInt(1, conceptMapId);
+					PreparedStatement insert = insertTerm.getStatement();
+					insert.setInt(1, conceptMapId);
 					//We need to guaranty that UUIDs are always the same when run on different systems.
-					insertTerm.setString(2, UUID.nameUUIDFromBytes(uuid.getBytes()).toString());
-					insertTerm.setInt(3, source);
-					insertTerm.setString(4, sourceCode);
-					insertTerm.setInt(5, creator);
-					insertTerm.setDate(6, dateCreated);
+					insert.setString(2, UUID.nameUUIDFromBytes(uuid.getBytes()).toString());
+					insert.setInt(3, source);
+					insert.setString(4, sourceCode);
+					insert.setInt(5, creator);
+					insert.setDate(6, dateCreated);
 					if (mapTypeId == null) {
-						insertTerm.setString(7, comment);
+						insert.setString(7, comment);
 					} else {
-						insertTerm.setString(7, null);
+						insert.setString(7, null);
 					}
 					
-					insertTerm.execute();
+					insertTerm.add();
 					
 					prevInsertedTerm = conceptMapId;
 				}
@@ -161,9 +156,9 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 				prevComment = comment;
 			}
 			selectMap.close();
-			updateMapType.close();
-			updateMapTerm.close();
-			insertTerm.close();
+			insertTerm.flush();
+			updateMapTerm.flush();
+			updateMapType.flush();
 			
 			connection.commit();
 		}
@@ -214,6 +209,22 @@ public class MigrateConceptReferenceTermChangeSet implements CustomTaskChange {
 		}
 	}
 	
+	/**
+	 * Closes the batched statement quietly.
+	 * 
+	 * @param statement
+	 */
+	private void closeStatementQuietly(BatchedStatement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			}
+			catch (SQLException e) {
+				log.error("Failed to close statement", e);
+			}
+		}
+	}
+	
 	/**
 	 * Determines the map type based on the given comment.
 	 * 
@@ -9,6 +9,11 @@
  */
 package org.openmrs.validator;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +41,9 @@ public class PatientIdentifierValidator implements Validator {
 	
 	private static Log log = LogFactory.getLog(PatientIdentifierValidator.class);
 	
+	// identifiers whose uniqueness the current thread already checked in bulk
+	private static final ThreadLocal<Set<PatientIdentifier>> uniquenessChecked = new ThreadLocal<Set<PatientIdentifier>>();
+	
 	/**
 	 * @see org.springframework.validation.Validator#supports(java.lang.Class)
 	 */
@@ -94,7 +102,7 @@ public class PatientIdentifierValidator implements Validator {
 				    "PatientIdentifier.location.null", new Object[] { identifierString }, Context.getLocale()));
 			}
 			
-			if (pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.NON_UNIQUE
+			if (pi.getIdentifierType().getUniquenessBehavior() != UniquenessBehavior.NON_UNIQUE && !isUniquenessChecked(pi)
 			        && Context.getPatientService().isIdentifierInUseByAnotherPatient(pi)) {
 				// Check is already in use by another patient
 				throw new IdentifierNotUniqueException(Context.getMessageSourceService().getMessage(
@@ -104,6 +112,35 @@ public class PatientIdentifierValidator implements Validator {
 		}
 	}
 	
+	/**
+	 * Makes {@link #validateIdentifier(PatientIdentifier)} skip the query for other patients with
+	 * the given identifiers on the current thread, because their uniqueness was already checked for
+	 * many identifiers at once. It must be followed by {@link #clearUniquenessChecked()} in a finally
+	 * block.
+	 *
+	 * @param identifiers the identifiers that are known to be unique
+	 * @see org.openmrs.api.PatientService#checkPatientIdentifiers(java.util.List)
+	 * @since 2.1.0
+	 */
+	public static void setUniquenessChecked(Collection<PatientIdentifier> identifiers) {
+		Set<PatientIdentifier> checked = Collections.newSetFromMap(new IdentityHashMap<PatientIdentifier, Boolean>());
+		checked.addAll(identifiers);
+		uniquenessChecked.set(checked);
+	}
+	
+	/**
+	 * @see #setUniquenessChecked(Collection)
+	 * @since 2.1.0
+	 */
+	public static void clearUniquenessChecked() {
+		uniquenessChecked.remove();
+	}
+	
+	private static boolean isUniquenessChecked(PatientIdentifier pi) {
+		Set<PatientIdentifier> checked = uniquenessChecked.get();
+		return checked != null && checked.contains(pi);
+	}
+	
 	/**
 	 * Validates that a given identifier string is valid for a given {@link PatientIdentifierType}
 	 * Checks for things like blank identifiers, invalid check digits, and invalid format.
@@ -0,0 +1,49 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.collection.IntSet;
+
+/**
+ * Tests for {@link Cohort}
+ */
+public class CohortTest {
+	
+	/**
+	 * @see Cohort#getMemberIdSet()
+	 * @verifies contain all member ids
+	 */
+	@Test
+	public void getMemberIdSet_shouldContainAllMemberIds() throws Exception {
+		Cohort cohort = new Cohort("1,5,9");
+		
+		IntSet memberIds = cohort.getMemberIdSet();
+		
+		Assert.assertArrayEquals(new int[] { 1, 5, 9 }, memberIds.toSortedArray());
+		memberIds.add(10);
+		Assert.assertFalse(cohort.contains(10));
+	}
+	
+	@Test
+	public void intersect_shouldKeepTheMembersOfBothCohorts() throws Exception {
+		Cohort intersection = Cohort.intersect(new Cohort("1,2,3,4"), new Cohort("2,4,6"));
+		
+		Assert.assertEquals(new Cohort("2,4").getMemberIds(), intersection.getMemberIds());
+	}
+	
+	@Test
+	public void subtract_shouldRemoveTheMembersOfTheSecondCohort() throws Exception {
+		Cohort difference = Cohort.subtract(new Cohort("1,2,3,4"), new Cohort("2,4,6"));
+		
+		Assert.assertEquals(new Cohort("1,3").getMemberIds(), difference.getMemberIds());
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link FormStructure}
+ */
+public class FormStructureTest {
+	
+	private Form form;
+	
+	private List<FormField> formFields;
+	
+	@Before
+	public void createForm() {
+		form = new Form(1);
+		form.setVersion("1");
+		
+		FormField section = createFormField(1, null, 20f, "section", null);
+		FormField weight = createFormField(2, section, 1f, "weight", 5089);
+		FormField height = createFormField(3, section, 2f, "height", 5090);
+		FormField header = createFormField(4, null, 10f, "header", null);
+		FormField weightAgain = createFormField(5, header, null, "weight again", 5089);
+		formFields = Arrays.asList(section, weight, height, header, weightAgain);
+	}
+	
+	/**
+	 * @see FormStructure#FormStructure(Form,java.util.Collection)
+	 * @verifies order the form fields like the form field comparator
+	 */
+	@Test
+	public void FormStructure_shouldOrderTheFormFieldsLikeTheFormFieldComparator() throws Exception {
+		FormStructure structure = new FormStructure(form, formFields);
+		
+		Assert.assertEquals(Arrays.asList(4, 1), structure.getChildFormFieldIds(FormStructure.TOP_LEVEL));
+		Assert.assertEquals(Arrays.asList(2, 3), structure.getChildFormFieldIds(1));
+		Assert.assertEquals(Collections.singletonList(5), structure.getChildFormFieldIds(4));
+		Assert.assertEquals(5, structure.getFormFieldCount());
+		
+		TreeSet<FormField> expected = new TreeSet<FormField>(new FormField.DefaultComparator());
+		expected.addAll(formFields);
+		List<FormField> actual = new ArrayList<FormField>(formFields);
+		Collections.sort(actual, structure.getComparator());
+		Assert.assertEquals(new ArrayList<FormField>(expected), actual);
+	}
+	
+	/**
+	 * @see FormStructure#FormStructure(Form,java.util.Collection)
+	 * @verifies index the form fields by concept
+	 */
+	@Test
+	public void FormStructure_shouldIndexTheFormFieldsByConcept() throws Exception {
+		FormStructure structure = new FormStructure(form, formFields);
+		
+		Assert.assertEquals(Arrays.asList(2, 5), structure.getFormFieldIds(5089));
+		Assert.assertEquals(Collections.singletonList(3), structure.getFormFieldIds(5090));
+		Assert.assertTrue(structure.getFormFieldIds(5497).isEmpty());
+	}
+	
+	/**
+	 * @see FormStructure#isPositionUnchanged(FormField)
+	 * @verifies return false for a form field whose sort weight was changed
+	 */
+	@Test
+	public void isPositionUnchanged_shouldReturnFalseForAFormFieldWhoseSortWeightWasChanged() throws Exception {
+		FormStructure structure = new FormStructure(form, formFields);
+		FormField header = formFields.get(3);
+		Assert.assertTrue(structure.isPositionUnchanged(header));
+		
+		header.setSortWeight(30f);
+		
+		Assert.assertFalse(structure.isPositionUnchanged(header));
+	}
+	
+	private FormField createFormField(Integer formFieldId, FormField parent, Float sortWeight, String name,
+	        Integer conceptId) {
+		Field field = new Field(formFieldId * 10);
+		field.setName(name);
+		if (conceptId != null) {
+			field.setConcept(new Concept(conceptId));
+		}
+		FormField formField = new FormField(formFieldId);
+		formField.setForm(form);
+		formField.setParent(parent);
+		formField.setField(field);
+		formField.setSortWeight(sortWeight);
+		return formField;
+	}
+}
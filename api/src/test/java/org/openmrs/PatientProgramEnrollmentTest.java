@@ -0,0 +1,48 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PatientProgramEnrollment} class.
+ */
+public class PatientProgramEnrollmentTest {
+	
+	/**
+	 * @see PatientProgramEnrollment#setCurrentStateId(int, int)
+	 * @verifies replace the state of a workflow that is already set
+	 */
+	@Test
+	public void setCurrentStateId_shouldReplaceTheStateOfAWorkflowThatIsAlreadySet() throws Exception {
+		PatientProgramEnrollment enrollment = new PatientProgramEnrollment(1, 2, 3, null, null);
+		enrollment.setCurrentStateId(1, 10);
+		enrollment.setCurrentStateId(2, 20);
+		enrollment.setCurrentStateId(1, 11);
+		
+		assertEquals(11, enrollment.getCurrentStateId(1));
+		assertEquals(20, enrollment.getCurrentStateId(2));
+		assertEquals(2, enrollment.getWorkflowIds().length);
+	}
+	
+	/**
+	 * @see PatientProgramEnrollment#getCurrentStateId(int)
+	 * @verifies return no state for a workflow without a current state
+	 */
+	@Test
+	public void getCurrentStateId_shouldReturnNoStateForAWorkflowWithoutACurrentState() throws Exception {
+		PatientProgramEnrollment enrollment = new PatientProgramEnrollment(1, 2, 3, null, null);
+		enrollment.setCurrentStateId(1, 10);
+		
+		assertEquals(PatientProgramEnrollment.NO_STATE, enrollment.getCurrentStateId(5));
+	}
+}
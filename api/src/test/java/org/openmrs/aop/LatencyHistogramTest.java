@@ -0,0 +1,90 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+	
+	/**
+	 * @see LatencyHistogram#record(long)
+	 * @verifies record values below the sub bucket count exactly
+	 */
+	@Test
+	public void record_shouldRecordValuesBelowTheSubBucketCountExactly() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 20; i++) {
+			histogram.record(i);
+		}
+		
+		assertEquals(20, histogram.getCount());
+		assertEquals(210, histogram.getTotal());
+		assertEquals(20, histogram.getMax());
+		assertEquals(10, histogram.getValueAtPercentile(50));
+		assertEquals(19, histogram.getValueAtPercentile(95));
+	}
+	
+	/**
+	 * @see LatencyHistogram#record(long)
+	 * @verifies record large values within the precision of the histogram
+	 */
+	@Test
+	public void record_shouldRecordLargeValuesWithinThePrecisionOfTheHistogram() throws Exception {
+		long[] values = { 1000L, 123456L, 98765432L, 3600L * 1000000000L };
+		for (long value : values) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(value);
+			histogram.record(value * 2);
+			
+			long median = histogram.getValueAtPercentile(50);
+			assertTrue(value + " recorded as " + median, median >= value && median <= value * 1.07);
+			assertEquals(value * 2, histogram.getValueAtPercentile(100));
+		}
+	}
+	
+	/**
+	 * @see LatencyHistogram#getValueAtPercentile(double)
+	 * @verifies return 0 if nothing was recorded
+	 */
+	@Test
+	public void getValueAtPercentile_shouldReturn0IfNothingWasRecorded() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0, histogram.getMean());
+	}
+	
+	/**
+	 * @see LatencyHistogram#getValueAtPercentile(double)
+	 * @verifies return the value at the given percentile
+	 */
+	@Test
+	public void getValueAtPercentile_shouldReturnTheValueAtTheGivenPercentile() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000000);
+		}
+		histogram.record(500000000);
+		
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(p99 >= 1000000 && p99 < 1070000);
+		assertEquals(500000000, histogram.getValueAtPercentile(99.5));
+		
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+
+/**
+ * Measures the overhead {@link ServiceMetricsAdvice} adds to a service call, by comparing calls of
+ * a method that does nothing with and without the advice around it.
+ */
+@BenchmarkHistoryChart
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+public class ServiceMetricsAdvicePT {
+	
+	private static final int CALLS = 1000000;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private final ServiceMetricsAdvice advice = new ServiceMetricsAdvice();
+	
+	private final MethodInvocation invocation = new NoOpInvocation();
+	
+	@Test
+	public void shouldTestCallsWithoutAdvice() throws Throwable {
+		for (int i = 0; i < CALLS; i++) {
+			invocation.proceed();
+		}
+	}
+	
+	@Test
+	public void shouldTestCallsWithAdvice() throws Throwable {
+		for (int i = 0; i < CALLS; i++) {
+			advice.invoke(invocation);
+		}
+	}
+	
+	/**
+	 * An invocation of {@link Object#hashCode()} that does nothing
+	 */
+	private static class NoOpInvocation implements MethodInvocation {
+		
+		private static final Method METHOD;
+		
+		static {
+			try {
+				METHOD = Object.class.getMethod("hashCode");
+			}
+			catch (NoSuchMethodException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		private static final Object[] ARGUMENTS = new Object[0];
+		
+		@Override
+		public Method getMethod() {
+			return METHOD;
+		}
+		
+		@Override
+		public Object[] getArguments() {
+			return ARGUMENTS;
+		}
+		
+		@Override
+		public Object proceed() throws Throwable {
+			return null;
+		}
+		
+		@Override
+		public Object getThis() {
+			return this;
+		}
+		
+		@Override
+		public AccessibleObject getStaticPart() {
+			return METHOD;
+		}
+	}
+}
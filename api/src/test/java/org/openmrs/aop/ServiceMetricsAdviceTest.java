@@ -0,0 +1,115 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.aop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.annotation.Resource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+/**
+ * Tests {@link ServiceMetricsAdvice}.
+ */
+public class ServiceMetricsAdviceTest extends BaseContextSensitiveTest {
+	
+	@Resource(name = "serviceMetricsInterceptor")
+	ServiceMetricsAdvice serviceMetrics;
+	
+	@Before
+	public void resetMetrics() {
+		serviceMetrics.reset();
+	}
+	
+	/**
+	 * @see ServiceMetricsAdvice#invoke(org.aopalliance.intercept.MethodInvocation)
+	 * @verifies record calls of service methods
+	 */
+	@Test
+	public void invoke_shouldRecordCallsOfServiceMethods() throws Exception {
+		Context.getConceptService().getConcept(3);
+		Context.getConceptService().getConcept(5089);
+		
+		ServiceMethodMetrics metrics = getMetrics("ConceptService.getConcept(Integer)");
+		assertNotNull(metrics);
+		assertEquals(2, metrics.getCallCount());
+		assertEquals(0, metrics.getErrorCount());
+		assertTrue(metrics.getMaxTime() >= metrics.getMedianTime());
+	}
+	
+	/**
+	 * @see ServiceMetricsAdvice#invoke(org.aopalliance.intercept.MethodInvocation)
+	 * @verifies record calls that throw an exception as errors
+	 */
+	@Test
+	public void invoke_shouldRecordCallsThatThrowAnExceptionAsErrors() throws Exception {
+		try {
+			Context.getConceptService().getConceptByMapping("127689", "Some Standardized Terminology");
+			fail("the mapping should match more than one concept");
+		}
+		catch (APIException e) {
+			// expected
+		}
+		
+		ServiceMethodMetrics metrics = getMetrics("ConceptService.getConceptByMapping(String, String)");
+		assertEquals(1, metrics.getCallCount());
+		assertEquals(1, metrics.getErrorCount());
+	}
+	
+	/**
+	 * @see ServiceMetricsAdvice#reset()
+	 * @verifies clear the figures of all methods
+	 */
+	@Test
+	public void reset_shouldClearTheFiguresOfAllMethods() throws Exception {
+		Context.getConceptService().getConcept(3);
+		assertNotNull(getMetrics("ConceptService.getConcept(Integer)"));
+		
+		serviceMetrics.reset();
+		
+		assertNull(getMetrics("ConceptService.getConcept(Integer)"));
+	}
+	
+	/**
+	 * @see ServiceMetricsAdvice#setHibernateStatisticsEnabled(boolean)
+	 * @verifies record the statements and entity loads of the calls
+	 */
+	@Test
+	public void setHibernateStatisticsEnabled_shouldRecordTheStatementsAndEntityLoadsOfTheCalls() throws Exception {
+		serviceMetrics.setHibernateStatisticsEnabled(true);
+		try {
+			Context.getPatientService().getAllPatients();
+		}
+		finally {
+			serviceMetrics.setHibernateStatisticsEnabled(false);
+		}
+		
+		ServiceMethodMetrics metrics = getMetrics("PatientService.getAllPatients()");
+		assertTrue(metrics.getStatementCount() > 0);
+		assertTrue(metrics.getEntityLoadCount() > 0);
+	}
+	
+	private ServiceMethodMetrics getMetrics(String method) {
+		for (ServiceMethodMetrics metrics : serviceMetrics.getMethodMetrics()) {
+			if (metrics.getMethod().equals(method)) {
+				return metrics;
+			}
+		}
+		return null;
+	}
+}
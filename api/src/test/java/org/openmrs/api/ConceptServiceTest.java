@@ -740,6 +740,43 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(5089, concept.getId().intValue());
 	}
 	
+	/**
+	 * @see ConceptService#getConceptsByMapping(String,String,boolean)
+	 * @verifies find a mapping added after the same lookup found nothing
+	 */
+	@Test
+	public void getConceptsByMapping_shouldFindAMappingAddedAfterTheSameLookupFoundNothing() throws Exception {
+		ConceptSource source = conceptService.getConceptSourceByName("Some Standardized Terminology");
+		ConceptReferenceTerm term = new ConceptReferenceTerm(source, "NEW-CODE", null);
+		conceptService.saveConceptReferenceTerm(term);
+		Assert.assertTrue(conceptService.getConceptsByMapping("new-code", "SSTRM", true).isEmpty());
+		
+		Concept concept = conceptService.getConcept(5089);
+		concept.addConceptMapping(new ConceptMap(term, conceptService.getConceptMapType(2)));
+		conceptService.saveConcept(concept);
+		
+		List<Concept> concepts = conceptService.getConceptsByMapping("new-code", "SSTRM", true);
+		Assert.assertEquals(1, concepts.size());
+		Assert.assertEquals(5089, concepts.get(0).getId().intValue());
+	}
+	
+	/**
+	 * @see ConceptService#getConceptsByMapping(String,String,boolean)
+	 * @verifies not return a concept after its mapping was removed
+	 */
+	@Test
+	public void getConceptsByMapping_shouldNotReturnAConceptAfterItsMappingWasRemoved() throws Exception {
+		Assert.assertEquals(1, conceptService.getConceptsByMapping("WGT234", "SSTRM", true).size());
+		
+		Concept concept = conceptService.getConcept(5089);
+		for (ConceptMap map : new ArrayList<ConceptMap>(concept.getConceptMappings())) {
+			concept.removeConceptMapping(map);
+		}
+		conceptService.saveConcept(concept);
+		
+		Assert.assertTrue(conceptService.getConceptsByMapping("WGT234", "SSTRM", true).isEmpty());
+	}
+	
 	/**
 	 * @see ConceptService#getConceptAnswerByUuid(String)
 	 */
@@ -2727,6 +2764,32 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(2, searchResults.size());
 	}
 	
+	/**
+	 * @see ConceptService#getConcepts(String, List, boolean, List, List, List, List, Concept, Integer, Integer)
+	 */
+	@Test
+	@Verifies(value = "should return pages that match the count of the search", method = "getConcepts(String,List<QLocale;>,boolean,List<QConceptClass;>,List<QConceptClass;>,List<QConceptDatatype;>,List<QConceptDatatype;>,Concept,Integer,Integer)")
+	public void getConcepts_shouldReturnPagesThatMatchTheCountOfTheSearch() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-names.xml");
+		List<ConceptClass> classes = new ArrayList<ConceptClass>();
+		classes.add(Context.getConceptService().getConceptClassByName("Finding"));
+		classes.add(Context.getConceptService().getConceptClassByName("LabSet"));
+		
+		int count = conceptService.getCountOfConcepts(null, null, false, classes, null, null, null, null);
+		List<ConceptSearchResult> all = conceptService.getConcepts(null, null, false, classes, null, null, null, null,
+		    null, null);
+		List<ConceptSearchResult> firstPage = conceptService.getConcepts(null, null, false, classes, null, null, null,
+		    null, 0, 1);
+		List<ConceptSearchResult> secondPage = conceptService.getConcepts(null, null, false, classes, null, null, null,
+		    null, 1, 1);
+		
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(count, all.size());
+		Assert.assertEquals(all.get(0).getConcept(), firstPage.get(0).getConcept());
+		Assert.assertEquals(all.get(1).getConcept(), secondPage.get(0).getConcept());
+		Assert.assertTrue(conceptService.getConcepts(null, null, false, classes, null, null, null, null, 2, 1).isEmpty());
+	}
+	
 	/**
 	 * @see ConceptService#getConcepts(String, List, boolean, List, List, List, List, Concept, Integer, Integer)
 	 */
@@ -64,6 +64,7 @@ import org.openmrs.api.handler.EncounterVisitHandler;
 import org.openmrs.api.handler.ExistingOrNewVisitAssignmentHandler;
 import org.openmrs.api.handler.ExistingVisitAssignmentHandler;
 import org.openmrs.api.handler.NoVisitAssignmentHandler;
+import org.openmrs.collection.IntListMultimap;
 import org.openmrs.parameter.EncounterSearchCriteria;
 import org.openmrs.parameter.EncounterSearchCriteriaBuilder;
 import org.openmrs.test.BaseContextSensitiveTest;
@@ -1499,6 +1500,19 @@ public class EncounterServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(3, allEncounters.get(7).size());
 	}
 	
+	/**
+	 * @see EncounterService#getAllEncountersByPatientId(Cohort)
+	 * @verifies get all encounters for a cohort of patients
+	 */
+	@Test
+	public void getAllEncountersByPatientId_shouldGetAllEncountersForACohortOfPatients() throws Exception {
+		Cohort cohort = new Cohort();
+		cohort.addMember(7);
+		IntListMultimap<Encounter> allEncounters = Context.getEncounterService().getAllEncountersByPatientId(cohort);
+		Assert.assertEquals(1, allEncounters.keyCount());
+		Assert.assertEquals(Context.getEncounterService().getAllEncounters(cohort).get(7), allEncounters.get(7));
+	}
+	
 	/**
 	 * @see EncounterService#getEncounters(Patient, Location, Date, Date, java.util.Collection,
 	 *      java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection,
@@ -27,6 +27,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import org.apache.commons.collections.ListUtils;
@@ -38,6 +39,7 @@ import org.openmrs.FieldType;
 import org.openmrs.Form;
 import org.openmrs.FormField;
 import org.openmrs.FormResource;
+import org.openmrs.FormStructure;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Obs;
 import org.openmrs.api.context.Context;
@@ -560,6 +562,55 @@ public class FormServiceTest extends BaseContextSensitiveTest {
 		Assert.assertNotNull(field.getUuid());
 	}
 	
+	/**
+	 * @see FormService#getFormStructure(Form)
+	 * @verifies return the form fields of the form in display order
+	 */
+	@Test
+	public void getFormStructure_shouldReturnTheFormFieldsOfTheFormInDisplayOrder() throws Exception {
+		FormService formService = Context.getFormService();
+		Form form = formService.getForm(1);
+		
+		FormStructure structure = formService.getFormStructure(form);
+		
+		Assert.assertEquals(form.getFormFields().size(), structure.getFormFieldCount());
+		TreeSet<FormField> topLevel = new TreeSet<FormField>();
+		for (FormField formField : form.getFormFields()) {
+			if (formField.getParent() == null) {
+				topLevel.add(formField);
+			}
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		for (FormField formField : topLevel) {
+			expected.add(formField.getFormFieldId());
+		}
+		Assert.assertEquals(expected, structure.getChildFormFieldIds(FormStructure.TOP_LEVEL));
+	}
+	
+	/**
+	 * @see FormService#getFormStructure(Form)
+	 * @verifies return a new structure after a form field is saved
+	 */
+	@Test
+	public void getFormStructure_shouldReturnANewStructureAfterAFormFieldIsSaved() throws Exception {
+		FormService formService = Context.getFormService();
+		FormStructure before = formService.getFormStructure(new Form(1));
+		Assert.assertSame(before, formService.getFormStructure(new Form(1)));
+		
+		Field field = new Field();
+		field.setName("A new field");
+		field.setConcept(Context.getConceptService().getConcept(5089));
+		FormField formField = new FormField();
+		formField.setField(field);
+		formField.setForm(formService.getForm(1));
+		formService.saveFormField(formField);
+		
+		FormStructure after = formService.getFormStructure(new Form(1));
+		Assert.assertEquals(before.getFormFieldCount() + 1, after.getFormFieldCount());
+		Assert.assertEquals(formField, formService.getFormField(new Form(1), new Concept(5089),
+		    new ArrayList<FormField>(), false));
+	}
+	
 	/**
 	 * @see FormService#getFormsContainingConcept(Concept)
 	 */
@@ -0,0 +1,83 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests {@link GlobalPropertyUsage}
+ */
+public class GlobalPropertyUsageTest {
+	
+	/**
+	 * @see GlobalPropertyUsage#stopRecording()
+	 */
+	@Test
+	@Verifies(value = "should return the properties read while recording", method = "stopRecording()")
+	public void stopRecording_shouldReturnThePropertiesReadWhileRecording() throws Exception {
+		GlobalPropertyUsage.recordRead("before.recording");
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordRead("locale.allowed.list");
+		GlobalPropertyUsage usage = GlobalPropertyUsage.stopRecording();
+		GlobalPropertyUsage.recordRead("after.recording");
+		
+		Assert.assertTrue(usage.dependsOn("locale.allowed.list"));
+		Assert.assertFalse(usage.dependsOn("before.recording"));
+		Assert.assertFalse(usage.dependsOn("after.recording"));
+	}
+	
+	/**
+	 * @see GlobalPropertyUsage#stopRecording()
+	 */
+	@Test
+	@Verifies(value = "should add the reads to the outer recording", method = "stopRecording()")
+	public void stopRecording_shouldAddTheReadsToTheOuterRecording() throws Exception {
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordRead("outer");
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordRead("inner");
+		GlobalPropertyUsage inner = GlobalPropertyUsage.stopRecording();
+		GlobalPropertyUsage outer = GlobalPropertyUsage.stopRecording();
+		
+		Assert.assertFalse(inner.dependsOn("outer"));
+		Assert.assertTrue(outer.dependsOn("outer"));
+		Assert.assertTrue(outer.dependsOn("inner"));
+	}
+	
+	/**
+	 * @see GlobalPropertyUsage#dependsOn(String)
+	 */
+	@Test
+	@Verifies(value = "should ignore the case of property names", method = "dependsOn(String)")
+	public void dependsOn_shouldIgnoreTheCaseOfPropertyNames() throws Exception {
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordRead("Default_Locale");
+		GlobalPropertyUsage usage = GlobalPropertyUsage.stopRecording();
+		
+		Assert.assertTrue(usage.dependsOn("default_locale"));
+		Assert.assertTrue(usage.dependsOn("DEFAULT_LOCALE"));
+	}
+	
+	/**
+	 * @see GlobalPropertyUsage#dependsOn(String)
+	 */
+	@Test
+	@Verifies(value = "should return true for a property matching a prefix read", method = "dependsOn(String)")
+	public void dependsOn_shouldReturnTrueForAPropertyMatchingAPrefixRead() throws Exception {
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordPrefixRead("gzip.");
+		GlobalPropertyUsage usage = GlobalPropertyUsage.stopRecording();
+		
+		Assert.assertTrue(usage.dependsOn("gzip.enabled"));
+		Assert.assertFalse(usage.dependsOn("locale.allowed.list"));
+	}
+}
@@ -56,6 +56,7 @@ import org.openmrs.api.impl.ObsServiceImpl;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
 import org.openmrs.obs.handler.BinaryDataHandler;
+import org.openmrs.obs.handler.ComplexObsFileStore;
 import org.openmrs.obs.handler.ImageHandler;
 import org.openmrs.obs.handler.TextHandler;
 import org.openmrs.test.BaseContextSensitiveTest;
@@ -617,7 +618,7 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		// make sure the file isn't there to begin with
 		File complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(as
 		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
-		File createdFile = new File(complexObsDir, "nameOfFile.txt");
+		File createdFile = new ComplexObsFileStore(complexObsDir).getShardedFile("nameOfFile.txt");
 		if (createdFile.exists())
 			createdFile.delete();
 		
@@ -700,7 +701,7 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 			
 			String valueComplex = obsToSave.getValueComplex();
 			String filename = valueComplex.substring(valueComplex.indexOf("|") + 1).trim();
-			newComplexFile = new File(complexObsDir, filename);
+			newComplexFile = new ComplexObsFileStore(complexObsDir).getFile(filename);
 			// make sure the file appears now after the save
 			Assert.assertTrue(newComplexFile.length() > oldFileSize);
 		}
@@ -1818,7 +1819,7 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		// make sure the file isn't there to begin with
 		File complexObsDir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(as
 		        .getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
-		final File createdFile = new File(complexObsDir, "nameOfFile.txt");
+		final File createdFile = new ComplexObsFileStore(complexObsDir).getShardedFile("nameOfFile.txt");
 		if (createdFile.exists())
 			createdFile.delete();
 		
@@ -1834,7 +1835,7 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		obsToSave.setComplexData(complexData);
 		os.saveObs(obsToSave, null);
 		
-		File updatedFile = new File(complexObsDir, "nameOfUpdatedFile.txt");
+		File updatedFile = new ComplexObsFileStore(complexObsDir).getShardedFile("nameOfUpdatedFile.txt");
 		if (updatedFile.exists())
 			updatedFile.delete();
 		
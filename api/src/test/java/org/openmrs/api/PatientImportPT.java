@@ -0,0 +1,114 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the throughput in patients per second of importing 100k patients one by one with
+ * {@link PatientService#savePatient(Patient)} and in lists with
+ * {@link PatientService#savePatients(List)}, which checks the identifiers of a whole list at once.
+ */
+@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+public class PatientImportPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(PatientImportPT.class);
+	
+	private static final int PATIENT_COUNT = 100000;
+	
+	private static final int BATCH_SIZE = 500;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private PatientService patientService;
+	
+	private PatientIdentifierType identifierType;
+	
+	private Location location;
+	
+	@Before
+	public void loadMetadata() throws Exception {
+		patientService = Context.getPatientService();
+		identifierType = patientService.getPatientIdentifierType(2);
+		location = Context.getLocationService().getLocation(1);
+	}
+	
+	@Test
+	public void shouldImportPatientsOneByOne() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < PATIENT_COUNT; i += BATCH_SIZE) {
+			for (Patient patient : createPatients(i)) {
+				patientService.savePatient(patient);
+			}
+			clearSession();
+		}
+		logThroughput("one by one", start);
+		
+		Assert.assertEquals(1, patientService.getPatients(null, "IMPORT-" + (PATIENT_COUNT - 1), null, true).size());
+	}
+	
+	@Test
+	public void shouldImportPatientsInBatches() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < PATIENT_COUNT; i += BATCH_SIZE) {
+			patientService.savePatients(createPatients(i));
+			clearSession();
+		}
+		logThroughput("in batches of " + BATCH_SIZE, start);
+		
+		Assert.assertEquals(1, patientService.getPatients(null, "IMPORT-" + (PATIENT_COUNT - 1), null, true).size());
+	}
+	
+	private List<Patient> createPatients(int first) {
+		List<Patient> patients = new ArrayList<Patient>(BATCH_SIZE);
+		for (int i = first; i < first + BATCH_SIZE; i++) {
+			Patient patient = new Patient();
+			patient.setGender(i % 2 == 0 ? "F" : "M");
+			patient.addName(new PersonName("Imported", null, "Patient " + i));
+			patient.addIdentifier(new PatientIdentifier("IMPORT-" + i, identifierType, location));
+			patients.add(patient);
+		}
+		return patients;
+	}
+	
+	private void clearSession() {
+		Context.flushSession();
+		Context.clearSession();
+		// the metadata was detached by clearing the session
+		identifierType = patientService.getPatientIdentifierType(2);
+		location = Context.getLocationService().getLocation(1);
+	}
+	
+	private void logThroughput(String mode, long start) {
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		log.info("Imported " + PATIENT_COUNT + " patients " + mode + ": " + Math.round(PATIENT_COUNT / seconds)
+		        + " patients per second");
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.person.PatientMergeProgress;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Performance tests for merging patients with a large history through
+ * {@link PatientService#mergePatients(Patient, java.util.List, PatientMergeProgress)}.
+ */
+public class PatientMergePT extends BaseContextSensitiveTest {
+	
+	private static final int ENCOUNTER_COUNT = 100;
+	
+	private static final int OBS_PER_ENCOUNTER = 50;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private PatientService patientService;
+	
+	private Patient preferred;
+	
+	private Patient notPreferred;
+	
+	@Before
+	public void createHistory() throws Exception {
+		patientService = Context.getPatientService();
+		preferred = patientService.getPatient(6);
+		notPreferred = patientService.getPatient(7);
+		for (Order order : Context.getOrderService().getAllOrdersByPatient(notPreferred)) {
+			order.setVoided(true);
+		}
+		
+		EncounterService encounterService = Context.getEncounterService();
+		EncounterType encounterType = encounterService.getEncounterType(1);
+		Location location = Context.getLocationService().getLocation(1);
+		Concept concept = Context.getConceptService().getConcept(5089);
+		for (int i = 0; i < ENCOUNTER_COUNT; i++) {
+			Encounter encounter = new Encounter();
+			encounter.setPatient(notPreferred);
+			encounter.setEncounterType(encounterType);
+			encounter.setLocation(location);
+			encounter.setEncounterDatetime(new Date());
+			for (int j = 0; j < OBS_PER_ENCOUNTER; j++) {
+				Obs obs = new Obs(notPreferred, concept, new Date(), location);
+				obs.setValueNumeric((double) j);
+				encounter.addObs(obs);
+			}
+			encounterService.saveEncounter(encounter);
+		}
+		Context.flushSession();
+		Context.clearSession();
+		
+		preferred = patientService.getPatient(6);
+		notPreferred = patientService.getPatient(7);
+	}
+	
+	@Test
+	@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+	public void shouldMergePatientWithLargeHistory() throws Exception {
+		PatientMergeProgress progress = new PatientMergeProgress(1);
+		patientService.mergePatients(preferred, Collections.singletonList(notPreferred), progress);
+		Context.flushSession();
+		
+		Assert.assertEquals(1, progress.getMergedPatientCount());
+		Assert.assertTrue(progress.getMovedRowCount() >= ENCOUNTER_COUNT);
+		Assert.assertTrue(Context.getObsService().getObservationsByPerson(notPreferred).isEmpty());
+	}
+}
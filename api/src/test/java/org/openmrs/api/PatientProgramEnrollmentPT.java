@@ -0,0 +1,155 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.Cohort;
+import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
+import org.openmrs.Program;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the throughput in enrollments per second of reading the program enrollments of a
+ * cohort of 500k patients as hydrated PatientPrograms with
+ * {@link ProgramWorkflowService#getPatientPrograms(Cohort, Collection)}, as compact
+ * {@link PatientProgramEnrollment}s with
+ * {@link ProgramWorkflowService#getPatientProgramEnrollments(Cohort, Collection)} and streamed with
+ * {@link ProgramWorkflowService#processPatientProgramEnrollments(Cohort, Collection, PatientProgramEnrollment.Callback)}.
+ */
+@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+public class PatientProgramEnrollmentPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(PatientProgramEnrollmentPT.class);
+	
+	private static final int PATIENT_COUNT = 500000;
+	
+	private static final int FIRST_PATIENT_ID = 1000000;
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private ProgramWorkflowService programWorkflowService;
+	
+	private Cohort cohort;
+	
+	private Collection<Program> programs;
+	
+	@Before
+	public void createEnrollments() throws Exception {
+		programWorkflowService = Context.getProgramWorkflowService();
+		programs = new ArrayList<Program>();
+		programs.add(programWorkflowService.getProgram(1));
+		
+		Connection connection = getConnection();
+		PreparedStatement person = connection.prepareStatement("insert into person (person_id, gender, dead, creator, "
+		        + "date_created, voided, uuid) values (?, 'F', false, 1, ?, false, ?)");
+		PreparedStatement patient = connection.prepareStatement("insert into patient (patient_id, creator, date_created, "
+		        + "voided) values (?, 1, ?, false)");
+		PreparedStatement patientProgram = connection.prepareStatement("insert into patient_program (patient_program_id, "
+		        + "patient_id, program_id, date_enrolled, creator, date_created, voided, uuid) "
+		        + "values (?, ?, 1, ?, 1, ?, false, ?)");
+		try {
+			Timestamp now = new Timestamp(System.currentTimeMillis());
+			List<Integer> patientIds = new ArrayList<Integer>(PATIENT_COUNT);
+			for (int i = 0; i < PATIENT_COUNT; i++) {
+				int patientId = FIRST_PATIENT_ID + i;
+				person.setInt(1, patientId);
+				person.setTimestamp(2, now);
+				person.setString(3, UUID.randomUUID().toString());
+				person.addBatch();
+				patient.setInt(1, patientId);
+				patient.setTimestamp(2, now);
+				patient.addBatch();
+				patientProgram.setInt(1, patientId);
+				patientProgram.setInt(2, patientId);
+				patientProgram.setTimestamp(3, now);
+				patientProgram.setTimestamp(4, now);
+				patientProgram.setString(5, UUID.randomUUID().toString());
+				patientProgram.addBatch();
+				if ((i + 1) % BATCH_SIZE == 0) {
+					person.executeBatch();
+					patient.executeBatch();
+					patientProgram.executeBatch();
+				}
+				patientIds.add(patientId);
+			}
+			person.executeBatch();
+			patient.executeBatch();
+			patientProgram.executeBatch();
+			cohort = new Cohort(patientIds);
+		}
+		finally {
+			person.close();
+			patient.close();
+			patientProgram.close();
+		}
+	}
+	
+	@Test
+	public void shouldGetPatientPrograms() throws Exception {
+		long start = System.nanoTime();
+		List<PatientProgram> patientPrograms = programWorkflowService.getPatientPrograms(cohort, programs);
+		logThroughput("as patient programs", start);
+		
+		Assert.assertEquals(PATIENT_COUNT, patientPrograms.size());
+	}
+	
+	@Test
+	public void shouldGetPatientProgramEnrollments() throws Exception {
+		long start = System.nanoTime();
+		List<PatientProgramEnrollment> enrollments = programWorkflowService.getPatientProgramEnrollments(cohort, programs);
+		logThroughput("as enrollments", start);
+		
+		Assert.assertEquals(PATIENT_COUNT, enrollments.size());
+	}
+	
+	@Test
+	public void shouldProcessPatientProgramEnrollments() throws Exception {
+		final int[] count = new int[1];
+		long start = System.nanoTime();
+		programWorkflowService.processPatientProgramEnrollments(cohort, programs, new PatientProgramEnrollment.Callback() {
+			
+			@Override
+			public void handle(PatientProgramEnrollment enrollment) {
+				count[0]++;
+			}
+		});
+		logThroughput("streamed", start);
+		
+		Assert.assertEquals(PATIENT_COUNT, count[0]);
+	}
+	
+	private void logThroughput(String mode, long start) {
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		log.info("Read the enrollments of " + PATIENT_COUNT + " patients " + mode + ": "
+		        + Math.round(PATIENT_COUNT / seconds) + " enrollments per second");
+	}
+}
@@ -35,6 +35,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
@@ -73,6 +74,7 @@ import org.openmrs.api.impl.PatientServiceImpl;
 import org.openmrs.comparator.PatientIdentifierTypeDefaultComparator;
 import org.openmrs.patient.IdentifierValidator;
 import org.openmrs.patient.impl.LuhnIdentifierValidator;
+import org.openmrs.person.PatientMergeProgress;
 import org.openmrs.person.PersonMergeLog;
 import org.openmrs.person.PersonMergeLogData;
 import org.openmrs.serialization.SerializationException;
@@ -2220,6 +2222,71 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(patientService.getPatient(8).isVoided());
 	}
 	
+	/**
+	 * @see PatientService#mergePatients(Patient,List,PatientMergeProgress)
+	 * @verifies merge all non preferred patients and report the progress
+	 */
+	@Test
+	public void mergePatients_shouldMergeAllNonPreferredPatientsAndReportTheProgress() throws Exception {
+		Patient preferred = patientService.getPatient(6);
+		List<Patient> notPreferred = new ArrayList<Patient>();
+		notPreferred.add(patientService.getPatient(7));
+		notPreferred.add(patientService.getPatient(8));
+		voidOrders(notPreferred);
+		Encounter encounter = Context.getEncounterService().getEncounter(3);
+		Assert.assertEquals(7, encounter.getPatient().getPatientId().intValue());
+		
+		PatientMergeProgress progress = new PatientMergeProgress(notPreferred.size());
+		patientService.mergePatients(preferred, notPreferred, progress);
+		
+		Assert.assertEquals(2, progress.getMergedPatientCount());
+		Assert.assertTrue(progress.getMovedRowCount() > 0);
+		Assert.assertTrue(patientService.getPatient(7).isVoided());
+		Assert.assertTrue(patientService.getPatient(8).isVoided());
+		Assert.assertEquals(preferred, encounter.getPatient());
+		for (Obs obs : encounter.getAllObs(true)) {
+			Assert.assertEquals(preferred.getPatientId(), obs.getPerson().getPersonId());
+		}
+		Assert.assertTrue(Context.getEncounterService().getEncountersByPatient(patientService.getPatient(7)).isEmpty());
+	}
+	
+	/**
+	 * @see PatientService#mergePatientsAsync(Patient,List)
+	 * @verifies report the outcome of the merge in the progress
+	 */
+	@Test
+	public void mergePatientsAsync_shouldReportTheOutcomeOfTheMergeInTheProgress() throws Exception {
+		Patient preferred = patientService.getPatient(6);
+		
+		PatientMergeProgress progress = patientService.mergePatientsAsync(preferred, Collections.singletonList(preferred));
+		
+		Assert.assertTrue(progress.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(progress.isFinished());
+		Assert.assertTrue(progress.getError() instanceof APIException);
+		Assert.assertEquals(0, progress.getMergedPatientCount());
+		Assert.assertFalse(patientService.getPatient(6).isVoided());
+	}
+	
+	/**
+	 * @see PatientService#mergePatientsAsync(Patient,List)
+	 * @verifies take back the progress of a merge that is rolled back
+	 */
+	@Test
+	public void mergePatientsAsync_shouldTakeBackTheProgressOfAMergeThatIsRolledBack() throws Exception {
+		Patient preferred = patientService.getPatient(6);
+		List<Patient> notPreferred = new ArrayList<Patient>();
+		notPreferred.add(patientService.getPatient(8));
+		notPreferred.add(preferred);
+		
+		PatientMergeProgress progress = patientService.mergePatientsAsync(preferred, notPreferred);
+		
+		Assert.assertTrue(progress.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(progress.getError() instanceof APIException);
+		Assert.assertEquals(0, progress.getMergedPatientCount());
+		Assert.assertEquals(0, progress.getMovedRowCount());
+		Assert.assertFalse(patientService.getPatient(8).isVoided());
+	}
+	
 	private void assertEqualsInt(int expected, Integer actual) throws Exception {
 		Assert.assertEquals(Integer.valueOf(expected), actual);
 	}
@@ -3320,4 +3387,114 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 	public void processDeath_shouldThrowAPIExceptionIfPatientIsNull() throws Exception{
 		patientService.processDeath(null, new Date(), new Concept(), "unknown");
 	}
+	
+	/**
+	 * @see PatientService#checkPatientIdentifiers(List)
+	 */
+	@Test
+	@Verifies(value = "should validate patients with unique identifiers", method = "checkPatientIdentifiers(List)")
+	public void checkPatientIdentifiers_shouldValidatePatientsWithUniqueIdentifiers() throws Exception {
+		patientService.checkPatientIdentifiers(Arrays.asList(createImportedPatient("IMPORT-1"),
+		    createImportedPatient("IMPORT-2"), patientService.getPatient(2)));
+	}
+	
+	/**
+	 * @see PatientService#checkPatientIdentifiers(List)
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should throw error when an identifier is in use by another patient", method = "checkPatientIdentifiers(List)")
+	public void checkPatientIdentifiers_shouldThrowErrorWhenAnIdentifierIsInUseByAnotherPatient() throws Exception {
+		// 101 is the identifier of patient 2
+		patientService.checkPatientIdentifiers(Arrays.asList(createImportedPatient("IMPORT-1"),
+		    createImportedPatient("101")));
+	}
+	
+	/**
+	 * @see PatientService#checkPatientIdentifiers(List)
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should throw error when two patients have the same identifier", method = "checkPatientIdentifiers(List)")
+	public void checkPatientIdentifiers_shouldThrowErrorWhenTwoPatientsHaveTheSameIdentifier() throws Exception {
+		patientService.checkPatientIdentifiers(Arrays.asList(createImportedPatient("IMPORT-1"),
+		    createImportedPatient("IMPORT-1")));
+	}
+	
+	/**
+	 * @see PatientService#checkPatientIdentifiers(List)
+	 */
+	@Test
+	@Verifies(value = "should ignore identifiers of non unique types", method = "checkPatientIdentifiers(List)")
+	public void checkPatientIdentifiers_shouldIgnoreIdentifiersOfNonUniqueTypes() throws Exception {
+		patientService.getPatientIdentifierType(2).setUniquenessBehavior(UniquenessBehavior.NON_UNIQUE);
+		
+		patientService.checkPatientIdentifiers(Arrays.asList(createImportedPatient("101"), createImportedPatient("101")));
+	}
+	
+	/**
+	 * @see PatientService#savePatients(List)
+	 */
+	@Test
+	@Verifies(value = "should save all patients", method = "savePatients(List)")
+	public void savePatients_shouldSaveAllPatients() throws Exception {
+		List<Patient> patients = patientService.savePatients(Arrays.asList(createImportedPatient("IMPORT-1"),
+		    createImportedPatient("IMPORT-2")));
+		
+		Assert.assertEquals(2, patients.size());
+		for (Patient patient : patients) {
+			Assert.assertNotNull(patient.getPatientId());
+			Assert.assertTrue(patient.getPatientIdentifier().isPreferred());
+		}
+		Assert.assertEquals(1, patientService.getPatients(null, "IMPORT-2", null, true).size());
+	}
+	
+	/**
+	 * @see PatientService#savePatients(List)
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should fail when two patients have the same identifier", method = "savePatients(List)")
+	public void savePatients_shouldFailWhenTwoPatientsHaveTheSameIdentifier() throws Exception {
+		patientService.savePatients(Arrays.asList(createImportedPatient("IMPORT-1"), createImportedPatient("IMPORT-1")));
+	}
+	
+	/**
+	 * @see PatientService#savePatients(List)
+	 */
+	@Test
+	@Verifies(value = "should save identifiers that only differ in case", method = "savePatients(List)")
+	public void savePatients_shouldSaveIdentifiersThatOnlyDifferInCase() throws Exception {
+		patientService.savePatient(createImportedPatient("IMPORT-A"));
+		
+		List<Patient> patients = patientService.savePatients(Arrays.asList(createImportedPatient("import-a"),
+		    createImportedPatient("Import-A")));
+		
+		for (Patient patient : patients) {
+			Assert.assertNotNull(patient.getPatientId());
+		}
+	}
+	
+	/**
+	 * @see PatientService#savePatients(List)
+	 */
+	@Test(expected = IdentifierNotUniqueException.class)
+	@Verifies(value = "should fail when a location identifier without a location has the identifier of one with a location", method = "savePatients(List)")
+	public void savePatients_shouldFailWhenALocationIdentifierWithoutALocationHasTheIdentifierOfOneWithALocation()
+	        throws Exception {
+		PatientIdentifierType identifierType = patientService.getPatientIdentifierType(2);
+		identifierType.setUniquenessBehavior(PatientIdentifierType.UniquenessBehavior.LOCATION);
+		identifierType.setLocationBehavior(PatientIdentifierType.LocationBehavior.NOT_USED);
+		patientService.savePatientIdentifierType(identifierType);
+		Patient withoutLocation = createImportedPatient("IMPORT-1");
+		withoutLocation.getPatientIdentifier().setLocation(null);
+		
+		patientService.savePatients(Arrays.asList(createImportedPatient("IMPORT-1"), withoutLocation));
+	}
+	
+	private Patient createImportedPatient(String identifier) {
+		Patient patient = new Patient();
+		patient.setGender("F");
+		patient.addName(new PersonName("Imported", null, "Patient"));
+		patient.addIdentifier(new PatientIdentifier(identifier, patientService.getPatientIdentifierType(2), locationService
+		        .getLocation(1)));
+		return patient;
+	}
 }
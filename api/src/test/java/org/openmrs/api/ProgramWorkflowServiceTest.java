@@ -23,11 +23,13 @@ import java.util.Set;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
 import org.openmrs.ConceptStateConversion;
 import org.openmrs.Patient;
 import org.openmrs.PatientProgram;
+import org.openmrs.PatientProgramEnrollment;
 import org.openmrs.PatientState;
 import org.openmrs.Program;
 import org.openmrs.ProgramWorkflow;
@@ -461,6 +463,82 @@ public class ProgramWorkflowServiceTest extends BaseContextSensitiveTest {
 		assertNull(Context.getProgramWorkflowService().getProgram(2));
 	}
 	
+	/**
+	 * @see ProgramWorkflowService#getPatientProgramEnrollments(Cohort, java.util.Collection)
+	 * @verifies return enrollments of patients in given cohort and programs
+	 */
+	@Test
+	public void getPatientProgramEnrollments_shouldReturnEnrollmentsOfPatientsInGivenCohortAndPrograms() throws Exception {
+		List<PatientProgramEnrollment> enrollments = pws.getPatientProgramEnrollments(new Cohort("2,7"), Arrays
+		        .asList(pws.getProgram(1)));
+		
+		assertEquals(1, enrollments.size());
+		assertEquals(1, enrollments.get(0).getPatientProgramId());
+		assertEquals(2, enrollments.get(0).getPatientId());
+		assertEquals(1, enrollments.get(0).getProgramId());
+		assertNotNull(enrollments.get(0).getDateEnrolled());
+	}
+	
+	/**
+	 * @see ProgramWorkflowService#getPatientProgramEnrollments(Cohort, java.util.Collection)
+	 * @verifies include the current state of each workflow
+	 */
+	@Test
+	public void getPatientProgramEnrollments_shouldIncludeTheCurrentStateOfEachWorkflow() throws Exception {
+		PatientProgram patientProgram = pws.getPatientProgram(1);
+		List<PatientProgramEnrollment> enrollments = pws.getPatientProgramEnrollments(new Cohort("2"), Arrays
+		        .asList(patientProgram.getProgram()));
+		
+		assertEquals(1, enrollments.size());
+		for (ProgramWorkflow workflow : patientProgram.getProgram().getAllWorkflows()) {
+			PatientState currentState = patientProgram.getCurrentState(workflow);
+			int expectedStateId = currentState == null ? PatientProgramEnrollment.NO_STATE : currentState.getState()
+			        .getProgramWorkflowStateId();
+			assertEquals(expectedStateId, enrollments.get(0).getCurrentStateId(workflow.getProgramWorkflowId()));
+		}
+		assertEquals(2, enrollments.get(0).getCurrentStateId(1));
+	}
+	
+	/**
+	 * @see ProgramWorkflowService#getPatientProgramEnrollments(Cohort, java.util.Collection)
+	 * @verifies not return voided patient programs
+	 */
+	@Test
+	public void getPatientProgramEnrollments_shouldNotReturnVoidedPatientPrograms() throws Exception {
+		assertTrue(pws.getPatientProgram(5).getVoided());
+		assertEquals(0, pws.getPatientProgramEnrollments(new Cohort("8"), null).size());
+	}
+	
+	/**
+	 * @see ProgramWorkflowService#getPatientProgramEnrollments(Cohort, java.util.Collection)
+	 * @verifies return empty list for an empty cohort
+	 */
+	@Test
+	public void getPatientProgramEnrollments_shouldReturnEmptyListForAnEmptyCohort() throws Exception {
+		assertEquals(0, pws.getPatientProgramEnrollments(new Cohort(), null).size());
+	}
+	
+	/**
+	 * @see ProgramWorkflowService#processPatientProgramEnrollments(Cohort, java.util.Collection,
+	 *      PatientProgramEnrollment.Callback)
+	 * @verifies pass each enrollment to the callback
+	 */
+	@Test
+	public void processPatientProgramEnrollments_shouldPassEachEnrollmentToTheCallback() throws Exception {
+		final List<Integer> patientProgramIds = new ArrayList<Integer>();
+		pws.processPatientProgramEnrollments(new Cohort("7,2"), null, new PatientProgramEnrollment.Callback() {
+			
+			@Override
+			public void handle(PatientProgramEnrollment enrollment) {
+				patientProgramIds.add(enrollment.getPatientProgramId());
+			}
+		});
+		
+		assertEquals(3, patientProgramIds.size());
+		// ordered by patient
+		assertEquals(Integer.valueOf(4), patientProgramIds.get(2));
+	}
+	
 	//	/**
 	//	 * This method should be uncommented when you want to examine the actual hibernate
 	//	 * sql calls being made.  The calls that should be limiting the number of returned
@@ -0,0 +1,144 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.context;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.RoleConstants;
+
+/**
+ * Tests the {@link AuthenticatedPrincipal} snapshot
+ */
+public class AuthenticatedPrincipalTest {
+	
+	/**
+	 * @see AuthenticatedPrincipal#AuthenticatedPrincipal(User, Role, Role, Locale, Integer, long[])
+	 */
+	@Test
+	@Verifies(value = "should include the privileges of the authenticated and anonymous roles", method = "AuthenticatedPrincipal(User, Role, Role, Locale, Integer, long[])")
+	public void AuthenticatedPrincipal_shouldIncludeThePrivilegesOfTheAuthenticatedAndAnonymousRoles() throws Exception {
+		Role authenticatedRole = createRole(RoleConstants.AUTHENTICATED, "View Patients");
+		Role anonymousRole = createRole(RoleConstants.ANONYMOUS, "View Locations");
+		AuthenticatedPrincipal principal = new AuthenticatedPrincipal(createUser(1, "Clerk"), authenticatedRole,
+		        anonymousRole, Locale.FRENCH, 2, AuthenticatedPrincipal.getVersion(1));
+		
+		Assert.assertTrue(principal.isAuthenticated());
+		Assert.assertFalse(principal.isSuperUser());
+		Assert.assertTrue(principal.getRoleNames().contains("Clerk"));
+		Assert.assertTrue(principal.getRoleNames().contains(RoleConstants.AUTHENTICATED));
+		Assert.assertTrue(principal.hasPrivilege("Clerk privilege"));
+		Assert.assertTrue(principal.hasPrivilege("View Patients"));
+		Assert.assertTrue(principal.hasPrivilege("View Locations"));
+		Assert.assertFalse(principal.hasPrivilege("Edit Patients"));
+		Assert.assertEquals(Locale.FRENCH, principal.getLocale());
+		Assert.assertEquals(2, principal.getLocationId().intValue());
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#AuthenticatedPrincipal(User, Role, Role, Locale, Integer, long[])
+	 */
+	@Test
+	@Verifies(value = "should only include the anonymous role if nobody is authenticated", method = "AuthenticatedPrincipal(User, Role, Role, Locale, Integer, long[])")
+	public void AuthenticatedPrincipal_shouldOnlyIncludeTheAnonymousRoleIfNobodyIsAuthenticated() throws Exception {
+		Role anonymousRole = createRole(RoleConstants.ANONYMOUS, "View Locations");
+		AuthenticatedPrincipal principal = new AuthenticatedPrincipal(null, null, anonymousRole, null, null,
+		        AuthenticatedPrincipal.getVersion(null));
+		
+		Assert.assertFalse(principal.isAuthenticated());
+		Assert.assertEquals(1, principal.getRoleNames().size());
+		Assert.assertTrue(principal.hasPrivilege("View Locations"));
+		Assert.assertFalse(principal.hasPrivilege(""));
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#hasPrivilege(String)
+	 */
+	@Test
+	@Verifies(value = "should give authenticated users the empty privilege", method = "hasPrivilege(String)")
+	public void hasPrivilege_shouldGiveAuthenticatedUsersTheEmptyPrivilege() throws Exception {
+		Assert.assertTrue(createPrincipal(createUser(1, "Clerk")).hasPrivilege(""));
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#hasPrivilege(String)
+	 */
+	@Test
+	@Verifies(value = "should give super users all privileges", method = "hasPrivilege(String)")
+	public void hasPrivilege_shouldGiveSuperUsersAllPrivileges() throws Exception {
+		AuthenticatedPrincipal principal = createPrincipal(createUser(1, RoleConstants.SUPERUSER));
+		
+		Assert.assertTrue(principal.isSuperUser());
+		Assert.assertTrue(principal.hasPrivilege("Edit Patients"));
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#isCurrent()
+	 */
+	@Test
+	@Verifies(value = "should be outdated by changes to the user", method = "isCurrent()")
+	public void isCurrent_shouldBeOutdatedByChangesToTheUser() throws Exception {
+		AuthenticatedPrincipal principal = createPrincipal(createUser(1, "Clerk"));
+		Assert.assertTrue(principal.isCurrent());
+		
+		AuthenticatedPrincipal.userChanged(1);
+		Assert.assertFalse(principal.isCurrent());
+		Assert.assertFalse(principal.withPreferences(Locale.FRENCH, null).isCurrent());
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#isCurrent()
+	 */
+	@Test
+	@Verifies(value = "should be outdated by changes to roles", method = "isCurrent()")
+	public void isCurrent_shouldBeOutdatedByChangesToRoles() throws Exception {
+		AuthenticatedPrincipal principal = createPrincipal(createUser(1, "Clerk"));
+		
+		AuthenticatedPrincipal.rolesChanged();
+		Assert.assertFalse(principal.isCurrent());
+	}
+	
+	/**
+	 * @see AuthenticatedPrincipal#isCurrent()
+	 */
+	@Test
+	@Verifies(value = "should not be outdated by changes to other users", method = "isCurrent()")
+	public void isCurrent_shouldNotBeOutdatedByChangesToOtherUsers() throws Exception {
+		AuthenticatedPrincipal principal = createPrincipal(createUser(1, "Clerk"));
+		
+		AuthenticatedPrincipal.userChanged(2);
+		Assert.assertTrue(principal.isCurrent());
+		Assert.assertTrue(principal.withPreferences(Locale.FRENCH, 2).isCurrent());
+	}
+	
+	private AuthenticatedPrincipal createPrincipal(User user) {
+		return new AuthenticatedPrincipal(user, createRole(RoleConstants.AUTHENTICATED), createRole(RoleConstants.ANONYMOUS),
+		        null, null, AuthenticatedPrincipal.getVersion(user.getUserId()));
+	}
+	
+	private User createUser(Integer userId, String role) {
+		User user = new User(userId);
+		user.addRole(createRole(role, role + " privilege"));
+		return user;
+	}
+	
+	private Role createRole(String name, String... privileges) {
+		Role role = new Role(name);
+		for (String privilege : privileges) {
+			role.addPrivilege(new Privilege(privilege));
+		}
+		return role;
+	}
+}
@@ -55,6 +55,55 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(new PrivateSchedulerTask(task).runTheTest());
 	}
 	
+	/**
+	 * @see Daemon#executeScheduledTaskInCurrentThread(Task)
+	 * @verifies not be called from other methods other than TimerSchedulerTask
+	 */
+	@Test(expected = APIException.class)
+	public void executeScheduledTaskInCurrentThread_shouldNotBeCalledFromOtherMethodsOtherThanTimerSchedulerTask()
+	        throws Throwable {
+		Daemon.executeScheduledTaskInCurrentThread(new HelloWorldTask());
+	}
+	
+	/**
+	 * @see Daemon#executeScheduledTaskInCurrentThread(Task)
+	 * @verifies run the task in the current thread as a daemon
+	 */
+	@Test
+	public void executeScheduledTaskInCurrentThread_shouldRunTheTaskInTheCurrentThreadAsADaemon() throws Throwable {
+		final Thread[] taskThread = new Thread[1];
+		final boolean[] daemon = new boolean[2];
+		final Throwable[] error = new Throwable[1];
+		final PrivateSchedulerTask schedulerTask = new PrivateSchedulerTask(new AbstractTask() {
+			
+			@Override
+			public void execute() {
+				taskThread[0] = Thread.currentThread();
+				daemon[0] = Daemon.isDaemonThread();
+			}
+		});
+		Thread thread = new Thread() {
+			
+			@Override
+			public void run() {
+				try {
+					schedulerTask.runTaskInCurrentThread();
+					daemon[1] = Daemon.isDaemonThread();
+				}
+				catch (Throwable t) {
+					error[0] = t;
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		
+		Assert.assertNull(error[0]);
+		Assert.assertSame(thread, taskThread[0]);
+		Assert.assertTrue(daemon[0]);
+		Assert.assertFalse(daemon[1]);
+	}
+	
 	/**
 	 * @see Daemon#runInNewDaemonThread(Runnable)
 	 * @verifies throw error if called from a non daemon thread
@@ -86,6 +135,49 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(new PrivateSchedulerTask(taskThatStartsAnotherThread).runTheTest());
 	}
 	
+	/**
+	 * @see Daemon#runInNewThreadAsAuthenticatedUser(Runnable,String)
+	 * @verifies run the runnable as the authenticated user
+	 */
+	@Test
+	public void runInNewThreadAsAuthenticatedUser_shouldRunTheRunnableAsTheAuthenticatedUser() throws Exception {
+		final User[] user = new User[1];
+		final boolean[] daemon = new boolean[1];
+		Thread thread = Daemon.runInNewThreadAsAuthenticatedUser(new Runnable() {
+			
+			@Override
+			public void run() {
+				user[0] = Context.getAuthenticatedUser();
+				daemon[0] = Daemon.isDaemonThread();
+			}
+		}, "test thread");
+		thread.join();
+		
+		Assert.assertEquals(Context.getAuthenticatedUser(), user[0]);
+		Assert.assertFalse(daemon[0]);
+	}
+	
+	/**
+	 * @see Daemon#runInNewThreadAsAuthenticatedUser(Runnable,String)
+	 * @verifies not share the user context with the calling thread
+	 */
+	@Test
+	public void runInNewThreadAsAuthenticatedUser_shouldNotShareTheUserContextWithTheCallingThread() throws Exception {
+		final UserContext[] userContext = new UserContext[1];
+		Thread thread = Daemon.runInNewThreadAsAuthenticatedUser(new Runnable() {
+			
+			@Override
+			public void run() {
+				userContext[0] = Context.getUserContext();
+			}
+		}, "test thread");
+		thread.join();
+		
+		Assert.assertNotNull(userContext[0]);
+		Assert.assertNotSame(Context.getUserContext(), userContext[0]);
+		Assert.assertEquals(Context.getLocale(), userContext[0].getLocale());
+	}
+	
 	/**
 	 * @see Daemon#executeScheduledTask(Task)
 	 * @verifies daemon user should have an associated person.
@@ -129,6 +221,10 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		public void runTask() throws Throwable {
 			Daemon.executeScheduledTask(this.task);
 		}
+		
+		public void runTaskInCurrentThread() throws Throwable {
+			Daemon.executeScheduledTaskInCurrentThread(this.task);
+		}
 	}
 	
 	/**
@@ -0,0 +1,55 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.User;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods of {@link UserContext}
+ */
+public class UserContextTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see UserContext#getPrincipal()
+	 */
+	@Test
+	@Verifies(value = "should reload the user after the user was saved", method = "getPrincipal()")
+	public void getPrincipal_shouldReloadTheUserAfterTheUserWasSaved() throws Exception {
+		UserContext userContext = Context.getUserContext();
+		AuthenticatedPrincipal principal = userContext.getPrincipal();
+		
+		User user = Context.getAuthenticatedUser();
+		Context.getUserService().saveUser(user);
+		Assert.assertFalse(principal.isCurrent());
+		
+		AuthenticatedPrincipal reloaded = userContext.getPrincipal();
+		Assert.assertNotSame(principal, reloaded);
+		Assert.assertTrue(reloaded.isCurrent());
+		Assert.assertEquals(user.getUserId(), reloaded.getUserId());
+	}
+	
+	/**
+	 * @see UserContext#getPrincipal()
+	 */
+	@Test
+	@Verifies(value = "should not reload the user if nothing changed", method = "getPrincipal()")
+	public void getPrincipal_shouldNotReloadTheUserIfNothingChanged() throws Exception {
+		UserContext userContext = Context.getUserContext();
+		AuthenticatedPrincipal principal = userContext.getPrincipal();
+		
+		Assert.assertTrue(Context.hasPrivilege("Some Privilege"));
+		Assert.assertSame(principal, userContext.getPrincipal());
+		Assert.assertSame(principal, Context.getAuthenticatedPrincipal());
+	}
+}
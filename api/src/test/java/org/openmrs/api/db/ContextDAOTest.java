@@ -19,9 +19,12 @@ import org.openmrs.User;
 import org.openmrs.api.UserService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.db.hibernate.CredentialVerificationCache;
 import org.openmrs.api.db.hibernate.HibernateContextDAO;
+import org.openmrs.api.db.hibernate.LoginThrottle;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
 
 /**
  * This class tests the {@link ContextDAO} linked to from the Context. Currently that file is the
@@ -348,6 +351,60 @@ public class ContextDAOTest extends BaseContextSensitiveTest {
 		dao.authenticate("  ", "password");
 	}
 	
+	/**
+	 * @see ContextDAO#authenticate(String,String)
+	 */
+	@Test
+	@Verifies(value = "should not write the login attempts to the user properties in the login transaction", method = "authenticate(String,String)")
+	public void authenticate_shouldNotWriteTheLoginAttemptsToTheUserPropertiesInTheLoginTransaction() throws Exception {
+		try {
+			dao.authenticate("admin", "not the right password");
+			Assert.fail("Not sure why this username/password combo worked");
+		}
+		catch (ContextAuthenticationException authException) {
+			// pass
+		}
+		
+		User user = Context.getUserService().getUser(1);
+		Assert.assertEquals(1, LoginThrottle.getState(user).getAttempts());
+		Assert.assertEquals("", user.getUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS));
+	}
+	
+	/**
+	 * @see ContextDAO#authenticate(String,String)
+	 */
+	@Test
+	@Verifies(value = "should authenticate a recently verified password without reading it again", method = "authenticate(String,String)")
+	public void authenticate_shouldAuthenticateARecentlyVerifiedPasswordWithoutReadingItAgain() throws Exception {
+		dao.authenticate("admin", "test");
+		
+		// the password on record is not read for the next login
+		Context.getAdministrationService().executeSQL("update users set password = 'changed' where user_id = 1", false);
+		Assert.assertEquals("admin", dao.authenticate("admin", "test").getUsername());
+		
+		CredentialVerificationCache.clear();
+		try {
+			dao.authenticate("admin", "test");
+			Assert.fail("The changed password should have been read");
+		}
+		catch (ContextAuthenticationException authException) {
+			// pass
+		}
+	}
+	
+	/**
+	 * @see ContextDAO#authenticate(String,String)
+	 */
+	@Test(expected = ContextAuthenticationException.class)
+	@Verifies(value = "should not authenticate with the old password after the password changed", method = "authenticate(String,String)")
+	public void authenticate_shouldNotAuthenticateWithTheOldPasswordAfterThePasswordChanged() throws Exception {
+		User user = dao.authenticate("admin", "test");
+		Context.getUserService().changePassword(user, "NewPassword1");
+		
+		Assert.assertNotNull(dao.authenticate("admin", "NewPassword1"));
+		dao.authenticate("admin", "test");
+	}
+	
 	/**
 	 *
 	 * @see org.openmrs.api.db.hibernate.HibernateContextDAO#mergeDefaultRuntimeProperties(java.util.Properties)
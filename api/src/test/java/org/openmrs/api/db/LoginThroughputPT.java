@@ -0,0 +1,88 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.db.hibernate.CredentialVerificationCache;
+import org.openmrs.api.db.hibernate.LoginThrottle;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the throughput in logins per second of {@link ContextDAO#authenticate(String, String)},
+ * for clients that log in with the same password on every call and for failed logins.
+ */
+@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+public class LoginThroughputPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(LoginThroughputPT.class);
+	
+	private static final int LOGIN_COUNT = 2000;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private ContextDAO dao;
+	
+	@Before
+	public void getDao() {
+		dao = (ContextDAO) applicationContext.getBean("contextDAO");
+	}
+	
+	@Test
+	public void shouldLogInVerifyingThePasswordEveryTime() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < LOGIN_COUNT; i++) {
+			CredentialVerificationCache.clear();
+			dao.authenticate("admin", "test");
+		}
+		logThroughput("verifying the password every time", start);
+	}
+	
+	@Test
+	public void shouldLogInWithRecentlyVerifiedPasswords() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < LOGIN_COUNT; i++) {
+			dao.authenticate("admin", "test");
+		}
+		logThroughput("with recently verified passwords", start);
+	}
+	
+	@Test
+	public void shouldFailLogins() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < LOGIN_COUNT; i++) {
+			try {
+				dao.authenticate("admin", "not the right password");
+			}
+			catch (ContextAuthenticationException e) {
+				// expected, the attempts are forgotten before the user gets locked out
+			}
+			if (i % 5 == 0) {
+				LoginThrottle.clear();
+			}
+		}
+		logThroughput("failing", start);
+	}
+	
+	private void logThroughput(String mode, long start) {
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		log.info("Logged in " + LOGIN_COUNT + " times " + mode + ": " + Math.round(LOGIN_COUNT / seconds)
+		        + " logins per second");
+	}
+}
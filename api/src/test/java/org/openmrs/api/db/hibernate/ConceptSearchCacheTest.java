@@ -0,0 +1,53 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.ConceptName;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Tests {@link ConceptSearchCache}
+ */
+public class ConceptSearchCacheTest extends BaseContextSensitiveTest {
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	/**
+	 * @see ConceptSearchCache#getIndexVersion(org.hibernate.Session)
+	 * @verifies read the index version once per transaction
+	 */
+	@Test
+	public void getIndexVersion_shouldReadTheIndexVersionOncePerTransaction() throws Exception {
+		List<Object> indexVersion = ConceptSearchCache.getIndexVersion(sessionFactory.getCurrentSession());
+		
+		Assert.assertSame(indexVersion, ConceptSearchCache.getIndexVersion(sessionFactory.getCurrentSession()));
+	}
+	
+	/**
+	 * @see ConceptSearchCache#getIndexVersion(org.hibernate.Session)
+	 * @verifies read the index version again after the index changed
+	 */
+	@Test
+	public void getIndexVersion_shouldReadTheIndexVersionAgainAfterTheIndexChanged() throws Exception {
+		List<Object> indexVersion = ConceptSearchCache.getIndexVersion(sessionFactory.getCurrentSession());
+		
+		Context.updateSearchIndexForType(ConceptName.class);
+		
+		Assert.assertNotSame(indexVersion, ConceptSearchCache.getIndexVersion(sessionFactory.getCurrentSession()));
+	}
+}
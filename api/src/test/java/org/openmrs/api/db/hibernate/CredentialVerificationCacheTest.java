@@ -0,0 +1,59 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests {@link CredentialVerificationCache}
+ */
+public class CredentialVerificationCacheTest {
+	
+	@Before
+	public void clearCache() {
+		CredentialVerificationCache.clear();
+	}
+	
+	/**
+	 * @see CredentialVerificationCache#isVerified(Integer,String)
+	 */
+	@Test
+	@Verifies(value = "should return true for a password that was verified", method = "isVerified(Integer,String)")
+	public void isVerified_shouldReturnTrueForAPasswordThatWasVerified() throws Exception {
+		CredentialVerificationCache.put(1, "Admin123");
+		Assert.assertTrue(CredentialVerificationCache.isVerified(1, "Admin123"));
+		Assert.assertFalse(CredentialVerificationCache.isVerified(2, "Admin123"));
+	}
+	
+	/**
+	 * @see CredentialVerificationCache#isVerified(Integer,String)
+	 */
+	@Test
+	@Verifies(value = "should return false for another password", method = "isVerified(Integer,String)")
+	public void isVerified_shouldReturnFalseForAnotherPassword() throws Exception {
+		CredentialVerificationCache.put(1, "Admin123");
+		Assert.assertFalse(CredentialVerificationCache.isVerified(1, "admin123"));
+		Assert.assertFalse(CredentialVerificationCache.isVerified(1, null));
+	}
+	
+	/**
+	 * @see CredentialVerificationCache#evict(Integer)
+	 */
+	@Test
+	@Verifies(value = "should forget the password of the user", method = "evict(Integer)")
+	public void evict_shouldForgetThePasswordOfTheUser() throws Exception {
+		CredentialVerificationCache.put(1, "Admin123");
+		CredentialVerificationCache.evict(1);
+		Assert.assertFalse(CredentialVerificationCache.isVerified(1, "Admin123"));
+	}
+}
@@ -18,6 +18,7 @@ import org.openmrs.Concept;
 import org.openmrs.ConceptAttributeType;
 import org.openmrs.Drug;
 import org.openmrs.api.context.Context;
+import org.openmrs.collection.IntObjectMap;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -167,6 +168,18 @@ public class HibernateConceptDAOTest extends BaseContextSensitiveTest {
 
 	}
 
+	/**
+	 * @see HibernateConceptDAO#getConceptUuidsByConceptId()
+	 * @verifies return the same uuids as getConceptUuids
+	 */
+	@Test
+	public void getConceptUuidsByConceptId_shouldReturnTheSameUuidsAsGetConceptUuids() throws Exception {
+		IntObjectMap<String> uuids = dao.getConceptUuidsByConceptId();
+		
+		Assert.assertEquals(dao.getConceptUuids(), uuids.toMap());
+		Assert.assertEquals(dao.getConcept(3).getUuid(), uuids.get(3));
+	}
+	
 	/**
 	 * @see HibernateConceptDAO#getConceptAttributeCount(ConceptAttributeType)
 	 * @verifies return attribute count for given attribute type
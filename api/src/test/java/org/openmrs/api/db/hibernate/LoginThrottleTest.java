@@ -0,0 +1,135 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.User;
+import org.openmrs.api.db.hibernate.LoginThrottle.LoginState;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests {@link LoginThrottle}
+ */
+public class LoginThrottleTest {
+	
+	private static final long NOW = 1000000000000L;
+	
+	@Before
+	@After
+	public void clearStates() {
+		LoginThrottle.clear();
+	}
+	
+	/**
+	 * @see LoginThrottle#getState(User)
+	 */
+	@Test
+	@Verifies(value = "should take the initial state from the user properties", method = "getState(User)")
+	public void getState_shouldTakeTheInitialStateFromTheUserProperties() throws Exception {
+		User user = new User(1001);
+		user.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "3");
+		user.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOCKOUT_TIMESTAMP, "junk");
+		
+		LoginState state = LoginThrottle.getState(user);
+		Assert.assertEquals(3, state.getAttempts());
+		Assert.assertEquals(0, state.getLockoutTime());
+		
+		// later changes of the properties are not read again
+		user.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "5");
+		Assert.assertSame(state, LoginThrottle.getState(user));
+	}
+	
+	/**
+	 * @see LoginState#recordFailure(int,long)
+	 */
+	@Test
+	@Verifies(value = "should lock out a user after more than the allowed failed attempts", method = "recordFailure(int,long)")
+	public void recordFailure_shouldLockOutAUserAfterMoreThanTheAllowedFailedAttempts() throws Exception {
+		LoginState state = LoginThrottle.getState(new User(1002));
+		for (int i = 0; i < 3; i++) {
+			state.recordFailure(3, NOW);
+			Assert.assertFalse(state.isLockedOut(NOW));
+		}
+		state.recordFailure(3, NOW);
+		Assert.assertTrue(state.isLockedOut(NOW + 1000));
+	}
+	
+	/**
+	 * @see LoginState#isLockedOut(long)
+	 */
+	@Test
+	@Verifies(value = "should lift a lockout after the lockout time", method = "isLockedOut(long)")
+	public void isLockedOut_shouldLiftALockoutAfterTheLockoutTime() throws Exception {
+		LoginState state = LoginThrottle.getState(new User(1003));
+		state.recordFailure(0, NOW);
+		// an attempt while locked out starts the lockout again
+		Assert.assertTrue(state.isLockedOut(NOW + LoginThrottle.LOCKOUT_TIME));
+		Assert.assertTrue(state.isLockedOut(NOW + 2 * LoginThrottle.LOCKOUT_TIME));
+		
+		Assert.assertFalse(state.isLockedOut(NOW + 3 * LoginThrottle.LOCKOUT_TIME + 1));
+		Assert.assertEquals(0, state.getAttempts());
+		Assert.assertEquals(0, state.getLockoutTime());
+	}
+	
+	/**
+	 * @see LoginState#recordSuccess()
+	 */
+	@Test
+	@Verifies(value = "should reset the failed attempts", method = "recordSuccess()")
+	public void recordSuccess_shouldResetTheFailedAttempts() throws Exception {
+		LoginState state = LoginThrottle.getState(new User(1004));
+		state.recordFailure(7, NOW);
+		state.recordFailure(7, NOW);
+		Assert.assertEquals(2, state.getAttempts());
+		
+		state.recordSuccess();
+		Assert.assertEquals(0, state.getAttempts());
+	}
+	
+	/**
+	 * @see LoginThrottle#userSaved(User)
+	 */
+	@Test
+	@Verifies(value = "should take the state from the user properties after they were changed", method = "userSaved(User)")
+	public void userSaved_shouldTakeTheStateFromTheUserPropertiesAfterTheyWereChanged() throws Exception {
+		User user = new User(1005);
+		LoginState state = LoginThrottle.getState(user);
+		state.recordFailure(0, NOW);
+		Assert.assertTrue(state.isLockedOut(NOW));
+		
+		// an administrator unlocks the user
+		user.setUserProperty(OpenmrsConstants.USER_PROPERTY_LOGIN_ATTEMPTS, "1");
+		LoginThrottle.userSaved(user);
+		
+		state = LoginThrottle.getState(user);
+		Assert.assertFalse(state.isLockedOut(NOW));
+		Assert.assertEquals(1, state.getAttempts());
+	}
+	
+	/**
+	 * @see LoginThrottle#userSaved(User)
+	 */
+	@Test
+	@Verifies(value = "should keep the state if the user properties were not changed", method = "userSaved(User)")
+	public void userSaved_shouldKeepTheStateIfTheUserPropertiesWereNotChanged() throws Exception {
+		User user = new User(1006);
+		LoginState state = LoginThrottle.getState(user);
+		state.recordFailure(7, NOW);
+		
+		LoginThrottle.userSaved(user);
+		
+		Assert.assertSame(state, LoginThrottle.getState(user));
+		Assert.assertEquals(1, state.getAttempts());
+	}
+}
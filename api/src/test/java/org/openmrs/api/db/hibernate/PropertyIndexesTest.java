@@ -0,0 +1,56 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PropertyIndexes}
+ */
+public class PropertyIndexesTest {
+	
+	private static final String[] PROPERTY_NAMES = { "creator", "dateCreated", "voided", "value" };
+	
+	/**
+	 * @see PropertyIndexes#of(String[], String...)
+	 * @verifies find the positions of the given properties
+	 */
+	@Test
+	public void of_shouldFindThePositionsOfTheGivenProperties() throws Exception {
+		PropertyIndexes indexes = PropertyIndexes.of(PROPERTY_NAMES, "dateCreated", "changedBy", "creator");
+		
+		Assert.assertArrayEquals(new int[] { 1, -1, 0 }, indexes.getIndexes());
+	}
+	
+	/**
+	 * @see PropertyIndexes#allExcept(String[], String...)
+	 * @verifies find the positions of all properties except the given ones
+	 */
+	@Test
+	public void allExcept_shouldFindThePositionsOfAllPropertiesExceptTheGivenOnes() throws Exception {
+		Assert.assertArrayEquals(new int[] { 0, 1, 3 }, PropertyIndexes.allExcept(PROPERTY_NAMES, "voided").getIndexes());
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3 }, PropertyIndexes.allExcept(PROPERTY_NAMES, (String[]) null)
+		        .getIndexes());
+	}
+	
+	/**
+	 * @see PropertyIndexes#isFor(String[])
+	 * @verifies return false for other property names
+	 */
+	@Test
+	public void isFor_shouldReturnFalseForOtherPropertyNames() throws Exception {
+		PropertyIndexes indexes = PropertyIndexes.of(PROPERTY_NAMES, "voided");
+		
+		Assert.assertTrue(indexes.isFor(PROPERTY_NAMES));
+		Assert.assertTrue(indexes.isFor(PROPERTY_NAMES.clone()));
+		Assert.assertFalse(indexes.isFor(new String[] { "voided" }));
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Program;
+import org.openmrs.api.db.SerializedObject;
+import org.openmrs.serialization.SimpleXStreamSerializer;
+
+/**
+ * Tests the {@link SerializedObjectSnapshotCache} class
+ */
+public class SerializedObjectSnapshotCacheTest {
+	
+	private SerializedObject createSerializedObject(String data) {
+		SerializedObject serializedObject = new SerializedObject();
+		serializedObject.setUuid("0f26a8f2-4bc5-4b3a-8c7b-8d3a1d3c4a11");
+		serializedObject.setType(Program.class.getName());
+		serializedObject.setSubtype(Program.class.getName());
+		serializedObject.setSerializationClass(SimpleXStreamSerializer.class);
+		serializedObject.setDateChanged(new Date(1000));
+		serializedObject.setSerializedData(data);
+		return serializedObject;
+	}
+	
+	/**
+	 * @see SerializedObjectSnapshotCache#get(SerializedObject)
+	 * @verifies return a copy of a cached object
+	 */
+	@Test
+	public void get_shouldReturnACopyOfACachedObject() throws Exception {
+		SerializedObjectSnapshotCache cache = new SerializedObjectSnapshotCache(10);
+		SerializedObject serializedObject = createSerializedObject("<program/>");
+		Program program = new Program();
+		program.setName("TestProgram");
+		cache.put(serializedObject, program);
+		program.setName("changed after caching");
+		
+		Program copy = (Program) cache.get(createSerializedObject("<program/>"));
+		Assert.assertNotSame(program, copy);
+		Assert.assertEquals("TestProgram", copy.getName());
+		
+		copy.setName("changed by the caller");
+		Assert.assertEquals("TestProgram", ((Program) cache.get(serializedObject)).getName());
+	}
+	
+	/**
+	 * @see SerializedObjectSnapshotCache#get(SerializedObject)
+	 * @verifies return null if the serialized data changed
+	 */
+	@Test
+	public void get_shouldReturnNullIfTheSerializedDataChanged() throws Exception {
+		SerializedObjectSnapshotCache cache = new SerializedObjectSnapshotCache(10);
+		cache.put(createSerializedObject("<program/>"), new Program());
+		
+		Assert.assertNull(cache.get(createSerializedObject("<program><name>new</name></program>")));
+		SerializedObject changed = createSerializedObject("<program/>");
+		changed.setDateChanged(new Date(2000));
+		Assert.assertNull(cache.get(changed));
+	}
+	
+	/**
+	 * @see SerializedObjectSnapshotCache#put(SerializedObject,Object)
+	 * @verifies not cache objects that cannot be serialized
+	 */
+	@Test
+	public void put_shouldNotCacheObjectsThatCannotBeSerialized() throws Exception {
+		SerializedObjectSnapshotCache cache = new SerializedObjectSnapshotCache(10);
+		SerializedObject serializedObject = createSerializedObject("<object/>");
+		cache.put(serializedObject, new Object());
+		
+		Assert.assertNull(cache.get(serializedObject));
+	}
+}
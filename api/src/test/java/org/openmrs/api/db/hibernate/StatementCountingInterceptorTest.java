@@ -0,0 +1,54 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.api.db.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link StatementCountingInterceptor}
+ */
+public class StatementCountingInterceptorTest {
+	
+	@After
+	public void disableCounting() {
+		StatementCountingInterceptor.setEnabled(false);
+	}
+	
+	/**
+	 * @see StatementCountingInterceptor#onPrepareStatement(String)
+	 * @verifies count the statements of the current thread only
+	 */
+	@Test
+	public void onPrepareStatement_shouldCountTheStatementsOfTheCurrentThreadOnly() throws Exception {
+		final StatementCountingInterceptor interceptor = new StatementCountingInterceptor();
+		StatementCountingInterceptor.setEnabled(true);
+		long statementCount = StatementCountingInterceptor.getStatementCount();
+		
+		interceptor.onPrepareStatement("select 1");
+		Thread thread = new Thread() {
+			
+			@Override
+			public void run() {
+				interceptor.onPrepareStatement("select 2");
+			}
+		};
+		thread.start();
+		thread.join();
+		
+		assertEquals(statementCount + 1, StatementCountingInterceptor.getStatementCount());
+		
+		StatementCountingInterceptor.setEnabled(false);
+		interceptor.onPrepareStatement("select 3");
+		assertEquals(statementCount + 1, StatementCountingInterceptor.getStatementCount());
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Compares the throughput and the memory used by the int keyed collections with the boxed java.util
+ * collections they replace, for a million ids like those of a large cohort or concept dictionary.
+ */
+@BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+public class IntCollectionsPT {
+	
+	private static final Log log = LogFactory.getLog(IntCollectionsPT.class);
+	
+	private static final int SIZE = 1000000;
+	
+	private static final String UUID = "0cbe2ed3-cd5f-4f46-9459-26127c9265ab";
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	@Test
+	public void shouldFillAndReadABoxedMap() throws Exception {
+		long before = usedMemory();
+		Map<Integer, String> map = new HashMap<Integer, String>();
+		for (int i = 1; i <= SIZE; i++) {
+			map.put(i, UUID);
+		}
+		logMemory("HashMap<Integer, String>", before);
+		int found = 0;
+		for (int i = 1; i <= SIZE; i++) {
+			if (map.get(i) != null) {
+				found++;
+			}
+		}
+		Assert.assertEquals(SIZE, found);
+	}
+	
+	@Test
+	public void shouldFillAndReadAnIntObjectMap() throws Exception {
+		long before = usedMemory();
+		IntObjectMap<String> map = new IntObjectMap<String>();
+		for (int i = 1; i <= SIZE; i++) {
+			map.put(i, UUID);
+		}
+		logMemory("IntObjectMap<String>", before);
+		int found = 0;
+		for (int i = 1; i <= SIZE; i++) {
+			if (map.get(i) != null) {
+				found++;
+			}
+		}
+		Assert.assertEquals(SIZE, found);
+	}
+	
+	@Test
+	public void shouldFillAndReadABoxedSet() throws Exception {
+		long before = usedMemory();
+		Set<Integer> set = new TreeSet<Integer>();
+		for (int i = 1; i <= SIZE; i++) {
+			set.add(i);
+		}
+		logMemory("TreeSet<Integer>", before);
+		int found = 0;
+		for (int i = 1; i <= SIZE; i += 2) {
+			if (set.contains(i)) {
+				found++;
+			}
+		}
+		Assert.assertEquals(SIZE / 2, found);
+	}
+	
+	@Test
+	public void shouldFillAndReadAnIntSet() throws Exception {
+		long before = usedMemory();
+		IntSet set = new IntSet();
+		for (int i = 1; i <= SIZE; i++) {
+			set.add(i);
+		}
+		logMemory("IntSet", before);
+		int found = 0;
+		for (int i = 1; i <= SIZE; i += 2) {
+			if (set.contains(i)) {
+				found++;
+			}
+		}
+		Assert.assertEquals(SIZE / 2, found);
+	}
+	
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	private static void logMemory(String collection, long before) {
+		log.info(collection + " of " + SIZE + " ids: about " + (usedMemory() - before) / 1024 + " KB");
+	}
+}
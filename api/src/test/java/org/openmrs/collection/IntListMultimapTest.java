@@ -0,0 +1,49 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntListMultimap}
+ */
+public class IntListMultimapTest {
+	
+	/**
+	 * @see IntListMultimap#put(int, Object)
+	 * @verifies add the values of a key in order
+	 */
+	@Test
+	public void put_shouldAddTheValuesOfAKeyInOrder() throws Exception {
+		IntListMultimap<String> multimap = new IntListMultimap<String>();
+		multimap.put(7, "b");
+		multimap.put(8, "c");
+		multimap.put(7, "a");
+		
+		Assert.assertEquals(Arrays.asList("b", "a"), multimap.get(7));
+		Assert.assertEquals(2, multimap.keyCount());
+		Assert.assertEquals(3, multimap.size());
+	}
+	
+	/**
+	 * @see IntListMultimap#get(int)
+	 * @verifies return an empty list for an unknown key
+	 */
+	@Test
+	public void get_shouldReturnAnEmptyListForAnUnknownKey() throws Exception {
+		IntListMultimap<String> multimap = new IntListMultimap<String>();
+		
+		Assert.assertTrue(multimap.get(1).isEmpty());
+		Assert.assertFalse(multimap.containsKey(1));
+	}
+}
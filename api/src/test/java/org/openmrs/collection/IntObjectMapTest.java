@@ -0,0 +1,83 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntObjectMap}
+ */
+public class IntObjectMapTest {
+	
+	/**
+	 * @see IntObjectMap#put(int, Object)
+	 * @verifies replace the value of an existing key
+	 */
+	@Test
+	public void put_shouldReplaceTheValueOfAnExistingKey() throws Exception {
+		IntObjectMap<String> map = new IntObjectMap<String>();
+		
+		Assert.assertNull(map.put(5, "five"));
+		Assert.assertEquals("five", map.put(5, "FIVE"));
+		Assert.assertEquals("FIVE", map.get(5));
+		Assert.assertEquals(1, map.size());
+	}
+	
+	/**
+	 * @see IntObjectMap#put(int, Object)
+	 * @verifies fail for a null value
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void put_shouldFailForANullValue() throws Exception {
+		new IntObjectMap<String>().put(1, null);
+	}
+	
+	/**
+	 * @see IntObjectMap#remove(int)
+	 * @verifies keep the other mappings with colliding hashes
+	 */
+	@Test
+	public void remove_shouldKeepTheOtherMappingsWithCollidingHashes() throws Exception {
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+		for (int i = 0; i < 10000; i++) {
+			map.put(i, -i);
+		}
+		for (int i = 0; i < 10000; i += 3) {
+			Assert.assertEquals(Integer.valueOf(-i), map.remove(i));
+		}
+		
+		Assert.assertEquals(6666, map.size());
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertEquals(i % 3 == 0 ? null : Integer.valueOf(-i), map.get(i));
+		}
+	}
+	
+	/**
+	 * @see IntObjectMap#toMap()
+	 * @verifies contain all mappings
+	 */
+	@Test
+	public void toMap_shouldContainAllMappings() throws Exception {
+		IntObjectMap<String> map = new IntObjectMap<String>();
+		map.put(0, "zero");
+		map.put(-1, "minus one");
+		map.put(1000000, "a million");
+		
+		Map<Integer, String> boxed = map.toMap();
+		
+		Assert.assertEquals(3, boxed.size());
+		Assert.assertEquals("zero", boxed.get(0));
+		Assert.assertEquals("minus one", boxed.get(-1));
+		Assert.assertEquals("a million", boxed.get(1000000));
+	}
+}
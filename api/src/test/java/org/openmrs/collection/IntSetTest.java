@@ -0,0 +1,108 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.collection;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntSet}
+ */
+public class IntSetTest {
+	
+	/**
+	 * @see IntSet#IntSet(java.util.Collection)
+	 * @verifies contain the given values
+	 */
+	@Test
+	public void IntSet_shouldContainTheGivenValues() throws Exception {
+		IntSet set = new IntSet(Arrays.asList(3, 1, 2, 3));
+		
+		Assert.assertEquals(3, set.size());
+		Assert.assertTrue(set.contains(1));
+		Assert.assertTrue(set.contains(3));
+		Assert.assertFalse(set.contains(4));
+	}
+	
+	/**
+	 * @see IntSet#add(int)
+	 * @verifies add a value once
+	 */
+	@Test
+	public void add_shouldAddAValueOnce() throws Exception {
+		IntSet set = new IntSet();
+		
+		Assert.assertTrue(set.add(7));
+		Assert.assertFalse(set.add(7));
+		Assert.assertEquals(1, set.size());
+	}
+	
+	/**
+	 * @see IntSet#add(int)
+	 * @verifies add zero
+	 */
+	@Test
+	public void add_shouldAddZero() throws Exception {
+		IntSet set = new IntSet();
+		
+		Assert.assertFalse(set.contains(0));
+		Assert.assertTrue(set.add(0));
+		Assert.assertTrue(set.contains(0));
+		Assert.assertArrayEquals(new int[] { 0 }, set.toArray());
+		Assert.assertTrue(set.remove(0));
+		Assert.assertTrue(set.isEmpty());
+	}
+	
+	/**
+	 * @see IntSet#remove(int)
+	 * @verifies keep the other values with colliding hashes
+	 */
+	@Test
+	public void remove_shouldKeepTheOtherValuesWithCollidingHashes() throws Exception {
+		IntSet set = new IntSet();
+		for (int i = 1; i <= 10000; i++) {
+			set.add(i);
+		}
+		for (int i = 1; i <= 10000; i += 2) {
+			Assert.assertTrue(set.remove(i));
+		}
+		
+		Assert.assertEquals(5000, set.size());
+		for (int i = 1; i <= 10000; i++) {
+			Assert.assertEquals(i % 2 == 0, set.contains(i));
+		}
+	}
+	
+	/**
+	 * @see IntSet#retainAll(IntSet)
+	 * @verifies keep only the values of both sets
+	 */
+	@Test
+	public void retainAll_shouldKeepOnlyTheValuesOfBothSets() throws Exception {
+		IntSet set = new IntSet(Arrays.asList(0, 1, 2, 3, 4));
+		
+		Assert.assertTrue(set.retainAll(new IntSet(Arrays.asList(0, 2, 4, 6))));
+		Assert.assertEquals(new IntSet(Arrays.asList(0, 2, 4)), set);
+		Assert.assertFalse(set.retainAll(new IntSet(Arrays.asList(0, 2, 4))));
+	}
+	
+	/**
+	 * @see IntSet#toSortedArray()
+	 * @verifies return the values in ascending order
+	 */
+	@Test
+	public void toSortedArray_shouldReturnTheValuesInAscendingOrder() throws Exception {
+		IntSet set = new IntSet(Arrays.asList(42, -5, 0, 17, 3));
+		
+		Assert.assertArrayEquals(new int[] { -5, 0, 3, 17, 42 }, set.toSortedArray());
+	}
+}
@@ -9,11 +9,17 @@
  */
 package org.openmrs.customdatatype;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.VisitAttribute;
+import org.openmrs.VisitAttributeType;
+import org.openmrs.customdatatype.datatype.FreeTextDatatype;
+import org.openmrs.customdatatype.datatype.RegexValidatedTextDatatype;
 import org.openmrs.test.BaseContextSensitiveTest;
 
 public class CustomDatatypeUtilTest extends BaseContextSensitiveTest {
@@ -35,4 +41,41 @@ public class CustomDatatypeUtilTest extends BaseContextSensitiveTest {
 		Assert.assertEquals("one value", deserialized.get("one property"));
 		Assert.assertEquals("another value < with > strange&nbsp;characters", deserialized.get("another property"));
 	}
+	
+	/**
+	 * @see CustomDatatypeUtil#getDatatype(String,String)
+	 * @verifies return the same instance for the same classname and configuration
+	 */
+	@Test
+	public void getDatatype_shouldReturnTheSameInstanceForTheSameClassnameAndConfiguration() throws Exception {
+		String classname = RegexValidatedTextDatatype.class.getName();
+		CustomDatatype<?> datatype = CustomDatatypeUtil.getDatatype(classname, "[a-z]+");
+		Assert.assertSame(datatype, CustomDatatypeUtil.getDatatype(classname, "[a-z]+"));
+		Assert.assertNotSame(datatype, CustomDatatypeUtil.getDatatype(classname, "[0-9]+"));
+	}
+	
+	/**
+	 * @see CustomDatatypeUtil#hydrateValues(java.util.Collection)
+	 * @verifies set the values of all attributes
+	 */
+	@Test
+	public void hydrateValues_shouldSetTheValuesOfAllAttributes() throws Exception {
+		VisitAttributeType attributeType = new VisitAttributeType();
+		attributeType.setDatatypeClassname(FreeTextDatatype.class.getName());
+		List<VisitAttribute> attributes = new ArrayList<VisitAttribute>();
+		for (String valueReference : new String[] { "first", "second" }) {
+			VisitAttribute attribute = new VisitAttribute();
+			attribute.setAttributeType(attributeType);
+			attribute.setValueReferenceInternal(valueReference);
+			attributes.add(attribute);
+		}
+		
+		CustomDatatypeUtil.hydrateValues(attributes);
+		
+		Assert.assertTrue(attributes.get(0).isValueHydrated());
+		Assert.assertEquals("first", attributes.get(0).getValue());
+		Assert.assertTrue(attributes.get(1).isValueHydrated());
+		Assert.assertEquals("second", attributes.get(1).getValue());
+		Assert.assertFalse(attributes.get(1).isDirty());
+	}
 }
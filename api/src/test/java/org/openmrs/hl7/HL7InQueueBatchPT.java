@@ -0,0 +1,109 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.hl7;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the throughput in messages per second of processing ORU^R01 messages from the hl7 in
+ * queue one by one and in batches with {@link HL7Service#processHL7InQueueBatch(List)}. The tests
+ * don't run inside a test transaction so that, like in the hl7 in queue processor, every message
+ * respectively every batch is processed and committed in a transaction of its own.
+ */
+@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+public class HL7InQueueBatchPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(HL7InQueueBatchPT.class);
+	
+	private static final int MESSAGE_COUNT = 500;
+	
+	private static final int BATCH_SIZE = 50;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private HL7Service hl7Service;
+	
+	private List<HL7InQueue> hl7InQueues;
+	
+	@Before
+	public void queueMessages() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		hl7Service = Context.getHL7Service();
+		HL7InQueue template = hl7Service.getHL7InQueue(1);
+		hl7InQueues = new ArrayList<HL7InQueue>();
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			HL7InQueue hl7InQueue = new HL7InQueue();
+			hl7InQueue.setHL7Source(template.getHL7Source());
+			hl7InQueue.setHL7SourceKey(template.getHL7SourceKey() + i);
+			hl7InQueue.setHL7Data(template.getHL7Data());
+			hl7InQueues.add(hl7Service.saveHL7InQueue(hl7InQueue));
+		}
+		getConnection().commit();
+		Context.clearSession();
+	}
+	
+	@After
+	public void deleteProcessedMessages() throws Exception {
+		deleteAllData();
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void shouldProcessMessagesOneByOne() throws Exception {
+		long start = System.nanoTime();
+		for (HL7InQueue hl7InQueue : hl7InQueues) {
+			hl7Service.processHL7InQueue(hl7InQueue);
+		}
+		logThroughput("one by one", start);
+		
+		Assert.assertEquals(0, hl7Service.getAllHL7InErrors().size());
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void shouldProcessMessagesInBatches() throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < hl7InQueues.size(); i += BATCH_SIZE) {
+			hl7Service.processHL7InQueueBatch(hl7InQueues.subList(i, Math.min(i + BATCH_SIZE, hl7InQueues.size())));
+		}
+		logThroughput("in batches of " + BATCH_SIZE, start);
+		
+		Assert.assertEquals(0, hl7Service.getAllHL7InErrors().size());
+	}
+	
+	private void logThroughput(String mode, long start) {
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		log.info("Processed " + MESSAGE_COUNT + " messages " + mode + ": " + Math.round(MESSAGE_COUNT / seconds)
+		        + " messages per second");
+	}
+}
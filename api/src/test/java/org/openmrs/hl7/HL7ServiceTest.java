@@ -13,6 +13,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
@@ -102,6 +103,45 @@ public class HL7ServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(1, hl7service.getAllHL7InArchives().size());
 	}
 	
+	/**
+	 * @see HL7Service#processHL7InQueueBatch(List)
+	 */
+	@Test
+	@Verifies(value = "should archive the valid messages and move the failed ones to the error table", method = "processHL7InQueueBatch(List)")
+	public void processHL7InQueueBatch_shouldArchiveTheValidMessagesAndMoveTheFailedOnesToTheErrorTable()
+	        throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		HL7Service hl7service = Context.getHL7Service();
+		Assert.assertEquals(0, hl7service.getAllHL7InErrors().size());
+		int archiveCount = hl7service.getAllHL7InArchives().size();
+		
+		List<HL7InQueue> batch = new ArrayList<HL7InQueue>();
+		batch.add(hl7service.getHL7InQueue(1));
+		batch.add(hl7service.getHL7InQueue(2));
+		hl7service.processHL7InQueueBatch(batch);
+		
+		Assert.assertEquals(archiveCount + 1, hl7service.getAllHL7InArchives().size());
+		Assert.assertEquals(1, hl7service.getAllHL7InErrors().size());
+		Assert.assertNull(hl7service.getHL7InQueue(1));
+		Assert.assertNull(hl7service.getHL7InQueue(2));
+	}
+	
+	/**
+	 * @see HL7Service#getNextHL7InQueues(int)
+	 */
+	@Test
+	@Verifies(value = "should return the pending queue items in the order they were queued", method = "getNextHL7InQueues(int)")
+	public void getNextHL7InQueues_shouldReturnThePendingQueueItemsInTheOrderTheyWereQueued() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		
+		List<HL7InQueue> queueItems = Context.getHL7Service().getNextHL7InQueues(2);
+		
+		Assert.assertEquals(2, queueItems.size());
+		Assert.assertEquals(1, queueItems.get(0).getHL7InQueueId().intValue());
+		Assert.assertEquals(2, queueItems.get(1).getHL7InQueueId().intValue());
+	}
+	
 	/**
 	 * @see HL7Service#processHL7InQueue(HL7InQueue)
 	 */
@@ -11,6 +11,7 @@ package org.openmrs.messagesource.impl;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.junit.Test;
@@ -59,4 +60,71 @@ public class CachedMessageSourceTest {
 		assertEquals(valueAsString, valueAsPM.getMessage());
 	}
 	
+	/**
+	 * @see CachedMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies fall back to the language of the locale
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldFallBackToTheLanguageOfTheLocale() throws Exception {
+		CachedMessageSource testPmc = new CachedMessageSource();
+		testPmc.addPresentation(new PresentationMessage("greeting", Locale.ENGLISH, "Hello", null));
+		testPmc.addPresentation(new PresentationMessage("farewell", Locale.ENGLISH, "Goodbye", null));
+		testPmc.addPresentation(new PresentationMessage("greeting", Locale.UK, "Hiya", null));
+		
+		assertEquals("Hiya", testPmc.getMessage("greeting", null, Locale.UK));
+		assertEquals("Goodbye", testPmc.getMessage("farewell", null, Locale.UK));
+		assertEquals("Hello", testPmc.getMessage("greeting", null, Locale.US));
+		assertEquals("Hello", testPmc.getMessage("greeting", null, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see CachedMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies unescape single quotes like a message format
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldUnescapeSingleQuotesLikeAMessageFormat() throws Exception {
+		CachedMessageSource testPmc = new CachedMessageSource();
+		testPmc.addPresentation(new PresentationMessage("quote", Locale.ENGLISH, "Patient''s name", null));
+		
+		assertEquals("Patient's name", testPmc.getMessage("quote", null, Locale.ENGLISH));
+		assertEquals("Patient's name", testPmc.getMessage("quote", new Object[] { "ignored" }, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see CachedMessageSource#merge(MutableMessageSource,boolean)
+	 * @verifies not overwrite existing messages unless asked to
+	 */
+	@Test
+	public void merge_shouldNotOverwriteExistingMessagesUnlessAskedTo() throws Exception {
+		CachedMessageSource testPmc = new CachedMessageSource();
+		testPmc.addPresentation(new PresentationMessage("greeting", Locale.ENGLISH, "Hello", null));
+		
+		CachedMessageSource fromSource = new CachedMessageSource();
+		fromSource.addPresentation(new PresentationMessage("greeting", Locale.ENGLISH, "Hi", null));
+		fromSource.addPresentation(new PresentationMessage("farewell", Locale.ENGLISH, "Goodbye", null));
+		
+		testPmc.merge(fromSource, false);
+		assertEquals("Hello", testPmc.getMessage("greeting", null, Locale.ENGLISH));
+		assertEquals("Goodbye", testPmc.getMessage("farewell", null, Locale.ENGLISH));
+		
+		testPmc.merge(fromSource, true);
+		assertEquals("Hi", testPmc.getMessage("greeting", null, Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see CachedMessageSource#addPresentations(java.util.Collection)
+	 * @verifies add all messages
+	 */
+	@Test
+	public void addPresentations_shouldAddAllMessages() throws Exception {
+		CachedMessageSource testPmc = new CachedMessageSource();
+		testPmc.addPresentation(new PresentationMessage("greeting", Locale.ENGLISH, "Hello", null));
+		
+		testPmc.addPresentations(Arrays.asList(new PresentationMessage("farewell", Locale.ENGLISH, "Goodbye", null),
+		    new PresentationMessage("greeting", Locale.FRENCH, "Bonjour {0}", null)));
+		
+		assertEquals("Hello", testPmc.getMessage("greeting", null, Locale.ENGLISH));
+		assertEquals("Goodbye", testPmc.getMessage("farewell", null, Locale.ENGLISH));
+		assertEquals("Bonjour Marie", testPmc.getMessage("greeting", new Object[] { "Marie" }, Locale.FRENCH));
+	}
 }
@@ -0,0 +1,91 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.messagesource.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.api.context.Context;
+import org.openmrs.messagesource.PresentationMessage;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.springframework.context.MessageSource;
+import org.springframework.context.support.ReloadableResourceBundleMessageSource;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the throughput in lookups per second of resolving the messages of a page render, with
+ * and without arguments, through the configured {@link MutableResourceBundleMessageSource}, which
+ * resolves from a merged {@link CachedMessageSource}, and through a plain Spring
+ * {@link ReloadableResourceBundleMessageSource} over the same basenames.
+ */
+@BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+public class MessageResolutionPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(MessageResolutionPT.class);
+	
+	private static final int CODES_PER_RENDER = 500;
+	
+	private static final int RENDER_COUNT = 2000;
+	
+	private static final Object[] ARGUMENTS = { 5 };
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private List<String> codes;
+	
+	@Before
+	public void loadCodes() throws Exception {
+		codes = new ArrayList<String>(CODES_PER_RENDER);
+		for (PresentationMessage message : Context.getMessageSourceService().getPresentationsInLocale(Locale.ENGLISH)) {
+			codes.add(message.getCode());
+			if (codes.size() == CODES_PER_RENDER) {
+				break;
+			}
+		}
+	}
+	
+	@Test
+	public void shouldResolveMessagesWithTheConfiguredMessageSource() throws Exception {
+		resolveMessages("from the cached message source", Context.getMessageSourceService().getActiveMessageSource());
+	}
+	
+	@Test
+	public void shouldResolveMessagesWithAReloadableResourceBundleMessageSource() throws Exception {
+		ReloadableResourceBundleMessageSource messageSource = new ReloadableResourceBundleMessageSource();
+		messageSource.setBasenames("classpath:custom_messages", "classpath:messages");
+		messageSource.setUseCodeAsDefaultMessage(true);
+		resolveMessages("from the resource bundles", messageSource);
+	}
+	
+	private void resolveMessages(String mode, MessageSource messageSource) {
+		long start = System.nanoTime();
+		for (int i = 0; i < RENDER_COUNT; i++) {
+			for (String code : codes) {
+				Assert.assertNotNull(messageSource.getMessage(code, null, Locale.ENGLISH));
+				Assert.assertNotNull(messageSource.getMessage(code, ARGUMENTS, Locale.ENGLISH));
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		long lookups = 2L * RENDER_COUNT * codes.size();
+		log.info("Resolved " + lookups + " messages " + mode + ": " + Math.round(lookups / seconds)
+		        + " lookups per second");
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.messagesource.impl;
+
+import java.io.File;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+/**
+ * Tests the {@link MutableResourceBundleMessageSource}
+ */
+public class MutableResourceBundleMessageSourceTest extends BaseContextSensitiveTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCode(String,Locale)
+	 * @verifies resolve messages with arguments
+	 */
+	@Test
+	public void resolveCode_shouldResolveMessagesWithArguments() throws Exception {
+		String message = Context.getMessageSourceService().getMessage("Obs.error.unable.get.handler", new Object[] { 5 },
+		    Locale.ENGLISH);
+		
+		Assert.assertEquals("Unable to get the handler for obs: 5 because the concept is null", message);
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies return null for a code without a message
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldReturnNullForACodeWithoutAMessage() throws Exception {
+		MutableResourceBundleMessageSource messageSource = (MutableResourceBundleMessageSource) Context
+		        .getMessageSourceService().getActiveMessageSource();
+		
+		Assert.assertNull(messageSource.resolveCodeWithoutArguments("no.such.code", Locale.ENGLISH));
+		Assert.assertEquals("Observation", messageSource.resolveCodeWithoutArguments("Obs.title", Locale.ENGLISH));
+	}
+	
+	/**
+	 * @see MutableResourceBundleMessageSource#resolveCodeWithoutArguments(String,Locale)
+	 * @verifies reload changed files on every access if the cache seconds are 0
+	 */
+	@Test
+	public void resolveCodeWithoutArguments_shouldReloadChangedFilesOnEveryAccessIfTheCacheSecondsAre0() throws Exception {
+		File file = new File(folder.getRoot(), "messages.properties");
+		FileUtils.writeStringToFile(file, "greeting=Hello", "UTF-8");
+		MutableResourceBundleMessageSource messageSource = new MutableResourceBundleMessageSource();
+		messageSource.setBasenames(new String[] { "file:" + new File(folder.getRoot(), "messages").getAbsolutePath() });
+		messageSource.setCacheSeconds(0);
+		Assert.assertEquals("Hello", messageSource.resolveCodeWithoutArguments("greeting", Locale.ENGLISH));
+		
+		FileUtils.writeStringToFile(file, "greeting=Hi", "UTF-8");
+		file.setLastModified(file.lastModified() + 2000);
+		
+		Assert.assertEquals("Hi", messageSource.resolveCodeWithoutArguments("greeting", Locale.ENGLISH));
+	}
+}
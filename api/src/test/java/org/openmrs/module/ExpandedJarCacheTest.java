@@ -0,0 +1,181 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collection;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests {@link ExpandedJarCache}
+ */
+public class ExpandedJarCacheTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File cacheFolder;
+	
+	private File jar;
+	
+	@Before
+	public void setCacheFolder() throws Exception {
+		cacheFolder = folder.newFolder("cache");
+		ExpandedJarCache.setCacheFolder(cacheFolder);
+		jar = new File(folder.getRoot(), "test.omod");
+		writeJar("1");
+	}
+	
+	@After
+	public void resetCacheFolder() throws Exception {
+		ExpandedJarCache.clear();
+		ExpandedJarCache.setCacheFolder(null);
+	}
+	
+	/**
+	 * @see ExpandedJarCache#expand(File,File,String,boolean)
+	 */
+	@Test
+	@Verifies(value = "should expand the entries that start with the name", method = "expand(File,File,String,boolean)")
+	public void expand_shouldExpandTheEntriesThatStartWithTheName() throws Exception {
+		File expanded = folder.newFolder("expanded");
+		ExpandedJarCache.expand(jar, expanded, "lib", true);
+		
+		Assert.assertEquals("a 1", FileUtils.readFileToString(new File(expanded, "lib/a.txt")));
+		Assert.assertEquals("f19 1", FileUtils.readFileToString(new File(expanded, "lib/many/f19.txt")));
+		Assert.assertFalse(new File(expanded, "web").exists());
+		
+		File trimmed = folder.newFolder("trimmed");
+		ExpandedJarCache.expand(jar, trimmed, "lib/", false);
+		Assert.assertEquals("a 1", FileUtils.readFileToString(new File(trimmed, "a.txt")));
+		Assert.assertEquals(21, FileUtils.listFiles(trimmed, null, true).size());
+	}
+	
+	/**
+	 * @see ExpandedJarCache#expand(File,File,String,boolean)
+	 */
+	@Test
+	@Verifies(value = "should reuse the expansion of an unchanged jar", method = "expand(File,File,String,boolean)")
+	public void expand_shouldReuseTheExpansionOfAnUnchangedJar() throws Exception {
+		ExpandedJarCache.expand(jar, folder.newFolder("first"), "lib", true);
+		// only a file from the cache can have this content
+		Collection<File> cached = FileUtils.listFiles(cacheFolder, new String[] { "txt" }, true);
+		for (File file : cached) {
+			if (file.getName().equals("a.txt")) {
+				file.delete();
+				FileUtils.writeStringToFile(file, "cached");
+			}
+		}
+		
+		File second = folder.newFolder("second");
+		ExpandedJarCache.expand(jar, second, "lib", true);
+		Assert.assertEquals("cached", FileUtils.readFileToString(new File(second, "lib/a.txt")));
+	}
+	
+	/**
+	 * @see ExpandedJarCache#expand(File,File,String,boolean)
+	 */
+	@Test
+	@Verifies(value = "should expand a changed jar again", method = "expand(File,File,String,boolean)")
+	public void expand_shouldExpandAChangedJarAgain() throws Exception {
+		ExpandedJarCache.expand(jar, folder.newFolder("first"), "lib", true);
+		writeJar("2");
+		jar.setLastModified(jar.lastModified() + 2000);
+		
+		File second = folder.newFolder("second");
+		ExpandedJarCache.expand(jar, second, "lib", true);
+		Assert.assertEquals("a 2", FileUtils.readFileToString(new File(second, "lib/a.txt")));
+		// the expansion of the first version is gone
+		Assert.assertEquals(1, cacheFolder.list().length);
+	}
+	
+	/**
+	 * @see ExpandedJarCache#expand(File,File,String,boolean)
+	 */
+	@Test
+	@Verifies(value = "should expand the jar directly if a cached file is missing", method = "expand(File,File,String,boolean)")
+	public void expand_shouldExpandTheJarDirectlyIfACachedFileIsMissing() throws Exception {
+		ExpandedJarCache.expand(jar, folder.newFolder("first"), "lib", true);
+		for (File file : FileUtils.listFiles(cacheFolder, new String[] { "txt" }, true)) {
+			if (file.getName().equals("f10.txt")) {
+				file.delete();
+			}
+		}
+		
+		File second = folder.newFolder("second");
+		ExpandedJarCache.expand(jar, second, "lib", true);
+		Assert.assertEquals("a 1", FileUtils.readFileToString(new File(second, "lib/a.txt")));
+		Assert.assertEquals("f10 1", FileUtils.readFileToString(new File(second, "lib/many/f10.txt")));
+		// the incomplete expansion is cached again the next time
+		Assert.assertEquals(0, FileUtils.listFiles(cacheFolder, new String[] { "txt" }, true).size());
+	}
+	
+	/**
+	 * @see ExpandedJarCache#prune()
+	 */
+	@Test
+	@Verifies(value = "should delete expansions that were not used recently", method = "prune()")
+	public void prune_shouldDeleteExpansionsThatWereNotUsedRecently() throws Exception {
+		// left behind by the previous version of a module whose file name has the version in it
+		File unused = new File(cacheFolder, "test-1.0.omod-0123456789abcdef0123456789abcdef");
+		new File(unused, "lib").mkdirs();
+		unused.setLastModified(System.currentTimeMillis() - (ExpandedJarCache.MAX_UNUSED_DAYS + 1) * 24L * 60 * 60 * 1000);
+		
+		ExpandedJarCache.prune();
+		
+		Assert.assertFalse(unused.exists());
+	}
+	
+	/**
+	 * @see ExpandedJarCache#prune()
+	 */
+	@Test
+	@Verifies(value = "should keep expansions that were used recently", method = "prune()")
+	public void prune_shouldKeepExpansionsThatWereUsedRecently() throws Exception {
+		ExpandedJarCache.expand(jar, folder.newFolder("first"), "lib", true);
+		File expansion = cacheFolder.listFiles()[0];
+		expansion.setLastModified(System.currentTimeMillis() - (ExpandedJarCache.MAX_UNUSED_DAYS + 1) * 24L * 60 * 60 * 1000);
+		// using the expansion again marks it as used
+		ExpandedJarCache.expand(jar, folder.newFolder("second"), "lib", true);
+		
+		ExpandedJarCache.prune();
+		
+		Assert.assertTrue(expansion.exists());
+	}
+	
+	private void writeJar(String version) throws Exception {
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new JarEntry("lib/"));
+			out.putNextEntry(new JarEntry("lib/a.txt"));
+			out.write(("a " + version).getBytes("UTF-8"));
+			for (int i = 0; i < 20; i++) {
+				out.putNextEntry(new JarEntry("lib/many/f" + i + ".txt"));
+				out.write(("f" + i + " " + version).getBytes("UTF-8"));
+			}
+			out.putNextEntry(new JarEntry("web/b.txt"));
+			out.write(("b " + version).getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -10,6 +10,8 @@
 package org.openmrs.obs;
 
 import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.api.APIException;
 import org.openmrs.obs.handler.BinaryStreamHandler;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -47,4 +49,12 @@ public class BinaryStreamHandlerTest {
         assertFalse(handler.supportsView(""));
         assertFalse(handler.supportsView((String) null));
     }
+
+    @Test(expected = APIException.class)
+    public void shouldNotSaveComplexDataWithoutAStream() {
+        Obs obs = new Obs();
+        obs.setComplexData(new ComplexData("data.bin", null));
+
+        new BinaryStreamHandler().saveObs(obs);
+    }
 }
@@ -0,0 +1,233 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.obs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.obs.handler.ComplexObsFileStore;
+
+/**
+ * Tests the {@link ComplexObsFileStore}
+ */
+public class ComplexObsFileStoreTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private ComplexObsFileStore store;
+	
+	@Before
+	public void createStore() throws Exception {
+		store = new ComplexObsFileStore(folder.getRoot());
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#getShardedFile(String)
+	 * @verifies return a file two levels below the directory
+	 */
+	@Test
+	public void getShardedFile_shouldReturnAFileTwoLevelsBelowTheDirectory() throws Exception {
+		File file = store.getShardedFile("nameOfFile.txt");
+		
+		assertEquals("nameOfFile.txt", file.getName());
+		assertEquals(folder.getRoot(), file.getParentFile().getParentFile().getParentFile());
+		assertEquals(2, file.getParentFile().getName().length());
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#getShardedFile(String)
+	 * @verifies return the same file for the same name
+	 */
+	@Test
+	public void getShardedFile_shouldReturnTheSameFileForTheSameName() throws Exception {
+		assertEquals(store.getShardedFile("a.jpg"), new ComplexObsFileStore(folder.getRoot()).getShardedFile("a.jpg"));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#getFile(String)
+	 * @verifies find a file in the flat layout
+	 */
+	@Test
+	public void getFile_shouldFindAFileInTheFlatLayout() throws Exception {
+		File flat = folder.newFile("legacy.txt");
+		
+		assertEquals(flat, store.getFile("legacy.txt"));
+		assertTrue(store.exists("legacy.txt"));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#getFile(String)
+	 * @verifies prefer the sharded layout
+	 */
+	@Test
+	public void getFile_shouldPreferTheShardedLayout() throws Exception {
+		folder.newFile("both.txt");
+		File sharded = store.getShardedFile("both.txt");
+		FileUtils.writeStringToFile(sharded, "sharded");
+		
+		assertEquals(sharded, store.getFile("both.txt"));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#write(InputStream, String)
+	 * @verifies name the file after the hash of the content
+	 */
+	@Test
+	public void write_shouldNameTheFileAfterTheHashOfTheContent() throws Exception {
+		String name = store.write(new ByteArrayInputStream("abc".getBytes("UTF-8")), "txt");
+		
+		// the SHA-256 hash of "abc"
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad.txt", name);
+		assertEquals("abc", FileUtils.readFileToString(store.getFile(name)));
+		assertEquals(0, new File(folder.getRoot(), ComplexObsFileStore.TEMP_DIRECTORY).list().length);
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#write(InputStream, String)
+	 * @verifies store identical content only once
+	 */
+	@Test
+	public void write_shouldStoreIdenticalContentOnlyOnce() throws Exception {
+		String first = store.write(new ByteArrayInputStream("same".getBytes("UTF-8")), "bin");
+		String second = store.write(new ByteArrayInputStream("same".getBytes("UTF-8")), "bin");
+		
+		assertEquals(first, second);
+		assertEquals("same", FileUtils.readFileToString(store.getFile(second)));
+		assertEquals(0, new File(folder.getRoot(), ComplexObsFileStore.TEMP_DIRECTORY).list().length);
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#write(InputStream, String)
+	 * @verifies not overwrite different content with the same hash
+	 */
+	@Test
+	public void write_shouldNotOverwriteDifferentContentWithTheSameHash() throws Exception {
+		// stands in for content whose hash collides with the one of "abc"
+		String hashOfAbc = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+		File colliding = store.getShardedFile(hashOfAbc + ".txt");
+		FileUtils.writeStringToFile(colliding, "colliding");
+		
+		String name = store.write(new ByteArrayInputStream("abc".getBytes("UTF-8")), "txt");
+		
+		assertEquals(hashOfAbc + "-1.txt", name);
+		assertEquals("abc", FileUtils.readFileToString(store.getFile(name)));
+		assertEquals("colliding", FileUtils.readFileToString(colliding));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#write(InputStream, String)
+	 * @verifies close the stream
+	 */
+	@Test
+	public void write_shouldCloseTheStream() throws Exception {
+		final boolean[] closed = new boolean[1];
+		InputStream in = new ByteArrayInputStream("closed".getBytes("UTF-8")) {
+			
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+			}
+		};
+		
+		store.write(in, "txt");
+		
+		assertTrue(closed[0]);
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#openStream(File, long, long)
+	 * @verifies read only the requested range
+	 */
+	@Test
+	public void openStream_shouldReadOnlyTheRequestedRange() throws Exception {
+		File file = createFile("0123456789");
+		
+		assertEquals("345", read(ComplexObsFileStore.openStream(file, 3, 3)));
+		assertEquals("89", read(ComplexObsFileStore.openStream(file, 8, 100)));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#openStream(File, long, long)
+	 * @verifies read to the end of the file if the length is negative
+	 */
+	@Test
+	public void openStream_shouldReadToTheEndOfTheFileIfTheLengthIsNegative() throws Exception {
+		File file = createFile("0123456789");
+		
+		assertEquals("56789", read(ComplexObsFileStore.openStream(file, 5, -1)));
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#migrateFlatLayout()
+	 * @verifies move files in the flat layout to the sharded layout
+	 */
+	@Test
+	public void migrateFlatLayout_shouldMoveFilesInTheFlatLayoutToTheShardedLayout() throws Exception {
+		FileUtils.writeStringToFile(folder.newFile("one.txt"), "1");
+		FileUtils.writeStringToFile(folder.newFile("two.txt"), "2");
+		
+		assertEquals(2, store.migrateFlatLayout());
+		
+		assertFalse(new File(folder.getRoot(), "one.txt").exists());
+		assertEquals(store.getShardedFile("one.txt"), store.getFile("one.txt"));
+		assertEquals("2", FileUtils.readFileToString(store.getFile("two.txt")));
+		assertEquals(0, store.migrateFlatLayout());
+	}
+	
+	/**
+	 * @see ComplexObsFileStore#migrateFlatLayout()
+	 * @verifies not overwrite files in the sharded layout
+	 */
+	@Test
+	public void migrateFlatLayout_shouldNotOverwriteFilesInTheShardedLayout() throws Exception {
+		FileUtils.writeStringToFile(folder.newFile("one.txt"), "flat");
+		FileUtils.writeStringToFile(store.getShardedFile("one.txt"), "sharded");
+		
+		assertEquals(0, store.migrateFlatLayout());
+		
+		assertTrue(new File(folder.getRoot(), "one.txt").exists());
+		assertEquals("sharded", FileUtils.readFileToString(store.getShardedFile("one.txt")));
+	}
+	
+	private File createFile(String content) throws IOException {
+		File file = folder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+	
+	private String read(InputStream in) throws IOException {
+		try {
+			return IOUtils.toString(in, "UTF-8");
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -9,14 +9,25 @@
  */
 package org.openmrs.scheduler.timer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Calendar;
 
 import org.junit.Test;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.scheduler.SchedulerConstants;
+import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskConcurrencyPolicy;
 import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskRunStatistics;
+import org.openmrs.scheduler.tasks.AbstractTask;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
 
@@ -66,4 +77,98 @@ public class TimerSchedulerServiceImplTest extends BaseContextSensitiveTest {
 		    clientTask);
 	}
 	
+	/**
+	 * @see TimerSchedulerServiceImpl#scheduleTask(TaskDefinition)
+	 * @verifies cancel the timer if the task definition cannot be saved
+	 */
+	@Test
+	public void scheduleTask_shouldCancelTheTimerIfTheTaskDefinitionCannotBeSaved() throws Exception {
+		TimerSchedulerServiceImpl service = new TimerSchedulerServiceImpl() {
+			
+			@Override
+			public void saveTaskDefinition(TaskDefinition task) {
+				throw new APIException("saving is broken");
+			}
+		};
+		Calendar startTime = Calendar.getInstance();
+		startTime.add(Calendar.HOUR, 1);
+		
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName("TestUnsavedTask");
+		taskDefinition.setTaskClass(ShutdownRecordingTask.class.getName());
+		taskDefinition.setStartTime(startTime.getTime());
+		taskDefinition.setRepeatInterval(3600L);
+		ShutdownRecordingTask.shutdown = false;
+		
+		try {
+			service.scheduleTask(taskDefinition);
+			fail("the task definition should not have been saved");
+		}
+		catch (SchedulerException e) {
+			// expected
+		}
+		
+		assertTrue(ShutdownRecordingTask.shutdown);
+		assertFalse(taskDefinition.getStarted());
+	}
+	
+	/**
+	 * @see TimerSchedulerServiceImpl#getTaskRunStatistics(Integer)
+	 * @verifies return null for a task that is not scheduled
+	 */
+	@Test
+	public void getTaskRunStatistics_shouldReturnNullForATaskThatIsNotScheduled() throws Exception {
+		assertNull(Context.getSchedulerService().getTaskRunStatistics(Integer.MAX_VALUE));
+		assertNull(Context.getSchedulerService().getTaskRunStatistics(null));
+	}
+	
+	/**
+	 * @see TimerSchedulerServiceImpl#getTaskRunStatistics(Integer)
+	 * @verifies return statistics for a scheduled task
+	 */
+	@Test
+	public void getTaskRunStatistics_shouldReturnStatisticsForAScheduledTask() throws Exception {
+		// start in an hour so that the task does not run during the test
+		Calendar startTime = Calendar.getInstance();
+		startTime.add(Calendar.HOUR, 1);
+		
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName("TestStatisticsTask");
+		taskDefinition.setTaskClass("org.openmrs.scheduler.tasks.TestTask");
+		taskDefinition.setStartTime(startTime.getTime());
+		taskDefinition.setRepeatInterval(3600L);
+		taskDefinition.setStartOnStartup(false);
+		taskDefinition.setProperty(SchedulerConstants.TASK_CONCURRENCY_POLICY_PROPERTY, "queue");
+		
+		Context.getSchedulerService().scheduleTask(taskDefinition);
+		Context.flushSession();
+		try {
+			TaskRunStatistics statistics = Context.getSchedulerService().getTaskRunStatistics(taskDefinition.getId());
+			assertNotNull(statistics);
+			assertEquals(TaskConcurrencyPolicy.QUEUE, statistics.getConcurrencyPolicy());
+			assertEquals(0, statistics.getRunCount());
+		}
+		finally {
+			Context.getSchedulerService().shutdownTask(taskDefinition);
+		}
+		assertNull(Context.getSchedulerService().getTaskRunStatistics(taskDefinition.getId()));
+	}
+	
+	/**
+	 * Remembers that it was shut down
+	 */
+	public static class ShutdownRecordingTask extends AbstractTask {
+		
+		private static volatile boolean shutdown;
+		
+		@Override
+		public void execute() {
+		}
+		
+		@Override
+		public void shutdown() {
+			shutdown = true;
+			super.shutdown();
+		}
+	}
 }
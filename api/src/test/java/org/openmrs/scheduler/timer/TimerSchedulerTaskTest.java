@@ -0,0 +1,165 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.scheduler.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskConcurrencyPolicy;
+import org.openmrs.scheduler.TaskRunStatistics;
+
+/**
+ * Tests how {@link TimerSchedulerTask} handles runs that are due while the task is executing
+ */
+public class TimerSchedulerTaskTest {
+	
+	private ScheduledExecutorService scheduler;
+	
+	private ExecutorService executor;
+	
+	@Before
+	public void createExecutors() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		executor = Executors.newCachedThreadPool();
+	}
+	
+	@After
+	public void shutdownExecutors() {
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#trigger(long)
+	 */
+	@Test
+	public void trigger_shouldDropOverlappingRunsWhenThePolicyIsSkip() throws Exception {
+		TaskRunStatistics statistics = triggerThreeTimes(TaskConcurrencyPolicy.SKIP);
+		assertEquals(1, statistics.getRunCount());
+		assertEquals(2, statistics.getSkippedCount());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#trigger(long)
+	 */
+	@Test
+	public void trigger_shouldRunEveryOverlappingRunWhenThePolicyIsQueue() throws Exception {
+		TaskRunStatistics statistics = triggerThreeTimes(TaskConcurrencyPolicy.QUEUE);
+		assertEquals(3, statistics.getRunCount());
+		assertEquals(0, statistics.getSkippedCount());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#trigger(long)
+	 */
+	@Test
+	public void trigger_shouldRunOverlappingRunsOnceWhenThePolicyIsCoalesce() throws Exception {
+		TaskRunStatistics statistics = triggerThreeTimes(TaskConcurrencyPolicy.COALESCE);
+		assertEquals(2, statistics.getRunCount());
+		assertEquals(1, statistics.getSkippedCount());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#trigger(long)
+	 */
+	@Test
+	public void trigger_shouldRecordTheLagOfARun() throws Exception {
+		BlockingSchedulerTask task = new BlockingSchedulerTask(TaskConcurrencyPolicy.SKIP);
+		task.release.countDown();
+		task.schedule(scheduler, executor, System.currentTimeMillis() - 1000, 0);
+		
+		TaskRunStatistics statistics = waitUntilIdle(task, 1);
+		assertEquals(1, statistics.getRunCount());
+		assertTrue(statistics.getLastLag() >= 1000);
+		assertEquals(statistics.getLastLag(), statistics.getMaxLag());
+	}
+	
+	/**
+	 * @see TimerSchedulerTask#shutdown()
+	 */
+	@Test
+	public void shutdown_shouldCancelTheScheduledRuns() throws Exception {
+		BlockingSchedulerTask task = new BlockingSchedulerTask(TaskConcurrencyPolicy.QUEUE);
+		task.schedule(scheduler, executor, System.currentTimeMillis() + 60000, 1000);
+		
+		task.shutdown();
+		task.trigger(System.currentTimeMillis());
+		
+		assertNull(task.getNextExecutionTime());
+		assertEquals(0, task.runs.get());
+	}
+	
+	private TaskRunStatistics triggerThreeTimes(TaskConcurrencyPolicy policy) throws Exception {
+		BlockingSchedulerTask task = new BlockingSchedulerTask(policy);
+		task.schedule(scheduler, executor, System.currentTimeMillis() + 60000, 0);
+		
+		long now = System.currentTimeMillis();
+		task.trigger(now);
+		assertTrue(task.started.await(10, TimeUnit.SECONDS));
+		task.trigger(now);
+		task.trigger(now);
+		task.release.countDown();
+		
+		int expectedRuns = policy == TaskConcurrencyPolicy.SKIP ? 1 : policy == TaskConcurrencyPolicy.QUEUE ? 3 : 2;
+		return waitUntilIdle(task, expectedRuns);
+	}
+	
+	private TaskRunStatistics waitUntilIdle(TimerSchedulerTask task, int expectedRuns) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		TaskRunStatistics statistics = task.getStatistics();
+		while ((statistics.isExecuting() || statistics.getRunCount() < expectedRuns)
+		        && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			statistics = task.getStatistics();
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Does not execute the wrapped task, the first run blocks until it is released
+	 */
+	private static class BlockingSchedulerTask extends TimerSchedulerTask {
+		
+		private final CountDownLatch started = new CountDownLatch(1);
+		
+		private final CountDownLatch release = new CountDownLatch(1);
+		
+		private final AtomicInteger runs = new AtomicInteger();
+		
+		public BlockingSchedulerTask(TaskConcurrencyPolicy policy) {
+			super(mock(Task.class), policy);
+		}
+		
+		@Override
+		public void run() {
+			runs.incrementAndGet();
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
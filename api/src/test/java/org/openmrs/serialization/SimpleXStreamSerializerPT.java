@@ -0,0 +1,98 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.serialization;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.Program;
+import org.openmrs.ProgramWorkflow;
+import org.openmrs.ProgramWorkflowState;
+import org.openmrs.api.db.SerializedObject;
+import org.openmrs.api.db.hibernate.SerializedObjectSnapshotCache;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Performance tests for serializing with a shared {@link SimpleXStreamSerializer} and for reading
+ * copies of deserialized objects from a {@link SerializedObjectSnapshotCache}.
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+public class SimpleXStreamSerializerPT {
+	
+	private static final int ITERATIONS = 200;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private static SimpleXStreamSerializer serializer;
+	
+	private static Program program;
+	
+	private static SerializedObject serializedObject;
+	
+	private static SerializedObjectSnapshotCache cache;
+	
+	@BeforeClass
+	public static void createProgram() throws Exception {
+		serializer = new SimpleXStreamSerializer();
+		
+		program = new Program();
+		program.setName("Large program");
+		program.setDescription("A program with many workflows and states");
+		for (int i = 0; i < 20; i++) {
+			ProgramWorkflow workflow = new ProgramWorkflow();
+			workflow.setDescription("workflow " + i);
+			for (int j = 0; j < 20; j++) {
+				ProgramWorkflowState state = new ProgramWorkflowState();
+				state.setInitial(j == 0);
+				state.setTerminal(j == 19);
+				workflow.addState(state);
+			}
+			program.addWorkflow(workflow);
+		}
+		
+		serializedObject = new SerializedObject();
+		serializedObject.setUuid(program.getUuid());
+		serializedObject.setSubtype(Program.class.getName());
+		serializedObject.setSerializationClass(SimpleXStreamSerializer.class);
+		serializedObject.setDateChanged(new Date());
+		serializedObject.setSerializedData(serializer.serialize(program));
+		
+		cache = new SerializedObjectSnapshotCache(10);
+		cache.put(serializedObject, program);
+	}
+	
+	@Test
+	public void shouldSerialize() throws Exception {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Assert.assertNotNull(serializer.serialize(program));
+		}
+	}
+	
+	@Test
+	public void shouldDeserialize() throws Exception {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Assert.assertNotNull(serializer.deserialize(serializedObject.getSerializedData(), Program.class));
+		}
+	}
+	
+	@Test
+	public void shouldCopyFromSnapshot() throws Exception {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Assert.assertNotNull(cache.get(serializedObject));
+		}
+	}
+}
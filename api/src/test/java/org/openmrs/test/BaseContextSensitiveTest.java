@@ -76,9 +76,15 @@ import org.openmrs.ConceptName;
 import org.openmrs.Drug;
 import org.openmrs.User;
 import org.openmrs.annotation.OpenmrsProfileExcludeFilter;
+import org.openmrs.api.context.AuthenticatedPrincipal;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
 import org.openmrs.api.context.ContextMockHelper;
+import org.openmrs.api.db.hibernate.ConceptMappingCache;
+import org.openmrs.api.db.hibernate.ConceptSearchCache;
+import org.openmrs.api.db.hibernate.CredentialVerificationCache;
+import org.openmrs.api.db.hibernate.FormStructureCache;
+import org.openmrs.api.db.hibernate.LoginThrottle;
 import org.openmrs.module.ModuleConstants;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
@@ -773,6 +779,11 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		//Do the actual update/insert:
 		//insert new rows, update existing rows, and leave others alone
 		DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
+		ConceptMappingCache.clear();
+		FormStructureCache.clear();
+		LoginThrottle.clear();
+		CredentialVerificationCache.clear();
+		AuthenticatedPrincipal.rolesChanged();
 	}
 	
 	private IDatabaseConnection setupDatabaseConnection(Connection connection) throws DatabaseUnitException {
@@ -831,6 +842,12 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		SessionFactory sf = (SessionFactory) applicationContext.getBean("sessionFactory");
 		sf.getCache().evictCollectionRegions();
 		sf.getCache().evictEntityRegions();
+		ConceptMappingCache.clear();
+		FormStructureCache.clear();
+		LoginThrottle.clear();
+		CredentialVerificationCache.clear();
+		ConceptSearchCache.clear();
+		AuthenticatedPrincipal.rolesChanged();
 	}
 	
 	/**
@@ -0,0 +1,109 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+/**
+ * Tests the {@link ChangeLogFingerprints}
+ */
+public class ChangeLogFingerprintsTest extends BaseContextSensitiveTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File changeLog;
+	
+	@Before
+	public void createChangeLog() throws Exception {
+		// makes liquibase create the liquibasechangelog table if it doesn't exist yet
+		DatabaseUpdater.isLocked();
+		
+		changeLog = folder.newFile("liquibase.xml");
+		FileUtils.writeStringToFile(changeLog, "<databaseChangeLog/>", "UTF-8");
+	}
+	
+	@After
+	public void clearFingerprints() {
+		ChangeLogFingerprints.clear();
+	}
+	
+	/**
+	 * @see ChangeLogFingerprints#isUpToDate(String, ClassLoader)
+	 * @verifies return true for a recorded changelog
+	 */
+	@Test
+	public void isUpToDate_shouldReturnTrueForARecordedChangelog() throws Exception {
+		Assert.assertFalse(ChangeLogFingerprints.isUpToDate(changeLog.getAbsolutePath(), null));
+		
+		ChangeLogFingerprints.recordUpToDate(changeLog.getAbsolutePath(), null);
+		
+		Assert.assertTrue(ChangeLogFingerprints.isUpToDate(changeLog.getAbsolutePath(), null));
+	}
+	
+	/**
+	 * @see ChangeLogFingerprints#isUpToDate(String, ClassLoader)
+	 * @verifies return false after the changelog changed
+	 */
+	@Test
+	public void isUpToDate_shouldReturnFalseAfterTheChangelogChanged() throws Exception {
+		ChangeLogFingerprints.recordUpToDate(changeLog.getAbsolutePath(), null);
+		
+		FileUtils.writeStringToFile(changeLog, "<databaseChangeLog><changeSet/></databaseChangeLog>", "UTF-8");
+		
+		Assert.assertFalse(ChangeLogFingerprints.isUpToDate(changeLog.getAbsolutePath(), null));
+	}
+	
+	/**
+	 * @see ChangeLogFingerprints#isUpToDate(String, ClassLoader)
+	 * @verifies return false for a changelog with changesets that run always
+	 */
+	@Test
+	public void isUpToDate_shouldReturnFalseForAChangelogWithChangesetsThatRunAlways() throws Exception {
+		FileUtils.writeStringToFile(changeLog,
+		    "<databaseChangeLog><changeSet id=\"1\" author=\"test\" runAlways=\"true\"/></databaseChangeLog>", "UTF-8");
+		
+		ChangeLogFingerprints.recordUpToDate(changeLog.getAbsolutePath(), null);
+		
+		Assert.assertFalse(ChangeLogFingerprints.isUpToDate(changeLog.getAbsolutePath(), null));
+	}
+	
+	/**
+	 * @see ChangeLogFingerprints#isUpToDate(String, ClassLoader)
+	 * @verifies keep the changelogs of different class loaders apart
+	 */
+	@Test
+	public void isUpToDate_shouldKeepTheChangelogsOfDifferentClassLoadersApart() throws Exception {
+		File first = folder.newFolder("first");
+		File second = folder.newFolder("second");
+		FileUtils.writeStringToFile(new File(first, "module.xml"), "<databaseChangeLog/>", "UTF-8");
+		FileUtils.writeStringToFile(new File(second, "module.xml"), "<databaseChangeLog><changeSet/></databaseChangeLog>",
+		    "UTF-8");
+		ClassLoader firstClassLoader = new URLClassLoader(new URL[] { first.toURI().toURL() }, null);
+		ClassLoader secondClassLoader = new URLClassLoader(new URL[] { second.toURI().toURL() }, null);
+		
+		ChangeLogFingerprints.recordUpToDate("module.xml", firstClassLoader);
+		ChangeLogFingerprints.recordUpToDate("module.xml", secondClassLoader);
+		
+		Assert.assertTrue(ChangeLogFingerprints.isUpToDate("module.xml", firstClassLoader));
+		Assert.assertTrue(ChangeLogFingerprints.isUpToDate("module.xml", secondClassLoader));
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the startup check for database updates with liquibase parsing the core changelog and
+ * with the {@link ChangeLogFingerprints} fast path.
+ */
+@BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 1)
+public class DatabaseUpdaterPT extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(DatabaseUpdaterPT.class);
+	
+	private static final String CHANGE_LOG_FILE = "liquibase-update-to-latest.xml";
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	@After
+	public void clearFingerprints() {
+		ChangeLogFingerprints.clear();
+	}
+	
+	@Test
+	public void shouldCheckTheChangelogWithLiquibase() throws Exception {
+		long start = System.currentTimeMillis();
+		DatabaseUpdater.getUnrunDatabaseChanges(CHANGE_LOG_FILE);
+		log.info("Full liquibase check took " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	@Test
+	public void shouldCheckTheChangelogFingerprint() throws Exception {
+		DatabaseUpdater.isLocked();
+		ChangeLogFingerprints.recordUpToDate(CHANGE_LOG_FILE, null);
+		
+		long start = System.currentTimeMillis();
+		Assert.assertTrue(ChangeLogFingerprints.isUpToDate(CHANGE_LOG_FILE, null));
+		log.info("Fingerprint check took " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -9,9 +9,19 @@
  */
 package org.openmrs.util;
 
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
 
@@ -23,6 +33,16 @@ public class DatabaseUpdaterTest extends BaseContextSensitiveTest {
 	
 	private static Log log = LogFactory.getLog(DatabaseUpdaterTest.class);
 	
+	private static final String MODULE_CHANGELOG = "fingerprinted-liquibase.xml";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@After
+	public void clearFingerprints() {
+		ChangeLogFingerprints.clear();
+	}
+	
 	/**
 	 * @see DatabaseUpdater#updatesRequired()
 	 */
@@ -39,4 +59,35 @@ public class DatabaseUpdaterTest extends BaseContextSensitiveTest {
 		}
 		// does not run DatabaseUpdater.update() because hsqldb doesn't like single quotes in strings
 	}
+	
+	/**
+	 * @see DatabaseUpdater#executeChangelog(String,String,java.util.Map,ChangeSetExecutorCallback,ClassLoader)
+	 * @verifies skip a module changelog that is already applied
+	 */
+	@Test
+	public void executeChangelog_shouldSkipAModuleChangelogThatIsAlreadyApplied() throws Exception {
+		FileUtils.writeStringToFile(new File(folder.getRoot(), MODULE_CHANGELOG),
+		    "<databaseChangeLog xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\">"
+		            + "<changeSet id=\"" + System.currentTimeMillis() + "\" author=\"DatabaseUpdaterTest\">"
+		            + "<comment>does nothing</comment></changeSet></databaseChangeLog>", "UTF-8");
+		final int[] reads = new int[1];
+		ClassLoader moduleClassLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() }) {
+			
+			@Override
+			public InputStream getResourceAsStream(String name) {
+				if (MODULE_CHANGELOG.equals(name)) {
+					reads[0]++;
+				}
+				return super.getResourceAsStream(name);
+			}
+		};
+		
+		DatabaseUpdater.executeChangelog(MODULE_CHANGELOG, null, null, null, moduleClassLoader);
+		Assert.assertTrue(ChangeLogFingerprints.isUpToDate(MODULE_CHANGELOG, moduleClassLoader));
+		
+		reads[0] = 0;
+		Assert.assertNull(DatabaseUpdater.executeChangelog(MODULE_CHANGELOG, null, null, null, moduleClassLoader));
+		// only the fingerprint was taken, liquibase did not parse the changelog again
+		Assert.assertEquals(1, reads[0]);
+	}
 }
@@ -0,0 +1,44 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Form;
+import org.openmrs.FormField;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+/**
+ * Tests {@link FormUtil}
+ */
+public class FormUtilTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see FormUtil#getFormStructure(Form)
+	 * @verifies order form fields by their unsaved positions
+	 */
+	@Test
+	public void getFormStructure_shouldOrderFormFieldsByTheirUnsavedPositions() throws Exception {
+		Form form = Context.getFormService().getForm(1);
+		// caches the structure of the saved form
+		TreeSet<FormField> topLevel = FormUtil.getFormStructure(form).get(0);
+		Assert.assertTrue(topLevel.size() > 1);
+		FormField moved = topLevel.first();
+		
+		moved.setSortWeight(1000f);
+		Map<Integer, TreeSet<FormField>> structure = FormUtil.getFormStructure(form);
+		
+		Assert.assertEquals(moved, structure.get(0).last());
+	}
+}
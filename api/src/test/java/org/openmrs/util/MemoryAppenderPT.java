@@ -0,0 +1,61 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Measures the overhead of the {@link MemoryAppender} when several threads log at a high rate
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5, concurrency = 4)
+public class MemoryAppenderPT {
+	
+	private static final Log log = LogFactory.getLog(MemoryAppenderPT.class);
+	
+	private static final int EVENT_COUNT = 100000;
+	
+	private static MemoryAppender appender;
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	@BeforeClass
+	public static void createAppender() {
+		appender = new MemoryAppender();
+		appender.setLayout(new PatternLayout("%p - %C{1}.%M(%L) |%d{ISO8601}| %m%n"));
+		appender.activateOptions();
+	}
+	
+	@Test
+	public void shouldAppendEvents() throws Exception {
+		Logger logger = Logger.getLogger(MemoryAppenderPT.class);
+		long start = System.nanoTime();
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.DEBUG, "event " + i, null));
+		}
+		double seconds = (System.nanoTime() - start) / 1000000000d;
+		log.info("Appended " + EVENT_COUNT + " events: " + Math.round(EVENT_COUNT / seconds) + " events per second");
+		
+		Assert.assertEquals(appender.getBufferSize(), appender.getLogLines().size());
+	}
+}
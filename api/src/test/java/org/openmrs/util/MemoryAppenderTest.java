@@ -0,0 +1,97 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link MemoryAppender} ring buffer
+ */
+public class MemoryAppenderTest {
+	
+	private MemoryAppender appender;
+	
+	@Before
+	public void createAppender() {
+		appender = new MemoryAppender();
+		appender.setLayout(new PatternLayout("%m"));
+		appender.setBufferSize(3);
+		appender.activateOptions();
+	}
+	
+	/**
+	 * @see MemoryAppender#append(LoggingEvent)
+	 */
+	@Test
+	@Verifies(value = "should drop the oldest lines when the buffer is full", method = "append(LoggingEvent)")
+	public void append_shouldDropTheOldestLinesWhenTheBufferIsFull() throws Exception {
+		log("1", "2", "3", "4");
+		
+		Assert.assertEquals(Arrays.asList("2", "3", "4"), appender.getLogLines());
+	}
+	
+	/**
+	 * @see MemoryAppender#append(LoggingEvent)
+	 */
+	@Test
+	@Verifies(value = "should cut lines to the maximum line length", method = "append(LoggingEvent)")
+	public void append_shouldCutLinesToTheMaximumLineLength() throws Exception {
+		appender.setMaxLineLength(4);
+		log("123456");
+		
+		Assert.assertEquals(Arrays.asList("1234"), appender.getLogLines());
+	}
+	
+	/**
+	 * @see MemoryAppender#setLayout(org.apache.log4j.Layout)
+	 */
+	@Test
+	@Verifies(value = "should format lines with the current layout", method = "setLayout(Layout)")
+	public void setLayout_shouldFormatLinesWithTheCurrentLayout() throws Exception {
+		log("1");
+		appender.setLayout(new PatternLayout("[%m]"));
+		log("2");
+		
+		Assert.assertEquals(Arrays.asList("1", "[2]"), appender.getLogLines());
+	}
+	
+	/**
+	 * @see MemoryAppender#getLogLines(long)
+	 */
+	@Test
+	@Verifies(value = "should return the lines logged after the cursor", method = "getLogLines(long)")
+	public void getLogLines_shouldReturnTheLinesLoggedAfterTheCursor() throws Exception {
+		log("1", "2");
+		MemoryAppender.LogLines first = appender.getLogLines(0);
+		Assert.assertEquals(Arrays.asList("1", "2"), first.getLines());
+		
+		log("3");
+		MemoryAppender.LogLines second = appender.getLogLines(first.getCursor());
+		Assert.assertEquals(Arrays.asList("3"), second.getLines());
+		Assert.assertEquals(0, appender.getLogLines(second.getCursor()).getLines().size());
+		Assert.assertEquals(Arrays.asList("2", "3"), appender.getLogLines(appender.getCursor() - 2).getLines());
+	}
+	
+	private void log(String... messages) {
+		Logger logger = Logger.getLogger(MemoryAppenderTest.class);
+		for (String message : messages) {
+			appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, null));
+		}
+	}
+}
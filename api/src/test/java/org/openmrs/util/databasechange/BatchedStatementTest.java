@@ -0,0 +1,84 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util.databasechange;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests {@link BatchedStatement}
+ */
+public class BatchedStatementTest {
+	
+	private Connection connection;
+	
+	@Before
+	public void createTable() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:batched_statement_test");
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute("create table batched (id int primary key, val varchar(50))");
+			statement.execute("insert into batched (id) select x from system_range(1, 10)");
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	@After
+	public void closeConnection() throws Exception {
+		connection.close();
+	}
+	
+	/**
+	 * @see BatchedStatement#add()
+	 */
+	@Test
+	@Verifies(value = "should send the batch once it is full", method = "add()")
+	public void add_shouldSendTheBatchOnceItIsFull() throws Exception {
+		BatchedStatement batch = new BatchedStatement(connection.prepareStatement("update batched set val = ? where id = ?"), 3);
+		for (int id = 1; id <= 4; id++) {
+			batch.getStatement().setString(1, "batched");
+			batch.getStatement().setInt(2, id);
+			batch.add();
+		}
+		Assert.assertEquals(3, batch.getUpdateCount());
+		Assert.assertEquals(1, batch.flush());
+		Assert.assertEquals(4, batch.getUpdateCount());
+		batch.close();
+	}
+	
+	/**
+	 * @see BatchedStatement#flush()
+	 */
+	@Test(expected = SQLException.class)
+	@Verifies(value = "should fail if a row did not change the expected number of rows", method = "flush()")
+	public void flush_shouldFailIfARowDidNotChangeTheExpectedNumberOfRows() throws Exception {
+		BatchedStatement batch = new BatchedStatement(connection.prepareStatement("update batched set val = ? where id = ?"), 10);
+		batch.setExpectedUpdateCount(1);
+		try {
+			batch.getStatement().setString(1, "batched");
+			batch.getStatement().setInt(2, 11);
+			batch.add();
+			batch.flush();
+		}
+		finally {
+			batch.close();
+		}
+	}
+}
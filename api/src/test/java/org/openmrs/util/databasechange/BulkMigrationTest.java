@@ -0,0 +1,247 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.util.databasechange;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests {@link BulkMigration} against a database of its own, because migrations commit
+ */
+public class BulkMigrationTest {
+	
+	private static final String URL = "jdbc:h2:mem:bulk_migration_test";
+	
+	private static final int ROWS = 2500;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Connection connection;
+	
+	private File checkpointsFile;
+	
+	@Before
+	public void createTable() throws Exception {
+		connection = DriverManager.getConnection(URL);
+		checkpointsFile = new File(folder.getRoot(), BulkMigration.CHECKPOINTS_FILE);
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute("create table migrated (id int primary key, val varchar(50))");
+			// every tenth row is migrated already
+			statement.execute("insert into migrated (id, val) select x, case when mod(x, 10) = 0 then 'before' end"
+			        + " from system_range(1, " + ROWS + ")");
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	@After
+	public void dropTable() throws Exception {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute("drop table migrated");
+		}
+		finally {
+			statement.close();
+			connection.close();
+		}
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should migrate the rows that match the condition", method = "execute(Connection)")
+	public void execute_shouldMigrateTheRowsThatMatchTheCondition() throws Exception {
+		BulkMigration migration = newRowMigration();
+		migration.setBatchSize(100);
+		
+		Assert.assertEquals(ROWS - ROWS / 10, migration.execute(connection));
+		Assert.assertEquals(ROWS - ROWS / 10, count("val = 'row ' || id"));
+		Assert.assertEquals(ROWS / 10, count("val = 'before'"));
+		Assert.assertFalse(checkpointsFile.exists());
+		Assert.assertTrue(connection.getAutoCommit());
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should resume after the checkpoints of an interrupted run", method = "execute(Connection)")
+	public void execute_shouldResumeAfterTheCheckpointsOfAnInterruptedRun() throws Exception {
+		writeCheckpoints("1-" + ROWS, "1000");
+		
+		BulkMigration migration = newRowMigration();
+		migration.execute(connection);
+		
+		Assert.assertEquals(900, count("id <= 1000 and val is null"));
+		Assert.assertEquals(0, count("id > 1000 and val is null"));
+		Assert.assertFalse(checkpointsFile.exists());
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should start over if the bounds of the keys changed since the interrupted run", method = "execute(Connection)")
+	public void execute_shouldStartOverIfTheBoundsOfTheKeysChangedSinceTheInterruptedRun() throws Exception {
+		// the checkpoint was taken before the last 500 rows were added
+		writeCheckpoints("1-" + (ROWS - 500), "1000");
+		
+		BulkMigration migration = newRowMigration();
+		
+		Assert.assertEquals(ROWS - ROWS / 10, migration.execute(connection));
+		Assert.assertEquals(0, count("val is null"));
+		Assert.assertFalse(checkpointsFile.exists());
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should migrate partitions in parallel", method = "execute(Connection)")
+	public void execute_shouldMigratePartitionsInParallel() throws Exception {
+		BulkMigration migration = newRowMigration();
+		migration.setBatchSize(100);
+		migration.setPartitions(4);
+		migration.setConnectionFactory(new BulkMigration.ConnectionFactory() {
+			
+			@Override
+			public Connection getConnection() throws Exception {
+				return DriverManager.getConnection(URL);
+			}
+		});
+		
+		Assert.assertEquals(ROWS - ROWS / 10, migration.execute(connection));
+		Assert.assertEquals(0, count("val is null"));
+		Assert.assertEquals(ROWS - ROWS / 10, count("val = 'row ' || id"));
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should run the write statement for ranges of keys without a row migrator", method = "execute(Connection)")
+	public void execute_shouldRunTheWriteStatementForRangesOfKeysWithoutARowMigrator() throws Exception {
+		BulkMigration migration = new BulkMigration("test", "migrated", "id");
+		migration.setCheckpointsFile(checkpointsFile);
+		migration.setBatchSize(300);
+		migration.setWriteSql("update migrated set val = 'range' where id >= ? and id <= ? and val is null");
+		
+		Assert.assertEquals(ROWS - ROWS / 10, migration.execute(connection));
+		Assert.assertEquals(ROWS - ROWS / 10, count("val = 'range'"));
+		Assert.assertEquals(ROWS / 10, count("val = 'before'"));
+	}
+	
+	/**
+	 * @see BulkMigration#execute(Connection)
+	 */
+	@Test
+	@Verifies(value = "should store the checkpoints committed before a failure", method = "execute(Connection)")
+	public void execute_shouldStoreTheCheckpointsCommittedBeforeAFailure() throws Exception {
+		BulkMigration migration = newRowMigration();
+		migration.setBatchSize(100);
+		migration.setRowMigrator(new BulkMigration.RowMigrator() {
+			
+			@Override
+			public boolean migrate(ResultSet row, PreparedStatement write) throws SQLException {
+				if (row.getInt(1) == 1500) {
+					throw new SQLException("failed");
+				}
+				write.setString(1, "row " + row.getInt(1));
+				write.setInt(2, row.getInt(1));
+				return true;
+			}
+		});
+		
+		try {
+			migration.execute(connection);
+			Assert.fail("the migration should have failed");
+		}
+		catch (SQLException e) {
+			Assert.assertEquals("failed", e.getMessage());
+		}
+		
+		Properties checkpoints = new Properties();
+		FileInputStream in = new FileInputStream(checkpointsFile);
+		try {
+			checkpoints.load(in);
+		}
+		finally {
+			in.close();
+		}
+		int checkpoint = Integer.parseInt(checkpoints.getProperty("test.0"));
+		Assert.assertTrue(checkpoint > 1000 && checkpoint < 1500);
+		Assert.assertEquals(0, count("id <= " + checkpoint + " and val is null"));
+	}
+	
+	private BulkMigration newRowMigration() {
+		BulkMigration migration = new BulkMigration("test", "migrated", "id");
+		migration.setCheckpointsFile(checkpointsFile);
+		migration.setCondition("val is null");
+		migration.setWriteSql("update migrated set val = ? where id = ?");
+		migration.setRowMigrator(new BulkMigration.RowMigrator() {
+			
+			@Override
+			public boolean migrate(ResultSet row, PreparedStatement write) throws SQLException {
+				write.setString(1, "row " + row.getInt(1));
+				write.setInt(2, row.getInt(1));
+				return true;
+			}
+		});
+		return migration;
+	}
+	
+	private void writeCheckpoints(String bounds, String checkpoint) throws Exception {
+		Properties checkpoints = new Properties();
+		checkpoints.setProperty("connection.url", connection.getMetaData().getURL());
+		checkpoints.setProperty("test.partitions", "1");
+		checkpoints.setProperty("test.bounds", bounds);
+		checkpoints.setProperty("test.0", checkpoint);
+		OutputStream out = new FileOutputStream(checkpointsFile);
+		try {
+			checkpoints.store(out, null);
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	private int count(String condition) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet results = statement.executeQuery("select count(*) from migrated where " + condition);
+			results.next();
+			return results.getInt(1);
+		}
+		finally {
+			statement.close();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.openmrs.util.OpenmrsUtil;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Keeps the content of recently served small module resource files in memory for
+ * {@link ModuleResourcesServlet}, up to {@link #MAX_CACHE_SIZE} bytes in total. The least recently
+ * served files are dropped first, and a cached file is only used while its size and modification
+ * time on disk are unchanged, so edits to the resources of modules in development mode show up
+ * right away.
+ *
+ * @since 2.1.0
+ */
+public class ModuleResourceCache {
+	
+	/**
+	 * Files bigger than this are streamed from disk on every request
+	 */
+	public static final long MAX_CACHED_FILE_SIZE = 256 * 1024;
+	
+	/**
+	 * The total number of bytes of file content to keep
+	 */
+	public static final long MAX_CACHE_SIZE = 16 * 1024 * 1024;
+	
+	private static final Map<String, ModuleResource> resources = new LinkedHashMap<String, ModuleResource>(16, 0.75f,
+	        true);
+	
+	private static long cachedBytes = 0;
+	
+	private ModuleResourceCache() {
+	}
+	
+	/**
+	 * Gets the current version of the given file, reading small files into memory
+	 *
+	 * @param file an existing file
+	 * @return the resource, which has no content if the file is too big to be cached
+	 * @throws IOException if the file cannot be read
+	 * @should return the cached resource while the file is unchanged
+	 * @should read the file again after it changed
+	 * @should not keep the content of big files
+	 */
+	public static ModuleResource getResource(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		long length = file.length();
+		long lastModified = file.lastModified();
+		
+		ModuleResource resource;
+		synchronized (resources) {
+			resource = resources.get(key);
+		}
+		if (resource != null && resource.getLength() == length && resource.getLastModified() == lastModified) {
+			return resource;
+		}
+		
+		if (length > MAX_CACHED_FILE_SIZE) {
+			// identify big files by their size and modification time rather than hashing their content
+			return new ModuleResource(file, length, lastModified, "\"" + Long.toHexString(length) + "-"
+			        + Long.toHexString(lastModified) + "\"", null);
+		}
+		
+		byte[] content = read(file);
+		resource = new ModuleResource(file, content.length, lastModified, "\"" + DigestUtils.md5DigestAsHex(content)
+		        + "\"", content);
+		synchronized (resources) {
+			ModuleResource previous = resources.put(key, resource);
+			if (previous != null) {
+				cachedBytes -= previous.getLength();
+			}
+			cachedBytes += resource.getLength();
+			for (Iterator<ModuleResource> i = resources.values().iterator(); cachedBytes > MAX_CACHE_SIZE
+			        && i.hasNext();) {
+				cachedBytes -= i.next().getLength();
+				i.remove();
+			}
+		}
+		return resource;
+	}
+	
+	/**
+	 * Drops all cached files, e.g. after modules were stopped
+	 */
+	public static void clear() {
+		synchronized (resources) {
+			resources.clear();
+			cachedBytes = 0;
+		}
+	}
+	
+	private static byte[] read(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return IOUtils.toByteArray(in);
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+		}
+	}
+	
+	/**
+	 * A version of a module resource file along with its validators
+	 */
+	public static class ModuleResource {
+		
+		private final File file;
+		
+		private final long length;
+		
+		private final long lastModified;
+		
+		private final String etag;
+		
+		private final byte[] content;
+		
+		public ModuleResource(File file, long length, long lastModified, String etag, byte[] content) {
+			this.file = file;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.etag = etag;
+			this.content = content;
+		}
+		
+		public File getFile() {
+			return file;
+		}
+		
+		public long getLength() {
+			return length;
+		}
+		
+		public long getLastModified() {
+			return lastModified;
+		}
+		
+		/**
+		 * @return the strong entity tag of the file, including the quotes
+		 */
+		public String getEtag() {
+			return etag;
+		}
+		
+		/**
+		 * @return the content of the file or null if it is not kept in memory, callers must not
+		 *         modify it
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openmrs.module.Module;
+import org.openmrs.module.ModuleFactory;
+import org.openmrs.module.ModuleUtil;
+
+/**
+ * An immutable index of the started modules by id that {@link ModuleResourcesServlet} resolves
+ * request paths with, so that serving a resource doesn't go through the started modules of the
+ * {@link ModuleFactory}, which are not safe to read while modules are starting or stopping. The index
+ * is dropped by {@link WebModuleUtil} whenever a module starts or stops and rebuilt by the next
+ * lookup.
+ *
+ * @since 2.1.0
+ */
+public class ModuleResourceIndex {
+	
+	private static volatile Map<String, Module> modulesById;
+	
+	private ModuleResourceIndex() {
+	}
+	
+	/**
+	 * Finds the module that serves the given resource path like
+	 * {@link ModuleUtil#getModuleForPath(String)} does
+	 *
+	 * @param path the path of the resource, e.g. "/ui/springmvc/css/ui.css"
+	 * @return the started module with the longest id that the path starts with or null if there is
+	 *         none
+	 */
+	public static Module getModuleForPath(String path) {
+		int ind = path.lastIndexOf('/');
+		if (ind <= 0) {
+			return null;
+		}
+		Map<String, Module> index = modulesById;
+		if (index == null) {
+			index = refresh();
+		}
+		
+		String moduleId = (path.startsWith("/") ? path.substring(1, ind) : path.substring(0, ind)).replace('/', '.');
+		while (true) {
+			Module module = index.get(moduleId);
+			if (module != null) {
+				return module;
+			}
+			ind = moduleId.lastIndexOf('.');
+			if (ind < 0) {
+				break;
+			}
+			moduleId = moduleId.substring(0, ind);
+		}
+		
+		// the module may have been started without going through WebModuleUtil
+		Module module = ModuleUtil.getModuleForPath(path);
+		if (module != null) {
+			refresh();
+		}
+		return module;
+	}
+	
+	/**
+	 * Rebuilds the index from the currently started modules
+	 *
+	 * @return the new index
+	 */
+	public static synchronized Map<String, Module> refresh() {
+		Map<String, Module> index = new HashMap<String, Module>();
+		for (Module module : ModuleFactory.getStartedModules()) {
+			index.put(module.getModuleId(), module);
+		}
+		modulesById = Collections.unmodifiableMap(index);
+		return modulesById;
+	}
+	
+	/**
+	 * Drops the index, the next lookup rebuilds it
+	 */
+	public static void clear() {
+		modulesById = null;
+	}
+}
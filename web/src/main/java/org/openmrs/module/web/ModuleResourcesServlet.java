@@ -12,8 +12,13 @@ package org.openmrs.module.web;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -22,7 +27,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleUtil;
+import org.openmrs.module.web.ModuleResourceCache.ModuleResource;
 import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.web.WebUtil;
+import org.openmrs.web.filter.GZIPResponseWrapper;
 
 public class ModuleResourcesServlet extends HttpServlet {
 	
@@ -30,6 +38,9 @@ public class ModuleResourcesServlet extends HttpServlet {
 	
 	private static final long serialVersionUID = 1239820102030344L;
 	
+	// the request attribute that the file resolved for getLastModified is kept in for doGet
+	private static final String FILE_ATTRIBUTE = ModuleResourcesServlet.class.getName() + ".file";
+	
 	private Log log = LogFactory.getLog(this.getClass());
 	
 	/**
@@ -59,17 +70,45 @@ public class ModuleResourcesServlet extends HttpServlet {
 			return;
 		}
 		
-		response.setDateHeader("Last-Modified", f.lastModified());
-		response.setContentLength(Long.valueOf(f.length()).intValue());
+		ModuleResource resource = ModuleResourceCache.getResource(f);
+		response.setHeader("ETag", resource.getEtag());
+		response.setDateHeader("Last-Modified", resource.getLastModified());
+		// a response gzipped by the GZIPFilter doesn't have the byte positions of the file
+		boolean compressed = isCompressed(response);
+		response.setHeader("Accept-Ranges", compressed ? "none" : "bytes");
+		// the urls of module resources are not versioned, so clients have to revalidate them to see a
+		// new version of the module, which the validators above turn into a 304 when nothing changed
+		response.setHeader("Cache-Control", "no-cache");
+		
+		if (WebUtil.matchesEntityTag(request.getHeader("If-None-Match"), resource.getEtag())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
 		String mimeType = getServletContext().getMimeType(f.getName());
 		response.setContentType(mimeType);
 		
-		FileInputStream is = new FileInputStream(f);
-		try {
-			OpenmrsUtil.copyFile(is, response.getOutputStream());
+		long length = resource.getLength();
+		long start = 0;
+		long end = length - 1;
+		long[] range = compressed ? null : getRange(request, resource);
+		if (range != null) {
+			if (range.length == 0) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			start = range[0];
+			end = range[1];
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
 		}
-		finally {
-			OpenmrsUtil.closeStream(is);
+		response.setContentLength((int) (end - start + 1));
+		
+		if (resource.getContent() != null) {
+			response.getOutputStream().write(resource.getContent(), (int) start, (int) (end - start + 1));
+		} else {
+			transfer(f, start, end - start + 1, response);
 		}
 	}
 	
@@ -81,9 +120,15 @@ public class ModuleResourcesServlet extends HttpServlet {
 	 */
 	protected File getFile(HttpServletRequest request) {
 		
+		// getLastModified and doGet both need the file of the same request
+		File resolved = (File) request.getAttribute(FILE_ATTRIBUTE);
+		if (resolved != null) {
+			return resolved;
+		}
+		
 		String path = request.getPathInfo();
 		
-		Module module = ModuleUtil.getModuleForPath(path);
+		Module module = ModuleResourceIndex.getModuleForPath(path);
 		if (module == null) {
 			log.warn("No module handles the path: " + path);
 			return null;
@@ -102,12 +147,122 @@ public class ModuleResourcesServlet extends HttpServlet {
 		realPath = realPath.replace("/", File.separator);
 		
 		File f = new File(realPath);
-		if (!f.exists()) {
+		if (!f.isFile()) {
 			log.warn("No file with path '" + realPath + "' exists for module '" + module.getModuleId() + "'");
 			return null;
 		}
 		
+		request.setAttribute(FILE_ATTRIBUTE, f);
 		return f;
 	}
 	
+	/**
+	 * Gets the single byte range that the request asks for. Multiple ranges and ranges of an
+	 * outdated version of the resource are answered with the whole resource.
+	 *
+	 * @param request the current request
+	 * @param resource the requested resource
+	 * @return the first and last byte of the range, an empty array if the range can't be satisfied
+	 *         or null to send the whole resource
+	 * @should return the requested range
+	 * @should return the suffix of the resource for a suffix range
+	 * @should return an empty array for a range beyond the end of the resource
+	 * @should return null if the if range header does not match
+	 */
+	static long[] getRange(HttpServletRequest request, ModuleResource resource) {
+		String header = request.getHeader("Range");
+		if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange != null && !ifRange.equals(resource.getEtag())) {
+			try {
+				if (request.getDateHeader("If-Range") / 1000 != resource.getLastModified() / 1000) {
+					return null;
+				}
+			}
+			catch (IllegalArgumentException e) {
+				// an entity tag of another version
+				return null;
+			}
+		}
+		
+		long length = resource.getLength();
+		String spec = header.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			long start;
+			long end;
+			if (dash == 0) {
+				long suffixLength = Long.parseLong(spec.substring(1).trim());
+				if (suffixLength <= 0) {
+					return new long[0];
+				}
+				start = Math.max(0, length - suffixLength);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash).trim());
+				String last = spec.substring(dash + 1).trim();
+				end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+				if (end < start) {
+					return start >= length ? new long[0] : null;
+				}
+			}
+			if (start >= length) {
+				return new long[0];
+			}
+			return new long[] { start, end };
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks whether the given response is wrapped by the GZIPFilter, which compresses the body
+	 * and ignores its content length
+	 *
+	 * @param response the current response
+	 * @return true if the body of the response is gzipped
+	 * @should return true for a response wrapped for gzip
+	 * @should return false for a response that is not wrapped for gzip
+	 */
+	static boolean isCompressed(ServletResponse response) {
+		while (response instanceof ServletResponseWrapper) {
+			if (response instanceof GZIPResponseWrapper) {
+				return true;
+			}
+			response = ((ServletResponseWrapper) response).getResponse();
+		}
+		return false;
+	}
+	
+	/**
+	 * Sends a part of a file that is too big to be cached, letting the file channel move the bytes
+	 */
+	private static void transfer(File file, long start, long count, HttpServletResponse response) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long transferred = channel.transferTo(position, remaining, out);
+				if (transferred <= 0) {
+					// the file was truncated while sending it
+					break;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+		}
+		finally {
+			OpenmrsUtil.closeStream(in);
+		}
+	}
+	
 }
@@ -0,0 +1,208 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.Module;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Holds gzip compressed copies of the static resources that modules ship in their
+ * <code>web/module/resources</code> folder. The resources are compressed once, when the module is
+ * started by {@link WebModuleUtil#startModule(Module, javax.servlet.ServletContext, boolean)}, so
+ * that the {@link org.openmrs.web.filter.GZIPFilter} can serve them without compressing the same
+ * content again for every request.
+ */
+public class ModuleStaticResourceCache {
+	
+	private static final Log log = LogFactory.getLog(ModuleStaticResourceCache.class);
+	
+	/**
+	 * The path (relative to the webapp context) that module resources are served from
+	 */
+	public static final String MODULE_RESOURCES_PATH = "/moduleResources/";
+	
+	/**
+	 * Resources bigger than this are left to the streaming compression of the gzip filter
+	 */
+	public static final long MAX_CACHED_RESOURCE_SIZE = 1024 * 1024;
+	
+	// the static types the GZIPFilter is mapped to in web.xml, it never sees the others
+	private static final String[] COMPRESSIBLE_EXTENSIONS = { ".js", ".css", ".json", ".html", ".htm", ".xml", ".xhtml" };
+	
+	// request path (relative to the context) -> precompressed resource
+	private static Map<String, CachedResource> resources = new ConcurrentHashMap<String, CachedResource>();
+	
+	// module id -> request paths cached for that module
+	private static Map<String, List<String>> pathsByModule = new ConcurrentHashMap<String, List<String>>();
+	
+	private ModuleStaticResourceCache() {
+	}
+	
+	/**
+	 * Whether a resource with the given name and size should be precompressed
+	 *
+	 * @param name the file name or path of the resource
+	 * @param size the uncompressed size of the resource, or -1 if not known
+	 * @return true if the resource is compressible and known to be small enough to be cached
+	 * @should return true for small javascript and css files
+	 * @should return false for images
+	 * @should return false for files bigger than the maximum size
+	 * @should return false for files of unknown size
+	 */
+	public static boolean isCacheable(String name, long size) {
+		// an unknown size could be anything, reading it into memory to find out is what this avoids
+		if (name == null || size < 0 || size > MAX_CACHED_RESOURCE_SIZE) {
+			return false;
+		}
+		String lowerCaseName = name.toLowerCase();
+		for (String extension : COMPRESSIBLE_EXTENSIONS) {
+			if (lowerCaseName.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Compresses and caches the given resource of a module
+	 *
+	 * @param module the module that owns the resource
+	 * @param relativePath the path of the resource within the module's resources folder, e.g.
+	 *            "/scripts/module.js"
+	 * @param content the uncompressed content
+	 * @param lastModified the time the resource was last modified
+	 */
+	public static void addResource(Module module, String relativePath, byte[] content, long lastModified) {
+		if (!relativePath.startsWith("/")) {
+			relativePath = "/" + relativePath;
+		}
+		
+		CachedResource resource;
+		try {
+			resource = new CachedResource(gzip(content), "\"" + DigestUtils.md5DigestAsHex(content) + "-gz\"",
+			        lastModified);
+		}
+		catch (IOException e) {
+			log.warn("Unable to precompress resource " + relativePath + " of module " + module.getModuleId(), e);
+			return;
+		}
+		
+		List<String> paths = pathsByModule.get(module.getModuleId());
+		if (paths == null) {
+			paths = new ArrayList<String>();
+			pathsByModule.put(module.getModuleId(), paths);
+		}
+		
+		// resources can be requested with the module id as a path (ui/springmvc) or as is (ui.springmvc)
+		String path = MODULE_RESOURCES_PATH + module.getModuleIdAsPath() + relativePath;
+		resources.put(path, resource);
+		paths.add(path);
+		if (!module.getModuleId().equals(module.getModuleIdAsPath())) {
+			path = MODULE_RESOURCES_PATH + module.getModuleId() + relativePath;
+			resources.put(path, resource);
+			paths.add(path);
+		}
+	}
+	
+	/**
+	 * Gets the precompressed resource for the given request path
+	 *
+	 * @param path the request path relative to the webapp context, e.g.
+	 *            "/moduleResources/legacyui/scripts/module.js"
+	 * @return the cached resource or null if the path is not cached
+	 */
+	public static CachedResource getResource(String path) {
+		if (path == null || !path.startsWith(MODULE_RESOURCES_PATH)) {
+			return null;
+		}
+		return resources.get(path);
+	}
+	
+	/**
+	 * Removes all cached resources of the given module
+	 *
+	 * @param module the module being stopped
+	 */
+	public static void removeResources(Module module) {
+		Collection<String> paths = pathsByModule.remove(module.getModuleId());
+		if (paths != null) {
+			for (String path : paths) {
+				resources.remove(path);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all cached resources
+	 */
+	public static void clear() {
+		resources.clear();
+		pathsByModule.clear();
+	}
+	
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		try {
+			gzipOut.write(content);
+		}
+		finally {
+			gzipOut.close();
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * A precompressed module resource along with the validators used when serving it
+	 */
+	public static class CachedResource {
+		
+		private final byte[] gzippedContent;
+		
+		private final String etag;
+		
+		private final long lastModified;
+		
+		public CachedResource(byte[] gzippedContent, String etag, long lastModified) {
+			this.gzippedContent = gzippedContent;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+		
+		/**
+		 * @return the gzip compressed content, callers must not modify it
+		 */
+		public byte[] getGzippedContent() {
+			return gzippedContent;
+		}
+		
+		/**
+		 * @return the strong entity tag of the compressed representation, including the quotes
+		 */
+		public String getEtag() {
+			return etag;
+		}
+		
+		public long getLastModified() {
+			return lastModified;
+		}
+	}
+}
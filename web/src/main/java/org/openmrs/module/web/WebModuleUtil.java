@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -46,6 +47,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
@@ -55,6 +57,7 @@ import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.module.web.filter.ModuleFilterConfig;
 import org.openmrs.module.web.filter.ModuleFilterDefinition;
+import org.openmrs.module.web.filter.ModuleFilterDispatcher;
 import org.openmrs.module.web.filter.ModuleFilterMapping;
 import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.SchedulerService;
@@ -94,6 +97,10 @@ public class WebModuleUtil {
 	private static List<ModuleFilterMapping> moduleFilterMappings = Collections
 	        .synchronizedList(new Vector<ModuleFilterMapping>());
 	
+	// the filter mappings compiled for getFiltersForRequest, replaced whenever filters are (un)loaded
+	private static volatile ModuleFilterDispatcher moduleFilterDispatcher = new ModuleFilterDispatcher(
+	        new ArrayList<ModuleFilterMapping>(), new HashMap<String, Filter>());
+	
 	/**
 	 * Performs the webapp specific startup needs for modules Normal startup is done in
 	 * {@link ModuleFactory#startModule(Module)} If delayContextRefresh is true, the spring context
@@ -140,6 +147,11 @@ public class WebModuleUtil {
 			JarFile jarFile = null;
 			OutputStream outStream = null;
 			InputStream inStream = null;
+			
+			// resources of modules in development mode are served from the development directory
+			ModuleStaticResourceCache.removeResources(mod);
+			ModuleResourceIndex.clear();
+			boolean precompressResources = ModuleUtil.getDevelopmentDirectory(mod.getModuleId()) == null;
 			try {
 				File modFile = mod.getFile();
 				jarFile = new JarFile(modFile);
@@ -191,7 +203,16 @@ public class WebModuleUtil {
 							// copy the contents over to the webapp for non directories
 							outStream = new FileOutputStream(outFile, false);
 							inStream = jarFile.getInputStream(entry);
-							OpenmrsUtil.copyFile(inStream, outStream);
+							if (precompressResources && filepath.startsWith("resources/")
+							        && ModuleStaticResourceCache.isCacheable(filepath, entry.getSize())) {
+								// static resources never change while the module is started, so compress them once
+								// here instead of in the gzip filter for every request
+								byte[] content = IOUtils.toByteArray(inStream);
+								outStream.write(content);
+								ModuleStaticResourceCache.addResource(mod, filepath.substring(9), content, entry.getTime());
+							} else {
+								OpenmrsUtil.copyFile(inStream, outStream);
+							}
 						}
 					} else if (name.equals("moduleApplicationContext.xml") || name.equals("webModuleApplicationContext.xml")) {
 						moduleNeedsContextRefresh = true;
@@ -559,6 +580,8 @@ public class WebModuleUtil {
 		List<ModuleFilterMapping> modMappings = ModuleFilterMapping.retrieveFilterMappings(module);
 		moduleFilterMappings.addAll(modMappings);
 		log.debug("Module: " + module.getModuleId() + " successfully loaded " + modMappings.size() + " filter mappings.");
+		
+		compileFilterMappings();
 	}
 	
 	/**
@@ -600,6 +623,24 @@ public class WebModuleUtil {
 				}
 			}
 		}
+		
+		compileFilterMappings();
+	}
+	
+	/**
+	 * Replaces the dispatcher that {@link #getFiltersForRequest(ServletRequest)} uses with one for
+	 * the current filters and filter mappings
+	 */
+	private static void compileFilterMappings() {
+		List<ModuleFilterMapping> mappings;
+		synchronized (moduleFilterMappings) {
+			mappings = new ArrayList<ModuleFilterMapping>(moduleFilterMappings);
+		}
+		Map<String, Filter> filtersByName;
+		synchronized (moduleFiltersByName) {
+			filtersByName = new HashMap<String, Filter>(moduleFiltersByName);
+		}
+		moduleFilterDispatcher = new ModuleFilterDispatcher(mappings, filtersByName);
 	}
 	
 	/**
@@ -626,11 +667,11 @@ public class WebModuleUtil {
 	 * the passed request
 	 *
 	 * @param request - The request to check for matching {@link Filter}s
-	 * @return List of all {@link Filter}s that have filter mappings that match the passed request
+	 * @return List of all {@link Filter}s that have filter mappings that match the passed request,
+	 *         it is shared between requests and must not be changed
 	 */
 	public static List<Filter> getFiltersForRequest(ServletRequest request) {
 		
-		List<Filter> filters = new Vector<Filter>();
 		if (request != null) {
 			HttpServletRequest httpRequest = (HttpServletRequest) request;
 			String requestPath = httpRequest.getRequestURI();
@@ -639,20 +680,10 @@ public class WebModuleUtil {
 				if (requestPath.startsWith(httpRequest.getContextPath())) {
 					requestPath = requestPath.substring(httpRequest.getContextPath().length());
 				}
-				for (ModuleFilterMapping filterMapping : WebModuleUtil.getFilterMappings()) {
-					if (ModuleFilterMapping.filterMappingPasses(filterMapping, requestPath)) {
-						Filter passedFilter = moduleFiltersByName.get(filterMapping.getFilterName());
-						if (passedFilter != null) {
-							filters.add(passedFilter);
-						} else {
-							log.warn("Unable to retrieve filter that has a name of " + filterMapping.getFilterName()
-							        + " in filter mapping.");
-						}
-					}
-				}
+				return moduleFilterDispatcher.getFilters(requestPath);
 			}
 		}
-		return filters;
+		return Collections.emptyList();
 	}
 	
 	/**
@@ -757,6 +788,11 @@ public class WebModuleUtil {
 		
 		// (not) deleting module message properties
 		
+		// forget the precompressed copies of the module's static resources
+		ModuleStaticResourceCache.removeResources(mod);
+		ModuleResourceIndex.clear();
+		ModuleResourceCache.clear();
+		
 		// remove the module's servlets
 		unloadServlets(mod);
 		
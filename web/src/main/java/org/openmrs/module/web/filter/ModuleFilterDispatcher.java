@@ -0,0 +1,166 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.Filter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The {@link ModuleFilterMapping}s of all started modules compiled into lookup tables, so that
+ * finding the filters of a request doesn't check every pattern of every mapping. The url patterns
+ * are split by the kind of match {@link ModuleFilterMapping#urlPatternMatches(String, String)}
+ * does: exact paths, path prefixes, extensions and patterns that match everything. <br>
+ * <br>
+ * A dispatcher is immutable apart from its cache of filter lists, a new one is compiled whenever
+ * modules load or unload filters. Requests whose paths match the same mappings share one
+ * unmodifiable list of filters.
+ *
+ * @see org.openmrs.module.web.WebModuleUtil#getFiltersForRequest(javax.servlet.ServletRequest)
+ * @since 2.1.0
+ */
+public class ModuleFilterDispatcher {
+	
+	private static final Log log = LogFactory.getLog(ModuleFilterDispatcher.class);
+	
+	// the number of distinct filter lists to keep, requests are only ever matched by a few of them
+	private static final int MAX_CACHED_CHAINS = 1000;
+	
+	private final Filter[] filters;
+	
+	private final BitSet matchingAll = new BitSet();
+	
+	private final Map<String, BitSet> exactPaths = new HashMap<String, BitSet>();
+	
+	private final Map<String, BitSet> prefixes = new HashMap<String, BitSet>();
+	
+	private final Map<String, BitSet> extensions = new HashMap<String, BitSet>();
+	
+	private final Map<BitSet, List<Filter>> chains = new ConcurrentHashMap<BitSet, List<Filter>>();
+	
+	/**
+	 * Compiles the given mappings
+	 *
+	 * @param mappings the filter mappings in the order their filters are to run
+	 * @param filtersByName the filters of all modules, mappings of filters that are not in it are
+	 *            skipped
+	 * @should run the filters in the order of their mappings
+	 * @should skip mappings of unknown filters
+	 */
+	public ModuleFilterDispatcher(List<ModuleFilterMapping> mappings, Map<String, Filter> filtersByName) {
+		filters = new Filter[mappings.size()];
+		for (int i = 0; i < filters.length; i++) {
+			ModuleFilterMapping mapping = mappings.get(i);
+			filters[i] = filtersByName.get(mapping.getFilterName());
+			if (filters[i] == null) {
+				log.warn("Unable to retrieve filter that has a name of " + mapping.getFilterName() + " in filter mapping.");
+				continue;
+			}
+			for (String pattern : mapping.getUrlPatterns()) {
+				addUrlPattern(pattern, i);
+			}
+			// like filterMappingPasses does, servlet names are matched against the request path
+			for (String servletName : mapping.getServletNames()) {
+				if ("*".equals(servletName)) {
+					matchingAll.set(i);
+				} else if (servletName != null) {
+					add(exactPaths, servletName, i);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the filters whose mappings match the given path, like checking each mapping with
+	 * {@link ModuleFilterMapping#filterMappingPasses(ModuleFilterMapping, String)} does
+	 *
+	 * @param requestPath the request uri without the context path
+	 * @return the filters in the order of their mappings, the list must not be changed
+	 * @should match exact paths
+	 * @should match path prefixes
+	 * @should match extensions
+	 * @should return an empty list if the request path is null
+	 */
+	public List<Filter> getFilters(String requestPath) {
+		if (requestPath == null || filters.length == 0) {
+			return Collections.emptyList();
+		}
+		BitSet matching = (BitSet) matchingAll.clone();
+		or(matching, exactPaths.get(requestPath));
+		if (!prefixes.isEmpty()) {
+			// a prefix matches the whole path or the path up to any of its slashes
+			or(matching, prefixes.get(requestPath));
+			for (int slash = requestPath.indexOf('/'); slash >= 0; slash = requestPath.indexOf('/', slash + 1)) {
+				or(matching, prefixes.get(requestPath.substring(0, slash)));
+			}
+		}
+		if (!extensions.isEmpty()) {
+			int slash = requestPath.lastIndexOf('/');
+			int period = requestPath.lastIndexOf('.');
+			if (slash >= 0 && period > slash && period != requestPath.length() - 1) {
+				or(matching, extensions.get(requestPath.substring(period + 1)));
+			}
+		}
+		
+		List<Filter> chain = chains.get(matching);
+		if (chain == null) {
+			List<Filter> matchingFilters = new ArrayList<Filter>(matching.cardinality());
+			for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+				matchingFilters.add(filters[i]);
+			}
+			chain = Collections.unmodifiableList(matchingFilters);
+			if (chains.size() < MAX_CACHED_CHAINS) {
+				chains.put(matching, chain);
+			}
+		}
+		return chain;
+	}
+	
+	private void addUrlPattern(String pattern, int mapping) {
+		if (pattern == null) {
+			return;
+		}
+		if (pattern.equals("*") || pattern.equals("/*")) {
+			matchingAll.set(mapping);
+			return;
+		}
+		// any pattern matches a path that is equal to it
+		add(exactPaths, pattern, mapping);
+		if (pattern.endsWith("/*")) {
+			add(prefixes, pattern.substring(0, pattern.length() - 2), mapping);
+		} else if (pattern.startsWith("*.") && pattern.length() > 2) {
+			add(extensions, pattern.substring(2), mapping);
+		}
+	}
+	
+	private static void add(Map<String, BitSet> index, String key, int mapping) {
+		BitSet mappings = index.get(key);
+		if (mappings == null) {
+			mappings = new BitSet();
+			index.put(key, mappings);
+		}
+		mappings.set(mapping);
+	}
+	
+	private static void or(BitSet matching, BitSet mappings) {
+		if (mappings != null) {
+			matching.or(mappings);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.web;
+
+import java.util.Map;
+
+/**
+ * The hit and miss counts of a cache, which the {@link ServiceMetricsServlet} serves for all beans
+ * of this type
+ *
+ * @since 2.1.0
+ */
+public interface CacheStatistics {
+	
+	/**
+	 * @return the name the statistics are served under
+	 */
+	public String getName();
+	
+	/**
+	 * @return the figures of the cache by name, e.g. the number of entries, hits and misses
+	 */
+	public Map<String, Object> getStatistics();
+	
+	/**
+	 * Sets the counts of the cache back to zero
+	 */
+	public void resetStatistics();
+}
@@ -0,0 +1,137 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.web;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openmrs.aop.ServiceMetricsAdvice;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * Serves the figures recorded by {@link ServiceMetricsAdvice} and the statistics of every
+ * {@link CacheStatistics} bean as JSON to users that can view the administration functions. A POST
+ * with the parameter "reset" clears the figures and a POST with the parameter "hibernateStatistics"
+ * set to true or false turns the recording of Hibernate statement and entity load counts on or off.
+ * POSTs need the privilege to manage global properties and the "csrfToken" of the last GET, as a
+ * parameter or in the {@link #CSRF_TOKEN_HEADER} header.
+ *
+ * @since 2.1.0
+ */
+public class ServiceMetricsServlet extends HttpServlet {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String CSRF_TOKEN_HEADER = "X-CSRF-Token";
+	
+	private static final String CSRF_TOKEN_PARAMETER = "csrfToken";
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final String CSRF_TOKEN_ATTRIBUTE = ServiceMetricsServlet.class.getName() + ".csrfToken";
+	
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		ServiceMetricsAdvice metrics = getServiceMetrics(response, PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+		if (metrics == null) {
+			return;
+		}
+		writeMetrics(metrics, request, response);
+	}
+	
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		ServiceMetricsAdvice metrics = getServiceMetrics(response, PrivilegeConstants.MANAGE_GLOBAL_PROPERTIES);
+		if (metrics == null) {
+			return;
+		}
+		if (!hasCsrfToken(request)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, "Missing or invalid " + CSRF_TOKEN_PARAMETER);
+			return;
+		}
+		
+		if (request.getParameter("reset") != null) {
+			metrics.reset();
+			for (CacheStatistics cache : Context.getRegisteredComponents(CacheStatistics.class)) {
+				cache.resetStatistics();
+			}
+		}
+		String hibernateStatistics = request.getParameter("hibernateStatistics");
+		if (hibernateStatistics != null) {
+			metrics.setHibernateStatisticsEnabled(Boolean.valueOf(hibernateStatistics));
+		}
+		writeMetrics(metrics, request, response);
+	}
+	
+	private void writeMetrics(ServiceMetricsAdvice metrics, HttpServletRequest request, HttpServletResponse response)
+	        throws IOException {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("hibernateStatisticsEnabled", metrics.isHibernateStatisticsEnabled());
+		result.put("methods", metrics.getMethodMetrics());
+		for (CacheStatistics cache : Context.getRegisteredComponents(CacheStatistics.class)) {
+			result.put(cache.getName(), cache.getStatistics());
+		}
+		result.put(CSRF_TOKEN_PARAMETER, getCsrfToken(request.getSession()));
+		
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		new ObjectMapper().writeValue(response.getWriter(), result);
+	}
+	
+	/**
+	 * Gets the metrics if the user has the given privilege, otherwise sends an error
+	 */
+	private ServiceMetricsAdvice getServiceMetrics(HttpServletResponse response, String privilege) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return null;
+		}
+		if (!Context.hasPrivilege(privilege)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return null;
+		}
+		return Context.getRegisteredComponent("serviceMetricsInterceptor", ServiceMetricsAdvice.class);
+	}
+	
+	private static String getCsrfToken(HttpSession session) {
+		String token = (String) session.getAttribute(CSRF_TOKEN_ATTRIBUTE);
+		if (token == null) {
+			token = UUID.randomUUID().toString();
+			session.setAttribute(CSRF_TOKEN_ATTRIBUTE, token);
+		}
+		return token;
+	}
+	
+	private static boolean hasCsrfToken(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		String expected = session == null ? null : (String) session.getAttribute(CSRF_TOKEN_ATTRIBUTE);
+		String token = request.getHeader(CSRF_TOKEN_HEADER);
+		if (token == null) {
+			token = request.getParameter(CSRF_TOKEN_PARAMETER);
+		}
+		if (expected == null || token == null) {
+			return false;
+		}
+		return MessageDigest.isEqual(expected.getBytes(UTF_8), token.getBytes(UTF_8));
+	}
+}
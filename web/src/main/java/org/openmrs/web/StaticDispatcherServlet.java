@@ -15,6 +15,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.module.web.WebModuleUtil;
 import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.web.controller.PseudoStaticContentCache;
 import org.springframework.beans.BeansException;
 import org.springframework.web.context.support.XmlWebApplicationContext;
 
@@ -57,6 +58,8 @@ public class StaticDispatcherServlet extends org.springframework.web.servlet.Dis
 		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
 		((XmlWebApplicationContext) getWebApplicationContext()).setClassLoader(OpenmrsClassLoader.getInstance());
 		
+		// the started or stopped modules may have changed the messages and views of jstl files
+		PseudoStaticContentCache.clear();
 		refresh();
 	}
 	
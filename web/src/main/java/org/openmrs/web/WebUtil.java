@@ -26,12 +26,16 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class WebUtil implements GlobalPropertyListener {
 	
 	private static Log log = LogFactory.getLog(WebUtil.class);
 	
 	private static String defaultDateCache = null;
+	
+	private static final Pattern ENTITY_TAG = Pattern.compile("(W/)?\"[^\"]*\"");
 
 	/**
 	 * Encodes for (X)HTML text content and text attributes.
@@ -277,6 +281,40 @@ public class WebUtil implements GlobalPropertyListener {
 		return filename;
 	}
 	
+	/**
+	 * Whether the entity tags of an If-None-Match header match the given entity tag. The header is
+	 * parsed as a list of entity tags which are compared exactly, except that weak tags match their
+	 * strong counterpart as the weak comparison of RFC 7232 requires.
+	 *
+	 * @param ifNoneMatch the value of the If-None-Match header, may be null
+	 * @param etag the current entity tag of the resource, including the quotes
+	 * @return true if the header is "*" or lists the given entity tag
+	 * @should match an entity tag in a list
+	 * @should not match an entity tag that only contains the given one
+	 * @should match weak entity tags
+	 * @should match any entity tag for an asterisk
+	 */
+	public static boolean matchesEntityTag(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || etag == null) {
+			return false;
+		}
+		if ("*".equals(ifNoneMatch.trim())) {
+			return true;
+		}
+		String opaqueTag = stripWeakPrefix(etag);
+		Matcher matcher = ENTITY_TAG.matcher(ifNoneMatch);
+		while (matcher.find()) {
+			if (opaqueTag.equals(stripWeakPrefix(matcher.group()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String stripWeakPrefix(String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+	
 	/**
 	 * This method checks if input locale string contains control characters and tries to clean up
 	 * actually contained ones. Also it parses locale object from string representation and
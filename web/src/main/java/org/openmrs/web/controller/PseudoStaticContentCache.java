@@ -0,0 +1,276 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.web.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.openmrs.api.GlobalPropertyUsage;
+import org.openmrs.web.CacheStatistics;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Holds the output of the pseudo static files that {@link PseudoStaticContentController} renders
+ * through the jsp servlet, e.g. openmrsmessages.js, keyed by path and locale. Every entry keeps the
+ * global properties that were read while rendering it, and is only evicted when one of those
+ * properties changes, when the static content dispatcher servlet is refreshed after modules were
+ * started or stopped, or when the cache is cleared. <br>
+ * <br>
+ * Only a handful of files are rendered this way, so the number of entries is bounded by the number
+ * of those files times the number of locales in use.
+ *
+ * @since 2.1.0
+ */
+public class PseudoStaticContentCache {
+	
+	private static final Map<String, RenderedContent> entries = new ConcurrentHashMap<String, RenderedContent>();
+	
+	// incremented by every eviction, see put
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private static final AtomicLong hits = new AtomicLong();
+	
+	private static final AtomicLong misses = new AtomicLong();
+	
+	private PseudoStaticContentCache() {
+	}
+	
+	/**
+	 * @param key identifies the file and the locale it is rendered in
+	 * @return the rendered content or null if it is not cached
+	 */
+	public static RenderedContent get(String key) {
+		RenderedContent content = entries.get(key);
+		if (content == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return content;
+	}
+	
+	/**
+	 * Gets the value to pass to {@link #put(String, RenderedContent, long)} once the content is
+	 * rendered, it must be read before rendering
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+	
+	/**
+	 * Caches the given content unless something was evicted since it started rendering
+	 *
+	 * @param key identifies the file and the locale it is rendered in
+	 * @param content the rendered content
+	 * @param renderGeneration the value of {@link #getGeneration()} before rendering
+	 * @should not cache content if an entry was evicted while rendering
+	 */
+	public static void put(String key, RenderedContent content, long renderGeneration) {
+		if (generation.get() == renderGeneration) {
+			entries.put(key, content);
+			// an eviction may have started after the check above, it cannot have seen this entry
+			if (generation.get() != renderGeneration) {
+				entries.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the entries that were rendered using the given global property, now and when the
+	 * current transaction completes
+	 *
+	 * @param propertyName the name of the global property that is changed or deleted
+	 * @should only evict the entries that read the given property
+	 */
+	public static void evict(final String propertyName) {
+		evictNow(propertyName);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					evictNow(propertyName);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Clears the whole cache, e.g. after modules with other messages were started
+	 */
+	public static void clear() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+	
+	/**
+	 * @return the number of cached entries
+	 */
+	public static int size() {
+		return entries.size();
+	}
+	
+	public static long getHitCount() {
+		return hits.get();
+	}
+	
+	public static long getMissCount() {
+		return misses.get();
+	}
+	
+	/**
+	 * @return the share of lookups that found a cached entry, 0 if there were none
+	 */
+	public static double getHitRate() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+	
+	/**
+	 * @return the number of entries, hits, misses and the hit rate, by name
+	 */
+	public static Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("entries", size());
+		statistics.put("hits", getHitCount());
+		statistics.put("misses", getMissCount());
+		statistics.put("hitRate", getHitRate());
+		return statistics;
+	}
+	
+	/**
+	 * Sets the hit and miss counts back to zero
+	 */
+	public static void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+	
+	/**
+	 * Serves the statistics of the cache in the service metrics
+	 */
+	public static class Statistics implements CacheStatistics {
+		
+		@Override
+		public String getName() {
+			return "pseudoStaticContentCache";
+		}
+		
+		@Override
+		public Map<String, Object> getStatistics() {
+			return PseudoStaticContentCache.getStatistics();
+		}
+		
+		@Override
+		public void resetStatistics() {
+			PseudoStaticContentCache.resetStatistics();
+		}
+	}
+	
+	private static void evictNow(String propertyName) {
+		generation.incrementAndGet();
+		for (Iterator<RenderedContent> i = entries.values().iterator(); i.hasNext();) {
+			if (i.next().getGlobalPropertyUsage().dependsOn(propertyName)) {
+				i.remove();
+			}
+		}
+	}
+	
+	/**
+	 * The output of a pseudo static file, along with its gzip compressed variant and the validators
+	 * of both
+	 */
+	public static class RenderedContent {
+		
+		private final byte[] content;
+		
+		private final byte[] gzippedContent;
+		
+		private final String etag;
+		
+		private final String contentType;
+		
+		private final long lastModified;
+		
+		private final GlobalPropertyUsage globalPropertyUsage;
+		
+		/**
+		 * @param content the rendered bytes
+		 * @param contentType the content type the file was rendered with, including the charset
+		 * @param globalPropertyUsage the global properties read while rendering
+		 * @throws IOException if the content cannot be compressed
+		 */
+		public RenderedContent(byte[] content, String contentType, GlobalPropertyUsage globalPropertyUsage)
+		        throws IOException {
+			this.content = content;
+			this.gzippedContent = gzip(content);
+			this.etag = "\"" + DigestUtils.md5DigestAsHex(content) + "\"";
+			this.contentType = contentType;
+			// whole seconds, like the dates of conditional requests
+			this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+			this.globalPropertyUsage = globalPropertyUsage;
+		}
+		
+		/**
+		 * @return the uncompressed content, callers must not modify it
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+		
+		/**
+		 * @return the gzip compressed content, callers must not modify it
+		 */
+		public byte[] getGzippedContent() {
+			return gzippedContent;
+		}
+		
+		/**
+		 * @param gzipped whether the compressed representation is served
+		 * @return the strong entity tag of the representation, including the quotes
+		 */
+		public String getEtag(boolean gzipped) {
+			return gzipped ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+		}
+		
+		public String getContentType() {
+			return contentType;
+		}
+		
+		public long getLastModified() {
+			return lastModified;
+		}
+		
+		public GlobalPropertyUsage getGlobalPropertyUsage() {
+			return globalPropertyUsage;
+		}
+		
+		private static byte[] gzip(byte[] content) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+			GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+			try {
+				gzipOut.write(content);
+			}
+			finally {
+				gzipOut.close();
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -9,20 +9,31 @@
  */
 package org.openmrs.web.controller;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.GlobalProperty;
 import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.GlobalPropertyUsage;
+import org.openmrs.api.context.Context;
+import org.openmrs.web.WebUtil;
+import org.openmrs.web.controller.PseudoStaticContentCache.RenderedContent;
+import org.openmrs.web.filter.GZIPResponseWrapper;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.Controller;
 import org.springframework.web.servlet.mvc.LastModified;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
 /**
  * This controller basically passes requests straight through to their views. When interpretJstl is
@@ -30,8 +41,10 @@ import org.springframework.web.servlet.mvc.LastModified;
  * spring:message tag) in some javascript files.) <br>
  * If you specify any 'rewrites' then the specified paths are remapped, e.g:<br>
  * /scripts/jquery/jquery-1.3.2.min.js -&gt; /scripts/jquery/jquery.min.js <br>
- * All jstl files are cached in the browser until a server restart or a global property is
- * added/changed/deleted
+ * The output of jstl files is kept in the {@link PseudoStaticContentCache} per path and locale and
+ * served with an ETag, compressed if the gzip filter is compressing the response. A cached file is
+ * rendered again when a global property that was read while rendering it is changed or deleted.
+ * Jstl files must therefore not depend on anything but their locale and global properties.
  */
 public class PseudoStaticContentController implements Controller, LastModified, GlobalPropertyListener {
 	
@@ -41,7 +54,7 @@ public class PseudoStaticContentController implements Controller, LastModified,
 	
 	private Map<String, String> rewrites;
 	
-	private static Long lastModified = System.currentTimeMillis();
+	private String viewPrefix = "/WEB-INF/view";
 	
 	public Boolean getInterpretJstl() {
 		return interpretJstl;
@@ -59,6 +72,28 @@ public class PseudoStaticContentController implements Controller, LastModified,
 		this.rewrites = rewrites;
 	}
 	
+	public String getViewPrefix() {
+		return viewPrefix;
+	}
+	
+	/**
+	 * @param viewPrefix the folder that jstl files are rendered from, which must match the prefix of
+	 *            the view resolver, defaults to /WEB-INF/view
+	 * @since 2.1.0
+	 */
+	public void setViewPrefix(String viewPrefix) {
+		this.viewPrefix = viewPrefix;
+	}
+	
+	/**
+	 * @see org.springframework.web.servlet.mvc.Controller#handleRequest(javax.servlet.http.HttpServletRequest,
+	 *      javax.servlet.http.HttpServletResponse)
+	 * @should render a jstl file once per locale
+	 * @should answer a request with a matching etag with a 304
+	 * @should answer a request modified since the last modified second with a 304
+	 * @should write the compressed content if the response is compressed by the gzip filter
+	 * @should render a jstl file again after a global property it read changed
+	 */
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException,
 	        IOException {
 		String path = request.getServletPath() + request.getPathInfo();
@@ -68,43 +103,130 @@ public class PseudoStaticContentController implements Controller, LastModified,
 		}
 		if (interpretJstl) {
 			path += ".withjstl";
+			writeRenderedContent(path, request, response);
+			return null;
 		}
 		
 		return new ModelAndView(path);
 	}
 	
-	@Override
-	public long getLastModified(HttpServletRequest request) {
-		
-		// return a mostly constant last modified date for all files passing
-		// through the jsp (.withjstl) servlet
-		// this allows the files to cache until we say so
-		if (interpretJstl) {
+	/**
+	 * Writes the cached output of the given jstl file, rendering and caching it first if needed
+	 *
+	 * @param path the view name of the jstl file
+	 * @param request the current request
+	 * @param response the current response
+	 */
+	private void writeRenderedContent(String path, HttpServletRequest request, HttpServletResponse response)
+	        throws ServletException, IOException {
+		String key = path + "|" + Context.getLocale() + "|" + RequestContextUtils.getLocale(request);
+		RenderedContent content = PseudoStaticContentCache.get(key);
+		if (content == null) {
+			long generation = PseudoStaticContentCache.getGeneration();
+			RenderingResponseWrapper rendering = new RenderingResponseWrapper(response);
+			GlobalPropertyUsage usage;
+			GlobalPropertyUsage.startRecording();
+			try {
+				request.getRequestDispatcher(viewPrefix + path).forward(request, rendering);
+			}
+			finally {
+				usage = GlobalPropertyUsage.stopRecording();
+			}
+			if (rendering.getStatus() != HttpServletResponse.SC_OK) {
+				response.sendError(rendering.getStatus());
+				return;
+			}
+			content = new RenderedContent(rendering.getContent(), rendering.getContentType(), usage);
+			PseudoStaticContentCache.put(key, content, generation);
 			if (log.isDebugEnabled()) {
-				log.debug("returning last modified date of : " + lastModified + " for : " + request.getPathInfo());
+				log.debug("Rendered " + path + " for " + key + ", it depends on the global properties "
+				        + usage.getPropertyNames());
 			}
-			return lastModified;
 		}
 		
+		// the gzip filter would compress the content again, write the compressed variant past it
+		HttpServletResponse uncompressed = getUncompressedResponse(response);
+		boolean gzipped = uncompressed != null;
+		if (gzipped) {
+			response = uncompressed;
+		}
+		
+		String etag = content.getEtag(gzipped);
+		response.setHeader("ETag", etag);
+		response.setHeader("Vary", "Accept-Encoding");
+		response.setDateHeader("Last-Modified", content.getLastModified());
+		if (isNotModified(request, etag, content.getLastModified())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		if (content.getContentType() != null) {
+			response.setContentType(content.getContentType());
+		}
+		byte[] bytes = gzipped ? content.getGzippedContent() : content.getContent();
+		if (gzipped) {
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		response.setContentLength(bytes.length);
+		if (!"HEAD".equals(request.getMethod())) {
+			response.getOutputStream().write(bytes);
+		}
+	}
+	
+	/**
+	 * @return the response wrapped by the gzip filter or null if the response is not compressed
+	 */
+	private static HttpServletResponse getUncompressedResponse(HttpServletResponse response) {
+		while (response instanceof HttpServletResponseWrapper) {
+			HttpServletResponse wrapped = (HttpServletResponse) ((HttpServletResponseWrapper) response).getResponse();
+			if (response instanceof GZIPResponseWrapper) {
+				return wrapped;
+			}
+			response = wrapped;
+		}
+		return null;
+	}
+	
+	private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return WebUtil.matchesEntityTag(ifNoneMatch, etag);
+		}
+		try {
+			// http dates have no milliseconds, so the Last-Modified header the client got was truncated
+			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			return ifModifiedSince >= 0 && ifModifiedSince >= lastModified / 1000 * 1000;
+		}
+		catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public long getLastModified(HttpServletRequest request) {
+		// jstl files are validated against the cached content by handleRequest, and
 		// the spring servletdispatcher will try to get the lastModified date
-		// from the actual file in this case
+		// from the actual file for the others
 		return -1;
 	}
 	
+	/**
+	 * @deprecated jstl files are cached per path and locale now, this clears the whole
+	 *             {@link PseudoStaticContentCache}
+	 */
+	@Deprecated
 	public static void setLastModified(Long lastModified) {
-		PseudoStaticContentController.lastModified = lastModified;
+		PseudoStaticContentCache.clear();
 	}
 	
 	@Override
 	public void globalPropertyChanged(GlobalProperty newValue) {
-		// reset for every global property change
-		setLastModified(System.currentTimeMillis());
+		PseudoStaticContentCache.evict(newValue.getProperty());
 	}
 	
 	@Override
 	public void globalPropertyDeleted(String propertyName) {
-		// reset for every global property change
-		setLastModified(System.currentTimeMillis());
+		PseudoStaticContentCache.evict(propertyName);
 	}
 	
 	@Override
@@ -112,7 +234,171 @@ public class PseudoStaticContentController implements Controller, LastModified,
 		return true;
 	}
 	
+	/**
+	 * Evicts the cached jstl files that depend on the given global properties
+	 *
+	 * @param newValue the new values of the changed global properties by name, all files are
+	 *            evicted if it is null or empty
+	 */
 	public static void invalidateCachedResources(Map<String, String> newValue) {
-		setLastModified(System.currentTimeMillis());
+		if (newValue == null || newValue.isEmpty()) {
+			PseudoStaticContentCache.clear();
+			return;
+		}
+		for (String propertyName : newValue.keySet()) {
+			PseudoStaticContentCache.evict(propertyName);
+		}
+	}
+	
+	/**
+	 * Captures the output of a jstl file instead of sending it, along with its content type and
+	 * status
+	 */
+	private static class RenderingResponseWrapper extends HttpServletResponseWrapper {
+		
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream(8192);
+		
+		private ServletOutputStream stream;
+		
+		private PrintWriter writer;
+		
+		private String contentType;
+		
+		private String characterEncoding;
+		
+		private int status = HttpServletResponse.SC_OK;
+		
+		public RenderingResponseWrapper(HttpServletResponse response) {
+			super(response);
+		}
+		
+		public byte[] getContent() {
+			if (writer != null) {
+				writer.flush();
+			}
+			return content.toByteArray();
+		}
+		
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called!");
+			}
+			if (stream == null) {
+				stream = new ServletOutputStream() {
+					
+					@Override
+					public void write(int b) {
+						content.write(b);
+					}
+					
+					@Override
+					public void write(byte[] b, int off, int len) {
+						content.write(b, off, len);
+					}
+				};
+			}
+			return stream;
+		}
+		
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (stream != null) {
+				throw new IllegalStateException("getOutputStream() has already been called!");
+			}
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(content, getCharacterEncoding()));
+			}
+			return writer;
+		}
+		
+		@Override
+		public void setContentType(String type) {
+			contentType = type;
+			if (type != null && type.toLowerCase().contains("charset=")) {
+				characterEncoding = type.substring(type.toLowerCase().indexOf("charset=") + 8).trim();
+			}
+		}
+		
+		@Override
+		public String getContentType() {
+			if (contentType != null && characterEncoding != null && !contentType.toLowerCase().contains("charset=")) {
+				return contentType + ";charset=" + characterEncoding;
+			}
+			return contentType;
+		}
+		
+		@Override
+		public void setCharacterEncoding(String charset) {
+			if (writer == null) {
+				characterEncoding = charset;
+			}
+		}
+		
+		@Override
+		public String getCharacterEncoding() {
+			return characterEncoding == null ? "ISO-8859-1" : characterEncoding;
+		}
+		
+		@Override
+		public void setContentLength(int len) {
+		}
+		
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+		}
+		
+		@Override
+		@SuppressWarnings("deprecation")
+		public void setStatus(int sc, String sm) {
+			status = sc;
+		}
+		
+		@Override
+		public void sendError(int sc) {
+			status = sc;
+		}
+		
+		@Override
+		public void sendError(int sc, String msg) {
+			status = sc;
+		}
+		
+		@Override
+		public void sendRedirect(String location) {
+			status = HttpServletResponse.SC_FOUND;
+		}
+		
+		@Override
+		public int getStatus() {
+			return status;
+		}
+		
+		@Override
+		public void flushBuffer() {
+			if (writer != null) {
+				writer.flush();
+			}
+		}
+		
+		@Override
+		public void resetBuffer() {
+			if (writer != null) {
+				writer.flush();
+			}
+			content.reset();
+		}
+		
+		@Override
+		public void reset() {
+			resetBuffer();
+			status = HttpServletResponse.SC_OK;
+		}
+		
+		@Override
+		public boolean isCommitted() {
+			return false;
+		}
 	}
-}
\ No newline at end of file
+}
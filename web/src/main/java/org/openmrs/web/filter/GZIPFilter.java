@@ -20,7 +20,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.web.ModuleStaticResourceCache;
+import org.openmrs.module.web.ModuleStaticResourceCache.CachedResource;
 import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.web.WebUtil;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 /**
@@ -51,6 +54,15 @@ public class GZIPFilter extends OncePerRequestFilter {
 			return;
 		}
 		if (isGZIPSupported(request) && isGZIPEnabled()) {
+			CachedResource cachedResource = ModuleStaticResourceCache.getResource(getPathWithinContext(request));
+			if (cachedResource != null) {
+				log.debug("GZIP supported and enabled, serving precompressed module resource");
+				
+				writeCachedResource(request, response, cachedResource);
+				
+				return;
+			}
+			
 			log.debug("GZIP supported and enabled, compressing response");
 			
 			GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
@@ -64,6 +76,53 @@ public class GZIPFilter extends OncePerRequestFilter {
 		chain.doFilter(request, response);
 	}
 	
+	/**
+	 * Writes a module resource that was compressed when its module was started, answering
+	 * conditional requests with a 304 when the client already has the current version
+	 *
+	 * @param request the current request
+	 * @param response the current response
+	 * @param cachedResource the precompressed resource
+	 * @throws IOException
+	 */
+	private void writeCachedResource(HttpServletRequest request, HttpServletResponse response,
+	        CachedResource cachedResource) throws IOException {
+		response.setHeader("ETag", cachedResource.getEtag());
+		// module resource urls are not versioned, clients revalidate them and get a 304 until the module changes
+		response.setHeader("Cache-Control", "no-cache");
+		response.setHeader("Vary", "Accept-Encoding");
+		response.setDateHeader("Last-Modified", cachedResource.getLastModified());
+		
+		if (WebUtil.matchesEntityTag(request.getHeader("If-None-Match"), cachedResource.getEtag())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		if (getServletContext() != null) {
+			String mimeType = getServletContext().getMimeType(request.getRequestURI());
+			if (mimeType != null) {
+				response.setContentType(mimeType);
+			}
+		}
+		response.setHeader("Content-Encoding", "gzip");
+		response.setContentLength(cachedResource.getGzippedContent().length);
+		if (!"HEAD".equals(request.getMethod())) {
+			response.getOutputStream().write(cachedResource.getGzippedContent());
+		}
+	}
+	
+	/**
+	 * @param request the current request
+	 * @return the request uri without the context path
+	 */
+	private String getPathWithinContext(HttpServletRequest request) {
+		String path = request.getRequestURI();
+		if (path != null && path.startsWith(request.getContextPath())) {
+			path = path.substring(request.getContextPath().length());
+		}
+		return path;
+	}
+	
 	/**
 	 * Supports GZIP requests
 	 * @param req request
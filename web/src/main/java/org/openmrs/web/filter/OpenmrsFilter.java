@@ -101,6 +101,12 @@ public class OpenmrsFilter extends OncePerRequestFilter {
 		Context.setUserContext(userContext);
 		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
 		
+		// the snapshot of the user's roles is kept on the session, it is only taken again here, before
+		// the request is handled, if the user or a role was changed since
+		if (userContext.isAuthenticated()) {
+			userContext.getPrincipal();
+		}
+		
 		log.debug("before chain.Filter");
 		
 		// continue the filter chain (going on to spring, authorization, etc)
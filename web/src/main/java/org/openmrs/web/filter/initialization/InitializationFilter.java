@@ -238,11 +238,8 @@ public class InitializationFilter extends StartupFilter {
 				Appender appender = Logger.getRootLogger().getAppender("MEMORY_APPENDER");
 				if (appender instanceof MemoryAppender) {
 					MemoryAppender memoryAppender = (MemoryAppender) appender;
-					List<String> logLines = memoryAppender.getLogLines();
-					// truncate the list to the last 5 so we don't overwhelm jquery
-					if (logLines.size() > 5) {
-						logLines = logLines.subList(logLines.size() - 5, logLines.size());
-					}
+					// only the last 5 lines so we don't overwhelm jquery
+					List<String> logLines = memoryAppender.getLogLines(memoryAppender.getCursor() - 5).getLines();
 					result.put("logLines", logLines);
 				} else {
 					result.put("logLines", new ArrayList<String>());
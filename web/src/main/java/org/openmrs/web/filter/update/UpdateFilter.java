@@ -42,7 +42,7 @@ import org.apache.log4j.Appender;
 import org.apache.log4j.Logger;
 import org.openmrs.util.DatabaseUpdateException;
 import org.openmrs.util.DatabaseUpdater;
-import org.openmrs.util.DatabaseUpdater.ChangeSetExecutorCallback;
+import org.openmrs.util.DatabaseUpdater.ChangeSetProgressCallback;
 import org.openmrs.util.InputRequiredException;
 import org.openmrs.util.MemoryAppender;
 import org.openmrs.util.OpenmrsConstants;
@@ -275,11 +275,8 @@ public class UpdateFilter extends StartupFilter {
 				Appender appender = Logger.getRootLogger().getAppender("MEMORY_APPENDER");
 				if (appender instanceof MemoryAppender) {
 					MemoryAppender memoryAppender = (MemoryAppender) appender;
-					List<String> logLines = memoryAppender.getLogLines();
-					// truncate the list to the last five so we don't overwhelm jquery
-					if (logLines.size() > 5) {
-						logLines = logLines.subList(logLines.size() - 5, logLines.size());
-					}
+					// only the last five lines so we don't overwhelm jquery
+					List<String> logLines = memoryAppender.getLogLines(memoryAppender.getCursor() - 5).getLines();
 					result.put("logLines", logLines);
 				} else {
 					result.put("logLines", new ArrayList<String>());
@@ -711,7 +708,7 @@ public class UpdateFilter extends StartupFilter {
 						/**
 						 * A callback class that prints out info about liquibase changesets
 						 */
-						class PrintingChangeSetExecutorCallback implements ChangeSetExecutorCallback {
+						class PrintingChangeSetExecutorCallback implements ChangeSetProgressCallback {
 							
 							private String message;
 							
@@ -729,6 +726,14 @@ public class UpdateFilter extends StartupFilter {
 								setMessage(message);
 							}
 							
+							/**
+							 * @see org.openmrs.util.DatabaseUpdater.ChangeSetProgressCallback#progress(java.lang.String)
+							 */
+							@Override
+							public void progress(String progress) {
+								setMessage(message.trim() + ": " + progress);
+							}
+							
 						}
 						
 						try {
@@ -0,0 +1,87 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.module.web.ModuleResourceCache.ModuleResource;
+
+/**
+ * Tests the {@link ModuleResourceCache}
+ */
+public class ModuleResourceCacheTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@After
+	public void clearCache() {
+		ModuleResourceCache.clear();
+	}
+	
+	/**
+	 * @see ModuleResourceCache#getResource(File)
+	 * @verifies return the cached resource while the file is unchanged
+	 */
+	@Test
+	public void getResource_shouldReturnTheCachedResourceWhileTheFileIsUnchanged() throws Exception {
+		File file = folder.newFile("module.js");
+		FileUtils.writeStringToFile(file, "var module = {};", "UTF-8");
+		
+		ModuleResource resource = ModuleResourceCache.getResource(file);
+		
+		assertArrayEquals("var module = {};".getBytes("UTF-8"), resource.getContent());
+		assertSame(resource, ModuleResourceCache.getResource(file));
+	}
+	
+	/**
+	 * @see ModuleResourceCache#getResource(File)
+	 * @verifies read the file again after it changed
+	 */
+	@Test
+	public void getResource_shouldReadTheFileAgainAfterItChanged() throws Exception {
+		File file = folder.newFile("module.css");
+		FileUtils.writeStringToFile(file, "body {}", "UTF-8");
+		ModuleResource before = ModuleResourceCache.getResource(file);
+		
+		FileUtils.writeStringToFile(file, "body { margin: 0; }", "UTF-8");
+		ModuleResource after = ModuleResourceCache.getResource(file);
+		
+		assertArrayEquals("body { margin: 0; }".getBytes("UTF-8"), after.getContent());
+		assertNotEquals(before.getEtag(), after.getEtag());
+	}
+	
+	/**
+	 * @see ModuleResourceCache#getResource(File)
+	 * @verifies not keep the content of big files
+	 */
+	@Test
+	public void getResource_shouldNotKeepTheContentOfBigFiles() throws Exception {
+		File file = folder.newFile("video.mp4");
+		FileUtils.writeByteArrayToFile(file, new byte[(int) ModuleResourceCache.MAX_CACHED_FILE_SIZE + 1]);
+		
+		ModuleResource resource = ModuleResourceCache.getResource(file);
+		
+		assertNull(resource.getContent());
+		assertEquals(ModuleResourceCache.MAX_CACHED_FILE_SIZE + 1, resource.getLength());
+		assertEquals(resource.getEtag(), ModuleResourceCache.getResource(file).getEtag());
+	}
+}
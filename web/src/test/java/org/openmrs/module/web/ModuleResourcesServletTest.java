@@ -0,0 +1,112 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.Test;
+import org.openmrs.module.web.ModuleResourceCache.ModuleResource;
+import org.openmrs.web.filter.GZIPResponseWrapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests the {@link ModuleResourcesServlet}
+ */
+public class ModuleResourcesServletTest {
+	
+	private static final ModuleResource RESOURCE = new ModuleResource(new File("module.js"), 1000, 1400000000000L,
+	        "\"abc\"", null);
+	
+	/**
+	 * @see ModuleResourcesServlet#getRange(javax.servlet.http.HttpServletRequest, ModuleResource)
+	 * @verifies return the requested range
+	 */
+	@Test
+	public void getRange_shouldReturnTheRequestedRange() throws Exception {
+		assertArrayEquals(new long[] { 100, 199 }, ModuleResourcesServlet.getRange(request("bytes=100-199"), RESOURCE));
+		assertArrayEquals(new long[] { 900, 999 }, ModuleResourcesServlet.getRange(request("bytes=900-"), RESOURCE));
+		assertArrayEquals(new long[] { 900, 999 }, ModuleResourcesServlet.getRange(request("bytes=900-5000"), RESOURCE));
+		assertNull(ModuleResourcesServlet.getRange(request("bytes=0-1,5-6"), RESOURCE));
+		assertNull(ModuleResourcesServlet.getRange(request(null), RESOURCE));
+	}
+	
+	/**
+	 * @see ModuleResourcesServlet#getRange(javax.servlet.http.HttpServletRequest, ModuleResource)
+	 * @verifies return the suffix of the resource for a suffix range
+	 */
+	@Test
+	public void getRange_shouldReturnTheSuffixOfTheResourceForASuffixRange() throws Exception {
+		assertArrayEquals(new long[] { 950, 999 }, ModuleResourcesServlet.getRange(request("bytes=-50"), RESOURCE));
+		assertArrayEquals(new long[] { 0, 999 }, ModuleResourcesServlet.getRange(request("bytes=-5000"), RESOURCE));
+	}
+	
+	/**
+	 * @see ModuleResourcesServlet#getRange(javax.servlet.http.HttpServletRequest, ModuleResource)
+	 * @verifies return an empty array for a range beyond the end of the resource
+	 */
+	@Test
+	public void getRange_shouldReturnAnEmptyArrayForARangeBeyondTheEndOfTheResource() throws Exception {
+		assertArrayEquals(new long[0], ModuleResourcesServlet.getRange(request("bytes=1000-1100"), RESOURCE));
+	}
+	
+	/**
+	 * @see ModuleResourcesServlet#getRange(javax.servlet.http.HttpServletRequest, ModuleResource)
+	 * @verifies return null if the if range header does not match
+	 */
+	@Test
+	public void getRange_shouldReturnNullIfTheIfRangeHeaderDoesNotMatch() throws Exception {
+		MockHttpServletRequest request = request("bytes=0-99");
+		request.addHeader("If-Range", "\"def\"");
+		assertNull(ModuleResourcesServlet.getRange(request, RESOURCE));
+		
+		request = request("bytes=0-99");
+		request.addHeader("If-Range", "\"abc\"");
+		assertArrayEquals(new long[] { 0, 99 }, ModuleResourcesServlet.getRange(request, RESOURCE));
+	}
+	
+	/**
+	 * @see ModuleResourcesServlet#isCompressed(javax.servlet.ServletResponse)
+	 * @verifies return true for a response wrapped for gzip
+	 */
+	@Test
+	public void isCompressed_shouldReturnTrueForAResponseWrappedForGzip() throws Exception {
+		HttpServletResponse gzipped = new GZIPResponseWrapper(new MockHttpServletResponse());
+		assertTrue(ModuleResourcesServlet.isCompressed(gzipped));
+		assertTrue(ModuleResourcesServlet.isCompressed(new HttpServletResponseWrapper(gzipped)));
+	}
+	
+	/**
+	 * @see ModuleResourcesServlet#isCompressed(javax.servlet.ServletResponse)
+	 * @verifies return false for a response that is not wrapped for gzip
+	 */
+	@Test
+	public void isCompressed_shouldReturnFalseForAResponseThatIsNotWrappedForGzip() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertFalse(ModuleResourcesServlet.isCompressed(response));
+		assertFalse(ModuleResourcesServlet.isCompressed(new HttpServletResponseWrapper(response)));
+	}
+	
+	private static MockHttpServletRequest request(String range) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/moduleResources/legacyui/module.js");
+		if (range != null) {
+			request.addHeader("Range", range);
+		}
+		return request;
+	}
+}
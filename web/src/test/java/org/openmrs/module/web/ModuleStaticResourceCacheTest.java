@@ -0,0 +1,112 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.module.Module;
+import org.openmrs.module.web.ModuleStaticResourceCache.CachedResource;
+
+/**
+ * Tests the {@link ModuleStaticResourceCache}
+ */
+public class ModuleStaticResourceCacheTest {
+	
+	@After
+	public void clearCache() {
+		ModuleStaticResourceCache.clear();
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#isCacheable(String, long)
+	 * @verifies return true for small javascript and css files
+	 */
+	@Test
+	public void isCacheable_shouldReturnTrueForSmallJavascriptAndCssFiles() throws Exception {
+		assertTrue(ModuleStaticResourceCache.isCacheable("resources/scripts/module.js", 1024));
+		assertTrue(ModuleStaticResourceCache.isCacheable("resources/style/module.CSS", 1024));
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#isCacheable(String, long)
+	 * @verifies return false for images
+	 */
+	@Test
+	public void isCacheable_shouldReturnFalseForImages() throws Exception {
+		assertFalse(ModuleStaticResourceCache.isCacheable("resources/images/logo.png", 1024));
+		assertFalse(ModuleStaticResourceCache.isCacheable("resources/images/logo.svg", 1024));
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#isCacheable(String, long)
+	 * @verifies return false for files bigger than the maximum size
+	 */
+	@Test
+	public void isCacheable_shouldReturnFalseForFilesBiggerThanTheMaximumSize() throws Exception {
+		assertFalse(ModuleStaticResourceCache.isCacheable("resources/scripts/module.js",
+		    ModuleStaticResourceCache.MAX_CACHED_RESOURCE_SIZE + 1));
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#isCacheable(String, long)
+	 * @verifies return false for files of unknown size
+	 */
+	@Test
+	public void isCacheable_shouldReturnFalseForFilesOfUnknownSize() throws Exception {
+		assertFalse(ModuleStaticResourceCache.isCacheable("resources/scripts/module.js", -1));
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#addResource(Module, String, byte[], long)
+	 */
+	@Test
+	public void addResource_shouldCacheCompressedContentUnderBothModuleIdForms() throws Exception {
+		Module module = new Module("Ui Springmvc", "ui.springmvc", "org.openmrs.module.ui.springmvc", "", "", "1.0");
+		byte[] content = "var x = 1;".getBytes("UTF-8");
+		
+		ModuleStaticResourceCache.addResource(module, "/scripts/ui.js", content, 1000L);
+		
+		CachedResource resource = ModuleStaticResourceCache.getResource("/moduleResources/ui/springmvc/scripts/ui.js");
+		assertNotNull(resource);
+		assertSame(resource, ModuleStaticResourceCache.getResource("/moduleResources/ui.springmvc/scripts/ui.js"));
+		assertEquals(1000L, resource.getLastModified());
+		assertTrue(resource.getEtag().startsWith("\"") && resource.getEtag().endsWith("\""));
+		
+		byte[] uncompressed = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(resource
+		        .getGzippedContent())));
+		assertEquals("var x = 1;", new String(uncompressed, "UTF-8"));
+	}
+	
+	/**
+	 * @see ModuleStaticResourceCache#removeResources(Module)
+	 */
+	@Test
+	public void removeResources_shouldRemoveAllResourcesOfTheModule() throws Exception {
+		Module module = new Module("Test", "test", "org.openmrs.module.test", "", "", "1.0");
+		ModuleStaticResourceCache.addResource(module, "/scripts/test.js", "a".getBytes("UTF-8"), 0L);
+		ModuleStaticResourceCache.addResource(module, "style/test.css", "b".getBytes("UTF-8"), 0L);
+		
+		ModuleStaticResourceCache.removeResources(module);
+		
+		assertNull(ModuleStaticResourceCache.getResource("/moduleResources/test/scripts/test.js"));
+		assertNull(ModuleStaticResourceCache.getResource("/moduleResources/test/style/test.css"));
+	}
+}
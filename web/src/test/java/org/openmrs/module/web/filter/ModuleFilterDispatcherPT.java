@@ -0,0 +1,110 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web.filter;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.openmrs.module.Module;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+
+/**
+ * Compares finding the filters of requests with a {@link ModuleFilterDispatcher} to checking every
+ * {@link ModuleFilterMapping} like {@link org.openmrs.module.web.WebModuleUtil} used to, for the
+ * mappings of 40 modules that each map a couple of filters.
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+public class ModuleFilterDispatcherPT {
+	
+	private static final int MODULE_COUNT = 40;
+	
+	private static final int ITERATIONS = 10000;
+	
+	private static final String[] REQUEST_PATHS = { "/index.htm", "/login.htm", "/ws/rest/v1/patient",
+	        "/ws/rest/v1/concept/5089", "/scripts/jquery/jquery.min.js", "/images/openmrs-logo-small.gif",
+	        "/module/htmlformentry/htmlFormEntry.form", "/moduleResources/htmlformentry/htmlFormEntry.css",
+	        "/dwr/interface/DWRPatientService.js", "/admin/index.htm" };
+	
+	@Rule
+	public TestRule benchmarkRule = new BenchmarkRule();
+	
+	private static List<ModuleFilterMapping> mappings = new ArrayList<ModuleFilterMapping>();
+	
+	private static Map<String, Filter> filters = new HashMap<String, Filter>();
+	
+	private static ModuleFilterDispatcher dispatcher;
+	
+	@BeforeClass
+	public static void createMappings() {
+		for (int i = 0; i < MODULE_COUNT; i++) {
+			Module module = new Module("module" + i);
+			addMapping(module, "module" + i + "Filter", "/module/module" + i + "/*", "/ws/module" + i + "/*");
+			addMapping(module, "module" + i + "FormFilter", "*.form", "/module" + i + "/index.htm");
+			if (i % 10 == 0) {
+				addMapping(module, "module" + i + "RestFilter", "/ws/rest/*");
+			}
+			if (i % 20 == 0) {
+				addMapping(module, "module" + i + "AllFilter", "/*");
+			}
+		}
+		dispatcher = new ModuleFilterDispatcher(mappings, filters);
+	}
+	
+	@Test
+	public void shouldCheckEveryMapping() throws Exception {
+		int found = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			for (String requestPath : REQUEST_PATHS) {
+				List<Filter> passed = new ArrayList<Filter>();
+				for (ModuleFilterMapping mapping : mappings) {
+					if (ModuleFilterMapping.filterMappingPasses(mapping, requestPath)) {
+						passed.add(filters.get(mapping.getFilterName()));
+					}
+				}
+				found += passed.size();
+			}
+		}
+		Assert.assertTrue(found > 0);
+	}
+	
+	@Test
+	public void shouldDispatch() throws Exception {
+		int found = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			for (String requestPath : REQUEST_PATHS) {
+				found += dispatcher.getFilters(requestPath).size();
+			}
+		}
+		Assert.assertTrue(found > 0);
+	}
+	
+	private static void addMapping(Module module, String filterName, String... urlPatterns) {
+		ModuleFilterMapping mapping = new ModuleFilterMapping(module);
+		mapping.setFilterName(filterName);
+		for (String urlPattern : urlPatterns) {
+			mapping.addUrlPattern(urlPattern);
+		}
+		mappings.add(mapping);
+		filters.put(filterName, mock(Filter.class));
+	}
+}
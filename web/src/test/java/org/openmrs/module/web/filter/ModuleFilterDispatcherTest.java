@@ -0,0 +1,162 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.web.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.Module;
+
+/**
+ * Tests the {@link ModuleFilterDispatcher}
+ */
+public class ModuleFilterDispatcherTest {
+	
+	private List<ModuleFilterMapping> mappings;
+	
+	private Map<String, Filter> filters;
+	
+	@Before
+	public void createFilters() {
+		mappings = new ArrayList<ModuleFilterMapping>();
+		filters = new HashMap<String, Filter>();
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#ModuleFilterDispatcher(List, Map)
+	 * @verifies run the filters in the order of their mappings
+	 */
+	@Test
+	public void ModuleFilterDispatcher_shouldRunTheFiltersInTheOrderOfTheirMappings() throws Exception {
+		Filter second = addMapping("second", "*.form", null);
+		Filter first = addMapping("first", "/*", null);
+		Filter third = addMapping("third", null, "/admin/index.form");
+		
+		ModuleFilterDispatcher dispatcher = new ModuleFilterDispatcher(mappings, filters);
+		
+		assertEquals(Arrays.asList(second, first, third), dispatcher.getFilters("/admin/index.form"));
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#ModuleFilterDispatcher(List, Map)
+	 * @verifies skip mappings of unknown filters
+	 */
+	@Test
+	public void ModuleFilterDispatcher_shouldSkipMappingsOfUnknownFilters() throws Exception {
+		Filter known = addMapping("known", "*", null);
+		addMapping("unknown", "*", null);
+		filters.remove("unknown");
+		
+		assertEquals(Arrays.asList(known), new ModuleFilterDispatcher(mappings, filters).getFilters("/index.htm"));
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#getFilters(String)
+	 * @verifies match exact paths
+	 */
+	@Test
+	public void getFilters_shouldMatchExactPaths() throws Exception {
+		Filter filter = addMapping("exact", "/login.htm", null);
+		
+		ModuleFilterDispatcher dispatcher = new ModuleFilterDispatcher(mappings, filters);
+		
+		assertEquals(Arrays.asList(filter), dispatcher.getFilters("/login.htm"));
+		assertTrue(dispatcher.getFilters("/login.html").isEmpty());
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#getFilters(String)
+	 * @verifies match path prefixes
+	 */
+	@Test
+	public void getFilters_shouldMatchPathPrefixes() throws Exception {
+		Filter filter = addMapping("rest", "/ws/rest/*", null);
+		
+		ModuleFilterDispatcher dispatcher = new ModuleFilterDispatcher(mappings, filters);
+		
+		assertEquals(Arrays.asList(filter), dispatcher.getFilters("/ws/rest"));
+		assertEquals(Arrays.asList(filter), dispatcher.getFilters("/ws/rest/v1/patient"));
+		assertTrue(dispatcher.getFilters("/ws/restful").isEmpty());
+		assertTrue(dispatcher.getFilters("/ws").isEmpty());
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#getFilters(String)
+	 * @verifies match extensions
+	 */
+	@Test
+	public void getFilters_shouldMatchExtensions() throws Exception {
+		Filter filter = addMapping("forms", "*.form", null);
+		
+		ModuleFilterDispatcher dispatcher = new ModuleFilterDispatcher(mappings, filters);
+		
+		assertEquals(Arrays.asList(filter), dispatcher.getFilters("/module/htmlformentry/htmlFormEntry.form"));
+		assertTrue(dispatcher.getFilters("/module/htmlformentry/htmlFormEntry.formx").isEmpty());
+		assertTrue(dispatcher.getFilters("/module.form/index").isEmpty());
+	}
+	
+	/**
+	 * @see ModuleFilterDispatcher#getFilters(String)
+	 * @verifies return an empty list if the request path is null
+	 */
+	@Test
+	public void getFilters_shouldReturnAnEmptyListIfTheRequestPathIsNull() throws Exception {
+		addMapping("all", "*", null);
+		
+		assertTrue(new ModuleFilterDispatcher(mappings, filters).getFilters(null).isEmpty());
+	}
+	
+	@Test
+	public void getFilters_shouldMatchLikeFilterMappingPasses() throws Exception {
+		String[] patterns = { "*", "/*", "/ws/*", "/ws/rest/*", "*.form", "*.htm", "/index.htm", "*.", "/ws//*", null };
+		for (int i = 0; i < patterns.length; i++) {
+			addMapping("filter" + i, patterns[i], i % 3 == 0 ? "/index.htm" : null);
+		}
+		ModuleFilterDispatcher dispatcher = new ModuleFilterDispatcher(mappings, filters);
+		
+		String[] paths = { "", "/", "/index.htm", "/ws", "/ws/", "/ws/rest", "/ws/rest/v1", "/wsx/rest", "/a.form",
+		        "/a/b.form/c", "/a.", "form", "/ws//x", "/*" };
+		for (String path : paths) {
+			List<Filter> expected = new ArrayList<Filter>();
+			for (ModuleFilterMapping mapping : mappings) {
+				if (ModuleFilterMapping.filterMappingPasses(mapping, path)) {
+					expected.add(filters.get(mapping.getFilterName()));
+				}
+			}
+			assertEquals(path, expected, dispatcher.getFilters(path));
+		}
+	}
+	
+	private Filter addMapping(String filterName, String urlPattern, String servletName) {
+		ModuleFilterMapping mapping = new ModuleFilterMapping(new Module(filterName));
+		mapping.setFilterName(filterName);
+		if (urlPattern != null) {
+			mapping.addUrlPattern(urlPattern);
+		}
+		if (servletName != null) {
+			mapping.addServletName(servletName);
+		}
+		mappings.add(mapping);
+		Filter filter = mock(Filter.class);
+		filters.put(filterName, filter);
+		return filter;
+	}
+}
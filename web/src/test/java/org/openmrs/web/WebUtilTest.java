@@ -153,6 +153,45 @@ public class WebUtilTest {
 		Assert.assertNull(null, WebUtil.sanitizeLocales(""));
 	}
 	
+	/**
+	 * @see WebUtil#matchesEntityTag(String,String)
+	 * @verifies match an entity tag in a list
+	 */
+	@Test
+	public void matchesEntityTag_shouldMatchAnEntityTagInAList() throws Exception {
+		Assert.assertTrue(WebUtil.matchesEntityTag("\"abc\", \"def\"", "\"def\""));
+		Assert.assertFalse(WebUtil.matchesEntityTag("\"abc\", \"def\"", "\"ghi\""));
+	}
+	
+	/**
+	 * @see WebUtil#matchesEntityTag(String,String)
+	 * @verifies not match an entity tag that only contains the given one
+	 */
+	@Test
+	public void matchesEntityTag_shouldNotMatchAnEntityTagThatOnlyContainsTheGivenOne() throws Exception {
+		Assert.assertFalse(WebUtil.matchesEntityTag("\"abc-gz\"", "\"abc\""));
+		Assert.assertFalse(WebUtil.matchesEntityTag("\"xabc\"", "abc"));
+	}
+	
+	/**
+	 * @see WebUtil#matchesEntityTag(String,String)
+	 * @verifies match weak entity tags
+	 */
+	@Test
+	public void matchesEntityTag_shouldMatchWeakEntityTags() throws Exception {
+		Assert.assertTrue(WebUtil.matchesEntityTag("W/\"abc\"", "\"abc\""));
+	}
+	
+	/**
+	 * @see WebUtil#matchesEntityTag(String,String)
+	 * @verifies match any entity tag for an asterisk
+	 */
+	@Test
+	public void matchesEntityTag_shouldMatchAnyEntityTagForAnAsterisk() throws Exception {
+		Assert.assertTrue(WebUtil.matchesEntityTag(" * ", "\"abc\""));
+		Assert.assertFalse(WebUtil.matchesEntityTag(null, "\"abc\""));
+	}
+	
 	/**
 	 * Utility method to check if a list contains a BaseOpenmrsObject using the id
 	 * @param list
@@ -0,0 +1,63 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.web.controller;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.GlobalPropertyUsage;
+import org.openmrs.test.Verifies;
+import org.openmrs.web.controller.PseudoStaticContentCache.RenderedContent;
+
+/**
+ * Tests {@link PseudoStaticContentCache}
+ */
+public class PseudoStaticContentCacheTest {
+	
+	@Before
+	public void clearCache() {
+		PseudoStaticContentCache.clear();
+	}
+	
+	/**
+	 * @see PseudoStaticContentCache#put(String,RenderedContent,long)
+	 */
+	@Test
+	@Verifies(value = "should not cache content if an entry was evicted while rendering", method = "put(String,RenderedContent,long)")
+	public void put_shouldNotCacheContentIfAnEntryWasEvictedWhileRendering() throws Exception {
+		long generation = PseudoStaticContentCache.getGeneration();
+		PseudoStaticContentCache.evict("locale.allowed.list");
+		PseudoStaticContentCache.put("key", render("locale.allowed.list"), generation);
+		
+		Assert.assertNull(PseudoStaticContentCache.get("key"));
+	}
+	
+	/**
+	 * @see PseudoStaticContentCache#evict(String)
+	 */
+	@Test
+	@Verifies(value = "should only evict the entries that read the given property", method = "evict(String)")
+	public void evict_shouldOnlyEvictTheEntriesThatReadTheGivenProperty() throws Exception {
+		long generation = PseudoStaticContentCache.getGeneration();
+		PseudoStaticContentCache.put("messages", render("locale.allowed.list"), generation);
+		PseudoStaticContentCache.put("drugOrder", render("dashboard.regimen.displayDrugSetIds"), generation);
+		
+		PseudoStaticContentCache.evict("dashboard.regimen.displayDrugSetIds");
+		
+		Assert.assertNotNull(PseudoStaticContentCache.get("messages"));
+		Assert.assertNull(PseudoStaticContentCache.get("drugOrder"));
+	}
+	
+	private RenderedContent render(String propertyName) throws Exception {
+		GlobalPropertyUsage.startRecording();
+		GlobalPropertyUsage.recordRead(propertyName);
+		return new RenderedContent("content".getBytes("UTF-8"), "text/javascript", GlobalPropertyUsage.stopRecording());
+	}
+}
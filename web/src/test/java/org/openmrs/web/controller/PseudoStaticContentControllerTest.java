@@ -0,0 +1,181 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.web.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.Verifies;
+import org.openmrs.web.filter.GZIPResponseWrapper;
+import org.openmrs.web.test.BaseWebContextSensitiveTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests {@link PseudoStaticContentController}
+ */
+public class PseudoStaticContentControllerTest extends BaseWebContextSensitiveTest {
+	
+	private static final String GREETING_PROPERTY = "test.jstl.greeting";
+	
+	private PseudoStaticContentController controller;
+	
+	private int renderCount;
+	
+	@Before
+	public void setUp() {
+		PseudoStaticContentCache.clear();
+		PseudoStaticContentCache.resetStatistics();
+		controller = new PseudoStaticContentController();
+		controller.setInterpretJstl(true);
+		renderCount = 0;
+	}
+	
+	/**
+	 * @see PseudoStaticContentController#handleRequest(HttpServletRequest,HttpServletResponse)
+	 */
+	@Test
+	@Verifies(value = "should render a jstl file once per locale", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldRenderAJstlFileOncePerLocale() throws Exception {
+		MockHttpServletResponse first = get(newRequest(Locale.ENGLISH));
+		MockHttpServletResponse second = get(newRequest(Locale.ENGLISH));
+		Assert.assertEquals(1, renderCount);
+		Assert.assertEquals("var greeting = 'hello en';", first.getContentAsString());
+		Assert.assertEquals(first.getContentAsString(), second.getContentAsString());
+		Assert.assertEquals("text/javascript;charset=UTF-8", second.getContentType());
+		
+		MockHttpServletResponse french = get(newRequest(Locale.FRENCH));
+		Assert.assertEquals(2, renderCount);
+		Assert.assertEquals("var greeting = 'hello fr';", french.getContentAsString());
+	}
+	
+	/**
+	 * @see PseudoStaticContentController#handleRequest(HttpServletRequest,HttpServletResponse)
+	 */
+	@Test
+	@Verifies(value = "should answer a request with a matching etag with a 304", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldAnswerARequestWithAMatchingEtagWith304() throws Exception {
+		String etag = get(newRequest(Locale.ENGLISH)).getHeader("ETag");
+		Assert.assertNotNull(etag);
+		
+		MockHttpServletRequest request = newRequest(Locale.ENGLISH);
+		request.addHeader("If-None-Match", etag);
+		MockHttpServletResponse response = get(request);
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		Assert.assertEquals(1, PseudoStaticContentCache.getHitCount());
+	}
+	
+	/**
+	 * @see PseudoStaticContentController#handleRequest(HttpServletRequest,HttpServletResponse)
+	 */
+	@Test
+	@Verifies(value = "should answer a request modified since the last modified second with a 304", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldAnswerARequestModifiedSinceTheLastModifiedSecondWith304() throws Exception {
+		get(newRequest(Locale.ENGLISH));
+		
+		// the Last-Modified header the client got has no milliseconds
+		MockHttpServletRequest request = newRequest(Locale.ENGLISH);
+		request.addHeader("If-Modified-Since", new Date(System.currentTimeMillis() / 1000 * 1000));
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get(request).getStatus());
+	}
+	
+	/**
+	 * @see PseudoStaticContentController#handleRequest(HttpServletRequest,HttpServletResponse)
+	 */
+	@Test
+	@Verifies(value = "should write the compressed content if the response is compressed by the gzip filter", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldWriteTheCompressedContentIfTheResponseIsCompressedByTheGzipFilter() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		GZIPResponseWrapper gzipResponse = new GZIPResponseWrapper(response);
+		controller.handleRequest(newRequest(Locale.ENGLISH), gzipResponse);
+		gzipResponse.finishResponse();
+		
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		String content = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())),
+		    "UTF-8");
+		Assert.assertEquals("var greeting = 'hello en';", content);
+	}
+	
+	/**
+	 * @see PseudoStaticContentController#handleRequest(HttpServletRequest,HttpServletResponse)
+	 */
+	@Test
+	@Verifies(value = "should render a jstl file again after a global property it read changed", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldRenderAJstlFileAgainAfterAGlobalPropertyItReadChanged() throws Exception {
+		get(newRequest(Locale.ENGLISH));
+		
+		GlobalProperty unrelated = Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty("test.unrelated", "value"));
+		controller.globalPropertyChanged(unrelated);
+		get(newRequest(Locale.ENGLISH));
+		Assert.assertEquals(1, renderCount);
+		
+		GlobalProperty greeting = Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(GREETING_PROPERTY, "welcome"));
+		controller.globalPropertyChanged(greeting);
+		MockHttpServletResponse response = get(newRequest(Locale.ENGLISH));
+		Assert.assertEquals(2, renderCount);
+		Assert.assertEquals("var greeting = 'welcome en';", response.getContentAsString());
+	}
+	
+	private MockHttpServletResponse get(HttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Assert.assertNull(controller.handleRequest(request, response));
+		return response;
+	}
+	
+	/**
+	 * Creates a request for a jstl file that is rendered from a global property and the locale
+	 */
+	private MockHttpServletRequest newRequest(Locale locale) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/openmrs/scripts/openmrsmessages.js") {
+			
+			@Override
+			public RequestDispatcher getRequestDispatcher(String path) {
+				Assert.assertEquals("/WEB-INF/view/scripts/openmrsmessages.js.withjstl", path);
+				return new RequestDispatcher() {
+					
+					@Override
+					public void forward(ServletRequest request, ServletResponse response) throws IOException {
+						renderCount++;
+						String greeting = Context.getAdministrationService().getGlobalProperty(GREETING_PROPERTY, "hello");
+						response.setContentType("text/javascript;charset=UTF-8");
+						response.getWriter().write("var greeting = '" + greeting + " " + request.getLocale() + "';");
+					}
+					
+					@Override
+					public void include(ServletRequest request, ServletResponse response) {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+		request.setServletPath("/scripts");
+		request.setPathInfo("/openmrsmessages.js");
+		request.addPreferredLocale(locale);
+		return request;
+	}
+}